@@ -0,0 +1,71 @@
+package com.huang.backend.mqtt.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding the same sample from the binary encoding and from JSON.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="TelemetryBinaryCodecBenchmark -prof gc"}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryBinaryCodecBenchmark {
+
+    private final byte[] json = ("{\"droneId\": \"6f1c2a9e-8d0b-4d6a-9a51-2b3c4d5e6f70\", "
+            + "\"timestamp\": 1700000000.123456, \"latitude\": 37.774929, \"longitude\": -122.419416, "
+            + "\"altitude\": 120.25, \"batteryLevel\": 85.5, \"speed\": 12.8, \"heading\": 271.4, "
+            + "\"status\": \"FLYING\", \"isArmed\": true, \"satellites\": 14, \"signalStrength\": 92.0, "
+            + "\"temperature\": 41.3}").getBytes(StandardCharsets.UTF_8);
+
+    private final TelemetryJsonDecoder jsonDecoder = new TelemetryJsonDecoder(new ObjectMapper());
+
+    private final TelemetryBinaryCodec binaryCodec = new TelemetryBinaryCodec();
+
+    private final TelemetryRecord record = new TelemetryRecord();
+
+    private final byte[] encodeTarget = new byte[TelemetryBinaryCodec.LENGTH];
+
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        jsonDecoder.decode(json, record);
+        binary = binaryCodec.encode(record);
+    }
+
+    @Benchmark
+    public TelemetryRecord decodeBinary() throws Exception {
+        binaryCodec.decode(binary, record);
+        return record;
+    }
+
+    @Benchmark
+    public TelemetryRecord decodeJson() throws Exception {
+        jsonDecoder.decode(json, record);
+        return record;
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        binaryCodec.encode(record, encodeTarget);
+        return encodeTarget;
+    }
+}
@@ -0,0 +1,61 @@
+package com.huang.backend.mqtt.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.mqtt.model.DroneTelemetryData;
+import com.huang.backend.mqtt.model.FarewellMessage;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TelemetryJsonDecoder} with the previous decode path
+ * (String copy + {@code contains("FAREWELL")} + ObjectMapper data binding).
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="TelemetryJsonDecoderBenchmark -prof gc"}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryJsonDecoderBenchmark {
+
+    /** Payload shaped like the simulator's telemetry messages */
+    private final byte[] payload = ("{\"droneId\": \"6f1c2a9e-8d0b-4d6a-9a51-2b3c4d5e6f70\", "
+            + "\"timestamp\": 1700000000.123456, \"latitude\": 37.774929, \"longitude\": -122.419416, "
+            + "\"altitude\": 120.25, \"batteryLevel\": 85.5, \"speed\": 12.8, \"heading\": 271.4, "
+            + "\"status\": \"FLYING\", \"isArmed\": true, \"satellites\": 14, \"signalStrength\": 92.0, "
+            + "\"temperature\": 41.3}").getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final TelemetryJsonDecoder decoder = new TelemetryJsonDecoder(objectMapper);
+
+    private final TelemetryRecord record = new TelemetryRecord();
+
+    @Benchmark
+    public TelemetryRecord streaming() throws Exception {
+        decoder.decode(payload, record);
+        return record;
+    }
+
+    @Benchmark
+    public Object objectMapper() throws Exception {
+        String messageStr = new String(payload);
+        if (messageStr.contains("\"type\":\"FAREWELL\"") || messageStr.contains("\"type\": \"FAREWELL\"")) {
+            return objectMapper.readValue(payload, FarewellMessage.class);
+        }
+        return objectMapper.readValue(payload, DroneTelemetryData.class);
+    }
+}
@@ -0,0 +1,137 @@
+package com.huang.backend.mqtt.codec;
+
+import com.huang.backend.drone.model.TelemetryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TelemetryLineProtocolEncoder} with the StringBuilder encoding that
+ * TimeseriesService used before. Both variants produce the bytes handed to the batch writer.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="TelemetryLineProtocolBenchmark -prof gc"}
+ * ({@code -prof gc} reports the allocation per operation).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryLineProtocolBenchmark {
+
+    private static final String MEASUREMENT = TelemetryLineProtocolEncoder.MEASUREMENT;
+
+    private final TelemetryLineProtocolEncoder encoder = new TelemetryLineProtocolEncoder();
+
+    private TelemetryData data;
+
+    @Setup
+    public void setUp() {
+        data = TelemetryData.builder()
+                .droneId(UUID.randomUUID().toString())
+                .timestamp(Instant.now())
+                .batteryLevel(85.5)
+                .batteryVoltage(12.37)
+                .latitude(37.774929)
+                .longitude(-122.419416)
+                .altitude(120.25)
+                .speed(12.8)
+                .heading(271.4)
+                .satellites(14)
+                .signalStrength(92.0)
+                .flightMode("MISSION")
+                .temperature(41.3)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] encoder() {
+        return encoder.encode(data);
+    }
+
+    @Benchmark
+    public byte[] stringBuilder() {
+        return legacyEncode(data).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The line-protocol construction previously inlined in TimeseriesService.writeTelemetryData
+     */
+    private static String legacyEncode(TelemetryData data) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(MEASUREMENT).append(",");
+        sb.append("drone_id=").append(data.getDroneId());
+        sb.append(" ");
+        boolean hasFields = false;
+        if (data.getBatteryLevel() != null) {
+            sb.append("battery_level=").append(data.getBatteryLevel());
+            hasFields = true;
+        }
+        if (data.getBatteryVoltage() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("battery_voltage=").append(data.getBatteryVoltage());
+            hasFields = true;
+        }
+        if (data.getLatitude() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("latitude=").append(data.getLatitude());
+            hasFields = true;
+        }
+        if (data.getLongitude() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("longitude=").append(data.getLongitude());
+            hasFields = true;
+        }
+        if (data.getAltitude() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("altitude=").append(data.getAltitude());
+            hasFields = true;
+        }
+        if (data.getSpeed() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("speed=").append(data.getSpeed());
+            hasFields = true;
+        }
+        if (data.getHeading() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("heading=").append(data.getHeading());
+            hasFields = true;
+        }
+        if (data.getSatellites() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("satellites=").append(data.getSatellites());
+            hasFields = true;
+        }
+        if (data.getSignalStrength() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("signal_strength=").append(data.getSignalStrength());
+            hasFields = true;
+        }
+        if (data.getFlightMode() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("flight_mode=\"").append(data.getFlightMode()).append("\"");
+            hasFields = true;
+        }
+        if (data.getTemperature() != null) {
+            if (hasFields) sb.append(",");
+            sb.append("temperature=").append(data.getTemperature());
+        }
+        Instant timestamp = data.getTimestamp();
+        long timestampNanos = TimeUnit.SECONDS.toNanos(timestamp.getEpochSecond()) + timestamp.getNano();
+        sb.append(" ").append(timestampNanos);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.huang.backend.config;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+/**
+ * Creates (not yet connected) MQTT connections to the configured broker.
+ * Tests replace it with a stand-in that hands out fake clients.
+ */
+@FunctionalInterface
+public interface MqttClientFactory {
+
+    /**
+     * Create a client
+     *
+     * @param clientId the MQTT client ID, unique per connection
+     * @return the unconnected client
+     */
+    MqttAsyncClient create(String clientId) throws MqttException;
+}
@@ -3,6 +3,12 @@ package com.huang.backend.controller;
 import com.huang.backend.drone.dto.DroneDeleteResponseDto;
 import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FlightSessionTracker;
+import com.huang.backend.drone.service.FleetStatusCounters;
+import com.huang.backend.drone.service.LatestTelemetryStore;
+import com.huang.backend.drone.service.TelemetryHistoryCache;
+import com.huang.backend.mqtt.pipeline.DroneSequenceTracker;
 import com.huang.backend.registration.entity.DroneRegistrationRequest;
 import com.huang.backend.registration.repository.DroneRegistrationRequestRepository;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +34,12 @@ import java.util.UUID;
 public class TestController {
 
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final TelemetryHistoryCache telemetryHistoryCache;
+    private final FlightSessionTracker flightSessionTracker;
+    private final FleetStatusCounters fleetStatusCounters;
+    private final DroneSequenceTracker sequenceTracker;
     private final DroneRegistrationRequestRepository registrationRepository;
     private final SimpMessagingTemplate messagingTemplate;
 
@@ -70,6 +82,12 @@ public class TestController {
             
             // Delete the drone entity
             droneRepository.delete(drone);
+            droneRegistry.evict(drone.getDroneId());
+            fleetStatusCounters.deleted(drone.getCurrentStatus());
+            latestTelemetryStore.evict(drone.getDroneId());
+            telemetryHistoryCache.evict(drone.getDroneId().toString());
+            flightSessionTracker.evict(drone.getDroneId());
+            sequenceTracker.forget(drone.getDroneId().toString());
             
             // Update the registration request if it exists
             if (drone.getRegistrationRequestId() != null) {
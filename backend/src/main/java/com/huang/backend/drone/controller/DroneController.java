@@ -7,6 +7,8 @@ import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
 import com.huang.backend.drone.service.DroneStatusService;
 import com.huang.backend.drone.service.DroneInfluxDBService;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
 import com.huang.backend.geofence.dto.GeofenceListItemDto;
 import com.huang.backend.geofence.dto.GeofenceResponseDto;
 import com.huang.backend.geofence.service.GeofenceService;
@@ -18,17 +20,20 @@ import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * 统一的无人机API控制器
@@ -44,6 +49,21 @@ public class DroneController {
     private final DroneInfluxDBService droneInfluxDBService;
     private final GeofenceService geofenceService;
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
+    private final FleetStatusCounters fleetStatusCounters;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Sort fields accepted by the page endpoint, mapped to entity properties
+     */
+    private static final Map<String, String> SORT_PROPERTIES = Map.of(
+            "serialNumber", "serialNumber",
+            "model", "model",
+            "status", "currentStatus",
+            "createdAt", "createdAt",
+            "updatedAt", "updatedAt",
+            "lastHeartbeat", "lastHeartbeatAt");
 
     /**
      * 获取所有无人机列表
@@ -57,25 +77,49 @@ public class DroneController {
     }
 
     /**
-     * 获取无人机分页列表
+     * 获取无人机分页列表（数据库分页，只为当前页的无人机查询遥测）
      * @param page 页码
      * @param size 每页大小
+     * @param status 状态过滤，可多选，为空时返回全部
+     * @param sort 排序字段: serialNumber, model, status, createdAt, updatedAt, lastHeartbeat
+     * @param direction 排序方向: asc 或 desc
      * @return 分页响应
      */
     @GetMapping(params = {"page"})
     public ResponseEntity<Page<DroneStatusDto>> getDroneList(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        log.info("Getting drones with page: {} and size: {}", page, size);
-        
-        List<DroneStatusDto> allDrones = droneStatusService.getAllDronesStatus();
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) List<Drone.DroneStatus> status,
+            @RequestParam(defaultValue = "serialNumber") String sort,
+            @RequestParam(defaultValue = "asc") String direction) {
+        log.info("Getting drones with page: {}, size: {}, status: {}, sort: {} {}", page, size, status, sort, direction);
         
-        // 简单的内存分页实现
-        int start = page * size;
-        int end = Math.min(start + size, allDrones.size());
-        List<DroneStatusDto> pageContent = allDrones.subList(start, end);
+        String property = SORT_PROPERTIES.get(sort);
+        if (property == null) {
+            throw new IllegalArgumentException("Unsupported sort field: " + sort);
+        }
+        // 追加主键排序，保证排序字段相同时分页结果稳定
+        Sort order = Sort.by(Sort.Direction.fromString(direction), property).and(Sort.by("droneId"));
+        Pageable pageable = PageRequest.of(Math.max(0, page), pageSize(size), order);
         
-        return ResponseEntity.ok(new PageImpl<>(pageContent, PageRequest.of(page, size), allDrones.size()));
+        return ResponseEntity.ok(droneStatusService.getDronesPage(statuses(status), pageable));
+    }
+
+    /**
+     * 按序列号键集分页获取无人机列表，翻到深页时开销不随页码增长
+     * @param after 上一页最后一架无人机的序列号，为空时返回第一页
+     * @param size 每页大小
+     * @param status 状态过滤，可多选，为空时返回全部
+     * @return 分片响应（不含总数）
+     */
+    @GetMapping(params = {"after", "!page"})
+    public ResponseEntity<Slice<DroneStatusDto>> getDroneListAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) List<Drone.DroneStatus> status) {
+        log.info("Getting drones after serial number: {}, size: {}, status: {}", after, size, status);
+        return ResponseEntity.ok(droneStatusService.getDronesAfter(
+                after.isEmpty() ? null : after, statuses(status), pageSize(size)));
     }
 
     /**
@@ -112,10 +156,7 @@ public class DroneController {
             @RequestBody BatchTelemetryRequest request) {
         log.info("Getting batch telemetry for {} drones", request.getDroneIds().size());
         
-        List<DroneTelemetryDto> telemetryList = request.getDroneIds().stream()
-                .map(droneStatusService::getLatestTelemetry)
-                .filter(telemetry -> telemetry != null)
-                .collect(Collectors.toList());
+        List<DroneTelemetryDto> telemetryList = droneStatusService.getLatestTelemetry(request.getDroneIds());
         
         return ResponseEntity.ok(telemetryList);
     }
@@ -152,6 +193,8 @@ public class DroneController {
             // 更新状态
             drone.setCurrentStatus(request.getStatus());
             droneRepository.save(drone);
+            droneRegistry.update(drone);
+            fleetStatusCounters.transition(oldStatus, request.getStatus());
             
             log.info("Successfully updated drone {} status from {} to {}", 
                     drone.getSerialNumber(), oldStatus, request.getStatus());
@@ -196,37 +239,13 @@ public class DroneController {
     }
 
     /**
-     * 获取无人机统计信息
+     * 获取无人机统计信息（内存中的状态计数，不查询数据库和InfluxDB）
      * @return 统计信息
      */
     @GetMapping("/stats")
     public ResponseEntity<DroneStatsDto> getDroneStats() {
-        log.info("Getting drone statistics");
-        
-        List<DroneStatusDto> allDrones = droneStatusService.getAllDronesStatus();
-        
-        Map<Drone.DroneStatus, Long> statusCounts = allDrones.stream()
-                .collect(Collectors.groupingBy(
-                        DroneStatusDto::getStatus,
-                        Collectors.counting()
-                ));
-        
-        DroneStatsDto stats = DroneStatsDto.builder()
-                .total(allDrones.size())
-                .online(statusCounts.getOrDefault(Drone.DroneStatus.ONLINE, 0L).intValue())
-                .offline(statusCounts.getOrDefault(Drone.DroneStatus.OFFLINE, 0L).intValue())
-                .flying(statusCounts.getOrDefault(Drone.DroneStatus.FLYING, 0L).intValue())
-                .idle(statusCounts.getOrDefault(Drone.DroneStatus.IDLE, 0L).intValue())
-                .error(statusCounts.getOrDefault(Drone.DroneStatus.ERROR, 0L).intValue())
-                .lowBattery(0)
-                .statusCounts(statusCounts.entrySet().stream()
-                        .collect(Collectors.toMap(
-                                entry -> entry.getKey().toString(),
-                                entry -> entry.getValue().intValue()
-                        )))
-                .build();
-        
-        return ResponseEntity.ok(stats);
+        log.debug("Getting drone statistics");
+        return ResponseEntity.ok(fleetStatusCounters.getStats());
     }
 
     /**
@@ -313,6 +332,14 @@ public class DroneController {
         return ResponseEntity.ok(response);
     }
 
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private static Set<Drone.DroneStatus> statuses(List<Drone.DroneStatus> status) {
+        return status == null || status.isEmpty() ? Set.of() : EnumSet.copyOf(status);
+    }
+
     // ============================================================================
     // 内部类定义
     // ============================================================================
@@ -2,13 +2,25 @@ package com.huang.backend.drone.controller;
 
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.dto.FlightSessionDto;
 import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DownsampleMode;
 import com.huang.backend.drone.service.DroneStatusService;
+import com.huang.backend.drone.service.FlightSessionService;
+import com.huang.backend.drone.service.TelemetryExportService;
+import com.huang.backend.mqtt.dto.DroneLinkStatsDto;
+import com.huang.backend.mqtt.pipeline.DroneSequenceTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.List;
@@ -25,6 +37,9 @@ import java.util.UUID;
 public class DroneMonitoringController {
 
     private final DroneStatusService droneStatusService;
+    private final DroneSequenceTracker sequenceTracker;
+    private final TelemetryExportService exportService;
+    private final FlightSessionService flightSessionService;
 
     /**
      * Get all drones with their current status
@@ -82,7 +97,9 @@ public class DroneMonitoringController {
      * @param droneId the ID of the drone
      * @param start the start time (ISO format)
      * @param end the end time (ISO format)
-     * @param limit the maximum number of records to return
+     * @param limit the maximum number of records to return, from the start of the range
+     * @param maxPoints if set, downsample the whole range to at most this many points instead
+     * @param downsample how to downsample: WINDOW (aggregated windows) or LTTB (shape-preserving track)
      * @return a list of telemetry data points within the specified time range
      */
     @GetMapping("/drones/{droneId}/telemetry/history")
@@ -90,12 +107,50 @@ public class DroneMonitoringController {
             @PathVariable UUID droneId,
             @RequestParam Instant start,
             @RequestParam Instant end,
-            @RequestParam(defaultValue = "100") int limit) {
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(defaultValue = "WINDOW") DownsampleMode downsample) {
+        if (maxPoints != null) {
+            log.debug("REST request to get downsampled telemetry history for drone: {}, from {} to {}, max points: {} ({})",
+                    droneId, start, end, maxPoints, downsample);
+            return ResponseEntity.ok(droneStatusService.getTelemetryHistory(droneId, start, end, maxPoints, downsample));
+        }
         log.debug("REST request to get telemetry history for drone: {}, from {} to {}, limit: {}", 
                 droneId, start, end, limit);
         return ResponseEntity.ok(droneStatusService.getTelemetryHistory(droneId, start, end, limit));
     }
     
+    /**
+     * Export the raw telemetry of one or more drones within a time range.
+     * The response is streamed while InfluxDB returns the data, so any range can be exported.
+     * 
+     * @param droneIds the IDs of the drones
+     * @param start the start time (ISO format)
+     * @param end the end time (ISO format)
+     * @param format NDJSON (one JSON object per line) or CSV
+     * @return the streamed export
+     */
+    @GetMapping("/telemetry/export")
+    public ResponseEntity<StreamingResponseBody> exportTelemetry(
+            @RequestParam List<UUID> droneIds,
+            @RequestParam Instant start,
+            @RequestParam Instant end,
+            @RequestParam(defaultValue = "NDJSON") TelemetryExportService.Format format) {
+        log.debug("REST request to export telemetry of {} drones, from {} to {} as {}",
+                droneIds.size(), start, end, format);
+        if (droneIds.isEmpty() || !end.isAfter(start)) {
+            throw new IllegalArgumentException("At least one drone and a time range with end after start are required");
+        }
+        StreamingResponseBody body = out -> exportService.export(droneIds, start, end, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("telemetry." + format.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+    
     /**
      * Get online drones with their latest positions
      * 
@@ -106,4 +161,103 @@ public class DroneMonitoringController {
         log.debug("REST request to get online drones for map display");
         return ResponseEntity.ok(droneStatusService.getDronesByStatus(Drone.DroneStatus.ONLINE));
     }
-} 
\ No newline at end of file
+
+    /**
+     * Get telemetry delivery statistics (duplicates, late and lost samples) of a drone
+     * 
+     * @param droneId the ID of the drone
+     * @return the statistics, or 404 if no tracked telemetry was received from the drone
+     */
+    @GetMapping("/drones/{droneId}/link")
+    public ResponseEntity<DroneLinkStatsDto> getLinkStats(@PathVariable UUID droneId) {
+        log.debug("REST request to get telemetry link stats for drone: {}", droneId);
+        return sequenceTracker.getStats(droneId.toString())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get telemetry delivery statistics of all tracked drones
+     * 
+     * @return the statistics per drone
+     */
+    @GetMapping("/drones/link")
+    public ResponseEntity<List<DroneLinkStatsDto>> getAllLinkStats() {
+        log.debug("REST request to get telemetry link stats for all drones");
+        return ResponseEntity.ok(sequenceTracker.getAllStats());
+    }
+
+    /**
+     * Get the flights of a drone that overlap a time range, newest first
+     * 
+     * @param droneId the ID of the drone
+     * @param start the start time (ISO format)
+     * @param end the end time (ISO format)
+     * @param page page number (0-based)
+     * @param size page size (at most 200)
+     * @return a page of flights
+     */
+    @GetMapping("/drones/{droneId}/flights")
+    public ResponseEntity<Page<FlightSessionDto>> getDroneFlights(
+            @PathVariable UUID droneId,
+            @RequestParam Instant start,
+            @RequestParam Instant end,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get flights of drone: {}, from {} to {}, page: {}, size: {}",
+                droneId, start, end, page, size);
+        return ResponseEntity.ok(flightSessionService.getFlights(droneId, start, end, flightPage(page, size)));
+    }
+
+    /**
+     * Get the flights of all drones that overlap a time range, newest first
+     * 
+     * @param start the start time (ISO format)
+     * @param end the end time (ISO format)
+     * @param page page number (0-based)
+     * @param size page size (at most 200)
+     * @return a page of flights
+     */
+    @GetMapping("/flights")
+    public ResponseEntity<Page<FlightSessionDto>> getFlights(
+            @RequestParam Instant start,
+            @RequestParam Instant end,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get flights from {} to {}, page: {}, size: {}", start, end, page, size);
+        return ResponseEntity.ok(flightSessionService.getFlights(null, start, end, flightPage(page, size)));
+    }
+
+    /**
+     * Get a single flight
+     * 
+     * @param flightId the ID of the flight
+     * @return the flight
+     */
+    @GetMapping("/flights/{flightId}")
+    public ResponseEntity<FlightSessionDto> getFlight(@PathVariable UUID flightId) {
+        log.debug("REST request to get flight: {}", flightId);
+        return ResponseEntity.ok(flightSessionService.getFlight(flightId));
+    }
+
+    /**
+     * Get the track of a flight for replay
+     * 
+     * @param flightId the ID of the flight
+     * @param maxPoints the maximum number of points to return
+     * @param downsample how to downsample: WINDOW (aggregated windows) or LTTB (shape-preserving track)
+     * @return the telemetry of the flight, in time order
+     */
+    @GetMapping("/flights/{flightId}/telemetry")
+    public ResponseEntity<List<DroneTelemetryDto>> getFlightTelemetry(
+            @PathVariable UUID flightId,
+            @RequestParam(defaultValue = "1000") int maxPoints,
+            @RequestParam(defaultValue = "LTTB") DownsampleMode downsample) {
+        log.debug("REST request to get telemetry of flight: {}, max points: {} ({})", flightId, maxPoints, downsample);
+        return ResponseEntity.ok(flightSessionService.getFlightTelemetry(flightId, maxPoints, downsample));
+    }
+
+    private static PageRequest flightPage(int page, int size) {
+        return PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, 200)));
+    }
+}
@@ -2,8 +2,8 @@ package com.huang.backend.drone.controller;
 
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
-import com.huang.backend.drone.service.DroneInfluxDBService;
 import com.huang.backend.drone.service.DroneStatusService;
+import com.huang.backend.drone.service.LatestTelemetryStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -29,7 +29,7 @@ import java.util.stream.Collectors;
 public class DronePositionController {
 
     private final DroneStatusService droneStatusService;
-    private final DroneInfluxDBService droneInfluxDBService;
+    private final LatestTelemetryStore latestTelemetryStore;
 
     /**
      * Get positions of all drones - REST API endpoint
@@ -47,7 +47,7 @@ public class DronePositionController {
         // Extract position data for each drone
         List<Map<String, Object>> positions = drones.stream()
             .map(drone -> {
-                DroneTelemetryDto telemetry = droneInfluxDBService.getLatestTelemetry(drone.getDroneId().toString());
+                DroneTelemetryDto telemetry = latestTelemetryStore.getLatest(drone.getDroneId()).orElse(null);
                 if (telemetry != null) {
                     Map<String, Object> position = new HashMap<>();
                     position.put("droneId", drone.getDroneId());
@@ -87,7 +87,7 @@ public class DronePositionController {
         
         return drones.stream()
             .map(drone -> {
-                DroneTelemetryDto telemetry = droneInfluxDBService.getLatestTelemetry(drone.getDroneId().toString());
+                DroneTelemetryDto telemetry = latestTelemetryStore.getLatest(drone.getDroneId()).orElse(null);
                 if (telemetry != null) {
                     Map<String, Object> position = new HashMap<>();
                     position.put("droneId", drone.getDroneId());
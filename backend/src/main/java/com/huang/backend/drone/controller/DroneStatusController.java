@@ -3,6 +3,7 @@ package com.huang.backend.drone.controller;
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
 import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DownsampleMode;
 import com.huang.backend.drone.service.DroneStatusService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -87,7 +88,9 @@ public class DroneStatusController {
      * @param droneId the ID of the drone
      * @param start the start time (ISO format)
      * @param end the end time (ISO format)
-     * @param limit the maximum number of records to return
+     * @param limit the maximum number of records to return, from the start of the range
+     * @param maxPoints if set, downsample the whole range to at most this many points instead
+     * @param downsample how to downsample: WINDOW (aggregated windows) or LTTB (shape-preserving track)
      * @return a list of telemetry data points within the specified time range
      */
     @GetMapping("/{droneId}/telemetry/history")
@@ -96,7 +99,14 @@ public class DroneStatusController {
             @PathVariable UUID droneId,
             @RequestParam Instant start,
             @RequestParam Instant end,
-            @RequestParam(defaultValue = "100") int limit) {
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(defaultValue = "WINDOW") DownsampleMode downsample) {
+        if (maxPoints != null) {
+            log.info("Received request to get downsampled telemetry history for drone: {}, from {} to {}, max points: {} ({})",
+                    droneId, start, end, maxPoints, downsample);
+            return ResponseEntity.ok(droneStatusService.getTelemetryHistory(droneId, start, end, maxPoints, downsample));
+        }
         log.info("Received request to get telemetry history for drone: {}, from {} to {}, limit: {}", 
                 droneId, start, end, limit);
         List<DroneTelemetryDto> telemetry = droneStatusService.getTelemetryHistory(droneId, start, end, limit);
@@ -0,0 +1,59 @@
+package com.huang.backend.drone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 飞行记录DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightSessionDto {
+
+    private UUID flightId;
+
+    private UUID droneId;
+
+    /** 起飞时间 */
+    private Instant startTime;
+
+    /** 降落时间 */
+    private Instant endTime;
+
+    /** 飞行时长（毫秒） */
+    private long durationMs;
+
+    /** 飞行距离（米） */
+    private double distanceMeters;
+
+    /** 最大高度（米） */
+    private Double maxAltitude;
+
+    /** 起飞时电量(%) */
+    private Double startBattery;
+
+    /** 降落时电量(%) */
+    private Double endBattery;
+
+    /** 消耗电量(%) */
+    private Double batteryUsed;
+
+    /** 航迹范围 */
+    private Double minLatitude;
+    private Double maxLatitude;
+    private Double minLongitude;
+    private Double maxLongitude;
+
+    /** 遥测点数 */
+    private int sampleCount;
+
+    /** 结束方式: LANDED, STATUS, FAREWELL, TIMEOUT, SHUTDOWN */
+    private String endReason;
+}
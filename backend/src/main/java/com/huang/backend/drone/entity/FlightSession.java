@@ -0,0 +1,98 @@
+package com.huang.backend.drone.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Entity representing one flight of a drone, from takeoff to landing, as detected from its
+ * telemetry by {@link com.huang.backend.drone.service.FlightSessionTracker}
+ */
+@Entity
+@Table(name = "flight_sessions")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FlightSession {
+
+    @Id
+    @Column(name = "flight_id", updatable = false, nullable = false)
+    private UUID flightId;
+
+    @Column(name = "drone_id", nullable = false)
+    private UUID droneId;
+
+    @Column(name = "start_time", nullable = false)
+    private ZonedDateTime startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private ZonedDateTime endTime;
+
+    @Column(name = "duration_ms", nullable = false)
+    private Long durationMs;
+
+    /** Great-circle distance along the reported positions */
+    @Column(name = "distance_meters", nullable = false)
+    private Double distanceMeters;
+
+    @Column(name = "max_altitude")
+    private Double maxAltitude;
+
+    @Column(name = "start_battery")
+    private Double startBattery;
+
+    @Column(name = "end_battery")
+    private Double endBattery;
+
+    @Column(name = "battery_used")
+    private Double batteryUsed;
+
+    @Column(name = "min_latitude")
+    private Double minLatitude;
+
+    @Column(name = "max_latitude")
+    private Double maxLatitude;
+
+    @Column(name = "min_longitude")
+    private Double minLongitude;
+
+    @Column(name = "max_longitude")
+    private Double maxLongitude;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "end_reason", nullable = false)
+    private EndReason endReason;
+
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (this.flightId == null) {
+            this.flightId = UUID.randomUUID();
+        }
+        if (this.createdAt == null) {
+            this.createdAt = ZonedDateTime.now();
+        }
+    }
+
+    /**
+     * How the end of a flight was detected
+     */
+    public enum EndReason {
+        LANDED,   // 高度和速度回落并保持
+        STATUS,   // 遥测上报了地面状态
+        FAREWELL, // 无人机发送告别消息
+        TIMEOUT,  // 长时间未收到遥测
+        SHUTDOWN  // 服务停止时仍在飞行
+    }
+}
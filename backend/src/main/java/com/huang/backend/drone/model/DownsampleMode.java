@@ -0,0 +1,19 @@
+package com.huang.backend.drone.model;
+
+/**
+ * How a telemetry history query reduces a time range to a bounded number of points
+ */
+public enum DownsampleMode {
+
+    /**
+     * Fixed time windows aggregated in InfluxDB: numeric fields are averaged, heading,
+     * satellites and flight mode take the last value of the window
+     */
+    WINDOW,
+
+    /**
+     * Largest-triangle-three-buckets on the flight track: keeps real samples that best
+     * preserve the shape of the path (turns, loiters), not window averages
+     */
+    LTTB
+}
@@ -0,0 +1,75 @@
+package com.huang.backend.drone.model;
+
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.geofence.entity.Geofence;
+import lombok.Getter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the drone fields the telemetry ingest path needs,
+ * held by {@link com.huang.backend.drone.service.DroneRegistry}
+ */
+@Getter
+@ToString
+public final class DroneSnapshot {
+
+    private final UUID droneId;
+    private final String serialNumber;
+    private final String model;
+    private final Drone.DroneStatus status;
+
+    /**
+     * IDs of the geofences the drone is assigned to (permitted restricted zones)
+     */
+    private final Set<UUID> permittedGeofenceIds;
+
+    public DroneSnapshot(UUID droneId, String serialNumber, String model, Drone.DroneStatus status,
+                         Set<UUID> permittedGeofenceIds) {
+        this.droneId = droneId;
+        this.serialNumber = serialNumber;
+        this.model = model;
+        this.status = status;
+        this.permittedGeofenceIds = Set.copyOf(permittedGeofenceIds);
+    }
+
+    /**
+     * Build a snapshot from an entity whose geofence associations are loaded
+     */
+    public static DroneSnapshot of(Drone drone) {
+        return new DroneSnapshot(drone.getDroneId(), drone.getSerialNumber(), drone.getModel(),
+                drone.getCurrentStatus(), geofenceIds(drone));
+    }
+
+    /**
+     * @return whether the geofence associations of the entity can be read without a database session
+     */
+    public static boolean hasLoadedGeofences(Drone drone) {
+        return drone.getGeofences() == null || Hibernate.isInitialized(drone.getGeofences());
+    }
+
+    public DroneSnapshot withStatus(Drone.DroneStatus newStatus) {
+        return new DroneSnapshot(droneId, serialNumber, model, newStatus, permittedGeofenceIds);
+    }
+
+    public DroneSnapshot withPermittedGeofenceIds(Set<UUID> geofenceIds) {
+        return new DroneSnapshot(droneId, serialNumber, model, status, geofenceIds);
+    }
+
+    public boolean isPermittedIn(UUID geofenceId) {
+        return permittedGeofenceIds.contains(geofenceId);
+    }
+
+    private static Set<UUID> geofenceIds(Drone drone) {
+        if (drone.getGeofences() == null) {
+            return Set.of();
+        }
+        return drone.getGeofences().stream()
+                .map(Geofence::getGeofenceId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,130 @@
+package com.huang.backend.drone.model;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Immutable, compact copy of a drone's latest telemetry sample, held by
+ * {@link com.huang.backend.drone.service.LatestTelemetryStore}.
+ * Numeric fields are primitives; a missing value is {@code NaN} (or
+ * {@link TelemetryRecord#NO_INT} for satellites), as in {@link TelemetryRecord}.
+ */
+@Getter
+public final class LatestTelemetry {
+
+    private static final byte ARMED_UNKNOWN = -1;
+
+    private final long timestampNanos;
+    private final double batteryLevel;
+    private final double batteryVoltage;
+    private final double latitude;
+    private final double longitude;
+    private final double altitude;
+    private final double speed;
+    private final double heading;
+    private final int satellites;
+    private final double signalStrength;
+    private final double temperature;
+    private final String flightMode;
+    private final String status;
+    private final byte armed;
+
+    private LatestTelemetry(long timestampNanos, double batteryLevel, double batteryVoltage, double latitude,
+                            double longitude, double altitude, double speed, double heading, int satellites,
+                            double signalStrength, double temperature, String flightMode, String status, byte armed) {
+        this.timestampNanos = timestampNanos;
+        this.batteryLevel = batteryLevel;
+        this.batteryVoltage = batteryVoltage;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.speed = speed;
+        this.heading = heading;
+        this.satellites = satellites;
+        this.signalStrength = signalStrength;
+        this.temperature = temperature;
+        this.flightMode = flightMode;
+        this.status = status;
+        this.armed = armed;
+    }
+
+    /**
+     * Copy a decoded sample; the record itself may be reused afterwards
+     */
+    public static LatestTelemetry of(TelemetryRecord record) {
+        return new LatestTelemetry(record.getTimestampNanos(), record.getBatteryLevel(), record.getBatteryVoltage(),
+                record.getLatitude(), record.getLongitude(), record.getAltitude(), record.getSpeed(),
+                record.getHeading(), record.getSatellites(), record.getSignalStrength(), record.getTemperature(),
+                record.getFlightMode(), record.getStatus(), armed(record.getArmed()));
+    }
+
+    /**
+     * Copy telemetry loaded from InfluxDB
+     */
+    public static LatestTelemetry of(DroneTelemetryDto dto) {
+        Instant timestamp = dto.getTimestamp();
+        return new LatestTelemetry(
+                timestamp != null ? timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano() : TelemetryRecord.NO_TIMESTAMP,
+                unbox(dto.getBatteryLevel()), unbox(dto.getBatteryVoltage()), unbox(dto.getLatitude()),
+                unbox(dto.getLongitude()), unbox(dto.getAltitude()), unbox(dto.getSpeed()), unbox(dto.getHeading()),
+                dto.getSatellites() != null ? dto.getSatellites() : TelemetryRecord.NO_INT,
+                unbox(dto.getSignalStrength()), unbox(dto.getTemperature()), dto.getFlightMode(), dto.getStatus(),
+                armed(dto.getIsArmed()));
+    }
+
+    /**
+     * @return whether this sample is at least as recent as the other one
+     */
+    public boolean isNotOlderThan(LatestTelemetry other) {
+        return other == null || timestampNanos >= other.timestampNanos;
+    }
+
+    public Instant getTimestamp() {
+        if (timestampNanos == TelemetryRecord.NO_TIMESTAMP) {
+            return null;
+        }
+        return Instant.ofEpochSecond(Math.floorDiv(timestampNanos, 1_000_000_000L),
+                Math.floorMod(timestampNanos, 1_000_000_000L));
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    /**
+     * Build the DTO returned by the "latest telemetry" endpoints
+     *
+     * @param droneId the ID to expose
+     * @return the telemetry DTO
+     */
+    public DroneTelemetryDto toDto(String droneId) {
+        return DroneTelemetryDto.builder()
+                .droneId(droneId)
+                .timestamp(getTimestamp())
+                .batteryLevel(TelemetryRecord.box(batteryLevel))
+                .batteryVoltage(TelemetryRecord.box(batteryVoltage))
+                .latitude(TelemetryRecord.box(latitude))
+                .longitude(TelemetryRecord.box(longitude))
+                .altitude(TelemetryRecord.box(altitude))
+                .speed(TelemetryRecord.box(speed))
+                .heading(TelemetryRecord.box(heading))
+                .satellites(satellites != TelemetryRecord.NO_INT ? satellites : null)
+                .signalStrength(TelemetryRecord.box(signalStrength))
+                .flightMode(flightMode)
+                .temperature(TelemetryRecord.box(temperature))
+                .status(status)
+                .isArmed(armed == ARMED_UNKNOWN ? null : armed == 1)
+                .build();
+    }
+
+    private static byte armed(Boolean armed) {
+        return armed == null ? ARMED_UNKNOWN : (byte) (armed ? 1 : 0);
+    }
+
+    private static double unbox(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
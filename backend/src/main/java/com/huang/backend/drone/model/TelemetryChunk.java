@@ -0,0 +1,147 @@
+package com.huang.backend.drone.model;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, column-oriented copy of the telemetry of one drone in one closed time bucket,
+ * held by {@link com.huang.backend.drone.service.TelemetryHistoryCache}.
+ * <p>
+ * Every field is a primitive array indexed by row, so a bucket of a few thousand samples is a
+ * dozen arrays instead of thousands of DTOs with boxed fields. A missing value is {@code NaN}
+ * (or {@link #NO_INT} for satellites), as in {@link LatestTelemetry}. Rows are in time order.
+ */
+public final class TelemetryChunk {
+
+    public static final int NO_INT = Integer.MIN_VALUE;
+
+    private static final TelemetryChunk EMPTY = new TelemetryChunk(0);
+
+    private final long[] timestampNanos;
+    private final double[] batteryLevel;
+    private final double[] batteryVoltage;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final double[] altitude;
+    private final double[] speed;
+    private final double[] heading;
+    private final int[] satellites;
+    private final double[] signalStrength;
+    private final double[] temperature;
+    private final String[] flightMode;
+
+    private TelemetryChunk(int size) {
+        timestampNanos = new long[size];
+        batteryLevel = new double[size];
+        batteryVoltage = new double[size];
+        latitude = new double[size];
+        longitude = new double[size];
+        altitude = new double[size];
+        speed = new double[size];
+        heading = new double[size];
+        satellites = new int[size];
+        signalStrength = new double[size];
+        temperature = new double[size];
+        flightMode = new String[size];
+    }
+
+    /**
+     * Copy time-ordered telemetry rows into columns
+     */
+    public static TelemetryChunk of(List<DroneTelemetryDto> rows) {
+        if (rows.isEmpty()) {
+            return EMPTY;
+        }
+        TelemetryChunk chunk = new TelemetryChunk(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            DroneTelemetryDto row = rows.get(i);
+            chunk.timestampNanos[i] = nanos(row.getTimestamp());
+            chunk.batteryLevel[i] = value(row.getBatteryLevel());
+            chunk.batteryVoltage[i] = value(row.getBatteryVoltage());
+            chunk.latitude[i] = value(row.getLatitude());
+            chunk.longitude[i] = value(row.getLongitude());
+            chunk.altitude[i] = value(row.getAltitude());
+            chunk.speed[i] = value(row.getSpeed());
+            chunk.heading[i] = value(row.getHeading());
+            chunk.satellites[i] = row.getSatellites() != null ? row.getSatellites() : NO_INT;
+            chunk.signalStrength[i] = value(row.getSignalStrength());
+            chunk.temperature[i] = value(row.getTemperature());
+            // 飞行模式只有少数几种取值，共用同一个字符串实例
+            chunk.flightMode[i] = row.getFlightMode() != null ? row.getFlightMode().intern() : null;
+        }
+        return chunk;
+    }
+
+    public int size() {
+        return timestampNanos.length;
+    }
+
+    /**
+     * Append the rows with {@code from <= timestamp < to} as DTOs
+     *
+     * @param out the list to append to
+     * @param droneId the drone ID to set on every DTO
+     * @param from the first instant to include
+     * @param to the first instant to exclude
+     * @param limit the maximum number of rows to append
+     * @return the number of appended rows
+     */
+    public int appendTo(List<DroneTelemetryDto> out, String droneId, Instant from, Instant to, int limit) {
+        int first = indexOf(nanos(from));
+        long toNanos = nanos(to);
+        int appended = 0;
+        for (int i = first; i < size() && timestampNanos[i] < toNanos && appended < limit; i++) {
+            out.add(toDto(i, droneId));
+            appended++;
+        }
+        return appended;
+    }
+
+    private DroneTelemetryDto toDto(int i, String droneId) {
+        return DroneTelemetryDto.builder()
+                .droneId(droneId)
+                .timestamp(Instant.ofEpochSecond(0, timestampNanos[i]))
+                .batteryLevel(boxed(batteryLevel[i]))
+                .batteryVoltage(boxed(batteryVoltage[i]))
+                .latitude(boxed(latitude[i]))
+                .longitude(boxed(longitude[i]))
+                .altitude(boxed(altitude[i]))
+                .speed(boxed(speed[i]))
+                .heading(boxed(heading[i]))
+                .satellites(satellites[i] != NO_INT ? satellites[i] : null)
+                .signalStrength(boxed(signalStrength[i]))
+                .temperature(boxed(temperature[i]))
+                .flightMode(flightMode[i])
+                .build();
+    }
+
+    /**
+     * Index of the first row at or after the given time
+     */
+    private int indexOf(long nanos) {
+        int index = Arrays.binarySearch(timestampNanos, nanos);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // 相同时间戳的行取第一行
+        while (index > 0 && timestampNanos[index - 1] == nanos) {
+            index--;
+        }
+        return index;
+    }
+
+    private static long nanos(Instant time) {
+        return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,39 @@
+package com.huang.backend.drone.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * Downsampled copies of the telemetry bucket, maintained by InfluxDB tasks.
+ * <p>
+ * Each rollup holds, per drone, field and window, the {@code mean}, {@code min}, {@code max}
+ * and {@code last} value, distinguished by the {@code stat} tag ({@code flight_mode} only has
+ * {@code last}). The minute rollup is computed from the raw bucket, the hour rollup from the
+ * minute rollup.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TelemetryRollup {
+
+    MINUTE(Duration.ofMinutes(1), "_1m", Duration.ofMinutes(5), Duration.ofSeconds(10)),
+
+    HOUR(Duration.ofHours(1), "_1h", Duration.ofHours(2), Duration.ofMinutes(5));
+
+    /** Window length */
+    private final Duration resolution;
+
+    /** Appended to the raw bucket name */
+    private final String bucketSuffix;
+
+    /** Windows recomputed by every run, so late telemetry is still rolled up */
+    private final Duration lookback;
+
+    /** Delay of every run after the window closed */
+    private final Duration offset;
+
+    public String getTaskName() {
+        return "drone_telemetry_rollup" + bucketSuffix;
+    }
+}
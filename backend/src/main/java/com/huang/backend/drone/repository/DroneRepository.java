@@ -1,11 +1,17 @@
 package com.huang.backend.drone.repository;
 
 import com.huang.backend.drone.entity.Drone;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,6 +36,32 @@ public interface DroneRepository extends JpaRepository<Drone, UUID> {
      * Find drones by current status
      */
     List<Drone> findByCurrentStatus(Drone.DroneStatus status);
+
+    /**
+     * Find one page of the drones with any of the given statuses
+     *
+     * @param statuses the statuses to include
+     * @param pageable the page and sort order
+     * @return the page of drones
+     */
+    Page<Drone> findByCurrentStatusIn(Collection<Drone.DroneStatus> statuses, Pageable pageable);
+
+    /**
+     * Find the drones ordered by serial number that come after the given serial number
+     * (keyset pagination: the cost does not grow with the page depth)
+     *
+     * @param after the last serial number of the previous page, or an empty string for the first page
+     * @param allStatuses whether to ignore the status filter
+     * @param statuses the statuses to include when filtering
+     * @param pageable the maximum number of drones to return
+     * @return the drones after the given serial number
+     */
+    @Query("SELECT d FROM Drone d WHERE d.serialNumber > :after " +
+           "AND (:allStatuses = true OR d.currentStatus IN :statuses) ORDER BY d.serialNumber")
+    List<Drone> findBySerialNumberAfter(@Param("after") String after,
+                                        @Param("allStatuses") boolean allStatuses,
+                                        @Param("statuses") Collection<Drone.DroneStatus> statuses,
+                                        Pageable pageable);
     
     /**
      * Find drones with no heartbeat after a certain time
@@ -54,4 +86,42 @@ public interface DroneRepository extends JpaRepository<Drone, UUID> {
      */
     @Query("SELECT d FROM Drone d LEFT JOIN FETCH d.geofences WHERE d.droneId = :id")
     Optional<Drone> findByIdWithGeofences(UUID id);
-} 
\ No newline at end of file
+
+    /**
+     * Find all drones with eagerly loaded geofences
+     *
+     * @return all drones with their geofence associations
+     */
+    @Query("SELECT DISTINCT d FROM Drone d LEFT JOIN FETCH d.geofences")
+    List<Drone> findAllWithGeofences();
+
+    /**
+     * Find the IDs of all drones, without loading the entities
+     *
+     * @return all drone IDs
+     */
+    @Query("SELECT d.droneId FROM Drone d")
+    List<UUID> findAllDroneIds();
+
+    /**
+     * Count drones by current status
+     *
+     * @return rows of (status, count)
+     */
+    @Query("SELECT d.currentStatus, COUNT(d) FROM Drone d GROUP BY d.currentStatus")
+    List<Object[]> countByStatus();
+
+    /**
+     * Update only the status of a drone, without loading the entity
+     *
+     * @param id the drone ID
+     * @param status the new status
+     * @param updatedAt the update timestamp
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Drone d SET d.currentStatus = :status, d.updatedAt = :updatedAt WHERE d.droneId = :id")
+    int updateStatus(@Param("id") UUID id, @Param("status") Drone.DroneStatus status,
+                     @Param("updatedAt") ZonedDateTime updatedAt);
+}
@@ -0,0 +1,38 @@
+package com.huang.backend.drone.repository;
+
+import com.huang.backend.drone.entity.FlightSession;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Repository for flight sessions
+ */
+@Repository
+public interface FlightSessionRepository extends JpaRepository<FlightSession, UUID> {
+
+    /**
+     * Find the flights of a drone that overlap a time range, newest first
+     */
+    @Query("SELECT f FROM FlightSession f WHERE f.droneId = :droneId " +
+           "AND f.startTime < :end AND f.endTime > :start ORDER BY f.startTime DESC")
+    Page<FlightSession> findByDroneInRange(@Param("droneId") UUID droneId,
+                                           @Param("start") ZonedDateTime start,
+                                           @Param("end") ZonedDateTime end,
+                                           Pageable pageable);
+
+    /**
+     * Find the flights of all drones that overlap a time range, newest first
+     */
+    @Query("SELECT f FROM FlightSession f WHERE f.startTime < :end AND f.endTime > :start " +
+           "ORDER BY f.startTime DESC")
+    Page<FlightSession> findInRange(@Param("start") ZonedDateTime start,
+                                    @Param("end") ZonedDateTime end,
+                                    Pageable pageable);
+}
@@ -22,6 +22,8 @@ import java.util.Map;
 public class DroneAuthServiceImpl implements DroneAuthService {
     
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
+    private final FleetStatusCounters fleetStatusCounters;
     private final PasswordEncoder passwordEncoder;
     
     // 30天过期时间
@@ -44,6 +46,8 @@ public class DroneAuthServiceImpl implements DroneAuthService {
         if (drone.getCurrentStatus() == Drone.DroneStatus.OFFLINE) {
             drone.setCurrentStatus(Drone.DroneStatus.ONLINE);
             droneRepository.save(drone);
+            droneRegistry.update(drone);
+            fleetStatusCounters.transition(Drone.DroneStatus.OFFLINE, Drone.DroneStatus.ONLINE);
         }
         
         // 生成响应
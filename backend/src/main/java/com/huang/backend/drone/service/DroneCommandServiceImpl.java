@@ -13,10 +13,12 @@ import com.huang.backend.drone.service.DroneStatusService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.springframework.stereotype.Service;
 
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -82,9 +84,10 @@ public class DroneCommandServiceImpl implements DroneCommandService {
             log.info("   - 动作: {}", request.getAction());
             log.info("   - MQTT载荷: {}", mqttPayload);
 
-            // Send command via MQTT
-            log.info("🔥 调用mqttPublisherService.publishCommand()...");
-            boolean mqttSuccess = mqttPublisherService.publishCommand(droneId.toString(), mqttPayload);
+            // Send command via MQTT without waiting for the broker acknowledgement
+            CompletableFuture<IMqttDeliveryToken> delivery =
+                    mqttPublisherService.publishCommand(droneId.toString(), mqttPayload);
+            boolean mqttSuccess = MqttPublisherService.isAccepted(delivery);
             log.info("🎯 MQTT发布结果: {}", mqttSuccess);
 
             if (mqttSuccess) {
@@ -92,6 +95,14 @@ public class DroneCommandServiceImpl implements DroneCommandService {
                 commandDto.setStatus(DroneCommandDto.CommandStatus.SENT);
                 commandDto.setExecutedAt(ZonedDateTime.now());
                 commandTracker.put(commandId, commandDto);
+                delivery.whenComplete((token, e) -> {
+                    if (e != null) {
+                        commandDto.setStatus(DroneCommandDto.CommandStatus.FAILED);
+                        commandDto.setErrorMessage("MQTT消息投递失败: " + e.getMessage());
+                        log.error("Command {} to drone {} was not acknowledged by the broker: {}",
+                                commandId, droneId, e.getMessage());
+                    }
+                });
 
                 log.info("Command {} sent successfully to drone {}", commandId, droneId);
 
@@ -195,10 +206,10 @@ public class DroneCommandServiceImpl implements DroneCommandService {
             "timestamp", ZonedDateTime.now().toString()
         );
 
-        boolean mqttSuccess = mqttPublisherService.publishCommand(
+        boolean mqttSuccess = MqttPublisherService.isAccepted(mqttPublisherService.publishCommand(
             command.getDroneId().toString(), 
             cancelPayload
-        );
+        ));
 
         if (mqttSuccess) {
             command.setStatus(DroneCommandDto.CommandStatus.CANCELLED);
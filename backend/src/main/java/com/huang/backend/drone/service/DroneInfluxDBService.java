@@ -1,22 +1,43 @@
 package com.huang.backend.drone.service;
 
 import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.model.DownsampleMode;
+import com.huang.backend.drone.model.TelemetryRollup;
+import com.huang.backend.drone.util.FluxTemplate;
+import com.huang.backend.drone.util.TrackDownsampler;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.QueryApi;
 import com.influxdb.client.DeleteApi;
 import com.influxdb.client.domain.DeletePredicateRequest;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for querying drone telemetry data from InfluxDB
@@ -27,15 +48,154 @@ import java.util.List;
 public class DroneInfluxDBService {
 
     private final InfluxDBClient influxDBClient;
+    private final MeterRegistry meterRegistry;
+    private final TelemetryRollupService telemetryRollupService;
     
     @Value("${influxdb.bucket}")
     private String bucket;
     
     @Value("${influxdb.org}")
     private String organization;
+
+    @Value("${influxdb.query.timeout-ms:30000}")
+    private long queryTimeoutMs;
+
+    @Value("${drone.telemetry.history.max-points:2000}")
+    private int maxHistoryPoints;
+
+    @Value("${drone.telemetry.history.lttb-oversample:8}")
+    private int lttbOversample;
     
     private static final String MEASUREMENT = "drone_telemetry";
 
+    /**
+     * Rows buffered between the InfluxDB response thread and the consumer of a streamed query
+     */
+    private static final int STREAM_BUFFER_ROWS = 1024;
+
+    private static final Object STREAM_END = new Object();
+
+    private static final String PIVOT =
+            "|> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\") ";
+
+    private static final FluxTemplate LATEST = FluxTemplate.compile("latest",
+            "from(bucket: ${bucket}) " +
+            "|> range(start: -1h) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => r.drone_id == ${droneId}) " +
+            PIVOT +
+            "|> sort(columns: [\"_time\"], desc: true) " +
+            "|> limit(n: 1)");
+
+    private static final FluxTemplate LATEST_BATCH = FluxTemplate.compile("latest-batch",
+            "from(bucket: ${bucket}) " +
+            "|> range(start: -1h) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => contains(value: r.drone_id, set: ${droneIds})) " +
+            "|> group(columns: [\"drone_id\", \"_field\"]) " +
+            "|> last() " +
+            "|> group(columns: [\"drone_id\"]) " +
+            PIVOT);
+
+    private static final FluxTemplate HISTORY = FluxTemplate.compile("history",
+            "from(bucket: ${bucket}) " +
+            "|> range(start: ${start}, stop: ${stop}) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => r.drone_id == ${droneId}) " +
+            PIVOT +
+            "|> sort(columns: [\"_time\"]) " +
+            "|> limit(n: ${limit})");
+
+    private static final FluxTemplate RANGE = FluxTemplate.compile("range",
+            "from(bucket: ${bucket}) " +
+            "|> range(start: ${start}, stop: ${stop}) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => r.drone_id == ${droneId}) " +
+            PIVOT +
+            "|> sort(columns: [\"_time\"])");
+
+    private static final String HISTORY_SOURCE =
+            "data = from(bucket: ${bucket}) " +
+            "|> range(start: ${start}, stop: ${stop}) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => r.drone_id == ${droneId}) ";
+
+    private static final String HISTORY_ORDER =
+            PIVOT +
+            "|> group() " +
+            "|> sort(columns: [\"_time\"]) " +
+            "|> limit(n: ${limit})";
+
+    // 航向取平均在0/360度处没有意义，卫星数和飞行模式也不能平均，取窗口内最后一个值
+    private static final FluxTemplate HISTORY_WINDOW = FluxTemplate.compile("history-window",
+            HISTORY_SOURCE +
+            "union(tables: [" +
+            "data |> filter(fn: (r) => r._field != \"heading\" and r._field != \"satellites\" and r._field != \"flight_mode\") " +
+            "|> aggregateWindow(every: ${every}, fn: mean, createEmpty: false), " +
+            "data |> filter(fn: (r) => r._field == \"heading\" or r._field == \"satellites\" or r._field == \"flight_mode\") " +
+            "|> aggregateWindow(every: ${every}, fn: last, createEmpty: false)]) " +
+            HISTORY_ORDER);
+
+    private static final FluxTemplate HISTORY_LTTB = FluxTemplate.compile("history-lttb",
+            HISTORY_SOURCE +
+            "data |> aggregateWindow(every: ${every}, fn: last, createEmpty: false) " +
+            HISTORY_ORDER);
+
+    // 汇总桶中每个窗口已有 mean/min/max/last 四种统计值（stat 标签），按原始查询相同的规则再聚合
+    private static final FluxTemplate ROLLUP_WINDOW = FluxTemplate.compile("rollup-window",
+            HISTORY_SOURCE +
+            "union(tables: [" +
+            "data |> filter(fn: (r) => r.stat == \"mean\" and r._field != \"heading\" and r._field != \"satellites\") " +
+            "|> aggregateWindow(every: ${every}, fn: mean, createEmpty: false), " +
+            "data |> filter(fn: (r) => r.stat == \"last\" and (r._field == \"heading\" or r._field == \"satellites\" or r._field == \"flight_mode\")) " +
+            "|> aggregateWindow(every: ${every}, fn: last, createEmpty: false)]) " +
+            "|> drop(columns: [\"stat\"]) " +
+            HISTORY_ORDER);
+
+    private static final FluxTemplate ROLLUP_LTTB = FluxTemplate.compile("rollup-lttb",
+            HISTORY_SOURCE +
+            "data |> filter(fn: (r) => r.stat == \"last\") " +
+            "|> aggregateWindow(every: ${every}, fn: last, createEmpty: false) " +
+            "|> drop(columns: [\"stat\"]) " +
+            HISTORY_ORDER);
+
+    private static final FluxTemplate STREAM = FluxTemplate.compile("stream",
+            "from(bucket: ${bucket}) " +
+            "|> range(start: ${start}, stop: ${stop}) " +
+            "|> filter(fn: (r) => r._measurement == \"" + MEASUREMENT + "\") " +
+            "|> filter(fn: (r) => contains(value: r.drone_id, set: ${droneIds})) " +
+            PIVOT);
+
+    private static final List<FluxTemplate> TEMPLATES =
+            List.of(LATEST, LATEST_BATCH, HISTORY, RANGE, HISTORY_WINDOW, HISTORY_LTTB,
+                    ROLLUP_WINDOW, ROLLUP_LTTB, STREAM);
+
+    /**
+     * Query timers by template; written once at startup
+     */
+    private final Map<FluxTemplate, Timer> queryTimers = new HashMap<>();
+
+    /**
+     * Receives the rows of a streamed telemetry query
+     */
+    @FunctionalInterface
+    public interface TelemetryRowHandler {
+        void accept(DroneTelemetryDto row) throws IOException;
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        for (FluxTemplate template : TEMPLATES) {
+            queryTimers.put(template, Timer.builder("influxdb.query")
+                    .description("Time taken by InfluxDB queries, until the last row was read")
+                    .tag("template", template.getName())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(60))
+                    .register(meterRegistry));
+        }
+    }
+
     /**
      * Get the latest telemetry data for a specific drone
      * 
@@ -43,19 +203,11 @@ public class DroneInfluxDBService {
      * @return the latest telemetry data, or null if not found
      */
     public DroneTelemetryDto getLatestTelemetry(String droneId) {
-        String query = String.format(
-                "from(bucket: \"%s\") " +
-                "|> range(start: -1h) " +
-                "|> filter(fn: (r) => r._measurement == \"%s\") " +
-                "|> filter(fn: (r) => r.drone_id == \"%s\") " +
-                "|> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\") " +
-                "|> sort(columns: [\"_time\"], desc: true) " +
-                "|> limit(n: 1)",
-                bucket, MEASUREMENT, droneId);
-        
-        log.debug("Executing InfluxDB query: {}", query);
-        
+        long started = System.nanoTime();
         try {
+            String query = LATEST.render(Map.of("bucket", bucket, "droneId", droneId));
+            log.debug("Executing InfluxDB query: {}", query);
+
             QueryApi queryApi = influxDBClient.getQueryApi();
             List<FluxTable> tables = queryApi.query(query, organization);
             
@@ -70,9 +222,78 @@ public class DroneInfluxDBService {
         } catch (Exception e) {
             log.error("Error querying latest telemetry from InfluxDB: {}", e.getMessage(), e);
             return null;
+        } finally {
+            recordQuery(LATEST, started);
         }
     }
     
+    /**
+     * Get the latest telemetry data of several drones with a single query.
+     * <p>
+     * The last value of every field is selected per drone on the server, and the records are
+     * mapped to DTOs as they are streamed in, so the cost is one round trip instead of one
+     * query per drone. Fields last written at different times (e.g. binary samples without a
+     * position) arrive as separate rows of the same drone and are merged into one DTO stamped
+     * with the newest time.
+     * <p>
+     * A failed or timed-out query is not reported as "no data", so the caller can keep what it
+     * already has; a query that times out is cancelled when its next record arrives.
+     *
+     * @param droneIds the IDs of the drones
+     * @return the latest telemetry data by drone ID; drones without data in the last hour are absent
+     * @throws IllegalStateException if the query fails or does not complete within influxdb.query.timeout-ms
+     */
+    public Map<String, DroneTelemetryDto> getLatestTelemetry(Collection<String> droneIds) {
+        if (droneIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        log.debug("Executing InfluxDB query for the latest telemetry of {} drones", droneIds.size());
+
+        // Written by the response thread; completing the future publishes the map to this thread
+        Map<String, DroneTelemetryDto> latest = new HashMap<>();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        long started = System.nanoTime();
+        try {
+            String query = LATEST_BATCH.render(Map.of("bucket", bucket, "droneIds", droneIds));
+            QueryApi queryApi = influxDBClient.getQueryApi();
+            queryApi.query(query, organization,
+                    (cancellable, record) -> {
+                        if (abandoned.get()) {
+                            // 调用方已超时返回，停止读取响应
+                            cancellable.cancel();
+                            return;
+                        }
+                        Object droneId = record.getValueByKey("drone_id");
+                        if (droneId != null) {
+                            DroneTelemetryDto dto = mapRecordToDto(record, droneId.toString());
+                            if (dto != null) {
+                                latest.merge(droneId.toString(), dto, DroneInfluxDBService::mergeLatest);
+                            }
+                        }
+                    },
+                    completed::completeExceptionally,
+                    () -> completed.complete(null));
+            completed.get(queryTimeoutMs, TimeUnit.MILLISECONDS);
+            return latest;
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying latest telemetry", e);
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            throw new IllegalStateException("InfluxDB returned no latest telemetry of " + droneIds.size()
+                    + " drones within " + queryTimeoutMs + "ms", e);
+        } catch (Exception e) {
+            abandoned.set(true);
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Error querying latest telemetry of " + droneIds.size()
+                    + " drones from InfluxDB: " + cause.getMessage(), cause);
+        } finally {
+            recordQuery(LATEST_BATCH, started);
+        }
+    }
+
     /**
      * Get historical telemetry data for a specific drone within a time range
      * 
@@ -83,24 +304,13 @@ public class DroneInfluxDBService {
      * @return a list of telemetry data points within the specified time range
      */
     public List<DroneTelemetryDto> getTelemetryHistory(String droneId, Instant start, Instant end, int limit) {
-        String query = String.format(
-                "from(bucket: \"%s\") " +
-                "|> range(start: %s, stop: %s) " +
-                "|> filter(fn: (r) => r._measurement == \"%s\") " +
-                "|> filter(fn: (r) => r.drone_id == \"%s\") " +
-                "|> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\") " +
-                "|> sort(columns: [\"_time\"]) " +
-                "|> limit(n: %d)",
-                bucket, 
-                start.toString(), 
-                end.toString(), 
-                MEASUREMENT, 
-                droneId,
-                limit);
-        
-        log.debug("Executing InfluxDB query: {}", query);
-        
+        limit = Math.min(limit, maxHistoryPoints);
+        long started = System.nanoTime();
         try {
+            String query = HISTORY.render(Map.of("bucket", bucket, "start", start, "stop", end,
+                    "droneId", droneId, "limit", limit));
+            log.debug("Executing InfluxDB query: {}", query);
+
             QueryApi queryApi = influxDBClient.getQueryApi();
             List<FluxTable> tables = queryApi.query(query, organization);
             
@@ -123,9 +333,248 @@ public class DroneInfluxDBService {
         } catch (Exception e) {
             log.error("Error querying telemetry history from InfluxDB: {}", e.getMessage(), e);
             return new ArrayList<>();
+        } finally {
+            recordQuery(HISTORY, started);
         }
     }
     
+    /**
+     * Get every telemetry row of a drone within a time range, without a row limit
+     * <p>
+     * Unlike the history queries, a failed query is not reported as "no data", so callers that
+     * keep the result (such as {@link TelemetryHistoryCache}) never keep an empty result by mistake.
+     *
+     * @param droneId the ID of the drone
+     * @param start the start time (inclusive)
+     * @param end the end time (exclusive)
+     * @return the telemetry rows, in time order
+     * @throws IllegalStateException if the query fails
+     */
+    public List<DroneTelemetryDto> getTelemetryRange(String droneId, Instant start, Instant end) {
+        long started = System.nanoTime();
+        try {
+            String query = RANGE.render(Map.of("bucket", bucket, "start", start, "stop", end, "droneId", droneId));
+            log.debug("Executing InfluxDB query: {}", query);
+
+            List<DroneTelemetryDto> telemetryList = new ArrayList<>();
+            for (FluxTable table : influxDBClient.getQueryApi().query(query, organization)) {
+                for (FluxRecord record : table.getRecords()) {
+                    DroneTelemetryDto dto = mapRecordToDto(record, droneId);
+                    if (dto != null) {
+                        telemetryList.add(dto);
+                    }
+                }
+            }
+            return telemetryList;
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Error querying telemetry of drone " + droneId + " from "
+                    + start + " to " + end + ": " + e.getMessage(), e);
+        } finally {
+            recordQuery(RANGE, started);
+        }
+    }
+
+    /**
+     * Get historical telemetry data for a specific drone reduced to a bounded number of points,
+     * however long the time range is
+     * <p>
+     * {@link DownsampleMode#WINDOW} splits the range into {@code maxPoints} windows and aggregates
+     * each in InfluxDB. {@link DownsampleMode#LTTB} first keeps the last sample of
+     * {@code maxPoints * lttb-oversample} windows in InfluxDB, so the transfer stays bounded,
+     * and then selects {@code maxPoints} of them with {@link TrackDownsampler#lttb}.
+     * <p>
+     * When the windows are at least as long as a {@link TelemetryRollup} that covers the start of
+     * the range, the coarsest such rollup is queried instead of the raw bucket, up to the newest
+     * window its task has written ({@link TelemetryRollupService#coveredUntil}); the rest of the
+     * range is queried from the raw bucket.
+     *
+     * @param droneId the ID of the drone
+     * @param start the start time
+     * @param end the end time
+     * @param maxPoints the maximum number of points to return (capped by drone.telemetry.history.max-points)
+     * @param mode how to reduce the range
+     * @return at most {@code maxPoints} telemetry data points, in time order
+     */
+    public List<DroneTelemetryDto> getTelemetryHistory(String droneId, Instant start, Instant end,
+                                                       int maxPoints, DownsampleMode mode) {
+        int points = Math.max(1, Math.min(maxPoints, maxHistoryPoints));
+        int windows = mode == DownsampleMode.LTTB ? points * Math.max(1, lttbOversample) : points;
+        long rangeMs = Math.max(1, end.toEpochMilli() - start.toEpochMilli());
+        // 向上取整，保证窗口数不超过目标点数
+        long everyMs = Math.max(1, (rangeMs + windows - 1) / windows);
+
+        Duration every = Duration.ofMillis(everyMs);
+        Optional<TelemetryRollup> rollup = telemetryRollupService.route(start, every);
+        // 汇总只覆盖到其任务已处理完的窗口，之后的部分从原始桶查询；分界点对齐到查询窗口，避免一个窗口被拆成两半
+        Instant split = start;
+        if (rollup.isPresent()) {
+            long coveredUntil = telemetryRollupService.coveredUntil(rollup.get()).toEpochMilli();
+            split = Instant.ofEpochMilli(Math.min(end.toEpochMilli(), Math.floorDiv(coveredUntil, everyMs) * everyMs));
+        }
+
+        try {
+            List<DroneTelemetryDto> telemetryList = new ArrayList<>();
+            if (split.isAfter(start)) {
+                telemetryList.addAll(queryWindows(mode == DownsampleMode.LTTB ? ROLLUP_LTTB : ROLLUP_WINDOW,
+                        telemetryRollupService.bucketName(rollup.get()), droneId, start, split, every, windows + 1));
+            }
+            if (end.isAfter(split)) {
+                telemetryList.addAll(queryWindows(mode == DownsampleMode.LTTB ? HISTORY_LTTB : HISTORY_WINDOW,
+                        bucket, droneId, split, end, every, windows + 1));
+            }
+            if (mode == DownsampleMode.LTTB) {
+                return TrackDownsampler.lttb(telemetryList, points);
+            }
+            // 窗口按整点对齐，首尾可能各有一个不完整的窗口，多出的点从开头去掉以保留最新数据
+            return telemetryList.size() > points
+                    ? new ArrayList<>(telemetryList.subList(telemetryList.size() - points, telemetryList.size()))
+                    : telemetryList;
+
+        } catch (Exception e) {
+            log.error("Error querying downsampled telemetry history from InfluxDB: {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    private List<DroneTelemetryDto> queryWindows(FluxTemplate template, String source, String droneId,
+                                                 Instant start, Instant end, Duration every, int limit) {
+        long started = System.nanoTime();
+        try {
+            String query = template.render(Map.of("bucket", source, "start", start, "stop", end,
+                    "droneId", droneId, "every", every, "limit", limit));
+            log.debug("Executing InfluxDB query: {}", query);
+
+            List<DroneTelemetryDto> telemetryList = new ArrayList<>();
+            for (FluxTable table : influxDBClient.getQueryApi().query(query, organization)) {
+                for (FluxRecord record : table.getRecords()) {
+                    DroneTelemetryDto dto = mapRecordToDto(record, droneId);
+                    if (dto != null) {
+                        telemetryList.add(dto);
+                    }
+                }
+            }
+            return telemetryList;
+        } finally {
+            recordQuery(template, started);
+        }
+    }
+
+    /**
+     * Stream the raw telemetry of one or more drones within a time range to a handler, row by row.
+     * <p>
+     * Records are parsed from the InfluxDB response as it arrives and handed to the calling thread
+     * through a small bounded buffer; when the handler is slower than InfluxDB, the response is
+     * simply read more slowly. Memory use therefore does not depend on the size of the range, unlike
+     * {@link QueryApi#query(String, String)}, which materializes every table first. Rows are
+     * ordered by time within each drone.
+     *
+     * @param droneIds the IDs of the drones
+     * @param start the start time
+     * @param end the end time
+     * @param handler receives every row on the calling thread
+     * @return the number of rows handed to the handler
+     * @throws IOException if the query fails, stalls for influxdb.query.timeout-ms or the handler fails
+     */
+    public long streamTelemetry(Collection<String> droneIds, Instant start, Instant end,
+                                TelemetryRowHandler handler) throws IOException {
+        String query = STREAM.render(Map.of("bucket", bucket, "start", start, "stop", end, "droneIds", droneIds));
+
+        log.debug("Streaming InfluxDB query for {} drones from {} to {}", droneIds.size(), start, end);
+
+        BlockingQueue<Object> rows = new ArrayBlockingQueue<>(STREAM_BUFFER_ROWS);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        long started = System.nanoTime();
+        influxDBClient.getQueryApi().query(query, organization,
+                (cancellable, record) -> {
+                    Object droneId = record.getValueByKey("drone_id");
+                    DroneTelemetryDto dto = droneId != null ? mapRecordToDto(record, droneId.toString()) : null;
+                    if (dto != null && !handOver(rows, dto, abandoned)) {
+                        cancellable.cancel();
+                    }
+                },
+                error -> handOver(rows, error, abandoned),
+                () -> handOver(rows, STREAM_END, abandoned));
+
+        long count = 0;
+        try {
+            while (true) {
+                Object row = rows.poll(queryTimeoutMs, TimeUnit.MILLISECONDS);
+                if (row == null) {
+                    throw new IOException("InfluxDB query returned no data for " + queryTimeoutMs + "ms");
+                }
+                if (row == STREAM_END) {
+                    return count;
+                }
+                if (row instanceof Throwable error) {
+                    throw new IOException("InfluxDB query failed: " + error.getMessage(), error);
+                }
+                handler.accept((DroneTelemetryDto) row);
+                count++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming telemetry");
+        } finally {
+            // 消费方提前结束时让响应线程停止读取并取消查询
+            abandoned.set(true);
+            rows.clear();
+            recordQuery(STREAM, started);
+        }
+    }
+
+    private void recordQuery(FluxTemplate template, long started) {
+        Timer timer = queryTimers.get(template);
+        if (timer != null) {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Put a row into the stream buffer, waiting while it is full
+     *
+     * @return false if the consumer has given up on the stream
+     */
+    private static boolean handOver(BlockingQueue<Object> rows, Object row, AtomicBoolean abandoned) {
+        try {
+            while (!abandoned.get()) {
+                if (rows.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Merge two rows holding the last values of different fields of one drone
+     *
+     * @return the newer row, with the fields it lacks taken from the older one
+     */
+    private static DroneTelemetryDto mergeLatest(DroneTelemetryDto first, DroneTelemetryDto second) {
+        boolean secondNewer = second.getTimestamp() != null
+                && (first.getTimestamp() == null || second.getTimestamp().isAfter(first.getTimestamp()));
+        DroneTelemetryDto newer = secondNewer ? second : first;
+        DroneTelemetryDto older = secondNewer ? first : second;
+        newer.setBatteryLevel(orElse(newer.getBatteryLevel(), older.getBatteryLevel()));
+        newer.setBatteryVoltage(orElse(newer.getBatteryVoltage(), older.getBatteryVoltage()));
+        newer.setLatitude(orElse(newer.getLatitude(), older.getLatitude()));
+        newer.setLongitude(orElse(newer.getLongitude(), older.getLongitude()));
+        newer.setAltitude(orElse(newer.getAltitude(), older.getAltitude()));
+        newer.setSpeed(orElse(newer.getSpeed(), older.getSpeed()));
+        newer.setHeading(orElse(newer.getHeading(), older.getHeading()));
+        newer.setSatellites(orElse(newer.getSatellites(), older.getSatellites()));
+        newer.setSignalStrength(orElse(newer.getSignalStrength(), older.getSignalStrength()));
+        newer.setFlightMode(orElse(newer.getFlightMode(), older.getFlightMode()));
+        newer.setTemperature(orElse(newer.getTemperature(), older.getTemperature()));
+        return newer;
+    }
+
+    private static <T> T orElse(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+
     /**
      * Map a flux record to a telemetry DTO
      * 
@@ -230,6 +679,13 @@ public class DroneInfluxDBService {
             OffsetDateTime stop = OffsetDateTime.now(ZoneOffset.UTC).plusYears(1);
             deleteApi.delete(start, stop, predicate, bucket, organization);
             log.info("Deleted all telemetry for drone {} from InfluxDB", serialNumber);
+            for (TelemetryRollup rollup : TelemetryRollup.values()) {
+                try {
+                    deleteApi.delete(start, stop, predicate, telemetryRollupService.bucketName(rollup), organization);
+                } catch (Exception e) {
+                    log.debug("Failed to delete rollup {} of drone {}: {}", rollup, serialNumber, e.getMessage());
+                }
+            }
         } catch (Exception e) {
             log.error("Failed to delete telemetry for drone {}: {}", serialNumber, e.getMessage(), e);
         }
@@ -6,6 +6,7 @@ import com.huang.backend.drone.dto.DroneOfflineResponseDto;
 import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
 import com.huang.backend.mqtt.model.DroneOfflineCommand;
+import com.huang.backend.mqtt.pipeline.DroneSequenceTracker;
 import com.huang.backend.mqtt.service.MqttPublisherService;
 import com.huang.backend.registration.entity.DroneRegistrationRequest;
 import com.huang.backend.registration.repository.DroneRegistrationRequestRepository;
@@ -31,6 +32,12 @@ import java.util.UUID;
 public class DroneManagementServiceImpl implements DroneManagementService {
 
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final TelemetryHistoryCache telemetryHistoryCache;
+    private final FlightSessionTracker flightSessionTracker;
+    private final DroneSequenceTracker sequenceTracker;
+    private final FleetStatusCounters fleetStatusCounters;
     private final DroneRegistrationRequestRepository registrationRepository;
     private final MqttPublisherService mqttPublisherService;
     private final SecurityUtils securityUtils;
@@ -84,7 +91,8 @@ public class DroneManagementServiceImpl implements DroneManagementService {
                     .build();
             
             // Publish the command to the drone's command topic
-            commandSent = mqttPublisherService.publishCommand(drone.getDroneId().toString(), command);
+            commandSent = MqttPublisherService.isAccepted(
+                    mqttPublisherService.publishCommand(drone.getDroneId().toString(), command));
             
             log.info("Sent offline command to drone {} ({}): {}", drone.getSerialNumber(), drone.getDroneId(), commandSent);
         } catch (Exception e) {
@@ -92,6 +100,7 @@ public class DroneManagementServiceImpl implements DroneManagementService {
         }
         
         // Update drone state in database
+        fleetStatusCounters.transition(drone.getCurrentStatus(), Drone.DroneStatus.OFFLINE);
         drone.setCurrentStatus(Drone.DroneStatus.OFFLINE);
         drone.setOfflineReason(request.getReason());
         drone.setOfflineAt(now);
@@ -99,6 +108,7 @@ public class DroneManagementServiceImpl implements DroneManagementService {
         
         // Save the updated drone
         droneRepository.save(drone);
+        droneRegistry.update(drone);
         
         log.info("Drone {} set to OFFLINE status", drone.getSerialNumber());
         
@@ -183,6 +193,12 @@ public class DroneManagementServiceImpl implements DroneManagementService {
             
             // Delete the drone (PostgreSQL)
             droneRepository.delete(drone);
+            droneRegistry.evict(drone.getDroneId());
+            fleetStatusCounters.deleted(drone.getCurrentStatus());
+            latestTelemetryStore.evict(drone.getDroneId());
+            telemetryHistoryCache.evict(drone.getDroneId().toString());
+            flightSessionTracker.evict(drone.getDroneId());
+            sequenceTracker.forget(drone.getDroneId().toString());
 
             // Delete telemetry from InfluxDB
             try {
@@ -0,0 +1,180 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DroneSnapshot;
+import com.huang.backend.drone.repository.DroneRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.huang.backend.drone.util.TransactionCallbacks.afterCommit;
+
+/**
+ * In-memory registry of {@link DroneSnapshot}s keyed by drone UUID.
+ * <p>
+ * The telemetry ingest path reads drones from here instead of Postgres; a drone is loaded
+ * from the database only on first use (or once at startup when preloading is enabled).
+ * Code that changes a drone's serial number, model, status or geofence assignments must call
+ * {@link #update(Drone)}, {@link #updateStatus(UUID, Drone.DroneStatus)} or {@link #evict(UUID)}.
+ * Inside a transaction the change is applied after commit, so a rolled-back change never
+ * becomes visible. Unknown drone IDs are remembered for a short time, so telemetry from
+ * unregistered drones does not hit the database on every message either.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DroneRegistry {
+
+    private static final int MAX_UNKNOWN_IDS = 10_000;
+
+    private final DroneRepository droneRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${drone.registry.preload:true}")
+    private boolean preload;
+
+    @Value("${drone.registry.unknown-ttl-ms:30000}")
+    private long unknownTtlMs;
+
+    private final Map<UUID, DroneSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Drone IDs not found in the database, with the {@link System#nanoTime()} they expire at
+     */
+    private final Map<UUID, Long> unknownIds = new ConcurrentHashMap<>();
+
+    private Counter loads;
+
+    @PostConstruct
+    public void init() {
+        loads = meterRegistry.counter("drone.registry.loads");
+        Gauge.builder("drone.registry.size", snapshots, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Load every drone once the application is ready, so the first message of each drone is
+     * not a cache miss
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadAll() {
+        if (!preload) {
+            return;
+        }
+        try {
+            List<Drone> drones = droneRepository.findAllWithGeofences();
+            for (Drone drone : drones) {
+                snapshots.put(drone.getDroneId(), DroneSnapshot.of(drone));
+            }
+            loads.increment(drones.size());
+            log.info("无人机注册表已预加载 {} 架无人机", drones.size());
+        } catch (Exception e) {
+            log.warn("预加载无人机注册表失败，将按需加载: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the snapshot of a drone, loading it from the database on a cache miss
+     *
+     * @param droneId the drone UUID
+     * @return the snapshot, or empty if no such drone exists
+     */
+    public Optional<DroneSnapshot> get(UUID droneId) {
+        DroneSnapshot snapshot = snapshots.get(droneId);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        Long unknownUntil = unknownIds.get(droneId);
+        if (unknownUntil != null) {
+            if (System.nanoTime() - unknownUntil < 0) {
+                return Optional.empty();
+            }
+            unknownIds.remove(droneId, unknownUntil);
+        }
+        // computeIfAbsent keeps a concurrent evict() from being overtaken by a stale load
+        return Optional.ofNullable(snapshots.computeIfAbsent(droneId, this::load));
+    }
+
+    /**
+     * Replace the snapshot of a drone with the state of the given entity
+     *
+     * @param drone the saved drone entity
+     */
+    public void update(Drone drone) {
+        UUID droneId = drone.getDroneId();
+        if (!DroneSnapshot.hasLoadedGeofences(drone)) {
+            // geofence assignments not loaded: keep the known ones, or reload on next use
+            afterCommit(() -> snapshots.computeIfPresent(droneId, (id, current) -> new DroneSnapshot(
+                    droneId, drone.getSerialNumber(), drone.getModel(), drone.getCurrentStatus(),
+                    current.getPermittedGeofenceIds())));
+            return;
+        }
+        DroneSnapshot snapshot = DroneSnapshot.of(drone);
+        afterCommit(() -> {
+            unknownIds.remove(droneId);
+            snapshots.put(droneId, snapshot);
+        });
+    }
+
+    /**
+     * Change only the cached status of a drone
+     *
+     * @param droneId the drone UUID
+     * @param status the new status
+     */
+    public void updateStatus(UUID droneId, Drone.DroneStatus status) {
+        afterCommit(() -> snapshots.computeIfPresent(droneId, (id, current) -> current.withStatus(status)));
+    }
+
+    /**
+     * Drop a drone from the registry; it is reloaded from the database on next use
+     *
+     * @param droneId the drone UUID
+     */
+    public void evict(UUID droneId) {
+        snapshots.remove(droneId);
+        afterCommit(() -> snapshots.remove(droneId));
+    }
+
+    /**
+     * Drop several drones from the registry
+     *
+     * @param droneIds the drone UUIDs
+     */
+    public void evictAll(Collection<UUID> droneIds) {
+        droneIds.forEach(this::evict);
+    }
+
+    /**
+     * @return the number of cached drones
+     */
+    public int size() {
+        return snapshots.size();
+    }
+
+    private DroneSnapshot load(UUID droneId) {
+        loads.increment();
+        Optional<Drone> drone = droneRepository.findByIdWithGeofences(droneId);
+        if (drone.isEmpty()) {
+            if (unknownIds.size() >= MAX_UNKNOWN_IDS) {
+                unknownIds.clear();
+            }
+            unknownIds.put(droneId, System.nanoTime() + unknownTtlMs * 1_000_000L);
+            return null;
+        }
+        return DroneSnapshot.of(drone.get());
+    }
+}
@@ -3,10 +3,15 @@ package com.huang.backend.drone.service;
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
 import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DownsampleMode;
 import com.huang.backend.geofence.dto.GeofenceListItemDto;
 import com.huang.backend.drone.controller.DroneController.GeofenceAssignmentResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,6 +42,26 @@ public interface DroneStatusService {
      * @return a list of drones with the specified status
      */
     List<DroneStatusDto> getDronesByStatus(Drone.DroneStatus status);
+
+    /**
+     * Get one page of drones; only the drones on the page are enriched with telemetry
+     *
+     * @param statuses the statuses to filter by, if empty all drones are included
+     * @param pageable the page, page size and sort order
+     * @return the page of drones
+     */
+    Page<DroneStatusDto> getDronesPage(Collection<Drone.DroneStatus> statuses, Pageable pageable);
+
+    /**
+     * Get the drones ordered by serial number after the given one (keyset pagination),
+     * which stays cheap for deep pages and needs no total count
+     *
+     * @param afterSerialNumber the last serial number of the previous page, or null for the first page
+     * @param statuses the statuses to filter by, if empty all drones are included
+     * @param size the page size
+     * @return the drones after the given serial number
+     */
+    Slice<DroneStatusDto> getDronesAfter(String afterSerialNumber, Collection<Drone.DroneStatus> statuses, int size);
     
     /**
      * Get latest telemetry data for a specific drone
@@ -45,6 +70,14 @@ public interface DroneStatusService {
      * @return the latest telemetry data for the specified drone
      */
     DroneTelemetryDto getLatestTelemetry(UUID droneId);
+
+    /**
+     * Get latest telemetry data for several drones
+     *
+     * @param droneIds the IDs of the drones
+     * @return the latest telemetry data of the drones that exist and have any, in request order
+     */
+    List<DroneTelemetryDto> getLatestTelemetry(List<UUID> droneIds);
     
     /**
      * Get historical telemetry data for a specific drone within a time range
@@ -57,6 +90,19 @@ public interface DroneStatusService {
      */
     List<DroneTelemetryDto> getTelemetryHistory(UUID droneId, Instant start, Instant end, int limit);
 
+    /**
+     * Get historical telemetry data for a specific drone, downsampled to a bounded number of points
+     *
+     * @param droneId the ID of the drone
+     * @param start the start time
+     * @param end the end time
+     * @param maxPoints the maximum number of points to return
+     * @param mode how to reduce the time range
+     * @return at most {@code maxPoints} telemetry data points covering the whole time range
+     */
+    List<DroneTelemetryDto> getTelemetryHistory(UUID droneId, Instant start, Instant end, int maxPoints,
+                                                DownsampleMode mode);
+
     // ============================================================================
     // 地理围栏相关方法
     // ============================================================================
@@ -3,6 +3,7 @@ package com.huang.backend.drone.service;
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
 import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DownsampleMode;
 import com.huang.backend.drone.repository.DroneRepository;
 import com.huang.backend.drone.controller.DroneController.GeofenceAssignmentResponse;
 import com.huang.backend.geofence.dto.GeofenceListItemDto;
@@ -12,15 +13,25 @@ import com.huang.backend.geofence.repository.GeofenceRepository;
 import com.huang.backend.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -32,7 +43,10 @@ import java.util.stream.Collectors;
 public class DroneStatusServiceImpl implements DroneStatusService {
 
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
     private final DroneInfluxDBService influxDBService;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final TelemetryHistoryCache telemetryHistoryCache;
     private final GeofenceRepository geofenceRepository;
     private final GeofenceMapper geofenceMapper;
     
@@ -40,9 +54,7 @@ public class DroneStatusServiceImpl implements DroneStatusService {
     public List<DroneStatusDto> getAllDronesStatus() {
         log.debug("Getting status for all drones");
         List<Drone> drones = droneRepository.findAll();
-        return drones.stream()
-                .map(this::enrichDroneStatusWithTelemetry)
-                .collect(Collectors.toList());
+        return enrichAllWithTelemetry(drones);
     }
 
     @Override
@@ -65,19 +77,53 @@ public class DroneStatusServiceImpl implements DroneStatusService {
             drones = droneRepository.findByCurrentStatus(status);
         }
         
-        return drones.stream()
-                .map(this::enrichDroneStatusWithTelemetry)
-                .collect(Collectors.toList());
+        return enrichAllWithTelemetry(drones);
+    }
+
+    @Override
+    public Page<DroneStatusDto> getDronesPage(Collection<Drone.DroneStatus> statuses, Pageable pageable) {
+        log.debug("Getting drone page {} (size {}, sort {}) with statuses: {}",
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort(), statuses);
+        Page<Drone> drones = statuses.isEmpty()
+                ? droneRepository.findAll(pageable)
+                : droneRepository.findByCurrentStatusIn(statuses, pageable);
+        List<DroneStatusDto> content = enrichAllWithTelemetry(drones.getContent());
+        return new PageImpl<>(content, pageable, drones.getTotalElements());
+    }
+
+    @Override
+    public Slice<DroneStatusDto> getDronesAfter(String afterSerialNumber, Collection<Drone.DroneStatus> statuses,
+                                                int size) {
+        log.debug("Getting {} drones after serial number {} with statuses: {}", size, afterSerialNumber, statuses);
+        // 多取一条用于判断是否还有下一页
+        List<Drone> drones = droneRepository.findBySerialNumberAfter(
+                afterSerialNumber != null ? afterSerialNumber : "",
+                statuses.isEmpty(),
+                statuses.isEmpty() ? EnumSet.allOf(Drone.DroneStatus.class) : statuses,
+                PageRequest.of(0, size + 1));
+        boolean hasNext = drones.size() > size;
+        List<Drone> page = hasNext ? drones.subList(0, size) : drones;
+        return new SliceImpl<>(enrichAllWithTelemetry(page), PageRequest.of(0, size), hasNext);
     }
 
     @Override
     public DroneTelemetryDto getLatestTelemetry(UUID droneId) {
         log.debug("Getting latest telemetry for drone: {}", droneId);
-        Drone drone = droneRepository.findById(droneId)
+        droneRegistry.get(droneId)
                 .orElseThrow(() -> new NoSuchElementException("Drone not found with ID: " + droneId));
         
-        // 使用UUID而不是序列号来查询InfluxDB，因为存储时使用的是UUID
-        return influxDBService.getLatestTelemetry(drone.getDroneId().toString());
+        // 最新遥测来自内存状态，仅在冷启动时查询一次InfluxDB
+        return latestTelemetryStore.getLatest(droneId).orElse(null);
+    }
+
+    @Override
+    public List<DroneTelemetryDto> getLatestTelemetry(List<UUID> droneIds) {
+        log.debug("Getting latest telemetry for {} drones", droneIds.size());
+        // 未知的无人机直接跳过；冷启动的无人机合并为一次InfluxDB查询
+        List<UUID> knownIds = droneIds.stream()
+                .filter(droneId -> droneRegistry.get(droneId).isPresent())
+                .collect(Collectors.toList());
+        return latestTelemetryStore.getLatest(knownIds);
     }
 
     @Override
@@ -89,9 +135,44 @@ public class DroneStatusServiceImpl implements DroneStatusService {
                 .orElseThrow(() -> new NoSuchElementException("Drone not found with ID: " + droneId));
         
         // 使用UUID而不是序列号来查询InfluxDB，因为存储时使用的是UUID
-        return influxDBService.getTelemetryHistory(drone.getDroneId().toString(), start, end, limit);
+        return telemetryHistoryCache.getHistory(drone.getDroneId().toString(), start, end, limit);
+    }
+
+    @Override
+    public List<DroneTelemetryDto> getTelemetryHistory(UUID droneId, Instant start, Instant end, int maxPoints,
+                                                       DownsampleMode mode) {
+        log.debug("Getting telemetry history for drone: {}, from {} to {}, max points: {} ({})",
+                droneId, start, end, maxPoints, mode);
+        
+        droneRegistry.get(droneId)
+                .orElseThrow(() -> new NoSuchElementException("Drone not found with ID: " + droneId));
+        
+        return influxDBService.getTelemetryHistory(droneId.toString(), start, end, maxPoints, mode);
     }
     
+    /**
+     * Enrich the status DTOs of several drones with telemetry data; drones without live
+     * telemetry are loaded from InfluxDB with a single query
+     *
+     * @param drones the drone entities
+     * @return the enriched drone status DTOs, in the same order
+     */
+    private List<DroneStatusDto> enrichAllWithTelemetry(List<Drone> drones) {
+        Map<String, DroneTelemetryDto> telemetryById;
+        try {
+            telemetryById = latestTelemetryStore.getLatest(drones.stream().map(Drone::getDroneId).toList()).stream()
+                    .collect(Collectors.toMap(DroneTelemetryDto::getDroneId, Function.identity()));
+        } catch (Exception e) {
+            log.warn("Error loading telemetry for {} drones: {}", drones.size(), e.getMessage());
+            telemetryById = Map.of();
+        }
+        List<DroneStatusDto> dtos = new ArrayList<>(drones.size());
+        for (Drone drone : drones) {
+            dtos.add(enrichDroneStatusWithTelemetry(drone, telemetryById.get(drone.getDroneId().toString())));
+        }
+        return dtos;
+    }
+
     /**
      * Enrich a drone status DTO with telemetry data
      * 
@@ -99,29 +180,32 @@ public class DroneStatusServiceImpl implements DroneStatusService {
      * @return the enriched drone status DTO
      */
     private DroneStatusDto enrichDroneStatusWithTelemetry(Drone drone) {
-        DroneStatusDto dto = DroneStatusDto.fromEntity(drone);
-        
+        DroneTelemetryDto telemetry = null;
         try {
             // Get latest telemetry to enhance the status
-            // 使用UUID而不是序列号来查询InfluxDB，因为存储时使用的是UUID
-            DroneTelemetryDto telemetry = influxDBService.getLatestTelemetry(drone.getDroneId().toString());
-            
-            if (telemetry != null) {
-                dto.setBatteryLevel(telemetry.getBatteryLevel());
-                dto.setLatitude(telemetry.getLatitude());
-                dto.setLongitude(telemetry.getLongitude());
-                dto.setAltitude(telemetry.getAltitude());
-                log.debug("成功获取无人机{}({})的遥测数据，电量: {}%", 
-                        drone.getSerialNumber(), drone.getDroneId(), telemetry.getBatteryLevel());
-            } else {
-                log.debug("未找到无人机{}({})的遥测数据", 
-                        drone.getSerialNumber(), drone.getDroneId());
-            }
+            telemetry = latestTelemetryStore.getLatest(drone.getDroneId()).orElse(null);
         } catch (Exception e) {
             log.warn("Error enriching drone status with telemetry for drone {}: {}", 
                     drone.getSerialNumber(), e.getMessage());
             // Continue without telemetry data
         }
+        return enrichDroneStatusWithTelemetry(drone, telemetry);
+    }
+
+    private DroneStatusDto enrichDroneStatusWithTelemetry(Drone drone, DroneTelemetryDto telemetry) {
+        DroneStatusDto dto = DroneStatusDto.fromEntity(drone);
+        
+        if (telemetry != null) {
+            dto.setBatteryLevel(telemetry.getBatteryLevel());
+            dto.setLatitude(telemetry.getLatitude());
+            dto.setLongitude(telemetry.getLongitude());
+            dto.setAltitude(telemetry.getAltitude());
+            log.debug("成功获取无人机{}({})的遥测数据，电量: {}%", 
+                    drone.getSerialNumber(), drone.getDroneId(), telemetry.getBatteryLevel());
+        } else {
+            log.debug("未找到无人机{}({})的遥测数据", 
+                    drone.getSerialNumber(), drone.getDroneId());
+        }
         
         return dto;
     }
@@ -212,6 +296,7 @@ public class DroneStatusServiceImpl implements DroneStatusService {
         // 改进保存逻辑，添加更好的错误处理
         try {
             droneRepository.save(drone);
+            droneRegistry.update(drone);
             log.info("Successfully saved drone {} with {} geofence assignments", droneId, successfulAssignments.size());
         } catch (Exception e) {
             log.error("Failed to save geofence assignments for drone {}: {}", droneId, e.getMessage(), e);
@@ -247,6 +332,7 @@ public class DroneStatusServiceImpl implements DroneStatusService {
         geofence.getDrones().remove(drone);
         
         droneRepository.save(drone);
+        droneRegistry.update(drone);
         
         return GeofenceAssignmentResponse.builder()
                 .success(true)
@@ -292,6 +378,7 @@ public class DroneStatusServiceImpl implements DroneStatusService {
         }
         
         droneRepository.save(drone);
+        droneRegistry.update(drone);
         
         return GeofenceAssignmentResponse.builder()
                 .success(failedAssignments.isEmpty())
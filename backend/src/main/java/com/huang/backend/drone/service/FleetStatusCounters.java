@@ -0,0 +1,167 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneStatsDto;
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.repository.DroneRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.huang.backend.drone.util.TransactionCallbacks.afterCommit;
+
+/**
+ * Number of drones in each status, kept in memory so fleet statistics need no database or
+ * InfluxDB query.
+ * <p>
+ * The counts are seeded with one {@code GROUP BY current_status} query once the application is
+ * ready. Code that creates or deletes a drone or changes its status must call
+ * {@link #created(Drone.DroneStatus)}, {@link #deleted(Drone.DroneStatus)} or
+ * {@link #transition(Drone.DroneStatus, Drone.DroneStatus)}; inside a transaction the change is
+ * applied after commit. Every change and every read is atomic across all counts. Changes made by
+ * other nodes, or concurrent changes of one drone that both start from the same old status, are
+ * corrected by re-running the seed query every {@code drone.stats.reconcile-interval-ms}.
+ * The low-battery count comes from {@link LatestTelemetryStore#lowBatteryCount()}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FleetStatusCounters {
+
+    private static final Drone.DroneStatus[] STATUSES = Drone.DroneStatus.values();
+
+    private final DroneRepository droneRepository;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Drones by status ordinal; guarded by this
+     */
+    private final int[] counts = new int[STATUSES.length];
+
+    @PostConstruct
+    public void init() {
+        for (Drone.DroneStatus status : STATUSES) {
+            Gauge.builder("drone.fleet.status", this, counters -> counters.count(status))
+                    .description("Drones currently in a status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Replace the counts with the current counts in the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${drone.stats.reconcile-interval-ms:300000}",
+            fixedDelayString = "${drone.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            int[] seeded = new int[STATUSES.length];
+            for (Object[] row : droneRepository.countByStatus()) {
+                if (row[0] instanceof Drone.DroneStatus status) {
+                    seeded[status.ordinal()] = ((Number) row[1]).intValue();
+                }
+            }
+            synchronized (this) {
+                System.arraycopy(seeded, 0, counts, 0, counts.length);
+            }
+            log.debug("无人机状态计数已从数据库同步: {}", toMap(seeded));
+        } catch (Exception e) {
+            log.warn("同步无人机状态计数失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Count a new drone
+     *
+     * @param status the status it was created with
+     */
+    public void created(Drone.DroneStatus status) {
+        afterCommit(() -> add(status, 1));
+    }
+
+    /**
+     * Stop counting a deleted drone
+     *
+     * @param status the status it had
+     */
+    public void deleted(Drone.DroneStatus status) {
+        afterCommit(() -> add(status, -1));
+    }
+
+    /**
+     * Move a drone from one status to another
+     *
+     * @param from the previous status
+     * @param to the new status
+     */
+    public void transition(Drone.DroneStatus from, Drone.DroneStatus to) {
+        if (from == to) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                add(from, -1);
+                add(to, 1);
+            }
+        });
+    }
+
+    /**
+     * @param status a status
+     * @return the number of drones in that status
+     */
+    public synchronized int count(Drone.DroneStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    /**
+     * @return the fleet statistics
+     */
+    public DroneStatsDto getStats() {
+        int[] current;
+        synchronized (this) {
+            current = counts.clone();
+        }
+        int total = 0;
+        for (int count : current) {
+            total += count;
+        }
+        Map<String, Integer> statusCounts = toMap(current);
+        return DroneStatsDto.builder()
+                .total(total)
+                .online(current[Drone.DroneStatus.ONLINE.ordinal()])
+                .offline(current[Drone.DroneStatus.OFFLINE.ordinal()])
+                .flying(current[Drone.DroneStatus.FLYING.ordinal()])
+                .idle(current[Drone.DroneStatus.IDLE.ordinal()])
+                .error(current[Drone.DroneStatus.ERROR.ordinal()])
+                .lowBattery(latestTelemetryStore.lowBatteryCount())
+                .statusCounts(statusCounts)
+                .build();
+    }
+
+    private synchronized void add(Drone.DroneStatus status, int delta) {
+        if (status != null) {
+            counts[status.ordinal()] = Math.max(0, counts[status.ordinal()] + delta);
+        }
+    }
+
+    private static Map<String, Integer> toMap(int[] counts) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (Drone.DroneStatus status : STATUSES) {
+            if (counts[status.ordinal()] > 0) {
+                map.put(status.name(), counts[status.ordinal()]);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,46 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.dto.FlightSessionDto;
+import com.huang.backend.drone.model.DownsampleMode;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service for the flight catalogue built by {@link FlightSessionTracker}
+ */
+public interface FlightSessionService {
+
+    /**
+     * Get the flights that overlap a time range, newest first
+     *
+     * @param droneId the ID of the drone, or null for all drones
+     * @param start the start time
+     * @param end the end time
+     * @param pageable the page to return
+     * @return a page of flights
+     */
+    Page<FlightSessionDto> getFlights(UUID droneId, Instant start, Instant end, Pageable pageable);
+
+    /**
+     * Get a single flight
+     *
+     * @param flightId the ID of the flight
+     * @return the flight
+     */
+    FlightSessionDto getFlight(UUID flightId);
+
+    /**
+     * Get the track of a flight for replay, downsampled to a bounded number of points
+     *
+     * @param flightId the ID of the flight
+     * @param maxPoints the maximum number of points to return
+     * @param mode how to downsample
+     * @return the telemetry of the flight, in time order
+     */
+    List<DroneTelemetryDto> getFlightTelemetry(UUID flightId, int maxPoints, DownsampleMode mode);
+}
@@ -0,0 +1,85 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.dto.FlightSessionDto;
+import com.huang.backend.drone.entity.FlightSession;
+import com.huang.backend.drone.model.DownsampleMode;
+import com.huang.backend.drone.repository.FlightSessionRepository;
+import com.huang.backend.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlightSessionServiceImpl implements FlightSessionService {
+
+    private final FlightSessionRepository flightSessionRepository;
+    private final DroneInfluxDBService influxDBService;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<FlightSessionDto> getFlights(UUID droneId, Instant start, Instant end, Pageable pageable) {
+        log.debug("Getting flights of drone: {}, from {} to {}, page: {}", droneId, start, end, pageable);
+
+        ZonedDateTime from = ZonedDateTime.ofInstant(start, ZoneId.systemDefault());
+        ZonedDateTime to = ZonedDateTime.ofInstant(end, ZoneId.systemDefault());
+        Page<FlightSession> flights = droneId != null
+                ? flightSessionRepository.findByDroneInRange(droneId, from, to, pageable)
+                : flightSessionRepository.findInRange(from, to, pageable);
+        return flights.map(this::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FlightSessionDto getFlight(UUID flightId) {
+        return toDto(findFlight(flightId));
+    }
+
+    @Override
+    public List<DroneTelemetryDto> getFlightTelemetry(UUID flightId, int maxPoints, DownsampleMode mode) {
+        FlightSession flight = findFlight(flightId);
+        log.debug("Getting telemetry of flight: {} ({} - {}), max points: {} ({})",
+                flightId, flight.getStartTime(), flight.getEndTime(), maxPoints, mode);
+
+        // 区间右开，多取1毫秒以包含降落时的最后一个点
+        return influxDBService.getTelemetryHistory(flight.getDroneId().toString(),
+                flight.getStartTime().toInstant(), flight.getEndTime().toInstant().plusMillis(1), maxPoints, mode);
+    }
+
+    private FlightSession findFlight(UUID flightId) {
+        return flightSessionRepository.findById(flightId)
+                .orElseThrow(() -> new ResourceNotFoundException("Flight not found with ID: " + flightId));
+    }
+
+    private FlightSessionDto toDto(FlightSession flight) {
+        return FlightSessionDto.builder()
+                .flightId(flight.getFlightId())
+                .droneId(flight.getDroneId())
+                .startTime(flight.getStartTime().toInstant())
+                .endTime(flight.getEndTime().toInstant())
+                .durationMs(flight.getDurationMs())
+                .distanceMeters(flight.getDistanceMeters())
+                .maxAltitude(flight.getMaxAltitude())
+                .startBattery(flight.getStartBattery())
+                .endBattery(flight.getEndBattery())
+                .batteryUsed(flight.getBatteryUsed())
+                .minLatitude(flight.getMinLatitude())
+                .maxLatitude(flight.getMaxLatitude())
+                .minLongitude(flight.getMinLongitude())
+                .maxLongitude(flight.getMaxLongitude())
+                .sampleCount(flight.getSampleCount())
+                .endReason(flight.getEndReason().name())
+                .build();
+    }
+}
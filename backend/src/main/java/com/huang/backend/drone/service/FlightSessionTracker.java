@@ -0,0 +1,337 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.entity.FlightSession;
+import com.huang.backend.drone.repository.FlightSessionRepository;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits the telemetry stream of every drone into flights and writes each finished flight to
+ * {@code flight_sessions}, so listing and replaying flights never scans raw telemetry.
+ * <p>
+ * A flight starts with the first sample in which the drone is airborne: higher than
+ * {@code takeoff-altitude-m} or faster than {@code moving-speed-ms}, or, when the sample has no
+ * altitude, a reported flying status. It ends
+ * <ul>
+ *     <li>when the drone has been on the ground for {@code landing-hold-ms}, at its first sample
+ *     on the ground, so a touch-and-go stays one flight;</li>
+ *     <li>immediately when telemetry reports a ground status or the drone says farewell;</li>
+ *     <li>at its last sample when no telemetry arrived for {@code inactivity-timeout-ms}.</li>
+ * </ul>
+ * Flights shorter than {@code min-duration-ms} are dropped. Samples must be fed in order per
+ * drone, which the persist stage of the ingest pipeline guarantees; late samples are skipped.
+ * Flights still open when the service stops are written as ended at their last sample.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlightSessionTracker {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    /** Reported statuses that mean the drone is in the air */
+    private static final Set<String> AIRBORNE_STATUSES =
+            Set.of("FLYING", "HOVER", "GOTO", "RETURNING_TO_LAUNCH", "LANDING");
+
+    /** Reported statuses that mean the drone is on the ground */
+    private static final Set<String> GROUND_STATUSES = Set.of("IDLE", "ONLINE", "OFFLINE");
+
+    private final FlightSessionRepository flightSessionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${drone.flights.enabled:true}")
+    private boolean enabled;
+
+    @Value("${drone.flights.takeoff-altitude-m:1.0}")
+    private double takeoffAltitude;
+
+    @Value("${drone.flights.moving-speed-ms:2.0}")
+    private double movingSpeed;
+
+    @Value("${drone.flights.landing-hold-ms:10000}")
+    private long landingHoldMs;
+
+    @Value("${drone.flights.inactivity-timeout-ms:120000}")
+    private long inactivityTimeoutMs;
+
+    @Value("${drone.flights.min-duration-ms:5000}")
+    private long minDurationMs;
+
+    private final Map<UUID, OpenFlight> openFlights = new ConcurrentHashMap<>();
+
+    private final Map<FlightSession.EndReason, Counter> closedCounters = new EnumMap<>(FlightSession.EndReason.class);
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("drone.flights.open", openFlights, Map::size)
+                .description("Drones currently in a flight")
+                .register(meterRegistry);
+        for (FlightSession.EndReason reason : FlightSession.EndReason.values()) {
+            closedCounters.put(reason, Counter.builder("drone.flights.closed")
+                    .description("Flights written to the flight catalogue")
+                    .tag("reason", reason.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Feed the next in-order telemetry sample of a drone
+     *
+     * @param droneId the ID of the drone
+     * @param telemetry the sample
+     */
+    public void record(UUID droneId, TelemetryRecord telemetry) {
+        if (!enabled || !telemetry.hasTimestamp()) {
+            return;
+        }
+        Boolean airborne = airborne(telemetry);
+        long now = System.currentTimeMillis();
+        List<OpenFlight> finished = new ArrayList<>(1);
+        openFlights.compute(droneId, (id, flight) -> {
+            if (flight == null) {
+                if (!Boolean.TRUE.equals(airborne)) {
+                    return null;
+                }
+                flight = new OpenFlight(id, telemetry.getTimestamp());
+            }
+            flight.add(telemetry, now);
+            if (Boolean.TRUE.equals(airborne)) {
+                flight.groundSince = null;
+                return flight;
+            }
+            if (telemetry.getStatus() != null && GROUND_STATUSES.contains(telemetry.getStatus())) {
+                flight.end(telemetry.getTimestamp(), FlightSession.EndReason.STATUS);
+                finished.add(flight);
+                return null;
+            }
+            if (Boolean.FALSE.equals(airborne)) {
+                if (flight.groundSince == null) {
+                    flight.groundSince = telemetry.getTimestamp();
+                } else if (telemetry.getTimestamp().toEpochMilli() - flight.groundSince.toEpochMilli() >= landingHoldMs) {
+                    flight.end(flight.groundSince, FlightSession.EndReason.LANDED);
+                    finished.add(flight);
+                    return null;
+                }
+            }
+            return flight;
+        });
+        finished.forEach(this::save);
+    }
+
+    /**
+     * End the current flight of a drone, if any, e.g. on a farewell message
+     *
+     * @param droneId the ID of the drone
+     * @param at when the flight ended, or null for its last sample
+     * @param reason why it ended
+     */
+    public void end(UUID droneId, Instant at, FlightSession.EndReason reason) {
+        OpenFlight flight = openFlights.remove(droneId);
+        if (flight != null) {
+            flight.end(at != null && at.isAfter(flight.lastSampleAt) ? at : flight.lastSampleAt, reason);
+            save(flight);
+        }
+    }
+
+    /**
+     * Forget the current flight of a deleted drone without writing it
+     *
+     * @param droneId the ID of the drone
+     */
+    public void evict(UUID droneId) {
+        openFlights.remove(droneId);
+    }
+
+    /**
+     * End the flights of drones that stopped sending telemetry
+     */
+    @Scheduled(fixedDelayString = "${drone.flights.sweep-interval-ms:10000}")
+    public void closeInactive() {
+        long cutoff = System.currentTimeMillis() - inactivityTimeoutMs;
+        List<OpenFlight> finished = new ArrayList<>();
+        for (UUID droneId : openFlights.keySet()) {
+            openFlights.computeIfPresent(droneId, (id, flight) -> {
+                if (flight.lastSeenMillis > cutoff) {
+                    return flight;
+                }
+                flight.end(flight.lastSampleAt, FlightSession.EndReason.TIMEOUT);
+                finished.add(flight);
+                return null;
+            });
+        }
+        finished.forEach(this::save);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (UUID droneId : new ArrayList<>(openFlights.keySet())) {
+            end(droneId, null, FlightSession.EndReason.SHUTDOWN);
+        }
+    }
+
+    /**
+     * @return the number of drones currently in a flight
+     */
+    int openFlightCount() {
+        return openFlights.size();
+    }
+
+    /**
+     * @return true if the sample shows the drone in the air, false if on the ground, null if it cannot tell
+     */
+    private Boolean airborne(TelemetryRecord telemetry) {
+        double altitude = telemetry.getAltitude();
+        double speed = telemetry.getSpeed();
+        if (!Double.isNaN(speed) && speed > movingSpeed) {
+            return true;
+        }
+        if (!Double.isNaN(altitude)) {
+            return altitude > takeoffAltitude;
+        }
+        String status = telemetry.getStatus();
+        if (status != null && AIRBORNE_STATUSES.contains(status)) {
+            return true;
+        }
+        if (status != null && GROUND_STATUSES.contains(status)) {
+            return false;
+        }
+        return null;
+    }
+
+    private void save(OpenFlight flight) {
+        long durationMs = flight.endAt.toEpochMilli() - flight.startAt.toEpochMilli();
+        if (durationMs < minDurationMs) {
+            log.debug("忽略无人机{}过短的飞行: {}ms", flight.droneId, durationMs);
+            return;
+        }
+        try {
+            flightSessionRepository.save(flight.toEntity(durationMs));
+            closedCounters.get(flight.endReason).increment();
+            log.info("记录无人机{}的飞行: {} - {}, {}米, 结束方式: {}",
+                    flight.droneId, flight.startAt, flight.endAt, Math.round(flight.distanceMeters), flight.endReason);
+        } catch (Exception e) {
+            log.error("保存无人机{}的飞行记录失败: {}", flight.droneId, e.getMessage(), e);
+        }
+    }
+
+    private static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Running totals of a flight in progress; only touched inside a map operation on its drone
+     */
+    private static final class OpenFlight {
+
+        private final UUID droneId;
+        private final Instant startAt;
+        private Instant lastSampleAt;
+        private long lastSeenMillis;
+        private Instant groundSince;
+        private Instant endAt;
+        private FlightSession.EndReason endReason;
+
+        private int samples;
+        private double distanceMeters;
+        private double lastLatitude = Double.NaN;
+        private double lastLongitude = Double.NaN;
+        private double maxAltitude = Double.NaN;
+        private double startBattery = Double.NaN;
+        private double endBattery = Double.NaN;
+        private double minLatitude = Double.NaN;
+        private double maxLatitude = Double.NaN;
+        private double minLongitude = Double.NaN;
+        private double maxLongitude = Double.NaN;
+
+        private OpenFlight(UUID droneId, Instant startAt) {
+            this.droneId = droneId;
+            this.startAt = startAt;
+            this.lastSampleAt = startAt;
+        }
+
+        private void add(TelemetryRecord telemetry, long seenMillis) {
+            samples++;
+            lastSampleAt = telemetry.getTimestamp();
+            lastSeenMillis = seenMillis;
+            // Math.max/min 遇到 NaN 返回 NaN，所以第一个值直接赋值
+            double altitude = telemetry.getAltitude();
+            if (!Double.isNaN(altitude)) {
+                maxAltitude = Double.isNaN(maxAltitude) ? altitude : Math.max(maxAltitude, altitude);
+            }
+            double battery = telemetry.getBatteryLevel();
+            if (!Double.isNaN(battery)) {
+                if (Double.isNaN(startBattery)) {
+                    startBattery = battery;
+                }
+                endBattery = battery;
+            }
+            if (telemetry.hasPosition()) {
+                double latitude = telemetry.getLatitude();
+                double longitude = telemetry.getLongitude();
+                if (Double.isNaN(lastLatitude)) {
+                    minLatitude = maxLatitude = latitude;
+                    minLongitude = maxLongitude = longitude;
+                } else {
+                    distanceMeters += distance(lastLatitude, lastLongitude, latitude, longitude);
+                    minLatitude = Math.min(minLatitude, latitude);
+                    maxLatitude = Math.max(maxLatitude, latitude);
+                    minLongitude = Math.min(minLongitude, longitude);
+                    maxLongitude = Math.max(maxLongitude, longitude);
+                }
+                lastLatitude = latitude;
+                lastLongitude = longitude;
+            }
+        }
+
+        private void end(Instant at, FlightSession.EndReason reason) {
+            endAt = at;
+            endReason = reason;
+        }
+
+        private FlightSession toEntity(long durationMs) {
+            return FlightSession.builder()
+                    .flightId(UUID.randomUUID())
+                    .droneId(droneId)
+                    .startTime(ZonedDateTime.ofInstant(startAt, ZoneId.systemDefault()))
+                    .endTime(ZonedDateTime.ofInstant(endAt, ZoneId.systemDefault()))
+                    .durationMs(durationMs)
+                    .distanceMeters(distanceMeters)
+                    .maxAltitude(TelemetryRecord.box(maxAltitude))
+                    .startBattery(TelemetryRecord.box(startBattery))
+                    .endBattery(TelemetryRecord.box(endBattery))
+                    .batteryUsed(TelemetryRecord.box(startBattery - endBattery))
+                    .minLatitude(TelemetryRecord.box(minLatitude))
+                    .maxLatitude(TelemetryRecord.box(maxLatitude))
+                    .minLongitude(TelemetryRecord.box(minLongitude))
+                    .maxLongitude(TelemetryRecord.box(maxLongitude))
+                    .sampleCount(samples)
+                    .endReason(endReason)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.model.LatestTelemetry;
+import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory store of the latest telemetry sample of every drone, keyed by drone UUID.
+ * <p>
+ * The ingest path calls {@link #update(UUID, TelemetryRecord)} for every in-order sample, so
+ * "latest telemetry" reads are a map lookup instead of a Flux query per drone. Only when a
+ * drone has not reported since startup is its latest sample loaded from InfluxDB; that result
+ * (including "no data") is kept for {@code drone.telemetry.latest.cold-ttl-ms}. Every entry,
+ * including one fed by ingest, expires {@code cold-ttl-ms} after its last update and is then
+ * reloaded from InfluxDB, on the next read and by a periodic sweep that also keeps
+ * {@link #lowBatteryCount()} current. This bounds staleness on nodes that stop receiving a
+ * drone's messages, e.g. after a shared MQTT subscription moved it to another node.
+ * <p>
+ * Cold loads for several drones use one InfluxDB query for all of them: at startup every
+ * registered drone is loaded that way (in chunks of {@code drone.telemetry.latest.warm-batch-size}),
+ * and {@link #getLatest(Collection)} loads all of its misses together. Loads run outside the map's
+ * atomic updates, so a slow InfluxDB query never blocks ingest; concurrent cold reads of the same
+ * drone may each query it.
+ * <p>
+ * The number of drones whose latest battery level is below {@code drone.telemetry.low-battery-threshold}
+ * is kept up to date as entries change, so {@link #lowBatteryCount()} does not scan the store.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LatestTelemetryStore {
+
+    private final DroneInfluxDBService influxDBService;
+    private final DroneRepository droneRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${drone.telemetry.latest.cold-ttl-ms:60000}")
+    private long coldTtlMs;
+
+    @Value("${drone.telemetry.latest.warm-on-startup:true}")
+    private boolean warmOnStartup;
+
+    @Value("${drone.telemetry.latest.warm-batch-size:1000}")
+    private int warmBatchSize;
+
+    @Value("${drone.telemetry.low-battery-threshold:20}")
+    private double lowBatteryThreshold;
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger lowBattery = new AtomicInteger();
+
+    private Counter coldLoads;
+
+    @PostConstruct
+    public void init() {
+        coldLoads = meterRegistry.counter("drone.telemetry.latest.cold-loads");
+        Gauge.builder("drone.telemetry.latest.size", entries, Map::size).register(meterRegistry);
+        Gauge.builder("drone.telemetry.low-battery", lowBattery, AtomicInteger::get)
+                .description("Drones whose latest battery level is below the low-battery threshold")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load the latest telemetry of every registered drone once the application is ready, so
+     * the first status requests do not query InfluxDB per drone
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!warmOnStartup) {
+            return;
+        }
+        try {
+            List<UUID> droneIds = droneRepository.findAllDroneIds();
+            int chunkSize = Math.max(1, warmBatchSize);
+            int warmed = 0;
+            for (int from = 0; from < droneIds.size(); from += chunkSize) {
+                List<UUID> chunk = droneIds.subList(from, Math.min(droneIds.size(), from + chunkSize));
+                if (loadAll(chunk)) {
+                    warmed += chunk.size();
+                }
+            }
+            log.info("已从InfluxDB预加载 {}/{} 架无人机的最新遥测", warmed, droneIds.size());
+        } catch (Exception e) {
+            log.warn("预加载最新遥测失败，将按需加载: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Record a newly ingested sample; an older sample never replaces a newer one
+     *
+     * @param droneId the drone UUID
+     * @param record the decoded sample
+     */
+    public void update(UUID droneId, TelemetryRecord record) {
+        Entry next = new Entry(LatestTelemetry.of(record), expiry());
+        entries.compute(droneId, (id, current) -> replace(current,
+                current == null || current.telemetry == null || next.telemetry.isNotOlderThan(current.telemetry)
+                        ? next : new Entry(current.telemetry, next.expiresAt)));
+    }
+
+    /**
+     * Reload the entries that have not been updated for {@code cold-ttl-ms}, so drones this node
+     * no longer receives do not keep their last sample (and low-battery state) forever
+     */
+    @Scheduled(initialDelayString = "${drone.telemetry.latest.cold-ttl-ms:60000}",
+            fixedDelayString = "${drone.telemetry.latest.cold-ttl-ms:60000}")
+    public void refreshExpired() {
+        List<UUID> expired = entries.entrySet().stream()
+                .filter(entry -> entry.getValue().isExpired())
+                .map(Map.Entry::getKey)
+                .toList();
+        int chunkSize = Math.max(1, warmBatchSize);
+        for (int from = 0; from < expired.size(); from += chunkSize) {
+            loadAll(expired.subList(from, Math.min(expired.size(), from + chunkSize)));
+        }
+    }
+
+    /**
+     * Get the latest telemetry of a drone, loading it from InfluxDB on a cold start
+     *
+     * @param droneId the drone UUID
+     * @return the latest telemetry, or empty if the drone has none
+     */
+    public Optional<DroneTelemetryDto> getLatest(UUID droneId) {
+        return get(droneId).map(telemetry -> telemetry.toDto(droneId.toString()));
+    }
+
+    /**
+     * Get the latest telemetry of several drones, loading all cold drones with one query
+     *
+     * @param droneIds the drone UUIDs
+     * @return the latest telemetry of the drones that have any, in request order
+     */
+    public List<DroneTelemetryDto> getLatest(Collection<UUID> droneIds) {
+        List<UUID> cold = droneIds.stream()
+                .filter(droneId -> {
+                    Entry entry = entries.get(droneId);
+                    return entry == null || entry.isExpired();
+                })
+                .distinct()
+                .toList();
+        if (!cold.isEmpty()) {
+            loadAll(cold);
+        }
+        List<DroneTelemetryDto> latest = new ArrayList<>(droneIds.size());
+        for (UUID droneId : droneIds) {
+            peek(droneId).ifPresent(telemetry -> latest.add(telemetry.toDto(droneId.toString())));
+        }
+        return latest;
+    }
+
+    /**
+     * Get the latest telemetry sample of a drone, loading it from InfluxDB on a cold start
+     *
+     * @param droneId the drone UUID
+     * @return the latest sample, or empty if the drone has none
+     */
+    public Optional<LatestTelemetry> get(UUID droneId) {
+        Entry entry = entries.get(droneId);
+        if (entry == null || entry.isExpired()) {
+            // 查询在 compute 之外执行，否则会锁住同一哈希桶中其他无人机的 update
+            Entry loaded = load(droneId, entry);
+            entry = entries.compute(droneId, (id, current) ->
+                    current != null && !current.isExpired() ? current : replace(current, loaded));
+        }
+        return Optional.ofNullable(entry.telemetry);
+    }
+
+    /**
+     * Get the latest sample held in memory, without falling back to InfluxDB
+     *
+     * @param droneId the drone UUID
+     * @return the latest sample, or empty if none is held
+     */
+    public Optional<LatestTelemetry> peek(UUID droneId) {
+        Entry entry = entries.get(droneId);
+        return entry != null ? Optional.ofNullable(entry.telemetry) : Optional.empty();
+    }
+
+    /**
+     * Drop the state of a deleted drone
+     *
+     * @param droneId the drone UUID
+     */
+    public void evict(UUID droneId) {
+        entries.computeIfPresent(droneId, (id, current) -> replace(current, null));
+    }
+
+    /**
+     * @return the number of drones whose latest battery level is below the low-battery threshold
+     */
+    public int lowBatteryCount() {
+        return lowBattery.get();
+    }
+
+    /**
+     * @return the number of drones with an entry
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry load(UUID droneId, Entry stale) {
+        coldLoads.increment();
+        long expiresAt = expiry();
+        try {
+            DroneTelemetryDto dto = influxDBService.getLatestTelemetry(droneId.toString());
+            return new Entry(dto != null ? LatestTelemetry.of(dto) : null, expiresAt);
+        } catch (Exception e) {
+            log.warn("从InfluxDB加载无人机 {} 的最新遥测失败: {}", droneId, e.getMessage());
+            return new Entry(stale != null ? stale.telemetry : null, expiresAt);
+        }
+    }
+
+    /**
+     * Load several drones with one query; entries fed by ingest in the meantime are kept. When the
+     * query fails, stale entries are kept for another {@code cold-ttl-ms} like {@link #load} does,
+     * and drones without an entry stay cold so the next read retries.
+     *
+     * @return false if the query failed
+     */
+    private boolean loadAll(List<UUID> droneIds) {
+        coldLoads.increment(droneIds.size());
+        long expiresAt = expiry();
+        Map<String, DroneTelemetryDto> loaded;
+        try {
+            loaded = influxDBService.getLatestTelemetry(droneIds.stream().map(UUID::toString).toList());
+        } catch (Exception e) {
+            log.warn("从InfluxDB批量加载 {} 架无人机的最新遥测失败: {}", droneIds.size(), e.getMessage());
+            for (UUID droneId : droneIds) {
+                entries.computeIfPresent(droneId, (id, current) ->
+                        current.isExpired() ? new Entry(current.telemetry, expiresAt) : current);
+            }
+            return false;
+        }
+        for (UUID droneId : droneIds) {
+            DroneTelemetryDto dto = loaded.get(droneId.toString());
+            Entry entry = new Entry(dto != null ? LatestTelemetry.of(dto) : null, expiresAt);
+            entries.compute(droneId, (id, current) ->
+                    current == null || current.isExpired() ? replace(current, entry) : current);
+        }
+        return true;
+    }
+
+    private long expiry() {
+        return System.nanoTime() + coldTtlMs * 1_000_000L;
+    }
+
+    /**
+     * Account for an entry being replaced; called inside the map's atomic update of the drone
+     *
+     * @return the new entry
+     */
+    private Entry replace(Entry current, Entry next) {
+        boolean wasLow = isLowBattery(current);
+        boolean low = isLowBattery(next);
+        if (low != wasLow) {
+            lowBattery.addAndGet(low ? 1 : -1);
+        }
+        return next;
+    }
+
+    private boolean isLowBattery(Entry entry) {
+        // NaN (未上报电量) 不计入
+        return entry != null && entry.telemetry != null && entry.telemetry.getBatteryLevel() < lowBatteryThreshold;
+    }
+
+    private static final class Entry {
+
+        private final LatestTelemetry telemetry;
+        /**
+         * {@link System#nanoTime()} the entry must be reloaded at; pushed forward by every ingested sample
+         */
+        private final long expiresAt;
+
+        private Entry(LatestTelemetry telemetry, long expiresAt) {
+            this.telemetry = telemetry;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.huang.backend.drone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes the raw telemetry of drones within a time range as NDJSON or CSV, row by row as
+ * {@link DroneInfluxDBService#streamTelemetry} streams it, so exports of any length use
+ * constant memory
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryExportService {
+
+    private static final String CSV_HEADER = "timestamp,drone_id,battery_level,battery_voltage,latitude,longitude,"
+            + "altitude,speed,heading,satellites,signal_strength,flight_mode,temperature\n";
+
+    private final DroneInfluxDBService influxDBService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Export formats with their content type
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+    }
+
+    /**
+     * Write the telemetry of the given drones to an output stream
+     *
+     * @param droneIds the drone UUIDs
+     * @param start the start time
+     * @param end the end time
+     * @param format the output format
+     * @param out the stream to write to; it is flushed but not closed
+     * @return the number of exported rows
+     * @throws IOException if the query or writing fails
+     */
+    public long export(List<UUID> droneIds, Instant start, Instant end, Format format, OutputStream out)
+            throws IOException {
+        List<String> ids = droneIds.stream().map(UUID::toString).toList();
+        long rows;
+        if (format == Format.CSV) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            rows = influxDBService.streamTelemetry(ids, start, end, row -> writeCsv(writer, row));
+            writer.flush();
+        } else {
+            OutputStream buffered = new BufferedOutputStream(out);
+            rows = influxDBService.streamTelemetry(ids, start, end, row -> {
+                buffered.write(objectMapper.writeValueAsBytes(row));
+                buffered.write('\n');
+            });
+            buffered.flush();
+        }
+        log.info("导出了 {} 架无人机的 {} 条遥测数据 ({} ~ {}, {})", ids.size(), rows, start, end, format);
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, DroneTelemetryDto row) throws IOException {
+        writer.write(row.getTimestamp() != null ? row.getTimestamp().toString() : "");
+        writer.write(',');
+        writer.write(row.getDroneId());
+        writer.write(',');
+        writeValue(writer, row.getBatteryLevel());
+        writer.write(',');
+        writeValue(writer, row.getBatteryVoltage());
+        writer.write(',');
+        writeValue(writer, row.getLatitude());
+        writer.write(',');
+        writeValue(writer, row.getLongitude());
+        writer.write(',');
+        writeValue(writer, row.getAltitude());
+        writer.write(',');
+        writeValue(writer, row.getSpeed());
+        writer.write(',');
+        writeValue(writer, row.getHeading());
+        writer.write(',');
+        writeValue(writer, row.getSatellites());
+        writer.write(',');
+        writeValue(writer, row.getSignalStrength());
+        writer.write(',');
+        writeText(writer, row.getFlightMode());
+        writer.write(',');
+        writeValue(writer, row.getTemperature());
+        writer.write('\n');
+    }
+
+    private static void writeValue(Writer writer, Number value) throws IOException {
+        if (value != null) {
+            writer.write(value.toString());
+        }
+    }
+
+    private static void writeText(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,248 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.model.TelemetryChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through cache of raw telemetry history, split per drone into fixed time buckets of
+ * {@code drone.telemetry.history.cache.bucket-ms}.
+ * <p>
+ * A bucket is closed once its end is more than {@code close-delay-ms} in the past; by then all
+ * of its telemetry is expected to have been written. Closed buckets are loaded from InfluxDB once,
+ * whole, and kept as an immutable {@link TelemetryChunk}, so reopening the same track (incident
+ * review, replay) reads memory instead of InfluxDB. Consecutive uncached buckets are loaded with
+ * one range query of up to {@code max-buckets-per-load} buckets, and a request makes at most
+ * {@code max-loads-per-request} such loads; the rest of a longer (typically sparse) range, and the
+ * part that falls in buckets that are still open, is queried directly. Chunks are evicted least
+ * recently used once all cached chunks together hold more than {@code max-rows} rows.
+ * <p>
+ * Telemetry written after its bucket was cached (e.g. replayed from the write spool after a long
+ * InfluxDB outage) is not seen until the chunk is evicted; {@link #evict(String)} drops a drone's
+ * chunks explicitly.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TelemetryHistoryCache {
+
+    private final DroneInfluxDBService influxDBService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${drone.telemetry.history.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${drone.telemetry.history.cache.bucket-ms:600000}")
+    private long bucketMs;
+
+    @Value("${drone.telemetry.history.cache.close-delay-ms:300000}")
+    private long closeDelayMs;
+
+    @Value("${drone.telemetry.history.cache.max-rows:5000000}")
+    private long maxRows;
+
+    @Value("${drone.telemetry.history.cache.max-buckets-per-load:36}")
+    private int maxBucketsPerLoad;
+
+    @Value("${drone.telemetry.history.cache.max-loads-per-request:4}")
+    private int maxLoadsPerRequest;
+
+    @Value("${drone.telemetry.history.max-points:2000}")
+    private int maxHistoryPoints;
+
+    /**
+     * Chunks in access order; guarded by its own monitor
+     */
+    private final LinkedHashMap<ChunkKey, TelemetryChunk> chunks = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long cachedRows;
+
+    private Counter hits;
+    private Counter misses;
+
+    private record ChunkKey(String droneId, long bucketStart) {
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = meterRegistry.counter("drone.telemetry.history.cache.hits");
+        misses = meterRegistry.counter("drone.telemetry.history.cache.misses");
+        Gauge.builder("drone.telemetry.history.cache.rows", this, TelemetryHistoryCache::cachedRows)
+                .description("Telemetry rows held by cached history chunks")
+                .register(meterRegistry);
+        Gauge.builder("drone.telemetry.history.cache.chunks", this, TelemetryHistoryCache::chunkCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get historical telemetry data for a drone within a time range, reading closed buckets from
+     * the cache
+     *
+     * @param droneId the ID of the drone
+     * @param start the start time
+     * @param end the end time
+     * @param limit the maximum number of records to return (capped by drone.telemetry.history.max-points)
+     * @return the first {@code limit} telemetry data points within the range, in time order
+     */
+    public List<DroneTelemetryDto> getHistory(String droneId, Instant start, Instant end, int limit) {
+        if (!enabled) {
+            return influxDBService.getTelemetryHistory(droneId, start, end, limit);
+        }
+        limit = Math.min(limit, maxHistoryPoints);
+        List<DroneTelemetryDto> history = new ArrayList<>();
+        if (limit <= 0 || !end.isAfter(start)) {
+            return history;
+        }
+
+        long openFrom = System.currentTimeMillis() - closeDelayMs;
+        long endMs = end.toEpochMilli();
+        long bucket = Math.floorDiv(start.toEpochMilli(), bucketMs) * bucketMs;
+        int loads = 0;
+        while (history.size() < limit && bucket < endMs) {
+            TelemetryChunk cached = bucket + bucketMs > openFrom ? null : cached(droneId, bucket);
+            if (cached == null && (bucket + bucketMs > openFrom || loads >= maxLoadsPerRequest)) {
+                // 从这个桶开始的数据可能还在写入，或本次请求已加载了足够多的桶（稀疏的长时间范围），直接查询InfluxDB
+                Instant from = Instant.ofEpochMilli(bucket).isAfter(start) ? Instant.ofEpochMilli(bucket) : start;
+                history.addAll(influxDBService.getTelemetryHistory(droneId, from, end, limit - history.size()));
+                break;
+            }
+            List<TelemetryChunk> run;
+            if (cached != null) {
+                run = List.of(cached);
+            } else {
+                try {
+                    run = load(droneId, bucket, endMs, openFrom);
+                } catch (RuntimeException e) {
+                    log.error("加载无人机 {} 的历史遥测数据失败: {}", droneId, e.getMessage(), e);
+                    return new ArrayList<>();
+                }
+                loads++;
+            }
+            for (TelemetryChunk chunk : run) {
+                chunk.appendTo(history, droneId, start, end, limit - history.size());
+                bucket += bucketMs;
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Drop every cached chunk of a drone, e.g. when its telemetry is deleted
+     *
+     * @param droneId the ID of the drone
+     */
+    public void evict(String droneId) {
+        synchronized (chunks) {
+            Iterator<Map.Entry<ChunkKey, TelemetryChunk>> iterator = chunks.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ChunkKey, TelemetryChunk> entry = iterator.next();
+                if (entry.getKey().droneId().equals(droneId)) {
+                    cachedRows -= weight(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private TelemetryChunk cached(String droneId, long bucketStart) {
+        synchronized (chunks) {
+            TelemetryChunk cached = chunks.get(new ChunkKey(droneId, bucketStart));
+            if (cached != null) {
+                hits.increment();
+            }
+            return cached;
+        }
+    }
+
+    private boolean isCached(String droneId, long bucketStart) {
+        synchronized (chunks) {
+            return chunks.containsKey(new ChunkKey(droneId, bucketStart));
+        }
+    }
+
+    /**
+     * Load the consecutive uncached closed buckets from {@code runStart} up to {@code end}, at most
+     * {@code max-buckets-per-load} of them, with one range query and cache each bucket as its own
+     * chunk
+     *
+     * @return the chunks of the run, in time order
+     */
+    private List<TelemetryChunk> load(String droneId, long runStart, long end, long openFrom) {
+        long runEnd = runStart + bucketMs;
+        while ((runEnd - runStart) / bucketMs < maxBucketsPerLoad && runEnd < end
+                && runEnd + bucketMs <= openFrom && !isCached(droneId, runEnd)) {
+            runEnd += bucketMs;
+        }
+        int buckets = (int) ((runEnd - runStart) / bucketMs);
+        misses.increment(buckets);
+        // 在锁外查询；同一个桶被并发加载时以后放入的为准，内容相同
+        List<DroneTelemetryDto> rows = influxDBService.getTelemetryRange(droneId,
+                Instant.ofEpochMilli(runStart), Instant.ofEpochMilli(runEnd));
+
+        List<TelemetryChunk> run = new ArrayList<>(buckets);
+        int from = 0;
+        for (long bucketStart = runStart; bucketStart < runEnd; bucketStart += bucketMs) {
+            int to = from;
+            while (to < rows.size() && rows.get(to).getTimestamp().toEpochMilli() < bucketStart + bucketMs) {
+                to++;
+            }
+            TelemetryChunk chunk = TelemetryChunk.of(rows.subList(from, to));
+            put(new ChunkKey(droneId, bucketStart), chunk);
+            run.add(chunk);
+            from = to;
+        }
+        return run;
+    }
+
+    private void put(ChunkKey key, TelemetryChunk chunk) {
+        synchronized (chunks) {
+            TelemetryChunk previous = chunks.put(key, chunk);
+            if (previous != null) {
+                cachedRows -= weight(previous);
+            }
+            cachedRows += weight(chunk);
+            Iterator<Map.Entry<ChunkKey, TelemetryChunk>> eldest = chunks.entrySet().iterator();
+            while (cachedRows > maxRows && eldest.hasNext()) {
+                Map.Entry<ChunkKey, TelemetryChunk> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) {
+                    break;
+                }
+                cachedRows -= weight(evicted.getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Empty chunks still cost an entry
+     */
+    private static long weight(TelemetryChunk chunk) {
+        return Math.max(1, chunk.size());
+    }
+
+    long cachedRows() {
+        synchronized (chunks) {
+            return cachedRows;
+        }
+    }
+
+    int chunkCount() {
+        synchronized (chunks) {
+            return chunks.size();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.model.TelemetryRollup;
+import com.huang.backend.drone.util.FluxTemplate;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.TasksApi;
+import com.influxdb.client.TasksQuery;
+import com.influxdb.client.domain.Bucket;
+import com.influxdb.client.domain.BucketRetentionRules;
+import com.influxdb.client.domain.Task;
+import com.influxdb.client.domain.TaskStatusType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provisions the {@link TelemetryRollup} buckets and the InfluxDB tasks that fill them, and
+ * picks the rollup a history query can be answered from.
+ * <p>
+ * A rollup only covers time from shortly before its task was created (there is no backfill), so
+ * it is only used for ranges that start after that and within its retention; everything else
+ * keeps going to the raw bucket. The newest window of a rollup becomes available
+ * {@link TelemetryRollup#getOffset()} after it closed, so the end of a range that reaches past
+ * {@link #coveredUntil(TelemetryRollup)} has to be read from the raw bucket.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryRollupService {
+
+    private static final String STATS = "union(tables: [" +
+            "numeric |> aggregateWindow(every: ${every}, fn: mean, createEmpty: false, timeSrc: \"_start\") " +
+            "|> set(key: \"stat\", value: \"mean\"), " +
+            "numeric |> aggregateWindow(every: ${every}, fn: min, createEmpty: false, timeSrc: \"_start\") " +
+            "|> set(key: \"stat\", value: \"min\"), " +
+            "numeric |> aggregateWindow(every: ${every}, fn: max, createEmpty: false, timeSrc: \"_start\") " +
+            "|> set(key: \"stat\", value: \"max\"), " +
+            "data |> aggregateWindow(every: ${every}, fn: last, createEmpty: false, timeSrc: \"_start\") " +
+            "|> set(key: \"stat\", value: \"last\")]) ";
+
+    private static final String TASK_HEADER = "import \"date\"\n" +
+            "option task = {name: ${name}, every: ${every}, offset: ${offset}}\n" +
+            // 只处理已结束的窗口，并重算最近几个窗口以包含迟到的数据；写入同一时间点会覆盖旧值
+            "stop = date.truncate(t: now(), unit: ${every})\n" +
+            "start = date.sub(d: ${lookback}, from: stop)\n";
+
+    /** Minute rollup, from the raw bucket */
+    private static final FluxTemplate RAW_TASK = FluxTemplate.compile("rollup-task-raw",
+            TASK_HEADER +
+            "data = from(bucket: ${source}) " +
+            "|> range(start: start, stop: stop) " +
+            "|> filter(fn: (r) => r._measurement == \"drone_telemetry\")\n" +
+            "numeric = data |> filter(fn: (r) => r._field != \"flight_mode\")\n" +
+            STATS +
+            "|> to(bucket: ${target}, tagColumns: [\"drone_id\", \"stat\"])");
+
+    /** Coarser rollups, from the next finer rollup: min of mins, max of maxes, mean of means, last of lasts */
+    private static final FluxTemplate ROLLUP_TASK = FluxTemplate.compile("rollup-task-rollup",
+            TASK_HEADER +
+            "data = from(bucket: ${source}) " +
+            "|> range(start: start, stop: stop) " +
+            "|> filter(fn: (r) => r._measurement == \"drone_telemetry\")\n" +
+            "union(tables: [" +
+            "data |> filter(fn: (r) => r.stat == \"mean\") " +
+            "|> aggregateWindow(every: ${every}, fn: mean, createEmpty: false, timeSrc: \"_start\"), " +
+            "data |> filter(fn: (r) => r.stat == \"min\") " +
+            "|> aggregateWindow(every: ${every}, fn: min, createEmpty: false, timeSrc: \"_start\"), " +
+            "data |> filter(fn: (r) => r.stat == \"max\") " +
+            "|> aggregateWindow(every: ${every}, fn: max, createEmpty: false, timeSrc: \"_start\"), " +
+            "data |> filter(fn: (r) => r.stat == \"last\") " +
+            "|> aggregateWindow(every: ${every}, fn: last, createEmpty: false, timeSrc: \"_start\")]) " +
+            "|> to(bucket: ${target}, tagColumns: [\"drone_id\", \"stat\"])");
+
+    private final InfluxDBClient influxDBClient;
+
+    @Value("${influxdb.bucket}")
+    private String bucket;
+
+    @Value("${influxdb.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${influxdb.rollup.minute-retention-days:90}")
+    private int minuteRetentionDays;
+
+    @Value("${influxdb.rollup.hour-retention-days:0}")
+    private int hourRetentionDays;
+
+    /**
+     * First instant each provisioned rollup holds complete data for
+     */
+    private final Map<TelemetryRollup, Instant> coveredFrom = new ConcurrentHashMap<>();
+
+    /**
+     * Create the rollup buckets and tasks that do not exist yet, and update tasks whose
+     * script has changed. Failures are logged; queries then keep using the raw bucket.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void provision() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Bucket raw = influxDBClient.getBucketsApi().findBucketByName(bucket);
+            if (raw == null) {
+                log.warn("InfluxDB桶 {} 不存在，跳过降采样汇总的创建", bucket);
+                return;
+            }
+            String source = bucket;
+            Instant sourceCoveredFrom = Instant.EPOCH;
+            for (TelemetryRollup rollup : TelemetryRollup.values()) {
+                String target = bucketName(rollup);
+                ensureBucket(target, retentionDays(rollup), raw.getOrgID());
+                FluxTemplate template = rollup == TelemetryRollup.MINUTE ? RAW_TASK : ROLLUP_TASK;
+                String flux = template.render(Map.of(
+                        "name", rollup.getTaskName(),
+                        "every", rollup.getResolution(),
+                        "offset", rollup.getOffset(),
+                        "lookback", rollup.getLookback(),
+                        "source", source,
+                        "target", target));
+                Instant created = ensureTask(rollup.getTaskName(), flux, raw.getOrgID());
+                Instant covered = ceil(created.isAfter(sourceCoveredFrom) ? created : sourceCoveredFrom,
+                        rollup.getResolution());
+                coveredFrom.put(rollup, covered);
+                log.info("降采样汇总 {} 可用于 {} 之后的数据", target, covered);
+                source = target;
+                sourceCoveredFrom = covered;
+            }
+        } catch (Exception e) {
+            log.warn("创建InfluxDB降采样汇总失败，历史查询将使用原始数据: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Pick the coarsest rollup that can answer a query, at least up to
+     * {@link #coveredUntil(TelemetryRollup)}
+     *
+     * @param start the start of the queried range
+     * @param resolution the window length the query aggregates to
+     * @return the rollup, or empty to query the raw bucket
+     */
+    public Optional<TelemetryRollup> route(Instant start, Duration resolution) {
+        TelemetryRollup[] rollups = TelemetryRollup.values();
+        // 从最粗的汇总开始
+        for (int i = rollups.length - 1; i >= 0; i--) {
+            TelemetryRollup rollup = rollups[i];
+            Instant covered = coveredFrom.get(rollup);
+            if (covered == null || resolution.compareTo(rollup.getResolution()) < 0 || start.isBefore(covered)
+                    || !coveredUntil(rollup).isAfter(start)) {
+                continue;
+            }
+            int retentionDays = retentionDays(rollup);
+            if (retentionDays > 0 && start.isBefore(Instant.now().minus(Duration.ofDays(retentionDays)))) {
+                continue;
+            }
+            return Optional.of(rollup);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * End of the newest window of a rollup that is certainly written: its task ran at least one
+     * window length ago
+     *
+     * @param rollup a rollup
+     * @return the instant up to which the rollup holds complete data
+     */
+    public Instant coveredUntil(TelemetryRollup rollup) {
+        long resolutionMs = rollup.getResolution().toMillis();
+        long written = System.currentTimeMillis() - resolutionMs - rollup.getOffset().toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(written, resolutionMs) * resolutionMs);
+    }
+
+    /**
+     * @param rollup a rollup
+     * @return the name of its bucket
+     */
+    public String bucketName(TelemetryRollup rollup) {
+        return bucket + rollup.getBucketSuffix();
+    }
+
+    private int retentionDays(TelemetryRollup rollup) {
+        return rollup == TelemetryRollup.MINUTE ? minuteRetentionDays : hourRetentionDays;
+    }
+
+    private void ensureBucket(String name, int retentionDays, String orgId) {
+        if (influxDBClient.getBucketsApi().findBucketByName(name) != null) {
+            return;
+        }
+        BucketRetentionRules retention = new BucketRetentionRules()
+                .everySeconds((int) Duration.ofDays(retentionDays).toSeconds());
+        influxDBClient.getBucketsApi().createBucket(name, retention, orgId);
+        log.info("已创建InfluxDB桶 {} (保留 {} 天)", name, retentionDays > 0 ? retentionDays : "永久");
+    }
+
+    /**
+     * @return when the task was created
+     */
+    private Instant ensureTask(String name, String flux, String orgId) {
+        TasksApi tasksApi = influxDBClient.getTasksApi();
+        TasksQuery query = new TasksQuery();
+        query.setName(name);
+        query.setOrgID(orgId);
+        List<Task> existing = tasksApi.findTasks(query);
+        if (!existing.isEmpty()) {
+            Task task = existing.get(0);
+            if (!flux.equals(task.getFlux())) {
+                tasksApi.updateTask(task.flux(flux));
+                log.info("已更新InfluxDB任务 {}", name);
+            }
+            return task.getCreatedAt() != null ? task.getCreatedAt().toInstant() : Instant.now();
+        }
+        Task created = tasksApi.createTask(new Task()
+                .name(name)
+                .orgID(orgId)
+                .flux(flux)
+                .status(TaskStatusType.ACTIVE));
+        log.info("已创建InfluxDB任务 {}", name);
+        return created.getCreatedAt() != null ? created.getCreatedAt().toInstant() : Instant.now();
+    }
+
+    private static Instant ceil(Instant time, Duration unit) {
+        long unitMs = unit.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(time.toEpochMilli() + unitMs - 1, unitMs) * unitMs);
+    }
+}
@@ -0,0 +1,169 @@
+package com.huang.backend.drone.util;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Flux query with named {@code ${name}} parameters, parsed once and rendered per call.
+ * <p>
+ * Parameters are bound as Flux literals, never as raw text: strings are quoted and escaped,
+ * instants become time literals, durations become millisecond duration literals and collections
+ * become arrays. A drone ID such as {@code x") |> drop() //} therefore stays a string value and
+ * cannot change the query. Placeholders must stand where a value is expected, not inside a
+ * string literal of the template.
+ */
+public final class FluxTemplate {
+
+    private static final String OPEN = "${";
+
+    private final String name;
+    /** Text before each parameter, plus the text after the last one */
+    private final String[] fragments;
+    private final String[] parameters;
+    private final int fragmentLength;
+
+    private FluxTemplate(String name, String[] fragments, String[] parameters) {
+        this.name = name;
+        this.fragments = fragments;
+        this.parameters = parameters;
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.fragmentLength = length;
+    }
+
+    /**
+     * Parse a template
+     *
+     * @param name the template name, used to tag its query metrics
+     * @param text the Flux query with {@code ${name}} placeholders
+     * @return the parsed template
+     * @throws IllegalArgumentException if a placeholder is not closed or has no name
+     */
+    public static FluxTemplate compile(String name, String text) {
+        List<String> fragments = new ArrayList<>();
+        List<String> parameters = new ArrayList<>();
+        int position = 0;
+        int open;
+        while ((open = text.indexOf(OPEN, position)) >= 0) {
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed parameter in Flux template " + name + " at " + open);
+            }
+            String parameter = text.substring(open + OPEN.length(), close).trim();
+            if (parameter.isEmpty()) {
+                throw new IllegalArgumentException("Empty parameter name in Flux template " + name + " at " + open);
+            }
+            fragments.add(text.substring(position, open));
+            parameters.add(parameter);
+            position = close + 1;
+        }
+        fragments.add(text.substring(position));
+        return new FluxTemplate(name, fragments.toArray(new String[0]), parameters.toArray(new String[0]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the parameter names, in order of first use
+     */
+    public Set<String> getParameters() {
+        return new LinkedHashSet<>(List.of(parameters));
+    }
+
+    /**
+     * Render the query with the given parameter values
+     *
+     * @param values the value of every parameter
+     * @return the Flux query
+     * @throws IllegalArgumentException if a parameter is missing or its type cannot be bound
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder query = new StringBuilder(fragmentLength + parameters.length * 32);
+        for (int i = 0; i < parameters.length; i++) {
+            query.append(fragments[i]);
+            Object value = values.get(parameters[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for parameter " + parameters[i]
+                        + " of Flux template " + name);
+            }
+            appendLiteral(query, value);
+        }
+        return query.append(fragments[parameters.length]).toString();
+    }
+
+    /**
+     * Append a value as a Flux literal
+     */
+    static void appendLiteral(StringBuilder query, Object value) {
+        if (value instanceof CharSequence text) {
+            appendString(query, text);
+        } else if (value instanceof Instant instant) {
+            query.append(instant);
+        } else if (value instanceof Duration duration) {
+            query.append(duration.toMillis()).append("ms");
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            query.append(value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isFinite(number)) {
+                throw new IllegalArgumentException("Cannot bind " + value + " as a Flux float");
+            }
+            // Flux没有科学计数法字面量
+            String plain = BigDecimal.valueOf(number).toPlainString();
+            query.append(plain.indexOf('.') < 0 ? plain + ".0" : plain);
+        } else if (value instanceof Boolean) {
+            query.append(value);
+        } else if (value instanceof Collection<?> items) {
+            query.append('[');
+            Iterator<?> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                Object item = iterator.next();
+                if (item == null) {
+                    throw new IllegalArgumentException("Cannot bind a null array element");
+                }
+                appendLiteral(query, item);
+                if (iterator.hasNext()) {
+                    query.append(", ");
+                }
+            }
+            query.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot bind " + value.getClass().getName() + " as a Flux literal");
+        }
+    }
+
+    private static void appendString(StringBuilder query, CharSequence text) {
+        query.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> query.append("\\\"");
+                case '\\' -> query.append("\\\\");
+                // "${" 在Flux字符串中是插值
+                case '$' -> query.append("\\$");
+                case '\n' -> query.append("\\n");
+                case '\r' -> query.append("\\r");
+                case '\t' -> query.append("\\t");
+                default -> query.append(c);
+            }
+        }
+        query.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
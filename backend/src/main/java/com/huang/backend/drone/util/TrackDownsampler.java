@@ -0,0 +1,109 @@
+package com.huang.backend.drone.util;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Largest-triangle-three-buckets (LTTB) downsampling of a flight track.
+ * <p>
+ * The first and last samples are kept; the samples in between are split into equal buckets and
+ * from each bucket the sample forming the largest triangle with the previously kept sample and the
+ * average of the next bucket is kept. The triangle is measured on the (longitude, latitude) plane,
+ * so sharp turns survive while straight legs collapse to a few points. Samples without a position
+ * never win a bucket that has a positioned sample.
+ */
+public class TrackDownsampler {
+
+    private TrackDownsampler() {
+    }
+
+    /**
+     * Reduce a time-ordered track to at most {@code threshold} samples
+     *
+     * @param samples the samples, ordered by time
+     * @param threshold the maximum number of samples to return
+     * @return the kept samples, in time order
+     */
+    public static List<DroneTelemetryDto> lttb(List<DroneTelemetryDto> samples, int threshold) {
+        int size = samples.size();
+        if (threshold >= size) {
+            return samples;
+        }
+        if (threshold < 3) {
+            // 桶算法至少需要首、尾和一个中间点
+            return threshold <= 0 ? new ArrayList<>()
+                    : threshold == 1 ? List.of(samples.get(size - 1))
+                    : List.of(samples.get(0), samples.get(size - 1));
+        }
+
+        List<DroneTelemetryDto> kept = new ArrayList<>(threshold);
+        kept.add(samples.get(0));
+        // 首尾两个点之外的点分成 threshold - 2 个桶
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int previous = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int from = (int) Math.floor(bucket * bucketSize) + 1;
+            int to = Math.min((int) Math.floor((bucket + 1) * bucketSize) + 1, size - 1);
+
+            // Average of the next bucket (the last sample for the final bucket)
+            int nextFrom = to;
+            int nextTo = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            int count = 0;
+            for (int i = nextFrom; i < nextTo; i++) {
+                DroneTelemetryDto sample = samples.get(i);
+                if (hasPosition(sample)) {
+                    avgX += sample.getLongitude();
+                    avgY += sample.getLatitude();
+                    count++;
+                }
+            }
+            if (count > 0) {
+                avgX /= count;
+                avgY /= count;
+            }
+
+            DroneTelemetryDto anchor = samples.get(previous);
+            int selected = from;
+            double maxArea = -1;
+            for (int i = from; i < to; i++) {
+                double area = area(anchor, samples.get(i), avgX, avgY, count > 0);
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = i;
+                }
+            }
+            kept.add(samples.get(selected));
+            previous = selected;
+        }
+
+        kept.add(samples.get(size - 1));
+        return kept;
+    }
+
+    /**
+     * Twice the area of the triangle (anchor, candidate, next-bucket average); 0 when the anchor or
+     * the next bucket has no position, and below 0 for a candidate without position
+     */
+    private static double area(DroneTelemetryDto anchor, DroneTelemetryDto candidate,
+                               double avgX, double avgY, boolean hasAverage) {
+        if (!hasPosition(candidate)) {
+            return -0.5;
+        }
+        if (!hasPosition(anchor) || !hasAverage) {
+            return 0;
+        }
+        double ax = anchor.getLongitude();
+        double ay = anchor.getLatitude();
+        return Math.abs((ax - avgX) * (candidate.getLatitude() - ay)
+                - (ax - candidate.getLongitude()) * (avgY - ay));
+    }
+
+    private static boolean hasPosition(DroneTelemetryDto sample) {
+        return sample.getLatitude() != null && sample.getLongitude() != null;
+    }
+}
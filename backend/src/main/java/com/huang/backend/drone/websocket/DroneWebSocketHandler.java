@@ -2,10 +2,10 @@ package com.huang.backend.drone.websocket;
 
 import com.huang.backend.drone.dto.DroneTelemetryDto;
 import com.huang.backend.drone.dto.DroneStatusDto;
-import com.huang.backend.drone.entity.Drone;
-import com.huang.backend.drone.repository.DroneRepository;
-import com.huang.backend.drone.service.DroneInfluxDBService;
+import com.huang.backend.drone.model.DroneSnapshot;
+import com.huang.backend.drone.service.DroneRegistry;
 import com.huang.backend.drone.service.DroneStatusService;
+import com.huang.backend.drone.service.LatestTelemetryStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -17,7 +17,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.Optional;
 
 /**
  * WebSocket handler for broadcasting drone position updates to clients
@@ -29,8 +28,8 @@ public class DroneWebSocketHandler {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final DroneStatusService droneStatusService;
-    private final DroneInfluxDBService droneInfluxDBService;
-    private final DroneRepository droneRepository;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final DroneRegistry droneRegistry;
     
     // Topic for drone position updates
     private static final String TOPIC_DRONE_POSITIONS = "/topic/drones/positions";
@@ -56,8 +55,7 @@ public class DroneWebSocketHandler {
             // Collect telemetry data for each drone
             List<Map<String, Object>> dronePositions = drones.stream()
                 .map(drone -> {
-                    // 使用UUID而不是序列号来查询InfluxDB，因为存储时使用的是UUID
-                    DroneTelemetryDto telemetry = droneInfluxDBService.getLatestTelemetry(drone.getDroneId().toString());
+                    DroneTelemetryDto telemetry = latestTelemetryStore.getLatest(drone.getDroneId()).orElse(null);
                     if (telemetry != null) {
                         Map<String, Object> positionData = new HashMap<>();
                         positionData.put("droneId", drone.getDroneId());
@@ -102,14 +100,6 @@ public class DroneWebSocketHandler {
                 return;
             }
             
-            // 查找无人机记录以获取最新状态
-            Optional<Drone> droneOpt = null;
-            try {
-                droneOpt = droneRepository.findById(droneId);
-            } catch (Exception e) {
-                log.warn("Error finding drone with ID {}: {}", droneId, e.getMessage());
-            }
-            
             // Create position data
             Map<String, Object> positionData = new HashMap<>();
             positionData.put("droneId", droneId.toString());
@@ -125,9 +115,11 @@ public class DroneWebSocketHandler {
             // 添加status字段，优先使用遥测数据中的status
             if (telemetry.getStatus() != null) {
                 positionData.put("status", telemetry.getStatus());
-            } else if (droneOpt != null && droneOpt.isPresent()) {
-                // 如果遥测中没有status字段，使用数据库中的状态
-                positionData.put("status", droneOpt.get().getCurrentStatus().name());
+            } else {
+                // 如果遥测中没有status字段，使用注册表中的状态
+                droneRegistry.get(droneId)
+                    .map(DroneSnapshot::getStatus)
+                    .ifPresent(status -> positionData.put("status", status.name()));
             }
             
             // Send to topic for this specific drone
@@ -2,6 +2,7 @@ package com.huang.backend.geofence.service;
 
 import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
 import com.huang.backend.exception.BusinessException;
 import com.huang.backend.exception.ResourceNotFoundException;
 import com.huang.backend.geofence.dto.*;
@@ -38,6 +39,7 @@ public class GeofenceServiceImpl implements GeofenceService {
 
     private final GeofenceRepository geofenceRepository;
     private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
     private final GeofenceViolationRepository violationRepository;
     private final GeofenceMapper geofenceMapper;
     private final ViolationMapper violationMapper;
@@ -149,6 +151,7 @@ public class GeofenceServiceImpl implements GeofenceService {
             }
             
             // Clear existing associations
+            evictDrones(updatedGeofence.getDrones());
             updatedGeofence.getDrones().clear();
             
             // Bind new drones only if the list is not empty
@@ -173,9 +176,9 @@ public class GeofenceServiceImpl implements GeofenceService {
         log.info("Deleting geofence: {}", geofenceId);
         
         // Check if geofence exists
-        if (!geofenceRepository.existsById(geofenceId)) {
-            throw new ResourceNotFoundException("未找到指定地理围栏");
-        }
+        Geofence geofence = geofenceRepository.findByIdWithDrones(geofenceId)
+                .orElseThrow(() -> new ResourceNotFoundException("未找到指定地理围栏"));
+        evictDrones(geofence.getDrones());
         
         // Delete the geofence
         geofenceRepository.deleteById(geofenceId);
@@ -234,6 +237,7 @@ public class GeofenceServiceImpl implements GeofenceService {
         // Remove the association
         geofence.getDrones().remove(drone);
         geofenceRepository.save(geofence);
+        droneRegistry.evict(droneId);
         
         return GeofenceResponseDto.builder()
                 .success(true)
@@ -376,6 +380,9 @@ public class GeofenceServiceImpl implements GeofenceService {
                 throw new BusinessException(String.format("%s不需要关联无人机，只有限制区才能关联无人机", typeName));
             }
             
+            // 绑定关系变化后，让无人机注册表重新加载这些无人机
+            droneRegistry.evictAll(droneIds);
+
             // 优化：一次性查询所有需要的无人机，避免 N+1 查询问题
             List<Drone> drones = droneRepository.findAllById(droneIds);
             log.info("Found {} drones out of {} requested", drones.size(), droneIds.size());
@@ -427,4 +434,13 @@ public class GeofenceServiceImpl implements GeofenceService {
                 return "未知类型";
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Evict drones whose geofence assignments change from the drone registry
+     */
+    private void evictDrones(Set<Drone> drones) {
+        if (drones != null) {
+            drones.forEach(drone -> droneRegistry.evict(drone.getDroneId()));
+        }
+    }
+}
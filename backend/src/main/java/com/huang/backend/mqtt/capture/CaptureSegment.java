@@ -0,0 +1,174 @@
+package com.huang.backend.mqtt.capture;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * On-disk layout of an MQTT capture segment, and a reader for it.
+ * <pre>
+ * header  (16 bytes)   int magic 'DQC1' | int version | long created (epoch ms)
+ * record  (repeated)   int length | long arrival (epoch ns) | short topic length | topic (UTF-8) | payload
+ * </pre>
+ * {@code length} counts the bytes after the length field. Segments are preallocated and
+ * zero-filled, so a length of 0 marks the end of the written records. The writer stores the
+ * length last, which means a record torn by a crash reads as the end of the segment.
+ * All integers are big-endian.
+ */
+public final class CaptureSegment {
+
+    public static final int MAGIC = 0x44514331;
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 16;
+
+    /** Length field of a record */
+    static final int LENGTH_FIELD = Integer.BYTES;
+
+    /** Arrival time and topic length, the fixed part of a record after the length field */
+    static final int RECORD_FIXED = Long.BYTES + Short.BYTES;
+
+    static final String FILE_PREFIX = "capture-";
+    static final String FILE_SUFFIX = ".seg";
+
+    private CaptureSegment() {
+    }
+
+    /**
+     * @param index the segment number
+     * @return the file name of the segment, which sorts in segment order
+     */
+    static String fileName(long index) {
+        return String.format("%s%08d%s", FILE_PREFIX, index, FILE_SUFFIX);
+    }
+
+    /**
+     * @param file a segment file
+     * @return the segment number, or -1 if the name is not a segment name
+     */
+    static long indexOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * List the segments of a capture directory in the order they were written
+     *
+     * @param directory the capture directory
+     * @return the segment files, oldest first; empty if the directory does not exist
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> indexOf(file) >= 0)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Read the records of a segment through a read-only memory mapping
+     *
+     * @param file the segment file
+     * @return a reader positioned at the first record
+     * @throws IOException if the file cannot be mapped or is not a capture segment
+     */
+    public static Reader open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an MQTT capture segment: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported capture segment version " + version + ": " + file);
+        }
+        buffer.getLong();
+        return new Reader(buffer);
+    }
+
+    /**
+     * Iterates over the records of one segment
+     */
+    public static final class Reader implements Iterator<CapturedMessage> {
+
+        private final ByteBuffer buffer;
+        private CapturedMessage next;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.next = readNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public CapturedMessage next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            CapturedMessage current = next;
+            next = readNext();
+            return current;
+        }
+
+        /**
+         * Read all remaining records
+         */
+        public List<CapturedMessage> readAll() {
+            List<CapturedMessage> messages = new ArrayList<>();
+            forEachRemaining(messages::add);
+            return messages;
+        }
+
+        private CapturedMessage readNext() {
+            if (buffer.remaining() < LENGTH_FIELD + RECORD_FIXED) {
+                return null;
+            }
+            int length = buffer.getInt();
+            if (length < RECORD_FIXED || length > buffer.remaining()) {
+                return null;
+            }
+            try {
+                long arrival = buffer.getLong();
+                int topicLength = Short.toUnsignedInt(buffer.getShort());
+                int payloadLength = length - RECORD_FIXED - topicLength;
+                if (payloadLength < 0) {
+                    return null;
+                }
+                byte[] topic = new byte[topicLength];
+                buffer.get(topic);
+                byte[] payload = new byte[payloadLength];
+                buffer.get(payload);
+                return new CapturedMessage(arrival, new String(topic, StandardCharsets.UTF_8), payload);
+            } catch (BufferUnderflowException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.huang.backend.mqtt.capture;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One raw MQTT message read back from a capture segment
+ */
+@Getter
+@RequiredArgsConstructor
+public class CapturedMessage {
+
+    /**
+     * Wall-clock arrival time in nanoseconds since the epoch
+     */
+    private final long arrivalEpochNanos;
+
+    /**
+     * The topic the message arrived on
+     */
+    private final String topic;
+
+    /**
+     * Raw message payload
+     */
+    private final byte[] payload;
+}
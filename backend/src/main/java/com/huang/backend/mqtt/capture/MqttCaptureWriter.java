@@ -0,0 +1,216 @@
+package com.huang.backend.mqtt.capture;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Captures every raw MQTT message the subscriber receives into append-only, memory-mapped
+ * segment files (see {@link CaptureSegment} for the layout), so production traffic can be
+ * replayed later by {@link MqttReplayDriver}.
+ * <p>
+ * Appending is a copy into the mapped segment under a lock; the operating system writes the
+ * pages back in the background, and {@link #force()} flushes them once per
+ * {@code mqtt.capture.force-interval-ms}. When a segment is full the writer rolls over to a new
+ * one and deletes the oldest segments beyond {@code mqtt.capture.max-segments}.
+ * Capture is off unless {@code mqtt.capture.enabled} is set; a failing disk disables it instead
+ * of affecting ingest.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MqttCaptureWriter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mqtt.capture.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mqtt.capture.directory:./capture}")
+    private String directory;
+
+    @Value("${mqtt.capture.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${mqtt.capture.max-segments:32}")
+    private int maxSegments;
+
+    private Path directoryPath;
+    private int segmentSize;
+    private long nextIndex;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Path segmentFile;
+
+    private volatile boolean active;
+
+    private Counter captured;
+    private Counter capturedBytes;
+    private Counter dropped;
+
+    @PostConstruct
+    public void init() {
+        captured = meterRegistry.counter("mqtt.capture.records");
+        capturedBytes = meterRegistry.counter("mqtt.capture.bytes");
+        dropped = meterRegistry.counter("mqtt.capture.dropped");
+        directoryPath = Paths.get(directory);
+        if (!enabled) {
+            return;
+        }
+        segmentSize = (int) Math.min(Integer.MAX_VALUE, Math.max(1, segmentSizeMb) * 1024L * 1024L);
+        try {
+            Files.createDirectories(directoryPath);
+            List<Path> existing = CaptureSegment.list(directoryPath);
+            nextIndex = existing.isEmpty() ? 0 : CaptureSegment.indexOf(existing.get(existing.size() - 1)) + 1;
+            synchronized (this) {
+                roll();
+            }
+            active = true;
+            log.info("MQTT流量录制已开启: 目录={}, 段大小={}MB, 最多保留{}个段",
+                    directoryPath.toAbsolutePath(), segmentSizeMb, maxSegments);
+        } catch (IOException e) {
+            log.error("无法开启MQTT流量录制: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append a raw message to the current segment
+     *
+     * @param topic the topic the message arrived on
+     * @param payload the raw payload
+     */
+    public void append(String topic, byte[] payload) {
+        if (!active) {
+            return;
+        }
+        Instant now = Instant.now();
+        long arrival = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int length = CaptureSegment.RECORD_FIXED + topicBytes.length + payload.length;
+        int recordSize = CaptureSegment.LENGTH_FIELD + length;
+        if (topicBytes.length > 0xFFFF || recordSize > segmentSize - CaptureSegment.HEADER_LENGTH) {
+            dropped.increment();
+            return;
+        }
+
+        synchronized (this) {
+            if (!active) {
+                return;
+            }
+            try {
+                if (segment.remaining() < recordSize) {
+                    roll();
+                }
+                int start = segment.position();
+                segment.position(start + CaptureSegment.LENGTH_FIELD);
+                segment.putLong(arrival);
+                segment.putShort((short) topicBytes.length);
+                segment.put(topicBytes);
+                segment.put(payload);
+                // 最后写长度，崩溃时写了一半的记录会被读取方视为段尾
+                segment.putInt(start, length);
+            } catch (IOException | RuntimeException e) {
+                active = false;
+                log.error("写入MQTT录制段失败，录制已停止: {}", e.getMessage(), e);
+                return;
+            }
+        }
+        captured.increment();
+        capturedBytes.increment(recordSize);
+    }
+
+    /**
+     * Flush the written part of the current segment to disk
+     */
+    @Scheduled(fixedDelayString = "${mqtt.capture.force-interval-ms:1000}")
+    public synchronized void force() {
+        if (active && segment != null) {
+            segment.force();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        active = false;
+        closeSegment();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return the directory segments are written to
+     */
+    public Path getDirectory() {
+        return directoryPath;
+    }
+
+    /**
+     * @return the segment currently written, or {@code null} when not capturing
+     */
+    public synchronized Path getCurrentSegment() {
+        return active ? segmentFile : null;
+    }
+
+    /**
+     * Close the current segment and start the next one
+     */
+    private void roll() throws IOException {
+        closeSegment();
+        segmentFile = directoryPath.resolve(CaptureSegment.fileName(nextIndex++));
+        channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // 映射会把文件扩展到段大小，未写入的部分为零
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(CaptureSegment.MAGIC);
+        segment.putInt(CaptureSegment.VERSION);
+        segment.putLong(System.currentTimeMillis());
+        log.debug("开始写入MQTT录制段: {}", segmentFile);
+        deleteOldSegments();
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭MQTT录制段失败: {}", e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private void deleteOldSegments() throws IOException {
+        if (maxSegments <= 0) {
+            return;
+        }
+        List<Path> segments = CaptureSegment.list(directoryPath);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+            log.info("已删除过期的MQTT录制段: {}", segments.get(i).getFileName());
+        }
+    }
+}
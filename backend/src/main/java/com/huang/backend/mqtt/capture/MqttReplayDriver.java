@@ -0,0 +1,228 @@
+package com.huang.backend.mqtt.capture;
+
+import com.huang.backend.mqtt.dto.MqttReplayStatusDto;
+import com.huang.backend.mqtt.pipeline.ShardedStage;
+import com.huang.backend.mqtt.pipeline.TelemetryEnvelope;
+import com.huang.backend.mqtt.pipeline.TelemetryIngestPipeline;
+import com.huang.backend.mqtt.service.MqttSubscriberService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds captured MQTT traffic (see {@link MqttCaptureWriter}) back through the subscriber's
+ * topic router and the ingest pipeline, without a broker.
+ * <p>
+ * Messages keep their captured spacing divided by the requested speed, so 1 replays at the
+ * recorded rate and 10 at ten times that rate; speed 0 replays as fast as the pipeline accepts
+ * messages, which measures its maximum throughput. The driver reports the achieved rate and how
+ * far replay fell behind schedule, a direct measure of whether the pipeline sustains the rate.
+ * Replayed messages are not captured again, and the segment currently being captured is skipped.
+ * One replay runs at a time.
+ * <p>
+ * Replayed telemetry bypasses duplicate and late detection so that every message runs through
+ * persist, evaluate and fan-out, and it has the same side effects as live traffic: InfluxDB
+ * points, heartbeats, status changes, geofence violations and flight sessions. Replay is therefore
+ * disabled unless {@code mqtt.replay.enabled} is set, which is meant for benchmark and staging
+ * instances with their own databases, never for production.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MqttReplayDriver {
+
+    private static final long DRAIN_POLL_MS = 10;
+
+    private final MqttSubscriberService subscriberService;
+    private final TelemetryIngestPipeline ingestPipeline;
+    private final MqttCaptureWriter captureWriter;
+
+    @Value("${mqtt.replay.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mqtt.replay.drain-timeout-ms:60000}")
+    private long drainTimeoutMs;
+
+    private Thread worker;
+    private volatile boolean stopRequested;
+
+    private volatile String state = "IDLE";
+    private volatile double speed;
+    private volatile int segments;
+    private volatile long messages;
+    private volatile Instant startedAt;
+    private volatile long feedNanos;
+    private volatile long drainNanos;
+    private volatile long maxLagNanos;
+    private volatile String error;
+
+    /**
+     * Start replaying all captured segments on a background thread
+     *
+     * @param speed the replay speed (0 = max)
+     * @param maxMessages stop after this many messages (0 = no limit)
+     * @return the status right after starting
+     * @throws IllegalStateException if replay is disabled or a replay is already running
+     */
+    public synchronized MqttReplayStatusDto start(double speed, long maxMessages) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("MQTT replay is disabled (mqtt.replay.enabled)");
+        }
+        if (isRunning()) {
+            throw new IllegalStateException("A replay is already running");
+        }
+        Path current = captureWriter.getCurrentSegment();
+        List<Path> files = CaptureSegment.list(captureWriter.getDirectory()).stream()
+                .filter(file -> !file.equals(current))
+                .toList();
+        reset(speed);
+        worker = new Thread(() -> run(files, speed, maxMessages), "mqtt-replay");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("开始回放MQTT录制: {} 个段, 速度={}", files.size(), speed > 0 ? speed + "x" : "max");
+        return getStatus();
+    }
+
+    /**
+     * Check whether replay is allowed on this instance
+     *
+     * @return true if {@code mqtt.replay.enabled} is set
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ask a running replay to stop after the current message
+     */
+    public synchronized void stop() {
+        if (isRunning()) {
+            stopRequested = true;
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return worker != null && worker.isAlive();
+    }
+
+    public MqttReplayStatusDto getStatus() {
+        long feed = feedNanos;
+        long drain = drainNanos;
+        long total = feed + drain;
+        return MqttReplayStatusDto.builder()
+                .state(state)
+                .speed(speed)
+                .segments(segments)
+                .messages(messages)
+                .startedAt(startedAt)
+                .feedMs(feed / 1_000_000)
+                .drainMs(drain / 1_000_000)
+                .messagesPerSecond(total > 0 ? messages * 1e9 / total : 0)
+                .maxLagMs(maxLagNanos / 1e6)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Replay the given segments on the calling thread
+     */
+    MqttReplayStatusDto run(List<Path> files, double speed, long maxMessages) {
+        long limit = maxMessages > 0 ? maxMessages : Long.MAX_VALUE;
+        long feedStart = System.nanoTime();
+        long firstArrival = Long.MIN_VALUE;
+        try {
+            replay:
+            for (Path file : files) {
+                CaptureSegment.Reader reader = CaptureSegment.open(file);
+                segments++;
+                while (reader.hasNext()) {
+                    if (stopRequested || messages >= limit) {
+                        break replay;
+                    }
+                    CapturedMessage message = reader.next();
+                    if (firstArrival == Long.MIN_VALUE) {
+                        firstArrival = message.getArrivalEpochNanos();
+                    }
+                    if (speed > 0) {
+                        long due = feedStart + (long) ((message.getArrivalEpochNanos() - firstArrival) / speed);
+                        pace(due);
+                    }
+                    subscriberService.replay(message.getTopic(), message.getPayload());
+                    messages++;
+                }
+            }
+            feedNanos = System.nanoTime() - feedStart;
+            long drainStart = System.nanoTime();
+            awaitDrain();
+            drainNanos = System.nanoTime() - drainStart;
+            state = stopRequested ? "STOPPED" : "COMPLETED";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            feedNanos = System.nanoTime() - feedStart;
+            state = "STOPPED";
+        } catch (Exception e) {
+            feedNanos = System.nanoTime() - feedStart;
+            error = e.getMessage();
+            state = "FAILED";
+            log.error("回放MQTT录制失败: {}", e.getMessage(), e);
+        }
+        MqttReplayStatusDto result = getStatus();
+        log.info("MQTT录制回放结束: 状态={}, 消息={}, 耗时={}ms(+排空{}ms), 速率={}/s, 最大滞后={}ms",
+                result.getState(), result.getMessages(), result.getFeedMs(), result.getDrainMs(),
+                Math.round(result.getMessagesPerSecond()), result.getMaxLagMs());
+        return result;
+    }
+
+    /**
+     * Wait until the message's scheduled time, or record how late it is
+     */
+    private void pace(long due) {
+        long wait = due - System.nanoTime();
+        if (wait <= 0) {
+            maxLagNanos = Math.max(maxLagNanos, -wait);
+            return;
+        }
+        while (wait > 0 && !stopRequested) {
+            LockSupport.parkNanos(wait);
+            wait = due - System.nanoTime();
+        }
+    }
+
+    /**
+     * Wait until the pipeline queues are empty, so the measured time covers the whole pipeline
+     */
+    private void awaitDrain() throws InterruptedException {
+        List<ShardedStage<TelemetryEnvelope>> stages = ingestPipeline.stages();
+        long deadline = System.nanoTime() + drainTimeoutMs * 1_000_000L;
+        while (System.nanoTime() - deadline < 0 && !stopRequested) {
+            if (stages.stream().mapToInt(ShardedStage::queueDepth).sum() == 0) {
+                return;
+            }
+            Thread.sleep(DRAIN_POLL_MS);
+        }
+        if (!stopRequested) {
+            log.warn("回放后遥测流水线在 {}ms 内未排空", drainTimeoutMs);
+        }
+    }
+
+    private void reset(double speed) {
+        this.stopRequested = false;
+        this.state = "RUNNING";
+        this.speed = speed;
+        this.segments = 0;
+        this.messages = 0;
+        this.startedAt = Instant.now();
+        this.feedNanos = 0;
+        this.drainNanos = 0;
+        this.maxLagNanos = 0;
+        this.error = null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.huang.backend.mqtt.codec;
+
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary telemetry encoding, an alternative to JSON for high sample rates.
+ * <p>
+ * Layout of version 2 (64 bytes, big-endian; version 1 is the same without the sequence number):
+ * <pre>
+ * offset size field
+ *  0     1    magic 0xD7 (never the first byte of a JSON payload)
+ *  1     1    version
+ *  2     1    flags: bit0 armed known, bit1 armed, bit2 sequence present
+ *  3     1    status code (0 = absent, see {@link #STATUS_CODES})
+ *  4     1    satellites (0xFF = absent)
+ *  5     3    reserved, 0
+ *  8     8    timestamp, epoch nanoseconds (Long.MIN_VALUE = absent)
+ * 16     8    latitude  (double)
+ * 24     8    longitude (double)
+ * 32     4    altitude (float; this and all following floats NaN = absent)
+ * 36     4    speed
+ * 40     4    heading
+ * 44     4    battery level
+ * 48     4    battery voltage
+ * 52     4    signal strength
+ * 56     4    temperature
+ * 60     4    sequence number (unsigned), valid if flag bit2 is set
+ * </pre>
+ * Positions keep full double precision; the other values fit a float comfortably. Flight mode
+ * and FAREWELL messages are not part of the binary format and stay JSON. A decoder accepts
+ * payloads longer than it knows, so later versions may append fields.
+ */
+@Component
+public class TelemetryBinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xD7;
+    public static final byte VERSION = 2;
+    public static final int LENGTH = 64;
+
+    private static final int FLAG_ARMED_KNOWN = 0x01;
+    private static final int FLAG_ARMED = 0x02;
+    private static final int FLAG_SEQUENCE = 0x04;
+    private static final int NO_SATELLITES = 0xFF;
+
+    /**
+     * Wire codes of the status strings; index 0 means "no status". Append only.
+     */
+    static final String[] STATUS_CODES = {
+            null, "OFFLINE", "ONLINE", "FLYING", "IDLE", "ERROR",
+            "LOW_BATTERY", "TRAJECTORY_ERROR", "GEOFENCE_VIOLATION"
+    };
+
+    /**
+     * @param payload a raw MQTT payload
+     * @return true if the payload starts with the binary telemetry magic byte
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    /**
+     * Decode a binary payload into the given record, which is cleared first
+     *
+     * @param payload the raw MQTT payload
+     * @param record the record to fill
+     * @throws IOException if the payload is not binary telemetry of a supported version
+     */
+    public void decode(byte[] payload, TelemetryRecord record) throws IOException {
+        if (!isBinary(payload)) {
+            throw new IOException("Payload is not binary telemetry");
+        }
+        if (payload[1] < 1 || payload[1] > VERSION) {
+            throw new IOException("Unsupported binary telemetry version " + payload[1]);
+        }
+        record.clear();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            int flags = buffer.get(2);
+            int status = buffer.get(3) & 0xFF;
+            int satellites = buffer.get(4) & 0xFF;
+            if ((flags & FLAG_ARMED_KNOWN) != 0) {
+                record.setArmed((flags & FLAG_ARMED) != 0);
+            }
+            if (status != 0) {
+                if (status >= STATUS_CODES.length) {
+                    throw new IOException("Unknown binary telemetry status code " + status);
+                }
+                record.setStatus(STATUS_CODES[status]);
+            }
+            if (satellites != NO_SATELLITES) {
+                record.setSatellites(satellites);
+            }
+            record.setTimestampNanos(buffer.getLong(8));
+            record.setLatitude(buffer.getDouble(16));
+            record.setLongitude(buffer.getDouble(24));
+            record.setAltitude(buffer.getFloat(32));
+            record.setSpeed(buffer.getFloat(36));
+            record.setHeading(buffer.getFloat(40));
+            record.setBatteryLevel(buffer.getFloat(44));
+            record.setBatteryVoltage(buffer.getFloat(48));
+            record.setSignalStrength(buffer.getFloat(52));
+            record.setTemperature(buffer.getFloat(56));
+            if (payload[1] >= 2 && (flags & FLAG_SEQUENCE) != 0) {
+                record.setSequence(Integer.toUnsignedLong(buffer.getInt(60)));
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Truncated binary telemetry payload (" + payload.length + " bytes)", e);
+        }
+    }
+
+    /**
+     * Encode a record in the current binary version
+     *
+     * @param record the telemetry record
+     * @return the payload
+     */
+    public byte[] encode(TelemetryRecord record) {
+        byte[] payload = new byte[LENGTH];
+        encode(record, payload);
+        return payload;
+    }
+
+    /**
+     * Encode a record into an existing array of at least {@link #LENGTH} bytes
+     *
+     * @param record the telemetry record
+     * @param payload the target array
+     */
+    public void encode(TelemetryRecord record, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 0, LENGTH);
+        int flags = 0;
+        if (record.getArmed() != null) {
+            flags |= FLAG_ARMED_KNOWN;
+            if (record.getArmed()) {
+                flags |= FLAG_ARMED;
+            }
+        }
+        if (record.hasSequence()) {
+            flags |= FLAG_SEQUENCE;
+        }
+        int satellites = record.getSatellites();
+        buffer.put(MAGIC)
+                .put(VERSION)
+                .put((byte) flags)
+                .put((byte) statusCode(record.getStatus()))
+                .put((byte) (satellites == TelemetryRecord.NO_INT ? NO_SATELLITES : Math.min(satellites, 0xFE)))
+                .put((byte) 0).put((byte) 0).put((byte) 0)
+                .putLong(record.getTimestampNanos())
+                .putDouble(record.getLatitude())
+                .putDouble(record.getLongitude())
+                .putFloat((float) record.getAltitude())
+                .putFloat((float) record.getSpeed())
+                .putFloat((float) record.getHeading())
+                .putFloat((float) record.getBatteryLevel())
+                .putFloat((float) record.getBatteryVoltage())
+                .putFloat((float) record.getSignalStrength())
+                .putFloat((float) record.getTemperature())
+                .putInt(record.hasSequence() ? (int) record.getSequence() : 0);
+    }
+
+    private static int statusCode(String status) {
+        if (status == null) {
+            return 0;
+        }
+        for (int i = 1; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i].equals(status)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Status not representable in binary telemetry: " + status);
+    }
+}
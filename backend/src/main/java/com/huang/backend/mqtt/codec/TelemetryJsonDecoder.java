@@ -0,0 +1,169 @@
+package com.huang.backend.mqtt.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Single-pass streaming decoder for JSON telemetry and FAREWELL payloads.
+ * <p>
+ * The payload bytes are read once with a Jackson {@link JsonParser} straight into a
+ * {@link TelemetryRecord}: no intermediate String of the whole payload, no tree model,
+ * no boxed numbers. The message kind is taken from the {@code type} field while parsing,
+ * replacing the earlier {@code contains("\"type\":\"FAREWELL\"")} pre-scan.
+ * <p>
+ * Accepted keys and aliases mirror the Jackson annotations on
+ * {@link com.huang.backend.drone.model.TelemetryData} and
+ * {@link com.huang.backend.mqtt.model.FarewellMessage}; unknown keys are skipped.
+ */
+@Component
+public class TelemetryJsonDecoder {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final JsonFactory jsonFactory;
+
+    public TelemetryJsonDecoder(ObjectMapper objectMapper) {
+        // own factory so the fast double parser does not change the shared ObjectMapper
+        this.jsonFactory = objectMapper.getFactory().rebuild()
+                .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+                .build();
+    }
+
+    /**
+     * Decode a payload into the given record, which is cleared first
+     *
+     * @param payload the raw MQTT payload
+     * @param record the record to fill
+     * @throws IOException if the payload is not a valid JSON object
+     */
+    public void decode(byte[] payload, TelemetryRecord record) throws IOException {
+        record.clear();
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Telemetry payload is not a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                // field names are canonicalized by the parser, so the switch hashes cached strings
+                switch (field) {
+                    case "droneId", "drone_id" -> record.setDroneId(text(parser));
+                    case "timestamp" -> record.setTimestampNanos(timestampNanos(parser, token));
+                    case "seq", "sequence" -> record.setSequence(sequence(parser, token));
+                    case "batteryLevel", "battery_percentage", "battery_level" ->
+                            record.setBatteryLevel(number(parser, token));
+                    case "batteryVoltage" -> record.setBatteryVoltage(number(parser, token));
+                    case "latitude" -> record.setLatitude(number(parser, token));
+                    case "longitude" -> record.setLongitude(number(parser, token));
+                    case "altitude" -> record.setAltitude(number(parser, token));
+                    case "speed" -> record.setSpeed(number(parser, token));
+                    case "heading" -> record.setHeading(number(parser, token));
+                    case "satellites" -> {
+                        double satellites = number(parser, token);
+                        record.setSatellites(Double.isNaN(satellites) ? TelemetryRecord.NO_INT : (int) satellites);
+                    }
+                    case "signalStrength" -> record.setSignalStrength(number(parser, token));
+                    case "flightMode" -> record.setFlightMode(text(parser));
+                    case "temperature" -> record.setTemperature(number(parser, token));
+                    case "status", "flight_status" -> record.setStatus(text(parser));
+                    case "isArmed" -> record.setArmed(bool(parser, token));
+                    case "type" -> record.setType(text(parser));
+                    case "message" -> record.setMessage(text(parser));
+                    case "serialNumber" -> record.setSerialNumber(text(parser));
+                    case "issuedBy" -> record.setIssuedBy(text(parser));
+                    case "batteryRemaining" -> record.setBatteryRemaining(number(parser, token));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    private static double number(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            // numeric strings are coerced, like Jackson databind does by default
+            try {
+                return Double.parseDouble(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid numeric value: " + parser.getText(), e);
+            }
+        }
+        parser.skipChildren();
+        return Double.NaN;
+    }
+
+    private static long sequence(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            long sequence = parser.getLongValue();
+            return sequence >= 0 ? sequence : TelemetryRecord.NO_SEQUENCE;
+        }
+        parser.skipChildren();
+        return TelemetryRecord.NO_SEQUENCE;
+    }
+
+    private static Boolean bool(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_TRUE) {
+            return Boolean.TRUE;
+        }
+        if (token == JsonToken.VALUE_FALSE) {
+            return Boolean.FALSE;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return Boolean.valueOf(parser.getText().trim());
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue() != 0;
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Numeric timestamps are epoch seconds with an optional fraction (the simulator sends
+     * {@code time.time()}), matching JavaTimeModule's default for {@link Instant};
+     * string timestamps are ISO-8601 instants.
+     */
+    private static long timestampNanos(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue() * NANOS_PER_SECOND;
+        }
+        if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+            double seconds = parser.getDoubleValue();
+            long wholeSeconds = (long) Math.floor(seconds);
+            long nanos = Math.round((seconds - wholeSeconds) * NANOS_PER_SECOND);
+            return wholeSeconds * NANOS_PER_SECOND + nanos;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                Instant instant = Instant.parse(parser.getText().trim());
+                return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+            } catch (DateTimeParseException e) {
+                throw new IOException("Invalid timestamp: " + parser.getText(), e);
+            }
+        }
+        parser.skipChildren();
+        return TelemetryRecord.NO_TIMESTAMP;
+    }
+}
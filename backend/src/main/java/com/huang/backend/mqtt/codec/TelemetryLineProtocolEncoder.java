@@ -0,0 +1,322 @@
+package com.huang.backend.mqtt.codec;
+
+import com.huang.backend.drone.model.TelemetryData;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes telemetry into InfluxDB line protocol for the {@code drone_telemetry} measurement.
+ * <p>
+ * Records are written into a per-thread reusable byte buffer: numeric fields are formatted
+ * straight into the buffer without boxing or intermediate strings, and the escaped
+ * {@code drone_telemetry,drone_id=...} prefix is computed once per drone and cached.
+ * The only allocation per record is the final exact-size copy handed to the batch writer.
+ * <p>
+ * The output is field-compatible with the previous StringBuilder encoder: every numeric
+ * field (including {@code satellites}) is written as a float field.
+ */
+@Component
+public class TelemetryLineProtocolEncoder {
+
+    public static final String MEASUREMENT = "drone_telemetry";
+
+    private static final int MAX_CACHED_PREFIXES = 100_000;
+
+    private static final byte[] BATTERY_LEVEL = ascii("battery_level=");
+    private static final byte[] BATTERY_VOLTAGE = ascii("battery_voltage=");
+    private static final byte[] LATITUDE = ascii("latitude=");
+    private static final byte[] LONGITUDE = ascii("longitude=");
+    private static final byte[] ALTITUDE = ascii("altitude=");
+    private static final byte[] SPEED = ascii("speed=");
+    private static final byte[] HEADING = ascii("heading=");
+    private static final byte[] SATELLITES = ascii("satellites=");
+    private static final byte[] SIGNAL_STRENGTH = ascii("signal_strength=");
+    private static final byte[] FLIGHT_MODE = ascii("flight_mode=");
+    private static final byte[] TEMPERATURE = ascii("temperature=");
+
+    /** Exact powers of ten; every value up to 1e22 is representable as a double */
+    private static final double[] POW10 = new double[16];
+
+    /** Largest integer magnitude a double holds exactly */
+    private static final double MAX_EXACT = 9007199254740992d;
+
+    static {
+        double p = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = p;
+            p *= 10;
+        }
+    }
+
+    private final Map<String, byte[]> prefixCache = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * Encode one telemetry record
+     *
+     * @param data the telemetry data; drone ID and timestamp must be set
+     * @return the encoded record without trailing newline, or null if the record has no fields
+     */
+    public byte[] encode(TelemetryData data) {
+        return encode(buffers.get().scratch.copyFrom(data));
+    }
+
+    /**
+     * Encode one telemetry record
+     *
+     * @param record the telemetry record; drone ID and timestamp must be set
+     * @return the encoded record without trailing newline, or null if the record has no fields
+     */
+    public byte[] encode(TelemetryRecord record) {
+        Buffer buf = buffers.get();
+        buf.reset();
+        buf.put(prefixFor(record.getDroneId()));
+        buf.fieldsStart = buf.pos;
+
+        field(buf, BATTERY_LEVEL, record.getBatteryLevel());
+        field(buf, BATTERY_VOLTAGE, record.getBatteryVoltage());
+        field(buf, LATITUDE, record.getLatitude());
+        field(buf, LONGITUDE, record.getLongitude());
+        field(buf, ALTITUDE, record.getAltitude());
+        field(buf, SPEED, record.getSpeed());
+        field(buf, HEADING, record.getHeading());
+        if (record.getSatellites() != TelemetryRecord.NO_INT) {
+            separator(buf);
+            buf.put(SATELLITES);
+            buf.putLong(record.getSatellites());
+        }
+        field(buf, SIGNAL_STRENGTH, record.getSignalStrength());
+        if (record.getFlightMode() != null) {
+            separator(buf);
+            buf.put(FLIGHT_MODE);
+            buf.putQuoted(record.getFlightMode());
+        }
+        field(buf, TEMPERATURE, record.getTemperature());
+
+        // If no fields are present, we can't write the data
+        if (buf.pos == buf.fieldsStart) {
+            return null;
+        }
+
+        buf.put((byte) ' ');
+        buf.putLong(record.getTimestampNanos());
+        return buf.toByteArray();
+    }
+
+    /**
+     * @return the cached {@code drone_telemetry,drone_id=<escaped> } prefix for a drone
+     */
+    byte[] prefixFor(String droneId) {
+        byte[] prefix = prefixCache.get(droneId);
+        if (prefix != null) {
+            return prefix;
+        }
+        if (prefixCache.size() >= MAX_CACHED_PREFIXES) {
+            prefixCache.clear();
+        }
+        prefix = (MEASUREMENT + ",drone_id=" + escapeTag(droneId) + " ").getBytes(StandardCharsets.UTF_8);
+        prefixCache.put(droneId, prefix);
+        return prefix;
+    }
+
+    private static void field(Buffer buf, byte[] name, double v) {
+        // absent fields are NaN; NaN and infinity are not valid line-protocol values either
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            return;
+        }
+        separator(buf);
+        buf.put(name);
+        buf.putDouble(v);
+    }
+
+    private static void separator(Buffer buf) {
+        if (buf.pos != buf.fieldsStart) {
+            buf.put((byte) ',');
+        }
+    }
+
+    /**
+     * Escape commas, equals signs and spaces in a tag value
+     */
+    static String escapeTag(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '=' || c == ' ') {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+                }
+                sb.append('\\');
+            }
+            if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable byte buffer reused by one thread
+     */
+    static final class Buffer {
+        private byte[] bytes = new byte[256];
+        private int pos;
+        /** Position right after the measurement/tag prefix */
+        private int fieldsStart;
+        /** Scratch record for encoding boxed {@link TelemetryData} */
+        private final TelemetryRecord scratch = new TelemetryRecord();
+
+        void reset() {
+            pos = 0;
+            fieldsStart = 0;
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[pos++] = b;
+        }
+
+        void put(byte[] src) {
+            ensure(src.length);
+            System.arraycopy(src, 0, bytes, pos, src.length);
+            pos += src.length;
+        }
+
+        /**
+         * Write a string field value in double quotes, escaping quotes and backslashes
+         */
+        void putQuoted(String s) {
+            put((byte) '"');
+            byte[] utf8 = null;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) >= 0x80) {
+                    utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    break;
+                }
+            }
+            if (utf8 == null) {
+                ensure(s.length() * 2);
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        bytes[pos++] = '\\';
+                    }
+                    bytes[pos++] = (byte) c;
+                }
+            } else {
+                ensure(utf8.length * 2);
+                for (byte b : utf8) {
+                    if (b == '"' || b == '\\') {
+                        bytes[pos++] = '\\';
+                    }
+                    bytes[pos++] = b;
+                }
+            }
+            put((byte) '"');
+        }
+
+        void putLong(long v) {
+            if (v == Long.MIN_VALUE) {
+                putAscii(Long.toString(v));
+                return;
+            }
+            ensure(20);
+            if (v < 0) {
+                bytes[pos++] = '-';
+                v = -v;
+            }
+            int digits = digitCount(v);
+            int end = pos + digits;
+            for (int i = end - 1; i >= pos; i--) {
+                bytes[i] = (byte) ('0' + (v % 10));
+                v /= 10;
+            }
+            pos = end;
+        }
+
+        /**
+         * Write the shortest decimal with up to 15 fraction digits that parses back to exactly
+         * {@code v}. {@code m / 10^s} is a correctly rounded division of two exact values, so if
+         * it equals {@code v} then parsing {@code "m e-s"} yields {@code v} as well. Values with no
+         * such representation (very large or very small magnitudes) fall back to Double.toString.
+         */
+        void putDouble(double v) {
+            if (v == 0) {
+                put((byte) '0');
+                return;
+            }
+            double abs = Math.abs(v);
+            if (abs < MAX_EXACT) {
+                for (int scale = 0; scale < POW10.length; scale++) {
+                    double scaled = abs * POW10[scale];
+                    if (scaled >= MAX_EXACT) {
+                        break;
+                    }
+                    long m = Math.round(scaled);
+                    if (m / POW10[scale] == abs) {
+                        if (v < 0) {
+                            put((byte) '-');
+                        }
+                        putScaled(m, scale);
+                        return;
+                    }
+                }
+            }
+            putAscii(Double.toString(v));
+        }
+
+        private void putScaled(long m, int scale) {
+            if (scale == 0) {
+                putLong(m);
+                return;
+            }
+            long intPart = m / (long) POW10[scale];
+            long fraction = m % (long) POW10[scale];
+            putLong(intPart);
+            put((byte) '.');
+            // left-pad the fraction with zeros to `scale` digits
+            int digits = digitCount(fraction);
+            ensure(scale);
+            for (int i = digits; i < scale; i++) {
+                bytes[pos++] = '0';
+            }
+            putLong(fraction);
+        }
+
+        private void putAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[pos++] = (byte) s.charAt(i);
+            }
+        }
+
+        private static int digitCount(long v) {
+            int digits = 1;
+            while (v >= 10) {
+                v /= 10;
+                digits++;
+            }
+            return digits;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, pos + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, pos);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.huang.backend.mqtt.connection;
+
+import com.huang.backend.config.MqttClientFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pool of asynchronous MQTT connections, split into two lanes.
+ * <ul>
+ *   <li>The <b>ingest</b> lane holds the subscriber's connections (see {@code MqttSubscriberService}),
+ *   so telemetry delivery never shares a socket or in-flight window with outgoing commands.</li>
+ *   <li>The <b>publish</b> lane holds {@code mqtt.pool.publish-connections} connections for commands.
+ *   A topic always maps to the same connection, so the commands of one drone keep their order,
+ *   while fleet-wide bursts spread over all connections.</li>
+ * </ul>
+ * Publishing never blocks: {@link #publish} returns a future completed by the broker acknowledgement.
+ * While a connection is reconnecting, its messages are held in Paho's disconnected buffer.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MqttConnectionPool {
+
+    private final MqttClientFactory clientFactory;
+    private final MqttConnectOptions connectOptions;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mqtt.client.id:drone-backend}")
+    private String clientIdPrefix;
+
+    @Value("${mqtt.pool.publish-connections:2}")
+    private int publishConnections;
+
+    @Value("${mqtt.pool.offline-buffer-size:1000}")
+    private int offlineBufferSize;
+
+    private final List<PooledConnection> publishLane = new CopyOnWriteArrayList<>();
+    private final List<PooledConnection> ingestLane = new CopyOnWriteArrayList<>();
+
+    /**
+     * Distinguishes the client IDs of this node from those of other nodes
+     */
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+
+    private Counter published;
+    private Counter publishFailed;
+
+    @PostConstruct
+    public void start() {
+        published = meterRegistry.counter("mqtt.publish.sent");
+        publishFailed = meterRegistry.counter("mqtt.publish.failed");
+        Gauge.builder("mqtt.pool.connected", publishLane, MqttConnectionPool::connectedCount)
+                .tag("lane", "publish")
+                .register(meterRegistry);
+        Gauge.builder("mqtt.pool.connected", ingestLane, MqttConnectionPool::connectedCount)
+                .tag("lane", "ingest")
+                .register(meterRegistry);
+
+        for (int i = 0; i < Math.max(1, publishConnections); i++) {
+            publishLane.add(open("publish-" + i, null));
+        }
+        log.info("MQTT连接池已启动: 发布连接 {} 个", publishLane.size());
+    }
+
+    /**
+     * Open a connection in the ingest lane
+     *
+     * @param index the connection index within the lane
+     * @param listener receives every message arriving on the connection
+     * @return the connection; register its subscriptions with {@link PooledConnection#subscribe}
+     */
+    public PooledConnection openIngestConnection(int index, IMqttMessageListener listener) {
+        PooledConnection connection = open("ingest-" + index, listener);
+        ingestLane.add(connection);
+        return connection;
+    }
+
+    /**
+     * Close all ingest connections
+     */
+    public void closeIngestLane() {
+        for (PooledConnection connection : ingestLane) {
+            connection.close();
+        }
+        ingestLane.clear();
+    }
+
+    /**
+     * Publish a message on the publish lane without blocking
+     *
+     * @param topic the topic
+     * @param message the message
+     * @return the future delivery token; already failed if no connection could take the message
+     */
+    public CompletableFuture<IMqttDeliveryToken> publish(String topic, MqttMessage message) {
+        PooledConnection connection = select(topic);
+        if (connection == null) {
+            publishFailed.increment();
+            return CompletableFuture.failedFuture(
+                    new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED));
+        }
+        return connection.publish(topic, message).whenComplete((token, e) -> {
+            if (e == null) {
+                published.increment();
+            } else {
+                publishFailed.increment();
+                log.warn("MQTT消息发布到 {} 失败 (连接 {}): {}", topic, connection.getName(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Retry connections whose first connect failed; established connections reconnect by themselves
+     */
+    @Scheduled(fixedDelayString = "${mqtt.pool.check-interval-ms:30000}")
+    public void checkConnections() {
+        publishLane.forEach(PooledConnection::connect);
+        ingestLane.forEach(PooledConnection::connect);
+    }
+
+    /**
+     * @return true if at least one publish connection is up
+     */
+    public boolean isConnected() {
+        return connectedCount(publishLane) > 0;
+    }
+
+    public List<PooledConnection> getPublishLane() {
+        return List.copyOf(publishLane);
+    }
+
+    public List<PooledConnection> getIngestLane() {
+        return List.copyOf(ingestLane);
+    }
+
+    @PreDestroy
+    public void stop() {
+        closeIngestLane();
+        for (PooledConnection connection : publishLane) {
+            connection.close();
+        }
+        publishLane.clear();
+    }
+
+    /**
+     * The topic's own connection, or any connected one if that is down and not reconnecting
+     */
+    private PooledConnection select(String topic) {
+        int size = publishLane.size();
+        if (size == 0) {
+            return null;
+        }
+        PooledConnection preferred = publishLane.get(Math.floorMod(topic.hashCode(), size));
+        if (preferred.isConnected() || preferred.isReconnecting()) {
+            return preferred;
+        }
+        for (PooledConnection connection : publishLane) {
+            if (connection.isConnected()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private PooledConnection open(String name, IMqttMessageListener listener) {
+        String clientId = clientIdPrefix + "-" + name + "-" + instanceId;
+        try {
+            MqttAsyncClient client = clientFactory.create(clientId);
+            DisconnectedBufferOptions buffer = new DisconnectedBufferOptions();
+            buffer.setBufferEnabled(true);
+            buffer.setBufferSize(offlineBufferSize);
+            buffer.setDeleteOldestMessages(false);
+            buffer.setPersistBuffer(false);
+            client.setBufferOpts(buffer);
+
+            PooledConnection connection = new PooledConnection(name, client, connectOptions, listener);
+            connection.connect();
+            return connection;
+        } catch (MqttException e) {
+            throw new IllegalStateException("无法创建MQTT连接 " + clientId, e);
+        }
+    }
+
+    private static int connectedCount(List<PooledConnection> lane) {
+        int count = 0;
+        for (PooledConnection connection : lane) {
+            if (connection.isConnected()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,178 @@
+package com.huang.backend.mqtt.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One connection of the {@link MqttConnectionPool}, wrapping a {@link MqttAsyncClient}.
+ * <p>
+ * Connecting is asynchronous and never blocks the caller. Once connected, Paho's automatic
+ * reconnect takes over; the subscriptions registered with {@link #subscribe} are renewed after
+ * every (re)connect, since sessions are clean. A connection whose first attempt failed is retried
+ * by {@link MqttConnectionPool#checkConnections()}.
+ */
+@Slf4j
+public class PooledConnection implements MqttCallbackExtended {
+
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final String name;
+    private final MqttAsyncClient client;
+    private final MqttConnectOptions options;
+    private final IMqttMessageListener listener;
+
+    /**
+     * Topic filter → QoS, renewed after each connect
+     */
+    private final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean connecting = new AtomicBoolean(false);
+    private volatile boolean everConnected;
+
+    PooledConnection(String name, MqttAsyncClient client, MqttConnectOptions options, IMqttMessageListener listener) {
+        this.name = name;
+        this.client = client;
+        this.options = options;
+        this.listener = listener;
+        client.setCallback(this);
+    }
+
+    /**
+     * Start connecting unless connected, connecting, or already handed over to automatic reconnect
+     */
+    void connect() {
+        if (client.isConnected() || everConnected || !connecting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            client.connect(options, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    everConnected = true;
+                    connecting.set(false);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable e) {
+                    connecting.set(false);
+                    log.warn("MQTT连接 {} 建立失败，稍后重试: {}", name, e.getMessage());
+                }
+            });
+        } catch (MqttException e) {
+            connecting.set(false);
+            log.warn("MQTT连接 {} 建立失败，稍后重试: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Subscribe to a topic filter now (if connected) and after every reconnect
+     *
+     * @param filter the topic filter
+     * @param qos the subscription QoS
+     */
+    public void subscribe(String filter, int qos) {
+        subscriptions.put(filter, qos);
+        if (client.isConnected()) {
+            subscribeNow(filter, qos);
+        }
+    }
+
+    /**
+     * Publish without waiting for the broker
+     *
+     * @param topic the topic
+     * @param message the message
+     * @return completes with the delivery token once the broker acknowledged (QoS 1/2) or the
+     * message was written (QoS 0), or exceptionally if it could not be delivered
+     */
+    CompletableFuture<IMqttDeliveryToken> publish(String topic, MqttMessage message) {
+        CompletableFuture<IMqttDeliveryToken> future = new CompletableFuture<>();
+        try {
+            client.publish(topic, message, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    future.complete((IMqttDeliveryToken) token);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (MqttException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    /**
+     * @return true while a connection that was up is being re-established by automatic reconnect
+     */
+    public boolean isReconnecting() {
+        return everConnected && !client.isConnected();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void close() {
+        try {
+            if (client.isConnected()) {
+                client.disconnect().waitForCompletion(CLOSE_TIMEOUT_MS);
+            }
+            client.close();
+        } catch (MqttException e) {
+            log.warn("关闭MQTT连接 {} 失败: {}", name, e.getMessage());
+        }
+    }
+
+    private void subscribeNow(String filter, int qos) {
+        try {
+            client.subscribe(filter, qos);
+        } catch (MqttException e) {
+            log.error("MQTT连接 {} 订阅 {} 失败: {}", name, filter, e.getMessage());
+        }
+    }
+
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        everConnected = true;
+        log.info("MQTT连接 {} 已{}: {}", name, reconnect ? "重连" : "连接", serverURI);
+        subscriptions.forEach(this::subscribeNow);
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        log.warn("MQTT连接 {} 丢失，等待自动重连: {}", name, cause != null ? cause.getMessage() : "unknown");
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) throws Exception {
+        if (listener != null) {
+            listener.messageArrived(topic, message);
+        }
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // 发布结果通过 publish 返回的 CompletableFuture 通知
+    }
+}
@@ -0,0 +1,74 @@
+package com.huang.backend.mqtt.controller;
+
+import com.huang.backend.mqtt.capture.MqttReplayDriver;
+import com.huang.backend.mqtt.dto.MqttReplayRequestDto;
+import com.huang.backend.mqtt.dto.MqttReplayStatusDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.Valid;
+import java.io.IOException;
+
+/**
+ * Controller for replaying captured MQTT traffic through the ingest pipeline.
+ * Replay writes to the same stores as live traffic, so it is only available when
+ * {@code mqtt.replay.enabled} is set on a non-production instance.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/mqtt/replay")
+@RequiredArgsConstructor
+public class MqttReplayController {
+
+    private final MqttReplayDriver replayDriver;
+
+    /**
+     * Start replaying the captured segments
+     *
+     * @param request the replay speed and message limit
+     * @return the replay status, 409 if a replay is already running, or 403 if replay is disabled
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER')")
+    public ResponseEntity<MqttReplayStatusDto> startReplay(@Valid @RequestBody MqttReplayRequestDto request)
+            throws IOException {
+        log.info("REST request to replay captured MQTT traffic at speed {}", request.getSpeed());
+        if (!replayDriver.isEnabled()) {
+            log.warn("MQTT replay rejected: replay is disabled (mqtt.replay.enabled)");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(replayDriver.getStatus());
+        }
+        try {
+            return ResponseEntity.accepted().body(replayDriver.start(request.getSpeed(), request.getMaxMessages()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(replayDriver.getStatus());
+        }
+    }
+
+    /**
+     * Get the progress of the current or last replay
+     *
+     * @return the replay status
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER')")
+    public ResponseEntity<MqttReplayStatusDto> getReplayStatus() {
+        return ResponseEntity.ok(replayDriver.getStatus());
+    }
+
+    /**
+     * Stop the current replay
+     *
+     * @return the replay status
+     */
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('SUPER')")
+    public ResponseEntity<MqttReplayStatusDto> stopReplay() {
+        log.info("REST request to stop MQTT replay");
+        replayDriver.stop();
+        return ResponseEntity.ok(replayDriver.getStatus());
+    }
+}
@@ -0,0 +1,56 @@
+package com.huang.backend.mqtt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delivery statistics of one drone's telemetry stream
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DroneLinkStatsDto {
+
+    /**
+     * Drone UUID
+     */
+    private String droneId;
+
+    /**
+     * Samples accepted (in order or late)
+     */
+    private long received;
+
+    /**
+     * Exact duplicates dropped (e.g. QoS 1 redeliveries)
+     */
+    private long duplicates;
+
+    /**
+     * Samples that arrived after a newer one; stored but not applied to live state
+     */
+    private long late;
+
+    /**
+     * Sequence numbers skipped and never received so far
+     */
+    private long lost;
+
+    /**
+     * Times the drone's sequence numbers restarted (e.g. after a reboot)
+     */
+    private long resets;
+
+    /**
+     * Highest sequence number seen, or null if the drone does not send sequence numbers
+     */
+    private Long lastSequence;
+
+    /**
+     * lost / (received + lost)
+     */
+    private double lossRate;
+}
@@ -0,0 +1,34 @@
+package com.huang.backend.mqtt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * DTO for starting a replay of captured MQTT traffic
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MqttReplayRequestDto {
+
+    /**
+     * Replay speed relative to the captured timing: 1 = real time, 10 = ten times faster,
+     * 0 = as fast as the pipeline accepts messages
+     */
+    @Builder.Default
+    @PositiveOrZero(message = "Speed must be 0 (max) or positive")
+    private double speed = 1.0;
+
+    /**
+     * Stop after this many messages (0 = replay everything)
+     */
+    @Builder.Default
+    @Min(value = 0, message = "Message limit cannot be negative")
+    private long maxMessages = 0;
+}
@@ -0,0 +1,69 @@
+package com.huang.backend.mqtt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress and result of a replay of captured MQTT traffic
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MqttReplayStatusDto {
+
+    /**
+     * IDLE, RUNNING, COMPLETED, STOPPED or FAILED
+     */
+    private String state;
+
+    /**
+     * Requested speed (0 = max)
+     */
+    private double speed;
+
+    /**
+     * Segments read so far
+     */
+    private int segments;
+
+    /**
+     * Messages handed to the ingest pipeline so far
+     */
+    private long messages;
+
+    /**
+     * When the replay started
+     */
+    private Instant startedAt;
+
+    /**
+     * Time spent feeding messages, in milliseconds
+     */
+    private long feedMs;
+
+    /**
+     * Time the pipeline took to drain after the last message, in milliseconds
+     */
+    private long drainMs;
+
+    /**
+     * messages / (feed + drain) time
+     */
+    private double messagesPerSecond;
+
+    /**
+     * Largest delay of a message behind its scheduled replay time, in milliseconds;
+     * a growing value at 1× or N× means the pipeline cannot keep up with that rate
+     */
+    private double maxLagMs;
+
+    /**
+     * Error message when the replay failed
+     */
+    private String error;
+}
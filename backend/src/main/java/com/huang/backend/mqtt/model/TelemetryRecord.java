@@ -0,0 +1,186 @@
+package com.huang.backend.mqtt.model;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.model.TelemetryData;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Mutable, primitive-backed telemetry record used on the ingest hot path.
+ * <p>
+ * Decoders fill an existing instance instead of building boxed {@link TelemetryData} objects.
+ * Absent numeric fields are represented by {@code NaN} (doubles) or {@link #NO_INT} (ints),
+ * an absent timestamp by {@link #NO_TIMESTAMP} and an absent sequence number by {@link #NO_SEQUENCE}.
+ * A record also carries the few fields of a FAREWELL message, so one pass over the payload is enough
+ * for both kinds.
+ */
+@Getter
+@Setter
+public class TelemetryRecord {
+
+    public static final int NO_INT = Integer.MIN_VALUE;
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    public static final long NO_SEQUENCE = -1L;
+
+    public static final String TYPE_FAREWELL = "FAREWELL";
+
+    private String droneId;
+    private long timestampNanos = NO_TIMESTAMP;
+    private long sequence = NO_SEQUENCE;
+    private double batteryLevel = Double.NaN;
+    private double batteryVoltage = Double.NaN;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private double altitude = Double.NaN;
+    private double speed = Double.NaN;
+    private double heading = Double.NaN;
+    private int satellites = NO_INT;
+    private double signalStrength = Double.NaN;
+    private String flightMode;
+    private double temperature = Double.NaN;
+    private String status;
+    private Boolean armed;
+
+    // FAREWELL message fields
+    private String type;
+    private String message;
+    private String serialNumber;
+    private String issuedBy;
+    private double batteryRemaining = Double.NaN;
+
+    /**
+     * Reset every field to "absent" so the instance can be reused
+     */
+    public void clear() {
+        droneId = null;
+        timestampNanos = NO_TIMESTAMP;
+        sequence = NO_SEQUENCE;
+        batteryLevel = Double.NaN;
+        batteryVoltage = Double.NaN;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        altitude = Double.NaN;
+        speed = Double.NaN;
+        heading = Double.NaN;
+        satellites = NO_INT;
+        signalStrength = Double.NaN;
+        flightMode = null;
+        temperature = Double.NaN;
+        status = null;
+        armed = null;
+        type = null;
+        message = null;
+        serialNumber = null;
+        issuedBy = null;
+        batteryRemaining = Double.NaN;
+    }
+
+    /**
+     * Fill this record from a boxed telemetry object
+     *
+     * @param data the telemetry data
+     * @return this record
+     */
+    public TelemetryRecord copyFrom(TelemetryData data) {
+        clear();
+        droneId = data.getDroneId();
+        if (data.getTimestamp() != null) {
+            setTimestamp(data.getTimestamp());
+        }
+        batteryLevel = unbox(data.getBatteryLevel());
+        batteryVoltage = unbox(data.getBatteryVoltage());
+        latitude = unbox(data.getLatitude());
+        longitude = unbox(data.getLongitude());
+        altitude = unbox(data.getAltitude());
+        speed = unbox(data.getSpeed());
+        heading = unbox(data.getHeading());
+        satellites = data.getSatellites() != null ? data.getSatellites() : NO_INT;
+        signalStrength = unbox(data.getSignalStrength());
+        flightMode = data.getFlightMode();
+        temperature = unbox(data.getTemperature());
+        status = data.getStatus();
+        armed = data.getIsArmed();
+        return this;
+    }
+
+    /**
+     * Build the DTO pushed to the frontend
+     *
+     * @param dtoDroneId the ID to expose (the serial number, for frontend compatibility)
+     * @return the telemetry DTO
+     */
+    public DroneTelemetryDto toDto(String dtoDroneId) {
+        return DroneTelemetryDto.builder()
+                .droneId(dtoDroneId)
+                .timestamp(getTimestamp())
+                .batteryLevel(box(batteryLevel))
+                .batteryVoltage(box(batteryVoltage))
+                .latitude(box(latitude))
+                .longitude(box(longitude))
+                .altitude(box(altitude))
+                .speed(box(speed))
+                .heading(box(heading))
+                .satellites(satellites != NO_INT ? satellites : null)
+                .signalStrength(box(signalStrength))
+                .flightMode(flightMode)
+                .temperature(box(temperature))
+                .status(status)
+                .isArmed(armed)
+                .build();
+    }
+
+    /**
+     * Build a farewell message from the FAREWELL fields of this record
+     *
+     * @return the farewell message
+     */
+    public FarewellMessage toFarewellMessage() {
+        return FarewellMessage.builder()
+                .type(type)
+                .droneId(droneId)
+                .serialNumber(serialNumber)
+                .message(message)
+                .timestamp(hasTimestamp() ? getTimestamp() : null)
+                .issuedBy(issuedBy)
+                .batteryRemaining(box(batteryRemaining))
+                .build();
+    }
+
+    public boolean isFarewell() {
+        return TYPE_FAREWELL.equals(type);
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    public boolean hasSequence() {
+        return sequence != NO_SEQUENCE;
+    }
+
+    public boolean hasTimestamp() {
+        return timestampNanos != NO_TIMESTAMP;
+    }
+
+    public Instant getTimestamp() {
+        if (!hasTimestamp()) {
+            return null;
+        }
+        return Instant.ofEpochSecond(Math.floorDiv(timestampNanos, 1_000_000_000L),
+                Math.floorMod(timestampNanos, 1_000_000_000L));
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        timestampNanos = timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+
+    public static Double box(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static double unbox(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
@@ -0,0 +1,231 @@
+package com.huang.backend.mqtt.pipeline;
+
+import com.huang.backend.mqtt.dto.DroneLinkStatsDto;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classifies each telemetry sample of a drone as in order, late or a duplicate.
+ * <p>
+ * Drones that send a sequence number ({@code seq}) are tracked with the highest sequence seen
+ * plus a 64-bit bitmap of the sequences just below it, so a redelivered sample is recognized
+ * exactly and a gap is counted as lost until the missing sample shows up late. For drones
+ * without sequence numbers the sample timestamp is used as a watermark: a repeated timestamp is
+ * a duplicate and an older one is late. The state is a few longs per drone.
+ * <p>
+ * Duplicates are dropped in the decode stage. Late samples are still written to storage (where
+ * a point with the same timestamp overwrites itself, so storage stays idempotent) but never
+ * reach the geofence, status and WebSocket stages, so they cannot overwrite newer live state.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DroneSequenceTracker {
+
+    /**
+     * How a sample relates to the samples seen before
+     */
+    public enum Delivery {
+        IN_ORDER,
+        LATE,
+        DUPLICATE
+    }
+
+    private static final int WINDOW = Long.SIZE;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mqtt.ingest.dedup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * This many consecutive samples too far behind the window mean the drone restarted its counter
+     */
+    @Value("${mqtt.ingest.dedup.reset-after:3}")
+    private int resetAfter;
+
+    private final Map<String, LinkState> states = new ConcurrentHashMap<>();
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder gapFills = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("drone.ingest.duplicates", duplicates, LongAdder::sum)
+                .description("Duplicate telemetry samples dropped")
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.ingest.late", late, LongAdder::sum)
+                .description("Out-of-order telemetry samples kept out of live state")
+                .register(meterRegistry);
+        // 计数器必须单调递增：缺口和迟到补齐分开计数，丢失数 = gaps - gap-fills
+        FunctionCounter.builder("drone.ingest.gaps", gaps, LongAdder::sum)
+                .description("Telemetry sequence numbers skipped when a gap opened")
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.ingest.gap-fills", gapFills, LongAdder::sum)
+                .description("Skipped telemetry sequence numbers that arrived late")
+                .register(meterRegistry);
+        Gauge.builder("drone.ingest.tracked", states, Map::size)
+                .description("Drones with delivery tracking state")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Classify a decoded sample and update the drone's state
+     *
+     * @param droneId the drone UUID
+     * @param record the decoded sample, before a server-side timestamp is filled in
+     * @return the classification; always {@link Delivery#IN_ORDER} when tracking is disabled or the
+     * sample has neither a sequence number nor a timestamp
+     */
+    public Delivery classify(String droneId, TelemetryRecord record) {
+        if (!enabled || (!record.hasSequence() && !record.hasTimestamp())) {
+            return Delivery.IN_ORDER;
+        }
+        LinkState state = states.computeIfAbsent(droneId, id -> new LinkState());
+        Delivery delivery = record.hasSequence()
+                ? state.acceptSequence(record.getSequence())
+                : state.acceptTimestamp(record.getTimestampNanos());
+        if (delivery == Delivery.DUPLICATE) {
+            duplicates.increment();
+        } else if (delivery == Delivery.LATE) {
+            late.increment();
+        }
+        return delivery;
+    }
+
+    /**
+     * @param droneId the drone UUID
+     * @return the drone's delivery statistics, if it sent tracked telemetry
+     */
+    public Optional<DroneLinkStatsDto> getStats(String droneId) {
+        LinkState state = states.get(droneId);
+        return state == null ? Optional.empty() : Optional.of(state.toDto(droneId));
+    }
+
+    /**
+     * @return the delivery statistics of every tracked drone
+     */
+    public List<DroneLinkStatsDto> getAllStats() {
+        List<DroneLinkStatsDto> stats = new ArrayList<>(states.size());
+        states.forEach((droneId, state) -> stats.add(state.toDto(droneId)));
+        return stats;
+    }
+
+    /**
+     * Drop the state of a drone, e.g. after it was deleted
+     *
+     * @param droneId the drone UUID
+     */
+    public void forget(String droneId) {
+        states.remove(droneId);
+    }
+
+    /**
+     * Per-drone state. Samples of one drone are classified by one decode worker, so the lock is
+     * uncontended; it only guards against inline processing and concurrent statistics reads.
+     */
+    private final class LinkState {
+        private long highestSequence = TelemetryRecord.NO_SEQUENCE;
+        /** bit i set = sequence (highestSequence - i) was received */
+        private long window;
+        private long watermark = TelemetryRecord.NO_TIMESTAMP;
+        /** consecutive samples older than the window */
+        private int staleRun;
+
+        private long received;
+        private long duplicateCount;
+        private long lateCount;
+        private long lostCount;
+        private long resets;
+
+        synchronized Delivery acceptSequence(long sequence) {
+            if (highestSequence == TelemetryRecord.NO_SEQUENCE) {
+                highestSequence = sequence;
+                window = 1L;
+                received++;
+                return Delivery.IN_ORDER;
+            }
+            if (sequence > highestSequence) {
+                staleRun = 0;
+                long gap = sequence - highestSequence;
+                if (gap > 1) {
+                    lostCount += gap - 1;
+                    gaps.add(gap - 1);
+                }
+                window = gap >= WINDOW ? 1L : (window << gap) | 1L;
+                highestSequence = sequence;
+                received++;
+                return Delivery.IN_ORDER;
+            }
+            long offset = highestSequence - sequence;
+            if (offset >= WINDOW && ++staleRun >= resetAfter) {
+                resets++;
+                staleRun = 0;
+                log.info("无人机遥测序列号重置: {} -> {}", highestSequence, sequence);
+                highestSequence = sequence;
+                window = 1L;
+                received++;
+                return Delivery.IN_ORDER;
+            }
+            if (offset < WINDOW) {
+                long bit = 1L << offset;
+                if ((window & bit) != 0) {
+                    duplicateCount++;
+                    return Delivery.DUPLICATE;
+                }
+                window |= bit;
+                // counted as lost when the gap opened
+                lostCount--;
+                gapFills.increment();
+            }
+            lateCount++;
+            received++;
+            return Delivery.LATE;
+        }
+
+        synchronized Delivery acceptTimestamp(long timestampNanos) {
+            if (watermark == TelemetryRecord.NO_TIMESTAMP || timestampNanos > watermark) {
+                watermark = timestampNanos;
+                received++;
+                return Delivery.IN_ORDER;
+            }
+            if (timestampNanos == watermark) {
+                duplicateCount++;
+                return Delivery.DUPLICATE;
+            }
+            lateCount++;
+            received++;
+            return Delivery.LATE;
+        }
+
+        synchronized DroneLinkStatsDto toDto(String droneId) {
+            long expected = received + lostCount;
+            return DroneLinkStatsDto.builder()
+                    .droneId(droneId)
+                    .received(received)
+                    .duplicates(duplicateCount)
+                    .late(lateCount)
+                    .lost(lostCount)
+                    .resets(resets)
+                    .lastSequence(highestSequence != TelemetryRecord.NO_SEQUENCE ? highestSequence : null)
+                    .lossRate(expected > 0 ? (double) lostCount / expected : 0.0)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.huang.backend.mqtt.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * A pipeline stage made of N single-threaded shards, each with its own bounded queue.
+ * Items are routed to a shard by key (the drone ID), so all items for one drone are
+ * handled by the same worker in arrival order while different drones run in parallel.
+ * <p>
+ * A stage created with a {@link CoalescingPolicy} degrades under overload instead of blocking:
+ * once a shard's queue reaches the high watermark, a coalescable item replaces the item of the
+ * same key that is still waiting in the queue (last value wins), and if the queue is full it is
+ * shed. Normal queueing resumes when the queue drains to the low watermark. Items that are not
+ * coalescable are never replaced or shed, and are never overtaken by later items of their key.
+ * <p>
+ * {@link #submit} must not be called concurrently for the same key; in the pipeline each key is
+ * submitted by a single upstream worker.
+ *
+ * @param <T> the item type flowing through the stage
+ */
+@Slf4j
+public class ShardedStage<T> {
+
+    /**
+     * Work performed by a stage on each item
+     */
+    @FunctionalInterface
+    public interface StageHandler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    /**
+     * Receives the timing of every processed item, e.g. to record it in Micrometer timers
+     */
+    @FunctionalInterface
+    public interface StageObserver {
+        /**
+         * @param queuedNanos time the item waited in the shard queue
+         * @param serviceNanos time the handler took
+         */
+        void onProcessed(long queuedNanos, long serviceNanos);
+    }
+
+    /**
+     * Overload behaviour of a stage
+     *
+     * @param <T> the item type
+     */
+    public static final class CoalescingPolicy<T> {
+        private final double highWatermark;
+        private final double lowWatermark;
+        private final Predicate<T> coalescable;
+
+        /**
+         * @param highWatermark queue fill ratio (0..1] at which a shard enters overload mode
+         * @param lowWatermark queue fill ratio [0..high) at which a shard leaves overload mode
+         * @param coalescable which items may be replaced by a newer item of the same key, or shed
+         */
+        public CoalescingPolicy(double highWatermark, double lowWatermark, Predicate<T> coalescable) {
+            if (highWatermark <= 0 || highWatermark > 1 || lowWatermark < 0 || lowWatermark >= highWatermark) {
+                throw new IllegalArgumentException("watermarks must satisfy 0 <= low < high <= 1");
+            }
+            this.highWatermark = highWatermark;
+            this.lowWatermark = lowWatermark;
+            this.coalescable = coalescable;
+        }
+    }
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    /** Marks a slot whose item has been taken by the worker */
+    private static final Object TAKEN = new Object();
+
+    private final String name;
+    private final StageHandler<T> handler;
+    private final Shard<T>[] shards;
+    private final Thread[] workers;
+    private final int queueCapacity;
+
+    private final CoalescingPolicy<T> policy;
+    private final int highMark;
+    private final int lowMark;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    private volatile boolean running;
+
+    private StageObserver observer;
+
+    public ShardedStage(String name, int parallelism, int queueCapacity, StageHandler<T> handler) {
+        this(name, parallelism, queueCapacity, handler, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ShardedStage(String name, int parallelism, int queueCapacity, StageHandler<T> handler,
+                        CoalescingPolicy<T> policy) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1 for stage " + name);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be >= 1 for stage " + name);
+        }
+        this.name = name;
+        this.handler = handler;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.highMark = policy != null ? Math.max(1, (int) Math.ceil(queueCapacity * policy.highWatermark)) : 0;
+        this.lowMark = policy != null ? (int) Math.floor(queueCapacity * policy.lowWatermark) : 0;
+        this.shards = new Shard[parallelism];
+        this.workers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            shards[i] = new Shard<>(queueCapacity);
+        }
+    }
+
+    /**
+     * Set the observer notified after each item; must be called before {@link #start()}
+     *
+     * @param observer the observer, or null for none
+     */
+    public void setObserver(StageObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Start the worker threads
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            Shard<T> shard = shards[i];
+            Thread worker = new Thread(() -> runWorker(shard), "ingest-" + name + "-" + i);
+            worker.setDaemon(true);
+            workers[i] = worker;
+            worker.start();
+        }
+        log.info("Ingest stage '{}' started with {} shards (queue capacity {}{})", name, workers.length, queueCapacity,
+                policy != null ? ", coalescing above " + highMark : "");
+    }
+
+    /**
+     * Enqueue an item on the shard owning the given key. Blocks when that shard's queue is
+     * full, which pushes back on the upstream stage (and ultimately on the MQTT client),
+     * unless the item is coalesced or shed under overload.
+     *
+     * @param key the sharding key
+     * @param item the item to process
+     * @throws InterruptedException if interrupted while waiting for queue space
+     */
+    public void submit(String key, T item) throws InterruptedException {
+        Shard<T> shard = shards[shardFor(key)];
+        if (policy == null) {
+            shard.queue.put(new Slot<>(key, item));
+            return;
+        }
+
+        boolean coalescable = policy.coalescable.test(item);
+        if (!coalescable) {
+            // later items of this key must queue behind this one, so close the open slot
+            shard.open.remove(key);
+            shard.queue.put(new Slot<>(key, item));
+            return;
+        }
+
+        if (isOverloaded(shard)) {
+            Slot<T> pending = shard.open.get(key);
+            if (pending != null && pending.replace(item)) {
+                coalesced.incrementAndGet();
+                return;
+            }
+            Slot<T> slot = new Slot<>(key, item);
+            if (!shard.queue.offer(slot)) {
+                shed.incrementAndGet();
+                return;
+            }
+            shard.open.put(key, slot);
+            return;
+        }
+
+        Slot<T> slot = new Slot<>(key, item);
+        shard.queue.put(slot);
+        shard.open.put(key, slot);
+    }
+
+    /**
+     * Map a key to its shard index
+     *
+     * @param key the sharding key
+     * @return the shard index
+     */
+    public int shardFor(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        // 打散hashCode的高位，避免相近UUID集中到同一分片
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+
+    /**
+     * Stop accepting new work, let each worker drain its queue and wait for the workers to exit
+     *
+     * @param timeoutMs the maximum time to wait for each worker
+     */
+    public synchronized void shutdown(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            if (worker == null) {
+                continue;
+            }
+            try {
+                worker.join(timeoutMs);
+                if (worker.isAlive()) {
+                    log.warn("Ingest stage '{}' worker {} did not drain within {}ms", name, worker.getName(), timeoutMs);
+                    worker.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Ingest stage '{}' stopped ({} processed, {} failed, {} coalesced, {} shed)",
+                name, processed.get(), failed.get(), coalesced.get(), shed.get());
+    }
+
+    /**
+     * Update the shard's overload state with hysteresis between the two watermarks
+     */
+    private boolean isOverloaded(Shard<T> shard) {
+        int depth = shard.queue.size();
+        if (shard.overloaded) {
+            if (depth <= lowMark) {
+                shard.overloaded = false;
+                log.info("Ingest stage '{}' shard left overload mode (queue depth {})", name, depth);
+            }
+        } else if (depth >= highMark) {
+            shard.overloaded = true;
+            log.warn("Ingest stage '{}' shard entered overload mode (queue depth {}), coalescing per drone", name, depth);
+        }
+        return shard.overloaded;
+    }
+
+    private void runWorker(Shard<T> shard) {
+        while (true) {
+            Slot<T> slot;
+            try {
+                slot = shard.queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (slot == null) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            if (policy != null) {
+                shard.open.remove(slot.key, slot);
+            }
+            T item = slot.take();
+            long started = System.nanoTime();
+            try {
+                handler.handle(item);
+                processed.incrementAndGet();
+                if (observer != null) {
+                    observer.onProcessed(started - slot.enqueuedAt, System.nanoTime() - started);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("Ingest stage '{}' failed to process item: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the total number of items waiting across all shards
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (Shard<T> shard : shards) {
+            depth += shard.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the combined capacity of all shard queues
+     */
+    public int totalCapacity() {
+        return queueCapacity * shards.length;
+    }
+
+    /**
+     * @return the number of shards currently in overload mode
+     */
+    public int overloadedShards() {
+        int count = 0;
+        for (Shard<T> shard : shards) {
+            if (shard.overloaded) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return shards.length;
+    }
+
+    public boolean isCoalescing() {
+        return policy != null;
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return items replaced by a newer item of the same key before being processed
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return items dropped because the queue was full under overload
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    private static final class Shard<T> {
+        private final BlockingQueue<Slot<T>> queue;
+        /** Queued slots that a newer item of the same key may still replace */
+        private final Map<String, Slot<T>> open = new ConcurrentHashMap<>();
+        private volatile boolean overloaded;
+
+        Shard(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * A queue entry whose item can be swapped for a newer one until the worker takes it
+     */
+    private static final class Slot<T> {
+        private final String key;
+        private final AtomicReference<Object> item;
+        private final long enqueuedAt = System.nanoTime();
+
+        Slot(String key, T item) {
+            this.key = key;
+            this.item = new AtomicReference<>(item);
+        }
+
+        boolean replace(T newer) {
+            Object current = item.get();
+            return current != TAKEN && item.compareAndSet(current, newer);
+        }
+
+        @SuppressWarnings("unchecked")
+        T take() {
+            return (T) item.getAndSet(TAKEN);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.huang.backend.mqtt.pipeline;
+
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.mqtt.model.FarewellMessage;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import lombok.Data;
+
+/**
+ * A raw MQTT telemetry message travelling through the ingest pipeline.
+ * Each stage fills in the fields the following stages need.
+ */
+@Data
+public class TelemetryEnvelope {
+
+    /**
+     * Drone UUID extracted from the topic
+     */
+    private final String droneId;
+
+    /**
+     * The MQTT topic the message arrived on
+     */
+    private final String topic;
+
+    /**
+     * Raw message payload
+     */
+    private final byte[] payload;
+
+    /**
+     * {@link System#nanoTime()} at arrival, used for latency measurements
+     */
+    private final long receivedAtNanos;
+
+    /**
+     * Whether the message arrived on the binary telemetry topic
+     */
+    private boolean binary;
+
+    /**
+     * Whether the message was fed by {@link com.huang.backend.mqtt.capture.MqttReplayDriver};
+     * replayed samples bypass duplicate and late detection
+     */
+    private boolean replayed;
+
+    /**
+     * Whether the sample arrived after a newer one of the same drone (set by the decode stage);
+     * late samples are stored but not applied to live state
+     */
+    private boolean late;
+
+    /**
+     * Decoded telemetry (set by the decode stage for normal telemetry)
+     */
+    private TelemetryRecord telemetry;
+
+    /**
+     * Decoded farewell message (set by the decode stage for FAREWELL messages)
+     */
+    private FarewellMessage farewell;
+
+    /**
+     * Serial number of the drone (set by the evaluate stage when the drone exists)
+     */
+    private String serialNumber;
+
+    /**
+     * Drone status after evaluation (set by the evaluate stage)
+     */
+    private Drone.DroneStatus droneStatus;
+
+    public boolean isFarewell() {
+        return farewell != null;
+    }
+}
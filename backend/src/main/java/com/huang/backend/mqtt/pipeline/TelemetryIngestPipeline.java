@@ -0,0 +1,223 @@
+package com.huang.backend.mqtt.pipeline;
+
+import com.huang.backend.mqtt.service.TelemetryProcessingService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Staged asynchronous ingest pipeline for drone telemetry.
+ * <p>
+ * Messages handed over by the MQTT callback thread flow through four sharded stages:
+ * decode → persist → evaluate → fan-out. Every stage is sharded by drone ID with the same
+ * hash, so the messages of one drone are processed in arrival order while different drones
+ * are processed in parallel. Queues are bounded; a full queue blocks the upstream stage,
+ * which in turn slows down the MQTT client instead of growing memory without limit.
+ * <p>
+ * Decode and persist always apply backpressure, so every sample reaches storage. The evaluate
+ * and fan-out stages can enter an overload mode (see {@link ShardedStage.CoalescingPolicy}) in
+ * which only the newest pending sample per drone is processed, so bursts cost storage throughput
+ * but do not build up geofence and WebSocket latency. Farewell messages are never coalesced.
+ * <p>
+ * Each stage reports how long messages waited in its queues ({@code drone.ingest.stage.wait})
+ * and how long its handler took ({@code drone.ingest.stage.service}) as histograms, next to the
+ * queue depth gauges; the per-step and end-to-end timers are recorded by
+ * {@link TelemetryProcessingService}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TelemetryIngestPipeline {
+
+    private final TelemetryProcessingService processingService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mqtt.ingest.pipeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mqtt.ingest.decode.parallelism:0}")
+    private int decodeParallelism;
+
+    @Value("${mqtt.ingest.persist.parallelism:0}")
+    private int persistParallelism;
+
+    @Value("${mqtt.ingest.evaluate.parallelism:0}")
+    private int evaluateParallelism;
+
+    @Value("${mqtt.ingest.fanout.parallelism:0}")
+    private int fanoutParallelism;
+
+    @Value("${mqtt.ingest.queue-capacity:2048}")
+    private int queueCapacity;
+
+    @Value("${mqtt.ingest.overload.enabled:true}")
+    private boolean overloadEnabled;
+
+    @Value("${mqtt.ingest.overload.high-watermark:0.8}")
+    private double overloadHighWatermark;
+
+    @Value("${mqtt.ingest.overload.low-watermark:0.5}")
+    private double overloadLowWatermark;
+
+    @Value("${mqtt.ingest.shutdown-timeout-ms:5000}")
+    private long shutdownTimeoutMs;
+
+    private ShardedStage<TelemetryEnvelope> decodeStage;
+    private ShardedStage<TelemetryEnvelope> persistStage;
+    private ShardedStage<TelemetryEnvelope> evaluateStage;
+    private ShardedStage<TelemetryEnvelope> fanoutStage;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("遥测处理流水线已禁用，消息将在MQTT回调线程中同步处理");
+            return;
+        }
+
+        // 过载时评估和推送阶段只处理每架无人机最新的一条遥测，告别消息始终保留
+        ShardedStage.CoalescingPolicy<TelemetryEnvelope> overload = overloadEnabled
+                ? new ShardedStage.CoalescingPolicy<>(overloadHighWatermark, overloadLowWatermark,
+                        envelope -> !envelope.isFarewell())
+                : null;
+
+        // 从后往前创建，每个阶段处理完后提交到下一阶段
+        fanoutStage = new ShardedStage<>("fanout", resolve(fanoutParallelism), queueCapacity,
+                processingService::fanOut, overload);
+        evaluateStage = new ShardedStage<>("evaluate", resolve(evaluateParallelism), queueCapacity,
+                envelope -> {
+                    processingService.evaluate(envelope);
+                    fanoutStage.submit(envelope.getDroneId(), envelope);
+                }, overload);
+        persistStage = new ShardedStage<>("persist", resolve(persistParallelism), queueCapacity,
+                envelope -> {
+                    processingService.persist(envelope);
+                    // 迟到的遥测只写入存储，不进入实时状态
+                    if (!envelope.isLate()) {
+                        evaluateStage.submit(envelope.getDroneId(), envelope);
+                    }
+                });
+        decodeStage = new ShardedStage<>("decode", resolve(decodeParallelism), queueCapacity,
+                envelope -> {
+                    if (processingService.decode(envelope)) {
+                        persistStage.submit(envelope.getDroneId(), envelope);
+                    }
+                });
+
+        for (ShardedStage<TelemetryEnvelope> stage : stages()) {
+            registerMetrics(stage);
+            stage.start();
+        }
+        log.info("遥测处理流水线已启动: decode={}, persist={}, evaluate={}, fanout={}, 队列容量={}, 过载合并={}",
+                decodeStage.getParallelism(), persistStage.getParallelism(),
+                evaluateStage.getParallelism(), fanoutStage.getParallelism(), queueCapacity, overloadEnabled);
+    }
+
+    /**
+     * Hand a raw telemetry message over to the pipeline.
+     * Blocks while the decode shard for this drone is full.
+     *
+     * @param envelope the message envelope
+     */
+    public void submit(TelemetryEnvelope envelope) throws Exception {
+        if (!enabled) {
+            processingService.processInline(envelope);
+            return;
+        }
+        decodeStage.submit(envelope.getDroneId(), envelope);
+    }
+
+    /**
+     * Drain and stop the stages in pipeline order, so in-flight messages reach the end
+     */
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        for (ShardedStage<TelemetryEnvelope> stage : stages()) {
+            stage.shutdown(shutdownTimeoutMs);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the stages in pipeline order (empty when the pipeline is disabled)
+     */
+    public List<ShardedStage<TelemetryEnvelope>> stages() {
+        if (decodeStage == null) {
+            return List.of();
+        }
+        return List.of(decodeStage, persistStage, evaluateStage, fanoutStage);
+    }
+
+    private void registerMetrics(ShardedStage<TelemetryEnvelope> stage) {
+        Timer wait = stageTimer("drone.ingest.stage.wait", "Time messages waited in the ingest stage queues", stage);
+        Timer service = stageTimer("drone.ingest.stage.service", "Time the ingest stage spent on each message", stage);
+        stage.setObserver((queuedNanos, serviceNanos) -> {
+            wait.record(queuedNanos, TimeUnit.NANOSECONDS);
+            service.record(serviceNanos, TimeUnit.NANOSECONDS);
+        });
+        Gauge.builder("drone.ingest.queue.depth", stage, ShardedStage::queueDepth)
+                .description("Messages waiting in the ingest stage queues")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        Gauge.builder("drone.ingest.queue.capacity", stage, ShardedStage::totalCapacity)
+                .description("Total capacity of the ingest stage queues")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.ingest.processed", stage, ShardedStage::getProcessedCount)
+                .description("Messages processed by the ingest stage")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.ingest.failed", stage, ShardedStage::getFailedCount)
+                .description("Messages that failed in the ingest stage")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        if (!stage.isCoalescing()) {
+            return;
+        }
+        FunctionCounter.builder("drone.ingest.coalesced", stage, ShardedStage::getCoalescedCount)
+                .description("Messages superseded by a newer message of the same drone under overload")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("drone.ingest.shed", stage, ShardedStage::getShedCount)
+                .description("Messages dropped because the stage queue was full under overload")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+        Gauge.builder("drone.ingest.overloaded", stage, ShardedStage::overloadedShards)
+                .description("Shards of the ingest stage currently in overload mode")
+                .tag("stage", stage.getName())
+                .register(meterRegistry);
+    }
+
+    private Timer stageTimer(String name, String description, ShardedStage<TelemetryEnvelope> stage) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("stage", stage.getName())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    /**
+     * A parallelism of 0 or less means "one worker per available CPU core"
+     */
+    private static int resolve(int parallelism) {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,19 @@
+package com.huang.backend.mqtt.routing;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * Handles the messages of one MQTT topic family registered with {@link MqttTopicRouter}
+ */
+@FunctionalInterface
+public interface MqttMessageHandler {
+
+    /**
+     * Handle a message
+     *
+     * @param topic the topic the message arrived on
+     * @param droneId the drone ID captured from the topic's {@code +} level, or null if the filter has none
+     * @param message the message
+     */
+    void handle(String topic, String droneId, MqttMessage message) throws Exception;
+}
@@ -0,0 +1,227 @@
+package com.huang.backend.mqtt.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches MQTT topics to handlers using a trie of topic filters built once at startup.
+ * <p>
+ * Filters use MQTT wildcard syntax: {@code +} matches exactly one level and {@code #}
+ * (last level only) matches any number of remaining levels. Routing walks the topic's
+ * {@code /}-separated levels once, comparing them in place against the trie without splitting
+ * the topic or compiling regular expressions, and captures the level matched by the first
+ * {@code +}, which for the {@code drones/+/...} topic families is the drone ID.
+ * <p>
+ * When several filters match, literal levels win over {@code +}, which wins over {@code #}.
+ * As in the MQTT specification, wildcards at the first level do not match topics starting
+ * with {@code $}. Instances are immutable and safe for concurrent use.
+ *
+ * @param <H> handler type
+ */
+public final class MqttTopicRouter<H> {
+
+    private final Node<H> root;
+
+    private MqttTopicRouter(Node<H> root) {
+        this.root = root;
+    }
+
+    public static <H> Builder<H> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Route a topic
+     *
+     * @param topic the topic a message arrived on
+     * @return the matching handler and captured drone ID, or null if no filter matches
+     */
+    public Match<H> route(String topic) {
+        return match(root, topic, 0, null);
+    }
+
+    private static <H> Match<H> match(Node<H> node, String topic, int start, String captured) {
+        int end = topic.indexOf('/', start);
+        boolean last = end < 0;
+        if (last) {
+            end = topic.length();
+        }
+        int length = end - start;
+
+        // literal levels first
+        for (int i = 0; i < node.literalCount; i++) {
+            String level = node.literals[i];
+            if (level.length() == length && topic.regionMatches(start, level, 0, length)) {
+                Match<H> match = descend(node.literalChildren[i], topic, end, last, captured);
+                if (match != null) {
+                    return match;
+                }
+                break;
+            }
+        }
+
+        boolean wildcardAllowed = start != 0 || !topic.startsWith("$");
+        if (node.singleLevel != null && wildcardAllowed) {
+            String value = captured != null ? captured : topic.substring(start, end);
+            Match<H> match = descend(node.singleLevel, topic, end, last, value);
+            if (match != null) {
+                return match;
+            }
+        }
+
+        if (node.multiLevelHandler != null && wildcardAllowed) {
+            return new Match<>(node.multiLevelHandler, captured);
+        }
+        return null;
+    }
+
+    private static <H> Match<H> descend(Node<H> child, String topic, int end, boolean last, String captured) {
+        if (last) {
+            if (child.handler != null) {
+                return new Match<>(child.handler, captured);
+            }
+            // "a/#" also matches "a"
+            return child.multiLevelHandler != null ? new Match<>(child.multiLevelHandler, captured) : null;
+        }
+        return match(child, topic, end + 1, captured);
+    }
+
+    /**
+     * Result of routing a topic
+     *
+     * @param <H> handler type
+     */
+    public static final class Match<H> {
+        private final H handler;
+        private final String droneId;
+
+        Match(H handler, String droneId) {
+            this.handler = handler;
+            this.droneId = droneId;
+        }
+
+        public H getHandler() {
+            return handler;
+        }
+
+        /**
+         * @return the topic level matched by the first {@code +} wildcard, or null if the filter has none
+         */
+        public String getDroneId() {
+            return droneId;
+        }
+    }
+
+    /**
+     * Collects topic filters and builds an immutable router
+     *
+     * @param <H> handler type
+     */
+    public static final class Builder<H> {
+        private final MutableNode<H> root = new MutableNode<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Register a handler for a topic filter
+         *
+         * @param filter an MQTT topic filter such as {@code drones/+/telemetry}
+         * @param handler the handler
+         * @return this builder
+         * @throws IllegalArgumentException if the filter is malformed or already registered
+         */
+        public Builder<H> route(String filter, H handler) {
+            if (filter == null || filter.isEmpty()) {
+                throw new IllegalArgumentException("Topic filter must not be empty");
+            }
+            String[] levels = filter.split("/", -1);
+            MutableNode<H> node = root;
+            for (int i = 0; i < levels.length; i++) {
+                String level = levels[i];
+                if (level.equals("#")) {
+                    if (i != levels.length - 1) {
+                        throw new IllegalArgumentException("'#' must be the last level of topic filter: " + filter);
+                    }
+                    if (node.multiLevelHandler != null) {
+                        throw new IllegalArgumentException("Duplicate topic filter: " + filter);
+                    }
+                    node.multiLevelHandler = handler;
+                    return this;
+                }
+                if (level.contains("#") || (level.contains("+") && !level.equals("+"))) {
+                    throw new IllegalArgumentException("Wildcards must occupy a whole level in topic filter: " + filter);
+                }
+                node = level.equals("+")
+                        ? (node.singleLevel != null ? node.singleLevel : (node.singleLevel = new MutableNode<>()))
+                        : node.literals.computeIfAbsent(level);
+            }
+            if (node.handler != null) {
+                throw new IllegalArgumentException("Duplicate topic filter: " + filter);
+            }
+            node.handler = handler;
+            return this;
+        }
+
+        public MqttTopicRouter<H> build() {
+            return new MqttTopicRouter<>(root.freeze());
+        }
+    }
+
+    private static final class Node<H> {
+        private final String[] literals;
+        private final Node<H>[] literalChildren;
+        private final int literalCount;
+        private final Node<H> singleLevel;
+        private final H handler;
+        private final H multiLevelHandler;
+
+        Node(String[] literals, Node<H>[] literalChildren, Node<H> singleLevel, H handler, H multiLevelHandler) {
+            this.literals = literals;
+            this.literalChildren = literalChildren;
+            this.literalCount = literals.length;
+            this.singleLevel = singleLevel;
+            this.handler = handler;
+            this.multiLevelHandler = multiLevelHandler;
+        }
+    }
+
+    private static final class MutableNode<H> {
+        private final LiteralChildren<H> literals = new LiteralChildren<>();
+        private MutableNode<H> singleLevel;
+        private H handler;
+        private H multiLevelHandler;
+
+        @SuppressWarnings("unchecked")
+        Node<H> freeze() {
+            int size = literals.levels.size();
+            String[] levels = literals.levels.toArray(new String[0]);
+            Node<H>[] children = (Node<H>[]) new Node[size];
+            for (int i = 0; i < size; i++) {
+                children[i] = literals.children.get(i).freeze();
+            }
+            return new Node<>(levels, children, singleLevel != null ? singleLevel.freeze() : null,
+                    handler, multiLevelHandler);
+        }
+    }
+
+    /**
+     * Literal children in registration order; topic families are few, so a linear scan is
+     * cheaper than hashing a substring of the topic
+     */
+    private static final class LiteralChildren<H> {
+        private final List<String> levels = new ArrayList<>();
+        private final List<MutableNode<H>> children = new ArrayList<>();
+
+        MutableNode<H> computeIfAbsent(String level) {
+            int index = levels.indexOf(level);
+            if (index >= 0) {
+                return children.get(index);
+            }
+            MutableNode<H> child = new MutableNode<>();
+            levels.add(level);
+            children.add(child);
+            return child;
+        }
+    }
+}
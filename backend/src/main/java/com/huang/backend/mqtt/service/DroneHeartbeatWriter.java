@@ -0,0 +1,146 @@
+package com.huang.backend.mqtt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces drone heartbeats in memory and writes them to {@code drones.last_heartbeat_at}
+ * periodically.
+ * <p>
+ * The ingest path only records the latest heartbeat per drone; every flush interval the pending
+ * heartbeats are written with one {@code UPDATE ... FROM (VALUES ...)} statement per chunk.
+ * Database writes therefore scale with the number of active drones instead of the message rate,
+ * and only the heartbeat column is touched (no {@code @PreUpdate}, no full-row update).
+ * A heartbeat never moves {@code last_heartbeat_at} backwards.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DroneHeartbeatWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${drone.heartbeat.flush-chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Latest heartbeat (epoch milliseconds) per drone not yet written
+     */
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+    private Counter heartbeatsWritten;
+    private Counter flushFailures;
+    private Timer chunkTimer;
+
+    @PostConstruct
+    public void init() {
+        heartbeatsWritten = meterRegistry.counter("drone.heartbeat.written");
+        flushFailures = meterRegistry.counter("drone.heartbeat.flush.failed");
+        chunkTimer = Timer.builder("drone.heartbeat.flush")
+                .description("Time taken by one bulk heartbeat UPDATE in PostgreSQL")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+        Gauge.builder("drone.heartbeat.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Record a heartbeat; only the latest one per drone is kept until the next flush
+     *
+     * @param droneId the drone UUID
+     * @param at the heartbeat time
+     */
+    public void record(UUID droneId, Instant at) {
+        pending.merge(droneId, at.toEpochMilli(), Math::max);
+    }
+
+    /**
+     * Write all pending heartbeats
+     */
+    @Scheduled(fixedDelayString = "${drone.heartbeat.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UUID> ids = new ArrayList<>(pending.size());
+        List<Long> times = new ArrayList<>(pending.size());
+        for (Map.Entry<UUID, Long> entry : pending.entrySet()) {
+            // remove only if unchanged, so a newer heartbeat recorded meanwhile stays pending
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                ids.add(entry.getKey());
+                times.add(entry.getValue());
+            }
+        }
+
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, ids.size());
+            try {
+                long started = System.nanoTime();
+                writeChunk(ids.subList(from, to), times.subList(from, to));
+                chunkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                heartbeatsWritten.increment(to - from);
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("批量更新无人机心跳时间失败: {}", e.getMessage(), e);
+                // put the chunk back for the next flush unless newer heartbeats arrived
+                for (int i = from; i < to; i++) {
+                    pending.merge(ids.get(i), times.get(i), Math::max);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of drones with a heartbeat waiting to be written
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    private void writeChunk(List<UUID> ids, List<Long> times) {
+        StringBuilder sql = new StringBuilder(
+                "UPDATE drones SET last_heartbeat_at = v.ts FROM (VALUES ");
+        Object[] args = new Object[ids.size() * 2];
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(CAST(? AS uuid), CAST(? AS timestamptz))");
+            args[i * 2] = ids.get(i);
+            args[i * 2 + 1] = OffsetDateTime.ofInstant(Instant.ofEpochMilli(times.get(i)), ZoneOffset.UTC);
+        }
+        sql.append(") AS v(id, ts) WHERE drones.drone_id = v.id")
+                .append(" AND (drones.last_heartbeat_at IS NULL OR drones.last_heartbeat_at < v.ts)");
+        int updated = jdbcTemplate.update(sql.toString(), args);
+        log.debug("批量更新了 {} 架无人机的心跳时间（提交 {} 条）", updated, ids.size());
+    }
+}
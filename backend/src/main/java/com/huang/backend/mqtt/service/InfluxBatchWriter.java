@@ -0,0 +1,441 @@
+package com.huang.backend.mqtt.service;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.exceptions.InfluxException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived batching writer for InfluxDB line protocol.
+ * <p>
+ * Callers enqueue encoded line-protocol records into a bounded buffer and return immediately
+ * while it has room (see {@link #write(byte[])} for the bounded wait when it is full).
+ * A single flusher thread sends them to InfluxDB in batches, either when {@code batchSize}
+ * records are waiting or when {@code flushIntervalMs} has passed since the first record of
+ * the batch arrived. Retryable failures (timeouts, 429, 5xx) are retried with exponential
+ * backoff plus random jitter.
+ * <p>
+ * When retries are exhausted, or the buffer fills up while the flusher is still retrying, the
+ * batch goes to the {@link InfluxWriteSpool} on local disk instead of being dropped. From then on
+ * every batch is appended to the spool until it is empty again, and a drainer thread writes the
+ * spooled batches back in order at no more than {@code influxdb.spool.drain-rate} points per
+ * second once InfluxDB accepts writes, so recovery does not overwhelm a freshly restarted server
+ * and the points of a drone are never written out of order. While the spool is active a caller
+ * finding the buffer full waits up to {@code influxdb.write.full-wait-ms} for room; records are
+ * dropped (and counted) only if the buffer is still full after that, or if the spool is disabled.
+ * Batches InfluxDB rejects as invalid (4xx) are dropped and never spooled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InfluxBatchWriter {
+
+    private static final byte NEWLINE = '\n';
+    private static final long RETRY_POLL_MS = 50;
+
+    private final InfluxDBClient influxDBClient;
+    private final MeterRegistry meterRegistry;
+    private final InfluxWriteSpool spool;
+
+    @Value("${influxdb.bucket}")
+    private String bucket;
+
+    @Value("${influxdb.org}")
+    private String organization;
+
+    @Value("${influxdb.write.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${influxdb.write.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    @Value("${influxdb.write.buffer-limit:100000}")
+    private int bufferLimit;
+
+    @Value("${influxdb.write.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${influxdb.write.retry-interval-ms:500}")
+    private long retryIntervalMs;
+
+    @Value("${influxdb.write.max-retry-delay-ms:30000}")
+    private long maxRetryDelayMs;
+
+    @Value("${influxdb.write.jitter-ms:250}")
+    private long jitterMs;
+
+    @Value("${influxdb.write.full-wait-ms:1000}")
+    private long fullWaitMs;
+
+    @Value("${influxdb.spool.drain-rate:20000}")
+    private int drainRate;
+
+    private BlockingQueue<byte[]> buffer;
+    private WriteApiBlocking writeApi;
+    private Thread flusher;
+    private Thread drainer;
+    private volatile boolean running;
+
+    /** Points per second written by the drainer over its last batch */
+    private volatile double drainPointsPerSecond;
+
+    /** 批量拼接时复用的缓冲区，只在 flusher 线程中使用 */
+    private byte[] batchBytes = new byte[64 * 1024];
+
+    private Counter flushedPoints;
+    private Counter droppedPoints;
+    private Counter flushedBatches;
+    private Counter failedBatches;
+    private Counter retries;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(bufferLimit);
+        writeApi = influxDBClient.getWriteApiBlocking();
+
+        flushedPoints = Counter.builder("influxdb.write.points.flushed")
+                .description("Points successfully written to InfluxDB")
+                .register(meterRegistry);
+        droppedPoints = Counter.builder("influxdb.write.points.dropped")
+                .description("Points dropped because the buffer was full or the write failed permanently")
+                .register(meterRegistry);
+        flushedBatches = Counter.builder("influxdb.write.batches")
+                .description("Batches successfully written to InfluxDB")
+                .register(meterRegistry);
+        failedBatches = Counter.builder("influxdb.write.batches.failed")
+                .description("Batches that could not be written after all retries")
+                .register(meterRegistry);
+        retries = Counter.builder("influxdb.write.retries")
+                .description("Retried batch writes")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("influxdb.write.flush")
+                .description("Time taken by successful batch writes to InfluxDB")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+        Gauge.builder("influxdb.write.buffer.size", buffer, BlockingQueue::size)
+                .description("Points waiting to be written to InfluxDB")
+                .register(meterRegistry);
+        Gauge.builder("influxdb.spool.drain.rate", this, writer -> writer.drainPointsPerSecond)
+                .description("Points per second currently drained from the disk spool to InfluxDB")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "influx-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        if (spool.isActive()) {
+            drainer = new Thread(this::runDrainer, "influx-spool-drainer");
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+        log.info("InfluxDB batch writer started: batchSize={}, flushInterval={}ms, bufferLimit={}",
+                batchSize, flushIntervalMs, bufferLimit);
+    }
+
+    /**
+     * Enqueue one line-protocol record
+     * <p>
+     * Returns immediately while the buffer has room. When it is full and the disk spool is active,
+     * the caller blocks for at most {@code influxdb.write.full-wait-ms} while the flusher moves the
+     * backlog to the spool; without the spool a full buffer drops the record at once.
+     *
+     * @param record the encoded record, without trailing newline
+     * @return true if the record was buffered, false if it was dropped because the buffer stayed full
+     */
+    public boolean write(byte[] record) {
+        if (buffer.offer(record)) {
+            return true;
+        }
+        if (spool.isActive()) {
+            // 缓冲区满说明flusher正在重试，等待它把积压的批次转入磁盘缓冲
+            try {
+                if (buffer.offer(record, fullWaitMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        droppedPoints.increment();
+        log.debug("InfluxDB write buffer full ({} points), dropping record", bufferLimit);
+        return false;
+    }
+
+    /**
+     * Enqueue one line-protocol record, waiting like {@link #write(byte[])} when the buffer is full
+     *
+     * @param record the line-protocol record
+     * @return true if the record was buffered
+     */
+    public boolean write(String record) {
+        return write(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stop the flusher after writing out everything still buffered
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+            if (drainer != null) {
+                drainer.interrupt();
+                drainer.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("InfluxDB batch writer stopped with {} unwritten points", buffer.size());
+        }
+    }
+
+    /**
+     * @return the number of points waiting to be written
+     */
+    public int bufferedPoints() {
+        return buffer.size();
+    }
+
+    private void runFlusher() {
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for the first record, then linger until the batch is full or the flush interval is over
+     */
+    private void collectBatch(List<byte[]> batch) throws InterruptedException {
+        byte[] first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        buffer.drainTo(batch, batchSize - batch.size());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running && batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            byte[] next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            buffer.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void flush(List<byte[]> batch) {
+        int length = join(batch);
+        if (spool.isActive() && !spool.isEmpty()) {
+            // 磁盘缓冲中还有更早的数据，新批次排在后面，保证同一无人机的数据按顺序写入
+            if (!spool.append(batchBytes, length, batch.size())) {
+                failedBatches.increment();
+                droppedPoints.increment(batch.size());
+            }
+            return;
+        }
+        String body = new String(batchBytes, 0, length, StandardCharsets.UTF_8);
+        int attempt = 0;
+        while (true) {
+            try {
+                long started = System.nanoTime();
+                writeApi.writeRecord(bucket, organization, WritePrecision.NS, body);
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                flushedPoints.increment(batch.size());
+                flushedBatches.increment();
+                log.debug("Flushed {} points to InfluxDB", batch.size());
+                return;
+            } catch (Exception e) {
+                if (!isRetryable(e)) {
+                    failedBatches.increment();
+                    droppedPoints.increment(batch.size());
+                    log.error("InfluxDB rejected {} points: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                if (attempt >= maxRetries || !running || (spool.isActive() && buffer.remainingCapacity() == 0)) {
+                    failedBatches.increment();
+                    if (spool.isActive() && spool.append(batchBytes, length, batch.size())) {
+                        log.warn("Failed to write {} points to InfluxDB after {} attempts ({}), spooled to disk",
+                                batch.size(), attempt + 1, e.getMessage());
+                        return;
+                    }
+                    droppedPoints.increment(batch.size());
+                    log.error("Failed to write {} points to InfluxDB after {} attempts: {}",
+                            batch.size(), attempt + 1, e.getMessage());
+                    return;
+                }
+                long delay = backoffDelay(attempt++);
+                retries.increment();
+                log.warn("InfluxDB write failed ({}), retrying in {}ms (attempt {}/{})",
+                        e.getMessage(), delay, attempt, maxRetries);
+                try {
+                    awaitRetry(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    if (!spool.isActive() || !spool.append(batchBytes, length, batch.size())) {
+                        droppedPoints.increment(batch.size());
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleep before a retry, cut short when the buffer fills up and the spool can take over
+     */
+    private void awaitRetry(long delayMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        while (true) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0 || (spool.isActive() && buffer.remainingCapacity() == 0)) {
+                return;
+            }
+            Thread.sleep(Math.min(remaining, RETRY_POLL_MS));
+        }
+    }
+
+    /**
+     * Write spooled batches back to InfluxDB in order, at no more than {@code drainRate} points
+     * per second, backing off while InfluxDB is still unavailable
+     */
+    private void runDrainer() {
+        int attempt = 0;
+        while (running) {
+            try {
+                InfluxWriteSpool.Batch batch = spool.peek();
+                if (batch == null) {
+                    drainPointsPerSecond = 0;
+                    Thread.sleep(flushIntervalMs);
+                    continue;
+                }
+                long started = System.nanoTime();
+                try {
+                    writeApi.writeRecord(bucket, organization, WritePrecision.NS, batch.getBody());
+                    spool.commit(batch, true);
+                    flushedPoints.increment(batch.getPoints());
+                    flushedBatches.increment();
+                    if (attempt > 0) {
+                        log.info("InfluxDB可以写入，开始补写磁盘缓冲中的 {} 个数据点", spool.pendingPoints() + batch.getPoints());
+                    }
+                    attempt = 0;
+                } catch (Exception e) {
+                    if (!isRetryable(e)) {
+                        spool.commit(batch, false);
+                        failedBatches.increment();
+                        droppedPoints.increment(batch.getPoints());
+                        log.error("InfluxDB rejected {} spooled points: {}", batch.getPoints(), e.getMessage());
+                        continue;
+                    }
+                    long delay = backoffDelay(attempt++);
+                    log.debug("InfluxDB still unavailable ({}), retrying spooled batch in {}ms", e.getMessage(), delay);
+                    drainPointsPerSecond = 0;
+                    Thread.sleep(delay);
+                    continue;
+                }
+                // 限速补写，避免刚恢复的InfluxDB被积压数据压垮
+                long budgetNanos = drainRate > 0 ? batch.getPoints() * 1_000_000_000L / drainRate : 0;
+                long elapsed = System.nanoTime() - started;
+                if (budgetNanos > elapsed) {
+                    TimeUnit.NANOSECONDS.sleep(budgetNanos - elapsed);
+                }
+                drainPointsPerSecond = batch.getPoints() * 1e9 / Math.max(1, System.nanoTime() - started);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("读取InfluxDB磁盘缓冲失败: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(maxRetryDelayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff capped at maxRetryDelayMs, plus up to jitterMs of random jitter
+     * so that several backends do not retry in lockstep
+     */
+    long backoffDelay(int attempt) {
+        long exponential = retryIntervalMs << Math.min(attempt, 20);
+        long capped = Math.min(exponential, maxRetryDelayMs);
+        long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0;
+        return capped + jitter;
+    }
+
+    private boolean isRetryable(Exception e) {
+        if (e instanceof InfluxException influxException) {
+            int status = influxException.status();
+            // status 0 means the request never got a response (connection refused, timeout)
+            return status == 0 || status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * Join the records of a batch into {@link #batchBytes}, one per line
+     *
+     * @return the number of bytes used
+     */
+    private int join(List<byte[]> batch) {
+        int length = batch.size();
+        for (byte[] record : batch) {
+            length += record.length;
+        }
+        if (batchBytes.length < length) {
+            batchBytes = Arrays.copyOf(batchBytes, Math.max(length, batchBytes.length * 2));
+        }
+        int pos = 0;
+        for (byte[] record : batch) {
+            System.arraycopy(record, 0, batchBytes, pos, record.length);
+            pos += record.length;
+            batchBytes[pos++] = NEWLINE;
+        }
+        return pos;
+    }
+}
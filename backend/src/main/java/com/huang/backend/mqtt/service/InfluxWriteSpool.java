@@ -0,0 +1,398 @@
+package com.huang.backend.mqtt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Durable first-in-first-out spool of line-protocol batches on local disk, used by
+ * {@link InfluxBatchWriter} while InfluxDB cannot take writes.
+ * <p>
+ * Batches are appended to segment files in the order they are spooled and read back in the same
+ * order, so the points of a drone reach InfluxDB in the order they were recorded. Each segment
+ * stores how far it has been drained in its header, so after a restart draining resumes where it
+ * stopped (at worst one batch is written twice, which InfluxDB treats as an overwrite).
+ * <pre>
+ * header  (16 bytes)  int magic 'DSP1' | int version | long drained offset
+ * batch   (repeated)  int length | int points | long spooled at (epoch ms) | line protocol
+ * </pre>
+ * All methods are synchronized; appends come from the writer's flusher thread and reads from its
+ * drainer thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InfluxWriteSpool {
+
+    static final int MAGIC = 0x44535031;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 16;
+    private static final int DRAINED_OFFSET_POSITION = 8;
+    private static final int BATCH_HEADER_LENGTH = 16;
+
+    private static final String FILE_PREFIX = "spool-";
+    private static final String FILE_SUFFIX = ".seg";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${influxdb.spool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${influxdb.spool.directory:./spool}")
+    private String directory;
+
+    @Value("${influxdb.spool.segment-size-mb:16}")
+    private int segmentSizeMb;
+
+    @Value("${influxdb.spool.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private Path directoryPath;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextIndex;
+    private long sizeBytes;
+    private long pendingPoints;
+
+    /** The batch at the head of the spool, read ahead for {@link #peek()} and the age gauge */
+    private Batch head;
+
+    private volatile boolean active;
+
+    private Counter spooledPoints;
+    private Counter drainedPoints;
+    private Counter droppedPoints;
+
+    @PostConstruct
+    public void init() {
+        spooledPoints = Counter.builder("influxdb.spool.points.spooled")
+                .description("Points written to the disk spool because InfluxDB could not take them")
+                .register(meterRegistry);
+        drainedPoints = Counter.builder("influxdb.spool.points.drained")
+                .description("Spooled points written to InfluxDB after it recovered")
+                .register(meterRegistry);
+        droppedPoints = Counter.builder("influxdb.spool.points.dropped")
+                .description("Points not spooled because the spool was full or the disk failed")
+                .register(meterRegistry);
+        Gauge.builder("influxdb.spool.size.bytes", this, InfluxWriteSpool::sizeBytes)
+                .description("Bytes waiting in the disk spool")
+                .register(meterRegistry);
+        Gauge.builder("influxdb.spool.points", this, InfluxWriteSpool::pendingPoints)
+                .description("Points waiting in the disk spool")
+                .register(meterRegistry);
+        Gauge.builder("influxdb.spool.age.seconds", this, InfluxWriteSpool::oldestAgeSeconds)
+                .description("Age of the oldest batch waiting in the disk spool")
+                .register(meterRegistry);
+
+        directoryPath = Paths.get(directory);
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directoryPath);
+            recover();
+            active = true;
+            if (pendingPoints > 0) {
+                log.warn("InfluxDB写入缓冲目录中有 {} 个未写入的数据点（{} 字节），将在InfluxDB可用时补写",
+                        pendingPoints, sizeBytes);
+            }
+        } catch (IOException e) {
+            log.error("无法打开InfluxDB写入缓冲目录 {}，InfluxDB不可用时数据将丢失: {}",
+                    directoryPath.toAbsolutePath(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append a batch to the tail of the spool
+     *
+     * @param body line-protocol records separated by newlines
+     * @param length the number of bytes of {@code body} to spool
+     * @param points the number of records in the batch
+     * @return true if the batch is on disk, false if it was dropped
+     */
+    public synchronized boolean append(byte[] body, int length, int points) {
+        if (!active) {
+            droppedPoints.increment(points);
+            return false;
+        }
+        int recordSize = BATCH_HEADER_LENGTH + length;
+        if (sizeBytes + recordSize > maxSizeMb * 1024 * 1024) {
+            droppedPoints.increment(points);
+            log.error("InfluxDB写入缓冲已满（{} 字节），丢弃 {} 个数据点", sizeBytes, points);
+            return false;
+        }
+        try {
+            Segment tail = segments.peekLast();
+            if (tail == null || tail.writePosition + recordSize > segmentBytes() && tail.writePosition > HEADER_LENGTH) {
+                tail = createSegment();
+            }
+            ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_LENGTH)
+                    .putInt(length + BATCH_HEADER_LENGTH - Integer.BYTES)
+                    .putInt(points)
+                    .putLong(System.currentTimeMillis())
+                    .flip();
+            long position = tail.writePosition;
+            position += writeFully(tail.channel, header, position);
+            writeFully(tail.channel, ByteBuffer.wrap(body, 0, length), position);
+            // 只在InfluxDB不可用期间按批次落盘，每批同步一次的开销可以接受
+            tail.channel.force(false);
+            tail.writePosition += recordSize;
+            sizeBytes += recordSize;
+            pendingPoints += points;
+            spooledPoints.increment(points);
+            return true;
+        } catch (IOException e) {
+            droppedPoints.increment(points);
+            log.error("写入InfluxDB写入缓冲失败，丢弃 {} 个数据点: {}", points, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Read the oldest batch without removing it
+     *
+     * @return the oldest batch, or null if the spool is empty
+     */
+    public synchronized Batch peek() throws IOException {
+        if (head != null) {
+            return head;
+        }
+        Segment segment = segments.peekFirst();
+        if (segment == null || segment.readPosition >= segment.writePosition) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_LENGTH);
+        readFully(segment.channel, header, segment.readPosition);
+        header.flip();
+        int length = header.getInt() - (BATCH_HEADER_LENGTH - Integer.BYTES);
+        int points = header.getInt();
+        long spooledAt = header.getLong();
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(segment.channel, body, segment.readPosition + BATCH_HEADER_LENGTH);
+        head = new Batch(new String(body.array(), StandardCharsets.UTF_8), points, spooledAt,
+                BATCH_HEADER_LENGTH + length);
+        return head;
+    }
+
+    /**
+     * Remove the batch returned by {@link #peek()} once it has been written to InfluxDB
+     *
+     * @param batch the batch returned by {@link #peek()}
+     * @param written whether the batch was written, or given up on
+     */
+    public synchronized void commit(Batch batch, boolean written) throws IOException {
+        if (batch != head) {
+            throw new IllegalStateException("Only the head batch can be committed");
+        }
+        head = null;
+        Segment segment = segments.peekFirst();
+        segment.readPosition += batch.size;
+        sizeBytes -= batch.size;
+        pendingPoints -= batch.points;
+        if (written) {
+            drainedPoints.increment(batch.points);
+        }
+        if (segment.readPosition >= segment.writePosition) {
+            // 段已全部写入InfluxDB，删除；下一次追加会新建段
+            segments.removeFirst();
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            sizeBytes -= HEADER_LENGTH;
+        } else {
+            writeFully(segment.channel, ByteBuffer.allocate(Long.BYTES).putLong(segment.readPosition).flip(),
+                    DRAINED_OFFSET_POSITION);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingPoints == 0;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long pendingPoints() {
+        return pendingPoints;
+    }
+
+    /**
+     * @return seconds since the oldest waiting batch was spooled, or 0 when the spool is empty
+     */
+    public synchronized double oldestAgeSeconds() {
+        try {
+            Batch oldest = peek();
+            return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.spooledAt) / 1000.0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        active = false;
+        for (Segment segment : segments) {
+            try {
+                segment.channel.force(true);
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("关闭InfluxDB写入缓冲段失败: {}", e.getMessage());
+            }
+        }
+        segments.clear();
+        head = null;
+    }
+
+    /**
+     * Open the segments left by a previous run and find the undrained batches in them
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directoryPath)) {
+            files = listing.filter(InfluxWriteSpool::isSegmentFile).sorted().toList();
+        }
+        for (Path file : files) {
+            nextIndex = Math.max(nextIndex, indexOf(file) + 1);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            if (channel.size() < HEADER_LENGTH || readFully(channel, header, 0) < HEADER_LENGTH
+                    || header.flip().getInt() != MAGIC || header.getInt() != VERSION) {
+                log.warn("忽略无效的InfluxDB写入缓冲段: {}", file);
+                channel.close();
+                continue;
+            }
+            Segment segment = new Segment(file, channel);
+            segment.readPosition = Math.max(HEADER_LENGTH, header.getLong());
+            segment.writePosition = segment.readPosition;
+            long points = 0;
+            ByteBuffer batchHeader = ByteBuffer.allocate(BATCH_HEADER_LENGTH);
+            // 扫描到最后一条完整的批次，崩溃时写了一半的批次被截掉
+            while (segment.writePosition + BATCH_HEADER_LENGTH <= channel.size()) {
+                batchHeader.clear();
+                readFully(channel, batchHeader, segment.writePosition);
+                batchHeader.flip();
+                long size = Integer.BYTES + (long) batchHeader.getInt();
+                if (size < BATCH_HEADER_LENGTH || segment.writePosition + size > channel.size()) {
+                    break;
+                }
+                points += batchHeader.getInt();
+                segment.writePosition += size;
+            }
+            channel.truncate(segment.writePosition);
+            if (segment.readPosition >= segment.writePosition) {
+                channel.close();
+                Files.deleteIfExists(file);
+                continue;
+            }
+            segments.addLast(segment);
+            sizeBytes += HEADER_LENGTH + segment.writePosition - segment.readPosition;
+            pendingPoints += points;
+        }
+    }
+
+    private Segment createSegment() throws IOException {
+        Path file = directoryPath.resolve(String.format("%s%08d%s", FILE_PREFIX, nextIndex++, FILE_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(HEADER_LENGTH)
+                .flip();
+        writeFully(channel, header, 0);
+        Segment segment = new Segment(file, channel);
+        segment.readPosition = HEADER_LENGTH;
+        segment.writePosition = HEADER_LENGTH;
+        segments.addLast(segment);
+        sizeBytes += HEADER_LENGTH;
+        return segment;
+    }
+
+    private long segmentBytes() {
+        return Math.max(1, segmentSizeMb) * 1024L * 1024L;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + read);
+            if (n < 0) {
+                throw new IOException("Unexpected end of spool segment");
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    private static boolean isSegmentFile(Path file) {
+        return indexOf(file) >= 0;
+    }
+
+    private static long indexOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A spooled batch of line-protocol records
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Batch {
+        private final String body;
+        private final int points;
+        private final long spooledAt;
+        /** Bytes the batch occupies in its segment */
+        private final int size;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private long readPosition;
+        private long writePosition;
+
+        Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
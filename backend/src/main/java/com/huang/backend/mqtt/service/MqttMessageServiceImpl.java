@@ -7,8 +7,7 @@ import com.huang.backend.mqtt.dto.MqttMessageRequestDto;
 import com.huang.backend.mqtt.dto.MqttMessageResponseDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.stereotype.Service;
 
@@ -17,6 +16,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Implementation of MQTT message service
@@ -26,7 +27,6 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class MqttMessageServiceImpl implements MqttMessageService {
 
-    private final MqttClient mqttClient;
     private final DroneRepository droneRepository;
     private final MqttPublisherService mqttPublisherService;
 
@@ -73,7 +73,7 @@ public class MqttMessageServiceImpl implements MqttMessageService {
         
         try {
             // Send message using MQTT publisher service
-            boolean success = mqttPublisherService.publishMessage(topic, consoleMessage);
+            boolean success = MqttPublisherService.isAccepted(mqttPublisherService.publishMessage(topic, consoleMessage));
             
             if (success) {
                 log.info("Console message sent successfully to drone {}", droneId);
@@ -152,12 +152,11 @@ public class MqttMessageServiceImpl implements MqttMessageService {
             mqttMessage.setQos(request.getQos());
             mqttMessage.setRetained(request.isRetained());
 
-            if (!mqttClient.isConnected()) {
-                log.warn("MQTT client not connected, attempting to reconnect...");
-                mqttClient.reconnect();
+            CompletableFuture<IMqttDeliveryToken> delivery = mqttPublisherService.publish(request.getTopic(), mqttMessage);
+            if (!MqttPublisherService.isAccepted(delivery)) {
+                // already failed: surface the MQTT error to the caller
+                delivery.join();
             }
-
-            mqttClient.publish(request.getTopic(), mqttMessage);
             
             log.info("Custom MQTT message sent successfully to drone {} on topic {}", 
                     droneId, request.getTopic());
@@ -171,15 +170,15 @@ public class MqttMessageServiceImpl implements MqttMessageService {
                     .messageId(customMessage.get("messageId").toString())
                     .build();
                     
-        } catch (MqttException e) {
-            log.error("MQTT error sending message to drone {}: {}", droneId, e.getMessage(), e);
+        } catch (CompletionException e) {
+            log.error("MQTT error sending message to drone {}: {}", droneId, e.getCause().getMessage(), e);
             return MqttMessageResponseDto.builder()
                     .success(false)
                     .message("MQTT error sending message")
                     .droneId(droneId)
                     .topic(request.getTopic())
                     .timestamp(ZonedDateTime.now())
-                    .errorDetails("MQTT Exception: " + e.getMessage())
+                    .errorDetails("MQTT Exception: " + e.getCause().getMessage())
                     .build();
         } catch (Exception e) {
             log.error("Error sending MQTT message to drone {}: {}", droneId, e.getMessage(), e);
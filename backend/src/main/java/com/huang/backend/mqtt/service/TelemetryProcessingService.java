@@ -0,0 +1,547 @@
+package com.huang.backend.mqtt.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.entity.FlightSession;
+import com.huang.backend.drone.model.DroneSnapshot;
+import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
+import com.huang.backend.drone.service.FlightSessionTracker;
+import com.huang.backend.drone.service.LatestTelemetryStore;
+import com.huang.backend.drone.websocket.DroneWebSocketHandler;
+import com.huang.backend.geofence.dto.GeofenceListItemDto;
+import com.huang.backend.geofence.entity.Geofence;
+import com.huang.backend.geofence.entity.GeofenceViolation;
+import com.huang.backend.geofence.repository.GeofenceRepository;
+import com.huang.backend.geofence.repository.GeofenceViolationRepository;
+import com.huang.backend.geofence.service.GeofenceService;
+import com.huang.backend.mqtt.codec.TelemetryBinaryCodec;
+import com.huang.backend.mqtt.codec.TelemetryJsonDecoder;
+import com.huang.backend.mqtt.model.FarewellMessage;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import com.huang.backend.mqtt.pipeline.DroneSequenceTracker;
+import com.huang.backend.mqtt.pipeline.TelemetryEnvelope;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-message work of the telemetry ingest path, split into the stages run by
+ * {@link com.huang.backend.mqtt.pipeline.TelemetryIngestPipeline}:
+ * decode → persist → evaluate → fan-out.
+ * <p>
+ * The evaluate stage is the only stage that changes a drone's status, so status transitions
+ * for one drone are never applied concurrently.
+ * <p>
+ * The individual steps are timed as {@code drone.ingest.step} (decode, Influx enqueue, heartbeat,
+ * geofence check, WebSocket send), and the time from MQTT arrival until a sample is handed to
+ * storage and until it is pushed to WebSocket clients as {@code drone.ingest.latency}, the
+ * ingest-to-screen latency to set SLOs on. All of them publish histograms.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryProcessingService {
+
+    private final TelemetryJsonDecoder telemetryDecoder;
+    private final TelemetryBinaryCodec binaryCodec;
+    private final DroneSequenceTracker sequenceTracker;
+    private final TimeseriesService timeseriesService;
+    private final DroneHeartbeatWriter heartbeatWriter;
+    private final DroneRepository droneRepository;
+    private final DroneRegistry droneRegistry;
+    private final LatestTelemetryStore latestTelemetryStore;
+    private final FleetStatusCounters fleetStatusCounters;
+    private final FlightSessionTracker flightSessionTracker;
+    private final DroneWebSocketHandler droneWebSocketHandler;
+    private final GeofenceService geofenceService;
+    private final GeofenceRepository geofenceRepository;
+    private final GeofenceViolationRepository violationRepository;
+    private final MeterRegistry meterRegistry;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private Timer decodeTimer;
+    private Timer influxEnqueueTimer;
+    private Timer heartbeatTimer;
+    private Timer latestStoreTimer;
+    private Timer flightTrackerTimer;
+    private Timer geofenceTimer;
+    private Timer websocketTimer;
+    private Timer persistedLatency;
+    private Timer pushedLatency;
+
+    @PostConstruct
+    public void init() {
+        decodeTimer = stepTimer("decode");
+        influxEnqueueTimer = stepTimer("influx-enqueue");
+        heartbeatTimer = stepTimer("heartbeat");
+        latestStoreTimer = stepTimer("latest-store");
+        flightTrackerTimer = stepTimer("flight-tracker");
+        geofenceTimer = stepTimer("geofence");
+        websocketTimer = stepTimer("websocket");
+        persistedLatency = latencyTimer("persisted");
+        pushedLatency = latencyTimer("pushed");
+    }
+
+    /**
+     * Decode stage: parse the payload into telemetry or a farewell message in a single pass.
+     * Binary telemetry is recognized by its topic or its leading magic byte; anything else is JSON.
+     *
+     * @param envelope the message envelope
+     * @return true if the message should continue down the pipeline
+     */
+    public boolean decode(TelemetryEnvelope envelope) throws Exception {
+        long started = System.nanoTime();
+        try {
+            return decodePayload(envelope);
+        } finally {
+            decodeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean decodePayload(TelemetryEnvelope envelope) throws Exception {
+        TelemetryRecord record = new TelemetryRecord();
+        byte[] payload = envelope.getPayload();
+        if (envelope.isBinary() || TelemetryBinaryCodec.isBinary(payload)) {
+            binaryCodec.decode(payload, record);
+        } else {
+            telemetryDecoder.decode(payload, record);
+        }
+
+        if (record.isFarewell()) {
+            FarewellMessage farewell = record.toFarewellMessage();
+            log.info("收到无人机{}的告别消息: {}", envelope.getDroneId(), farewell.getMessage());
+            envelope.setFarewell(farewell);
+            return true;
+        }
+
+        // Always use drone ID from topic (UUID) instead of UUID from payload
+        record.setDroneId(envelope.getDroneId());
+
+        // 丢弃重复消息（如QoS1重传）；迟到的消息只写入存储
+        // 回放的消息在录制时已经检测过，再次检测会把它们全部当作重复或迟到
+        if (!envelope.isReplayed()) {
+            DroneSequenceTracker.Delivery delivery = sequenceTracker.classify(envelope.getDroneId(), record);
+            if (delivery == DroneSequenceTracker.Delivery.DUPLICATE) {
+                log.debug("丢弃无人机{}的重复遥测: seq={}, timestamp={}",
+                        envelope.getDroneId(), record.getSequence(), record.getTimestamp());
+                return false;
+            }
+            envelope.setLate(delivery == DroneSequenceTracker.Delivery.LATE);
+        }
+
+        // Set timestamp if not present in payload
+        if (!record.hasTimestamp()) {
+            record.setTimestamp(Instant.now());
+        }
+
+        envelope.setTelemetry(record);
+        return true;
+    }
+
+    /**
+     * Persist stage: store telemetry in InfluxDB, record the drone's heartbeat and, unless the
+     * sample is late or the drone is not registered, make it the drone's latest telemetry
+     *
+     * @param envelope the decoded message envelope
+     */
+    public void persist(TelemetryEnvelope envelope) {
+        if (envelope.isFarewell()) {
+            return;
+        }
+
+        // Store data in InfluxDB
+        long started = System.nanoTime();
+        timeseriesService.writeTelemetry(envelope.getTelemetry());
+        long enqueued = System.nanoTime();
+        influxEnqueueTimer.record(enqueued - started, TimeUnit.NANOSECONDS);
+
+        // Record the heartbeat; DroneHeartbeatWriter writes it to PostgreSQL in bulk
+        try {
+            UUID droneUuid = UUID.fromString(envelope.getDroneId());
+            heartbeatWriter.record(droneUuid, Instant.now());
+            long heartbeatRecorded = System.nanoTime();
+            heartbeatTimer.record(heartbeatRecorded - enqueued, TimeUnit.NANOSECONDS);
+            // 节点内状态只为已注册的无人机保存，未知ID（已删除或伪造的主题）不会占用内存或打开飞行记录
+            if (!envelope.isLate() && droneRegistry.get(droneUuid).isPresent()) {
+                latestTelemetryStore.update(droneUuid, envelope.getTelemetry());
+                long stored = System.nanoTime();
+                latestStoreTimer.record(stored - heartbeatRecorded, TimeUnit.NANOSECONDS);
+                // 按顺序处理每个样本（此阶段不合并），切分飞行记录
+                flightSessionTracker.record(droneUuid, envelope.getTelemetry());
+                flightTrackerTimer.record(System.nanoTime() - stored, TimeUnit.NANOSECONDS);
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("无效的UUID格式: {}", envelope.getDroneId(), e);
+        }
+        long persisted = System.nanoTime();
+        persistedLatency.record(persisted - envelope.getReceivedAtNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Evaluate stage: apply farewell, geofence and telemetry-reported status transitions
+     *
+     * @param envelope the decoded message envelope
+     */
+    public void evaluate(TelemetryEnvelope envelope) {
+        String droneId = envelope.getDroneId();
+        try {
+            UUID droneUuid = UUID.fromString(droneId);
+            Optional<DroneSnapshot> droneOpt = droneRegistry.get(droneUuid);
+            if (droneOpt.isEmpty()) {
+                log.warn("未找到UUID为{}的无人机", droneId);
+                return;
+            }
+            DroneSnapshot drone = droneOpt.get();
+
+            if (envelope.isFarewell()) {
+                drone = applyFarewell(drone, envelope.getFarewell());
+            } else {
+                // 检查禁飞区违规
+                long started = System.nanoTime();
+                drone = checkGeofenceViolations(drone, envelope.getTelemetry());
+                geofenceTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                drone = applyTelemetryStatus(drone, envelope.getTelemetry());
+            }
+
+            envelope.setSerialNumber(drone.getSerialNumber());
+            envelope.setDroneStatus(drone.getStatus());
+        } catch (IllegalArgumentException e) {
+            log.error("无效的UUID格式: {}", droneId, e);
+        }
+    }
+
+    /**
+     * Fan-out stage: push the update to WebSocket subscribers
+     *
+     * @param envelope the evaluated message envelope
+     */
+    public void fanOut(TelemetryEnvelope envelope) {
+        if (envelope.getSerialNumber() == null) {
+            log.debug("WebSocket推送跳过：未找到UUID为{}的无人机", envelope.getDroneId());
+            return;
+        }
+
+        try {
+            UUID droneUuid = UUID.fromString(envelope.getDroneId());
+            DroneTelemetryDto dto;
+            if (envelope.isFarewell()) {
+                FarewellMessage farewell = envelope.getFarewell();
+                // Create a telemetry DTO for the farewell message
+                dto = DroneTelemetryDto.builder()
+                    .droneId(envelope.getSerialNumber()) // Use serial number for frontend compatibility
+                    .timestamp(farewell.getTimestamp())
+                    .batteryLevel(farewell.getBatteryRemaining())
+                    .build();
+            } else {
+                dto = envelope.getTelemetry().toDto(envelope.getSerialNumber());
+            }
+
+            // 通过WebSocket处理器发送更新
+            long started = System.nanoTime();
+            droneWebSocketHandler.sendDroneUpdate(droneUuid, dto);
+            long pushed = System.nanoTime();
+            websocketTimer.record(pushed - started, TimeUnit.NANOSECONDS);
+            pushedLatency.record(pushed - envelope.getReceivedAtNanos(), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.error("发送遥测数据到WebSocket失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run all stages inline on the calling thread
+     *
+     * @param envelope the message envelope
+     */
+    public void processInline(TelemetryEnvelope envelope) throws Exception {
+        if (!decode(envelope)) {
+            return;
+        }
+        persist(envelope);
+        if (envelope.isLate()) {
+            return;
+        }
+        evaluate(envelope);
+        fanOut(envelope);
+    }
+
+    private Timer stepTimer(String step) {
+        return Timer.builder("drone.ingest.step")
+                .description("Time spent in one step of telemetry processing")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    private Timer latencyTimer(String until) {
+        return Timer.builder("drone.ingest.latency")
+                .description("Time from MQTT arrival until the telemetry was handed to storage or pushed to WebSocket clients")
+                .tag("until", until)
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250),
+                        Duration.ofMillis(500), Duration.ofSeconds(1))
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    /**
+     * 如果遥测中有status字段，更新无人机状态（但不覆盖地理围栏违规状态）
+     *
+     * @return the drone snapshot after the update
+     */
+    private DroneSnapshot applyTelemetryStatus(DroneSnapshot drone, TelemetryRecord telemetryData) {
+        if (telemetryData.getStatus() == null) {
+            return drone;
+        }
+        try {
+            Drone.DroneStatus newStatus = Drone.DroneStatus.valueOf(telemetryData.getStatus());
+            // 只有当前状态不是地理围栏违规时，才允许根据遥测数据更新状态
+            // 地理围栏违规状态具有更高的优先级，需要手动解除
+            if (drone.getStatus() != Drone.DroneStatus.GEOFENCE_VIOLATION &&
+                drone.getStatus() != newStatus) {
+                drone = changeStatus(drone, newStatus);
+                log.info("根据遥测数据更新无人机{}({})状态为: {}", drone.getSerialNumber(), drone.getDroneId(), newStatus);
+            } else if (drone.getStatus() == Drone.DroneStatus.GEOFENCE_VIOLATION) {
+                log.debug("无人机{}({})处于地理围栏违规状态，忽略遥测状态更新: {}",
+                    drone.getSerialNumber(), drone.getDroneId(), telemetryData.getStatus());
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("无人机{}({})发送了无效的状态值: {}", drone.getSerialNumber(), drone.getDroneId(), telemetryData.getStatus());
+        } catch (Exception e) {
+            log.error("根据遥测数据更新无人机状态失败: {}", e.getMessage(), e);
+        }
+        return drone;
+    }
+
+    /**
+     * Write a status change straight to its column and to the registry, without loading the entity
+     */
+    private DroneSnapshot changeStatus(DroneSnapshot drone, Drone.DroneStatus newStatus) {
+        droneRepository.updateStatus(drone.getDroneId(), newStatus, ZonedDateTime.now());
+        droneRegistry.updateStatus(drone.getDroneId(), newStatus);
+        fleetStatusCounters.transition(drone.getStatus(), newStatus);
+        return drone.withStatus(newStatus);
+    }
+
+    /**
+     * Apply a farewell message from a drone before it goes offline
+     *
+     * @param snapshot the drone snapshot
+     * @param farewell the farewell message
+     * @return the drone snapshot after the update
+     */
+    private DroneSnapshot applyFarewell(DroneSnapshot snapshot, FarewellMessage farewell) {
+        try {
+            // Farewells are rare, so the full entity is loaded to update the offline fields
+            Optional<Drone> droneOpt = droneRepository.findById(snapshot.getDroneId());
+            if (droneOpt.isEmpty()) {
+                log.warn("未找到UUID为{}的无人机", snapshot.getDroneId());
+                return snapshot;
+            }
+            Drone drone = droneOpt.get();
+
+            // Store the farewell message
+            drone.setLastFarewellMessage(farewell.getMessage());
+            flightSessionTracker.end(drone.getDroneId(), farewell.getTimestamp(), FlightSession.EndReason.FAREWELL);
+
+            // Update the drone's status to OFFLINE if not already
+            if (drone.getCurrentStatus() != Drone.DroneStatus.OFFLINE) {
+                ZonedDateTime now = ZonedDateTime.ofInstant(
+                    farewell.getTimestamp() != null ? farewell.getTimestamp() : Instant.now(),
+                    ZoneId.systemDefault());
+
+                fleetStatusCounters.transition(drone.getCurrentStatus(), Drone.DroneStatus.OFFLINE);
+                drone.setCurrentStatus(Drone.DroneStatus.OFFLINE);
+                drone.setOfflineAt(now);
+
+                if (drone.getOfflineReason() == null) {
+                    drone.setOfflineReason("Drone initiated shutdown: " + farewell.getMessage());
+                }
+
+                if (farewell.getIssuedBy() != null && drone.getOfflineBy() == null) {
+                    drone.setOfflineBy(farewell.getIssuedBy());
+                }
+
+                log.info("更新无人机{}({})状态为离线", drone.getSerialNumber(), drone.getDroneId());
+            }
+
+            // Save the updated drone
+            droneRepository.save(drone);
+            droneRegistry.update(drone);
+            return snapshot.withStatus(drone.getCurrentStatus());
+        } catch (Exception e) {
+            log.error("处理无人机告别消息失败: {}", e.getMessage(), e);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Check for geofence violations and update the drone status accordingly
+     *
+     * @param drone the drone snapshot
+     * @param telemetryData the telemetry data
+     * @return the drone snapshot after the check
+     */
+    private DroneSnapshot checkGeofenceViolations(DroneSnapshot drone, TelemetryRecord telemetryData) {
+        try {
+            // 检查位置数据是否有效
+            if (!telemetryData.hasPosition()) {
+                return drone;
+            }
+
+            UUID droneId = drone.getDroneId();
+
+            // 记录当前状态，用于后续比较
+            Drone.DroneStatus currentStatus = drone.getStatus();
+
+            // 检查当前位置是否在任何地理围栏内
+            List<GeofenceListItemDto> containingGeofences = geofenceService.findGeofencesContainingPoint(
+                telemetryData.getLongitude(), telemetryData.getLatitude());
+
+            boolean inNoFlyZone = false;
+            boolean inRestrictedZone = false;
+            String violationDetails = "";
+            List<UUID> violatedGeofenceIds = new ArrayList<>();
+
+            for (GeofenceListItemDto geofence : containingGeofences) {
+                if ("NO_FLY_ZONE".equals(geofence.getGeofenceType())) {
+                    inNoFlyZone = true;
+                    violationDetails += "禁飞区: " + geofence.getName() + "; ";
+                    violatedGeofenceIds.add(geofence.getGeofenceId());
+                    log.warn("无人机{}({})进入禁飞区: {}", drone.getSerialNumber(), droneId, geofence.getName());
+                } else if ("RESTRICTED_ZONE".equals(geofence.getGeofenceType())) {
+                    // 检查无人机是否有权限进入此限制区
+                    boolean hasPermission = drone.isPermittedIn(geofence.getGeofenceId());
+
+                    if (!hasPermission) {
+                        inRestrictedZone = true;
+                        violationDetails += "未授权限制区: " + geofence.getName() + "; ";
+                        violatedGeofenceIds.add(geofence.getGeofenceId());
+                        log.warn("无人机{}({})进入未授权限制区: {}", drone.getSerialNumber(), droneId, geofence.getName());
+                    } else {
+                        log.debug("无人机{}({})有权限进入限制区: {}", drone.getSerialNumber(), droneId, geofence.getName());
+                    }
+                }
+            }
+
+            // 根据违规情况确定新状态
+            Drone.DroneStatus newStatus = null;
+            boolean isNewViolation = false;
+
+            if (inNoFlyZone) {
+                newStatus = Drone.DroneStatus.GEOFENCE_VIOLATION;
+                isNewViolation = (currentStatus != Drone.DroneStatus.GEOFENCE_VIOLATION);
+                log.error("无人机{}({})违反禁飞区规定！位置: ({}, {})",
+                    drone.getSerialNumber(), droneId, telemetryData.getLatitude(), telemetryData.getLongitude());
+            } else if (inRestrictedZone) {
+                newStatus = Drone.DroneStatus.GEOFENCE_VIOLATION;
+                isNewViolation = (currentStatus != Drone.DroneStatus.GEOFENCE_VIOLATION);
+                log.error("无人机{}({})进入未授权限制区！位置: ({}, {})",
+                    drone.getSerialNumber(), droneId, telemetryData.getLatitude(), telemetryData.getLongitude());
+            } else if (currentStatus == Drone.DroneStatus.GEOFENCE_VIOLATION) {
+                // 无人机已离开违规区域，恢复到正常飞行状态
+                newStatus = Drone.DroneStatus.FLYING;
+                log.info("无人机{}({})已离开违规区域，状态恢复为正常飞行", drone.getSerialNumber(), droneId);
+            }
+
+            // 先创建违规记录（如果是新的违规），再更新状态
+            if (isNewViolation && !violatedGeofenceIds.isEmpty()) {
+                createViolationRecords(drone, violatedGeofenceIds, telemetryData, inNoFlyZone, inRestrictedZone);
+            }
+
+            // 更新状态（如果有变化）
+            if (newStatus != null && currentStatus != newStatus) {
+                drone = changeStatus(drone, newStatus);
+
+                // 记录状态变化详情
+                if (newStatus == Drone.DroneStatus.GEOFENCE_VIOLATION) {
+                    log.info("无人机{}({})状态已更新为违规状态: {} - {}",
+                        drone.getSerialNumber(), droneId, newStatus, violationDetails);
+                } else {
+                    log.info("无人机{}({})状态已更新为: {}",
+                        drone.getSerialNumber(), droneId, newStatus);
+                }
+            }
+        } catch (Exception e) {
+            log.error("检查禁飞区违规失败: {}", e.getMessage(), e);
+        }
+        return drone;
+    }
+
+    /**
+     * Create violation records for each violated geofence
+     */
+    private void createViolationRecords(DroneSnapshot snapshot, List<UUID> violatedGeofenceIds,
+                                      TelemetryRecord telemetryData, boolean inNoFlyZone, boolean inRestrictedZone) {
+        try {
+            // Only new violations get here, so loading the entity for the association is fine
+            Optional<Drone> droneOpt = droneRepository.findById(snapshot.getDroneId());
+            if (droneOpt.isEmpty()) {
+                log.warn("创建违规记录时未找到无人机: {}", snapshot.getDroneId());
+                return;
+            }
+            Drone drone = droneOpt.get();
+
+            // Create violation point
+            Point violationPoint = geometryFactory.createPoint(
+                new Coordinate(telemetryData.getLongitude(), telemetryData.getLatitude()));
+            violationPoint.setSRID(4326);
+
+            for (UUID geofenceId : violatedGeofenceIds) {
+                // Find the geofence entity
+                Optional<Geofence> geofenceOpt = geofenceRepository.findById(geofenceId);
+                if (geofenceOpt.isPresent()) {
+                    Geofence geofence = geofenceOpt.get();
+
+                    // Determine violation type and severity
+                    GeofenceViolation.ViolationType violationType = GeofenceViolation.ViolationType.ENTRY;
+                    GeofenceViolation.Severity severity = inNoFlyZone ?
+                        GeofenceViolation.Severity.CRITICAL : GeofenceViolation.Severity.HIGH;
+
+                    // Create violation record
+                    GeofenceViolation violation = GeofenceViolation.builder()
+                        .violationId(UUID.randomUUID())
+                        .geofence(geofence)
+                        .drone(drone)
+                        .violationType(violationType)
+                        .violationPoint(violationPoint)
+                        .altitude(TelemetryRecord.box(telemetryData.getAltitude()))
+                        .violationTime(ZonedDateTime.ofInstant(telemetryData.getTimestamp(), ZoneId.systemDefault()))
+                        .severity(severity)
+                        .resolved(false)
+                        .build();
+
+                    // Save violation record
+                    violationRepository.save(violation);
+
+                    log.info("创建违规记录: 无人机{}({}) 违反地理围栏 {} ({})",
+                        drone.getSerialNumber(), drone.getDroneId(), geofence.getName(), geofence.getGeofenceType());
+                } else {
+                    log.warn("创建违规记录时未找到地理围栏: {}", geofenceId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("创建违规记录失败: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,36 +1,29 @@
 package com.huang.backend.mqtt.service;
 
 import com.huang.backend.drone.model.TelemetryData;
+import com.huang.backend.mqtt.codec.TelemetryLineProtocolEncoder;
 import com.huang.backend.mqtt.model.DroneTelemetryData;
-import com.influxdb.client.InfluxDBClient;
-import com.influxdb.client.WriteApi;
+import com.huang.backend.mqtt.model.TelemetryRecord;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.util.concurrent.TimeUnit;
-
 /**
- * Service for writing telemetry data to InfluxDB
+ * Service for writing telemetry data to InfluxDB.
+ * Points are handed to the shared {@link InfluxBatchWriter}, which batches them into
+ * a few large HTTP writes instead of one request per point.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TimeseriesService {
 
-    private final InfluxDBClient influxDBClient;
-    
-    @Value("${influxdb.bucket}")
-    private String bucket;
-    
-    @Value("${influxdb.org}")
-    private String organization;
+    private final InfluxBatchWriter batchWriter;
+    private final TelemetryLineProtocolEncoder lineProtocolEncoder;
     
-    private static final String MEASUREMENT = "drone_telemetry";
+    private static final String MEASUREMENT = TelemetryLineProtocolEncoder.MEASUREMENT;
 
     /**
      * Writes drone telemetry data to InfluxDB using the Point class
@@ -58,10 +51,8 @@ public class TimeseriesService {
             if (data.getFlightMode() != null) point.addField("flight_mode", data.getFlightMode());
             if (data.getTemperature() != null) point.addField("temperature", data.getTemperature());
             
-            try (WriteApi writeApi = influxDBClient.getWriteApi()) {
-                writeApi.writePoint(point);
-                log.debug("Telemetry data for drone {} written to InfluxDB (Point API)", data.getDroneId());
-            }
+            batchWriter.write(point.toLineProtocol());
+            log.debug("Telemetry data for drone {} queued for InfluxDB (Point API)", data.getDroneId());
         } catch (Exception e) {
             log.error("Failed to write telemetry data to InfluxDB using Point API: {}", e.getMessage(), e);
         }
@@ -75,104 +66,38 @@ public class TimeseriesService {
      */
     public void writeTelemetryData(TelemetryData data) {
         try {
-            // Start building the line protocol string
-            StringBuilder sb = new StringBuilder();
-            sb.append(MEASUREMENT).append(","); // Measurement name
-            
-            // Add tags
-            sb.append("drone_id=").append(data.getDroneId());
-            
-            // Add fields (only if they are not null)
-            sb.append(" ");
-            boolean hasFields = false;
-            
-            if (data.getBatteryLevel() != null) {
-                sb.append("battery_level=").append(data.getBatteryLevel());
-                hasFields = true;
-            }
-            
-            if (data.getBatteryVoltage() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("battery_voltage=").append(data.getBatteryVoltage());
-                hasFields = true;
-            }
-            
-            if (data.getLatitude() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("latitude=").append(data.getLatitude());
-                hasFields = true;
-            }
-            
-            if (data.getLongitude() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("longitude=").append(data.getLongitude());
-                hasFields = true;
-            }
-            
-            if (data.getAltitude() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("altitude=").append(data.getAltitude());
-                hasFields = true;
-            }
-            
-            if (data.getSpeed() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("speed=").append(data.getSpeed());
-                hasFields = true;
-            }
-            
-            if (data.getHeading() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("heading=").append(data.getHeading());
-                hasFields = true;
-            }
-            
-            if (data.getSatellites() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("satellites=").append(data.getSatellites());
-                hasFields = true;
-            }
-            
-            if (data.getSignalStrength() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("signal_strength=").append(data.getSignalStrength());
-                hasFields = true;
-            }
-            
-            if (data.getFlightMode() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("flight_mode=\"").append(data.getFlightMode()).append("\"");
-                hasFields = true;
-            }
-            
-            if (data.getTemperature() != null) {
-                if (hasFields) sb.append(",");
-                sb.append("temperature=").append(data.getTemperature());
-                hasFields = true;
-            }
+            byte[] record = lineProtocolEncoder.encode(data);
             
             // If no fields are present, we can't write the data
-            if (!hasFields) {
+            if (record == null) {
                 log.warn("No fields present in telemetry data for drone {}, skipping write", data.getDroneId());
                 return;
             }
             
-            // Add timestamp in nanoseconds
-            Instant timestamp = data.getTimestamp();
-            long timestampNanos = TimeUnit.SECONDS.toNanos(timestamp.getEpochSecond()) + timestamp.getNano();
-            sb.append(" ").append(timestampNanos);
-            
-            // Get the final line protocol string
-            String lineProtocol = sb.toString();
-            log.debug("Line protocol: {}", lineProtocol);
-            
-            // Write the data to InfluxDB
-            try (WriteApi writeApi = influxDBClient.getWriteApi()) {
-                writeApi.writeRecord(bucket, organization, WritePrecision.NS, lineProtocol);
-                log.debug("Telemetry data for drone {} written to InfluxDB (Line Protocol)", data.getDroneId());
+            // Hand the record to the batching writer
+            batchWriter.write(record);
+        } catch (Exception e) {
+            log.error("Failed to write telemetry data to InfluxDB using Line Protocol: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a decoded telemetry record from the ingest pipeline to InfluxDB
+     *
+     * @param record the telemetry record to write
+     */
+    public void writeTelemetry(TelemetryRecord record) {
+        try {
+            byte[] line = lineProtocolEncoder.encode(record);
+
+            if (line == null) {
+                log.warn("No fields present in telemetry data for drone {}, skipping write", record.getDroneId());
+                return;
             }
+
+            batchWriter.write(line);
         } catch (Exception e) {
             log.error("Failed to write telemetry data to InfluxDB using Line Protocol: {}", e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+}
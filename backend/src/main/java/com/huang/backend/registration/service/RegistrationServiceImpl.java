@@ -2,6 +2,8 @@ package com.huang.backend.registration.service;
 
 import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
 import com.huang.backend.exception.ResourceNotFoundException;
 import com.huang.backend.registration.dto.AdminActionDto;
 import com.huang.backend.registration.dto.AdminActionResponseDto;
@@ -36,6 +38,8 @@ public class RegistrationServiceImpl implements RegistrationService {
     private final DroneRepository droneRepository;
     private final PasswordEncoder passwordEncoder;
     private final SimpMessagingTemplate messagingTemplate;
+    private final DroneRegistry droneRegistry;
+    private final FleetStatusCounters fleetStatusCounters;
     
     @Value("${application.base-url:http://localhost:8080}")
     private String baseUrl;
@@ -58,11 +62,15 @@ public class RegistrationServiceImpl implements RegistrationService {
             DroneRegistrationRequestRepository registrationRepository,
             DroneRepository droneRepository,
             PasswordEncoder passwordEncoder,
-            SimpMessagingTemplate messagingTemplate) {
+            SimpMessagingTemplate messagingTemplate,
+            DroneRegistry droneRegistry,
+            FleetStatusCounters fleetStatusCounters) {
         this.registrationRepository = registrationRepository;
         this.droneRepository = droneRepository;
         this.passwordEncoder = passwordEncoder;
         this.messagingTemplate = messagingTemplate;
+        this.droneRegistry = droneRegistry;
+        this.fleetStatusCounters = fleetStatusCounters;
     }
 
     /**
@@ -337,6 +345,8 @@ public class RegistrationServiceImpl implements RegistrationService {
         
         // Save the drone
         droneRepository.save(drone);
+        droneRegistry.update(drone);
+        fleetStatusCounters.created(drone.getCurrentStatus());
         
         // TODO: In a real system, we would need to securely communicate the plain text password
         // to the client. This could be via a one-time view, encrypted email, or other secure channel.
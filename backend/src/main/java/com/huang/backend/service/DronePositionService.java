@@ -2,8 +2,8 @@ package com.huang.backend.service;
 
 import com.huang.backend.drone.dto.DroneStatusDto;
 import com.huang.backend.drone.dto.DroneTelemetryDto;
-import com.huang.backend.drone.service.DroneInfluxDBService;
 import com.huang.backend.drone.service.DroneStatusService;
+import com.huang.backend.drone.service.LatestTelemetryStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -24,11 +24,11 @@ import java.util.stream.Collectors;
 public class DronePositionService {
     
     private final DroneStatusService droneStatusService;
-    private final DroneInfluxDBService droneInfluxDBService;
+    private final LatestTelemetryStore latestTelemetryStore;
     private final SimpMessagingTemplate messagingTemplate;
     
     /**
-     * 定期从InfluxDB获取无人机位置并通过WebSocket广播
+     * 定期从最新遥测状态获取无人机位置并通过WebSocket广播
      * 每秒执行一次
      */
     @Scheduled(fixedRate = 1000)
@@ -37,7 +37,7 @@ public class DronePositionService {
         
         List<Map<String, Object>> positions = drones.stream()
             .map(drone -> {
-                DroneTelemetryDto telemetry = droneInfluxDBService.getLatestTelemetry(drone.getDroneId().toString());
+                DroneTelemetryDto telemetry = latestTelemetryStore.getLatest(drone.getDroneId()).orElse(null);
                 if (telemetry != null) {
                     Map<String, Object> position = new HashMap<>();
                     position.put("droneId", drone.getDroneId());
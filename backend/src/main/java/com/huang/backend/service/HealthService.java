@@ -3,14 +3,16 @@ package com.huang.backend.service;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.sql.DataSource;
 
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.huang.backend.mqtt.connection.MqttConnectionPool;
+import com.huang.backend.mqtt.connection.PooledConnection;
 import com.influxdb.client.InfluxDBClient;
 
 import lombok.extern.slf4j.Slf4j;
@@ -26,7 +28,7 @@ public class HealthService {
     private InfluxDBClient influxDBClient;
 
     @Autowired
-    private MqttClient mqttClient;
+    private MqttConnectionPool mqttConnectionPool;
 
     /**
      * 检查所有服务状态
@@ -93,15 +95,13 @@ public class HealthService {
         status.put("service", "EMQX");
         
         try {
-            boolean connected = mqttClient.isConnected();
+            boolean connected = mqttConnectionPool.isConnected();
             status.put("status", connected ? "UP" : "DOWN");
+            status.put("publishConnections", connectionStates(mqttConnectionPool.getPublishLane()));
+            status.put("ingestConnections", connectionStates(mqttConnectionPool.getIngestLane()));
             if (!connected) {
-                try {
-                    mqttClient.reconnect();
-                    status.put("status", "RECOVERING");
-                } catch (MqttException e) {
-                    status.put("error", "MQTT 重连失败: " + e.getMessage());
-                }
+                mqttConnectionPool.checkConnections();
+                status.put("status", "RECOVERING");
             }
         } catch (Exception e) {
             status.put("status", "DOWN");
@@ -111,4 +111,12 @@ public class HealthService {
         
         return status;
     }
-} 
\ No newline at end of file
+
+    private static Map<String, Boolean> connectionStates(List<PooledConnection> connections) {
+        Map<String, Boolean> states = new LinkedHashMap<>();
+        for (PooledConnection connection : connections) {
+            states.put(connection.getName(), connection.isConnected());
+        }
+        return states;
+    }
+}
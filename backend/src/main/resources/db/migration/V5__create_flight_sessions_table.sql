@@ -0,0 +1,24 @@
+-- 飞行记录：由遥测处理在线切分，每次起飞到降落一行
+CREATE TABLE IF NOT EXISTS flight_sessions (
+    flight_id UUID PRIMARY KEY,
+    drone_id UUID NOT NULL REFERENCES drones(drone_id) ON DELETE CASCADE,
+    start_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    end_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    duration_ms BIGINT NOT NULL,
+    distance_meters DOUBLE PRECISION NOT NULL,
+    max_altitude DOUBLE PRECISION,
+    start_battery DOUBLE PRECISION,
+    end_battery DOUBLE PRECISION,
+    battery_used DOUBLE PRECISION,
+    min_latitude DOUBLE PRECISION,
+    max_latitude DOUBLE PRECISION,
+    min_longitude DOUBLE PRECISION,
+    max_longitude DOUBLE PRECISION,
+    sample_count INTEGER NOT NULL,
+    end_reason VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- 按无人机和时间范围分页查询飞行记录
+CREATE INDEX IF NOT EXISTS idx_flight_sessions_drone_start ON flight_sessions(drone_id, start_time DESC);
+CREATE INDEX IF NOT EXISTS idx_flight_sessions_start ON flight_sessions(start_time DESC);
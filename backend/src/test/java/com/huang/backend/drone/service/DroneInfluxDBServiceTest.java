@@ -0,0 +1,300 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.model.DownsampleMode;
+import com.huang.backend.drone.model.TelemetryRollup;
+import com.influxdb.Cancellable;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.QueryApi;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DroneInfluxDBServiceTest {
+
+    @Mock
+    private InfluxDBClient influxDBClient;
+
+    @Mock
+    private QueryApi queryApi;
+
+    @Mock
+    private TelemetryRollupService telemetryRollupService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private DroneInfluxDBService influxDBService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(influxDBService, "bucket", "drone_data");
+        ReflectionTestUtils.setField(influxDBService, "organization", "drone_org");
+        ReflectionTestUtils.setField(influxDBService, "queryTimeoutMs", 5_000L);
+        lenient().when(influxDBClient.getQueryApi()).thenReturn(queryApi);
+        influxDBService.registerMetrics();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldFetchLatestTelemetryOfSeveralDronesWithOneQuery() {
+        // Given
+        Instant time = Instant.parse("2026-01-01T00:00:00Z");
+        doAnswer(invocation -> {
+            BiConsumer<Cancellable, FluxRecord> onNext = invocation.getArgument(2);
+            Runnable onComplete = invocation.getArgument(4);
+            onNext.accept(mock(Cancellable.class), record("drone-a", time, 80.5));
+            onNext.accept(mock(Cancellable.class), record("drone-b", time.plusSeconds(1), 42.0));
+            onComplete.run();
+            return null;
+        }).when(queryApi).query(anyString(), eq("drone_org"), any(BiConsumer.class), any(Consumer.class),
+                any(Runnable.class));
+
+        // When
+        Map<String, DroneTelemetryDto> latest = influxDBService.getLatestTelemetry(List.of("drone-a", "drone-b", "drone-c"));
+
+        // Then
+        assertEquals(2, latest.size());
+        assertEquals(80.5, latest.get("drone-a").getBatteryLevel());
+        assertEquals(time.plusSeconds(1), latest.get("drone-b").getTimestamp());
+        assertEquals("drone-b", latest.get("drone-b").getDroneId());
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi, times(1)).query(query.capture(), eq("drone_org"), any(BiConsumer.class),
+                any(Consumer.class), any(Runnable.class));
+        assertTrue(query.getValue().contains("contains(value: r.drone_id, set: [\"drone-a\", \"drone-b\", \"drone-c\"])"));
+        assertTrue(query.getValue().contains("group(columns: [\"drone_id\", \"_field\"]) |> last()"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMergeFieldsLastWrittenAtDifferentTimes() {
+        // Given - the position was last sent 5 s before the newest (binary) sample without one
+        Instant time = Instant.parse("2026-01-01T00:00:00Z");
+        FluxRecord newest = new FluxRecord(0);
+        newest.getValues().put("_time", time.plusSeconds(5));
+        newest.getValues().put("drone_id", "drone-a");
+        newest.getValues().put("battery_level", 79.0);
+        doAnswer(invocation -> {
+            BiConsumer<Cancellable, FluxRecord> onNext = invocation.getArgument(2);
+            Runnable onComplete = invocation.getArgument(4);
+            onNext.accept(mock(Cancellable.class), newest);
+            onNext.accept(mock(Cancellable.class), record("drone-a", time, 80.5));
+            onComplete.run();
+            return null;
+        }).when(queryApi).query(anyString(), eq("drone_org"), any(BiConsumer.class), any(Consumer.class),
+                any(Runnable.class));
+
+        // When
+        Map<String, DroneTelemetryDto> latest = influxDBService.getLatestTelemetry(List.of("drone-a"));
+
+        // Then
+        DroneTelemetryDto dto = latest.get("drone-a");
+        assertEquals(time.plusSeconds(5), dto.getTimestamp());
+        assertEquals(79.0, dto.getBatteryLevel());
+        assertEquals(37.7749, dto.getLatitude());
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi).query(query.capture(), eq("drone_org"), any(BiConsumer.class),
+                any(Consumer.class), any(Runnable.class));
+        assertFalse(query.getValue().contains("limit(n: 1)"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldThrowWhenBatchQueryFails() {
+        // Given
+        doAnswer(invocation -> {
+            Consumer<Throwable> onError = invocation.getArgument(3);
+            onError.accept(new RuntimeException("connection refused"));
+            return null;
+        }).when(queryApi).query(anyString(), eq("drone_org"), any(BiConsumer.class), any(Consumer.class),
+                any(Runnable.class));
+
+        // When / Then
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> influxDBService.getLatestTelemetry(List.of("drone-a")));
+        assertTrue(error.getMessage().contains("connection refused"));
+        assertTrue(influxDBService.getLatestTelemetry(List.of()).isEmpty());
+        verify(influxDBClient, times(1)).getQueryApi();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCancelBatchQueryThatTimedOut() {
+        // Given - InfluxDB answers only after the caller gave up
+        ReflectionTestUtils.setField(influxDBService, "queryTimeoutMs", 20L);
+        List<BiConsumer<Cancellable, FluxRecord>> onNext = new ArrayList<>();
+        doAnswer(invocation -> {
+            onNext.add(invocation.getArgument(2));
+            return null;
+        }).when(queryApi).query(anyString(), eq("drone_org"), any(BiConsumer.class), any(Consumer.class),
+                any(Runnable.class));
+        assertThrows(IllegalStateException.class, () -> influxDBService.getLatestTelemetry(List.of("drone-a")));
+
+        // When
+        Cancellable cancellable = mock(Cancellable.class);
+        onNext.get(0).accept(cancellable, record("drone-a", Instant.now(), 50.0));
+
+        // Then
+        verify(cancellable).cancel();
+    }
+
+    @Test
+    void shouldBindDroneIdAsStringLiteralAndTimeQueryPerTemplate() {
+        // Given
+        when(queryApi.query(anyString(), eq("drone_org"))).thenReturn(List.of());
+
+        // When
+        influxDBService.getLatestTelemetry("x\") |> drop(columns: [\"_value\"]) //");
+
+        // Then
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi).query(query.capture(), eq("drone_org"));
+        assertTrue(query.getValue().contains("from(bucket: \"drone_data\")"));
+        assertTrue(query.getValue().contains("r.drone_id == \"x\\\") |> drop(columns: [\\\"_value\\\"]) //\")"));
+        assertEquals(1, meterRegistry.get("influxdb.query").tag("template", "latest").timer().count());
+        assertEquals(0, meterRegistry.get("influxdb.query").tag("template", "history").timer().count());
+    }
+
+    @Test
+    void shouldAggregateLongRangeIntoBoundedWindows() {
+        // Given - six hours at 5 Hz would be 108000 raw rows
+        ReflectionTestUtils.setField(influxDBService, "maxHistoryPoints", 2000);
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        Instant end = start.plusSeconds(6 * 3600);
+        FluxTable table = new FluxTable();
+        for (int i = 0; i <= 500; i++) {
+            table.getRecords().add(record("drone-a", start.plusSeconds(i * 43L), 90 - i * 0.1));
+        }
+        when(queryApi.query(anyString(), eq("drone_org"))).thenReturn(List.of(table));
+
+        // When
+        List<DroneTelemetryDto> history = influxDBService.getTelemetryHistory("drone-a", start, end, 500,
+                DownsampleMode.WINDOW);
+
+        // Then
+        assertEquals(500, history.size());
+        assertEquals(start.plusSeconds(500 * 43L), history.get(499).getTimestamp());
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi).query(query.capture(), eq("drone_org"));
+        assertTrue(query.getValue().contains("aggregateWindow(every: 43200ms, fn: mean, createEmpty: false)"));
+        assertTrue(query.getValue().contains("aggregateWindow(every: 43200ms, fn: last, createEmpty: false)"));
+    }
+
+    @Test
+    void shouldQueryRollupBucketWhenWindowsAreCoarseEnough() {
+        // Given - 30 days in 500 windows of 5184 s, covered by the minute rollup
+        ReflectionTestUtils.setField(influxDBService, "maxHistoryPoints", 2000);
+        Instant end = Instant.parse("2026-02-01T00:00:00Z");
+        Instant start = end.minus(Duration.ofDays(30));
+        when(telemetryRollupService.route(start, Duration.ofSeconds(5184))).thenReturn(Optional.of(TelemetryRollup.MINUTE));
+        when(telemetryRollupService.coveredUntil(TelemetryRollup.MINUTE)).thenReturn(end.plus(Duration.ofDays(1)));
+        when(telemetryRollupService.bucketName(TelemetryRollup.MINUTE)).thenReturn("drone_data_1m");
+        when(queryApi.query(anyString(), eq("drone_org"))).thenReturn(List.of());
+
+        // When
+        influxDBService.getTelemetryHistory("drone-a", start, end, 500, DownsampleMode.WINDOW);
+
+        // Then
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi).query(query.capture(), eq("drone_org"));
+        assertTrue(query.getValue().contains("from(bucket: \"drone_data_1m\")"));
+        assertTrue(query.getValue().contains("r.stat == \"mean\""));
+        assertTrue(query.getValue().contains("drop(columns: [\"stat\"])"));
+        assertEquals(1, meterRegistry.get("influxdb.query").tag("template", "rollup-window").timer().count());
+        assertEquals(0, meterRegistry.get("influxdb.query").tag("template", "history-window").timer().count());
+    }
+
+    @Test
+    void shouldQueryTailNotYetRolledUpFromRawBucket() {
+        // Given - the minute rollup is written up to 3 h before the end of the range
+        ReflectionTestUtils.setField(influxDBService, "maxHistoryPoints", 2000);
+        Instant end = Instant.parse("2026-02-01T00:00:00Z");
+        Instant start = end.minus(Duration.ofDays(30));
+        Instant split = Instant.parse("2026-01-31T20:09:36Z");
+        when(telemetryRollupService.route(start, Duration.ofSeconds(5184))).thenReturn(Optional.of(TelemetryRollup.MINUTE));
+        when(telemetryRollupService.coveredUntil(TelemetryRollup.MINUTE)).thenReturn(end.minus(Duration.ofHours(3)));
+        when(telemetryRollupService.bucketName(TelemetryRollup.MINUTE)).thenReturn("drone_data_1m");
+        when(queryApi.query(anyString(), eq("drone_org"))).thenReturn(List.of());
+
+        // When
+        influxDBService.getTelemetryHistory("drone-a", start, end, 500, DownsampleMode.WINDOW);
+
+        // Then - split at the last window boundary the rollup covers
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(queryApi, times(2)).query(query.capture(), eq("drone_org"));
+        assertTrue(query.getAllValues().get(0).contains("from(bucket: \"drone_data_1m\")"));
+        assertTrue(query.getAllValues().get(0).contains("range(start: " + start + ", stop: " + split + ")"));
+        assertTrue(query.getAllValues().get(1).contains("from(bucket: \"drone_data\")"));
+        assertTrue(query.getAllValues().get(1).contains("range(start: " + split + ", stop: " + end + ")"));
+        assertEquals(1, meterRegistry.get("influxdb.query").tag("template", "rollup-window").timer().count());
+        assertEquals(1, meterRegistry.get("influxdb.query").tag("template", "history-window").timer().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStreamRowsThroughBoundedBufferFromResponseThread() throws Exception {
+        // Given - far more rows than the hand-over buffer holds, produced on another thread
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        doAnswer(invocation -> {
+            BiConsumer<Cancellable, FluxRecord> onNext = invocation.getArgument(2);
+            Runnable onComplete = invocation.getArgument(4);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    onNext.accept(mock(Cancellable.class), record(i % 2 == 0 ? "drone-a" : "drone-b",
+                            start.plusMillis(i), 50));
+                }
+                onComplete.run();
+            });
+            producer.start();
+            return null;
+        }).when(queryApi).query(anyString(), eq("drone_org"), any(BiConsumer.class), any(Consumer.class),
+                any(Runnable.class));
+        List<Instant> seen = new ArrayList<>();
+
+        // When
+        long rows = influxDBService.streamTelemetry(List.of("drone-a", "drone-b"), start, start.plusSeconds(5),
+                row -> seen.add(row.getTimestamp()));
+
+        // Then
+        assertEquals(5000, rows);
+        assertEquals(5000, seen.size());
+        assertEquals(start.plusMillis(4999), seen.get(4999));
+        verify(queryApi, never()).query(anyString(), anyString());
+    }
+
+    private FluxRecord record(String droneId, Instant time, double batteryLevel) {
+        FluxRecord record = new FluxRecord(0);
+        record.getValues().put("_time", time);
+        record.getValues().put("drone_id", droneId);
+        record.getValues().put("battery_level", batteryLevel);
+        record.getValues().put("latitude", 37.7749);
+        return record;
+    }
+}
@@ -0,0 +1,130 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DroneSnapshot;
+import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.geofence.entity.Geofence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DroneRegistryTest {
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    private DroneRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new DroneRegistry(droneRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "unknownTtlMs", 60_000L);
+        registry.init();
+    }
+
+    @Test
+    void shouldLoadDroneOnceAndServeFromMemory() {
+        // Given
+        UUID geofenceId = UUID.randomUUID();
+        Drone drone = drone(UUID.randomUUID(), Drone.DroneStatus.FLYING);
+        drone.getGeofences().add(Geofence.builder().geofenceId(geofenceId).build());
+        when(droneRepository.findByIdWithGeofences(drone.getDroneId())).thenReturn(Optional.of(drone));
+
+        // When
+        DroneSnapshot first = registry.get(drone.getDroneId()).orElseThrow();
+        DroneSnapshot second = registry.get(drone.getDroneId()).orElseThrow();
+
+        // Then
+        assertSame(first, second);
+        assertEquals("SN-1", first.getSerialNumber());
+        assertEquals(Drone.DroneStatus.FLYING, first.getStatus());
+        assertTrue(first.isPermittedIn(geofenceId));
+        verify(droneRepository, times(1)).findByIdWithGeofences(drone.getDroneId());
+    }
+
+    @Test
+    void shouldRememberUnknownDrones() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        when(droneRepository.findByIdWithGeofences(droneId)).thenReturn(Optional.empty());
+
+        // When
+        registry.get(droneId);
+        Optional<DroneSnapshot> result = registry.get(droneId);
+
+        // Then
+        assertTrue(result.isEmpty());
+        verify(droneRepository, times(1)).findByIdWithGeofences(droneId);
+    }
+
+    @Test
+    void shouldApplyUpdatesWithoutReloading() {
+        // Given - a drone registered after it was looked up as unknown
+        UUID droneId = UUID.randomUUID();
+        when(droneRepository.findByIdWithGeofences(droneId)).thenReturn(Optional.empty());
+        registry.get(droneId);
+
+        // When
+        registry.update(drone(droneId, Drone.DroneStatus.IDLE));
+        registry.updateStatus(droneId, Drone.DroneStatus.GEOFENCE_VIOLATION);
+
+        // Then
+        assertEquals(Drone.DroneStatus.GEOFENCE_VIOLATION, registry.get(droneId).orElseThrow().getStatus());
+        verify(droneRepository, times(1)).findByIdWithGeofences(droneId);
+    }
+
+    @Test
+    void shouldReloadAfterEviction() {
+        // Given
+        Drone drone = drone(UUID.randomUUID(), Drone.DroneStatus.ONLINE);
+        when(droneRepository.findByIdWithGeofences(drone.getDroneId())).thenReturn(Optional.of(drone));
+        registry.get(drone.getDroneId());
+
+        // When
+        registry.evict(drone.getDroneId());
+        registry.get(drone.getDroneId());
+
+        // Then
+        verify(droneRepository, times(2)).findByIdWithGeofences(drone.getDroneId());
+    }
+
+    @Test
+    void shouldPreloadAllDrones() {
+        // Given
+        ReflectionTestUtils.setField(registry, "preload", true);
+        Drone drone = drone(UUID.randomUUID(), Drone.DroneStatus.OFFLINE);
+        when(droneRepository.findAllWithGeofences()).thenReturn(List.of(drone));
+
+        // When
+        registry.preloadAll();
+
+        // Then
+        assertEquals(1, registry.size());
+        assertEquals(Set.of(), registry.get(drone.getDroneId()).orElseThrow().getPermittedGeofenceIds());
+        verify(droneRepository, never()).findByIdWithGeofences(any());
+    }
+
+    private static Drone drone(UUID droneId, Drone.DroneStatus status) {
+        return Drone.builder()
+                .droneId(droneId)
+                .serialNumber("SN-1")
+                .model("M1")
+                .currentStatus(status)
+                .geofences(new HashSet<>())
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneStatusDto;
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.repository.DroneRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DroneStatusServiceImplTest {
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    @Mock
+    private DroneRegistry droneRegistry;
+
+    @Mock
+    private DroneInfluxDBService influxDBService;
+
+    @Mock
+    private LatestTelemetryStore latestTelemetryStore;
+
+    @InjectMocks
+    private DroneStatusServiceImpl statusService;
+
+    @Test
+    @SuppressWarnings("deprecation") // 状态服务目前只填充 batteryLevel
+    void shouldPageInDatabaseAndEnrichOnlyDronesOnPage() {
+        // Given
+        Drone first = drone("SN-001", Drone.DroneStatus.FLYING);
+        Drone second = drone("SN-002", Drone.DroneStatus.FLYING);
+        Pageable pageable = PageRequest.of(3, 2, Sort.by("serialNumber"));
+        Set<Drone.DroneStatus> statuses = EnumSet.of(Drone.DroneStatus.FLYING);
+        when(droneRepository.findByCurrentStatusIn(statuses, pageable))
+                .thenReturn(new PageImpl<>(List.of(first, second), pageable, 120));
+        when(latestTelemetryStore.getLatest(List.of(first.getDroneId(), second.getDroneId())))
+                .thenReturn(List.of(DroneTelemetryDto.builder()
+                        .droneId(second.getDroneId().toString())
+                        .batteryLevel(64.0)
+                        .build()));
+
+        // When
+        Page<DroneStatusDto> page = statusService.getDronesPage(statuses, pageable);
+
+        // Then
+        assertEquals(120, page.getTotalElements());
+        assertEquals(3, page.getNumber());
+        assertEquals(List.of("SN-001", "SN-002"), page.getContent().stream().map(DroneStatusDto::getSerialNumber).toList());
+        assertNull(page.getContent().get(0).getBatteryLevel());
+        assertEquals(64.0, page.getContent().get(1).getBatteryLevel());
+        verify(droneRepository, never()).findAll();
+        verify(latestTelemetryStore, never()).getLatest(any(UUID.class));
+    }
+
+    @Test
+    void shouldSeekPastLastSerialNumberAndDetectNextPage() {
+        // Given
+        List<Drone> drones = List.of(drone("SN-011", Drone.DroneStatus.ONLINE),
+                drone("SN-012", Drone.DroneStatus.FLYING), drone("SN-013", Drone.DroneStatus.IDLE));
+        when(droneRepository.findBySerialNumberAfter(eq("SN-010"), eq(true), anyCollection(), eq(PageRequest.of(0, 3))))
+                .thenReturn(drones);
+        when(droneRepository.findBySerialNumberAfter(eq("SN-012"), eq(true), anyCollection(), eq(PageRequest.of(0, 3))))
+                .thenReturn(drones.subList(2, 3));
+        when(latestTelemetryStore.getLatest(anyCollection())).thenReturn(List.of());
+
+        // When
+        Slice<DroneStatusDto> slice = statusService.getDronesAfter("SN-010", Set.of(), 2);
+        Slice<DroneStatusDto> last = statusService.getDronesAfter("SN-012", Set.of(), 2);
+
+        // Then
+        assertTrue(slice.hasNext());
+        assertEquals(List.of("SN-011", "SN-012"), slice.getContent().stream().map(DroneStatusDto::getSerialNumber).toList());
+        assertFalse(last.hasNext());
+        assertEquals(1, last.getNumberOfElements());
+    }
+
+    private Drone drone(String serialNumber, Drone.DroneStatus status) {
+        return Drone.builder()
+                .droneId(UUID.randomUUID())
+                .serialNumber(serialNumber)
+                .model("TestModel")
+                .currentStatus(status)
+                .build();
+    }
+}
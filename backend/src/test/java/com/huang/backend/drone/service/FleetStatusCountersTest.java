@@ -0,0 +1,84 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneStatsDto;
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.repository.DroneRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FleetStatusCountersTest {
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    @Mock
+    private LatestTelemetryStore latestTelemetryStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private FleetStatusCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        counters = new FleetStatusCounters(droneRepository, latestTelemetryStore, meterRegistry);
+        counters.init();
+        when(droneRepository.countByStatus()).thenReturn(List.of(
+                new Object[]{Drone.DroneStatus.FLYING, 3L},
+                new Object[]{Drone.DroneStatus.OFFLINE, 5L},
+                new Object[]{Drone.DroneStatus.GEOFENCE_VIOLATION, 1L}));
+    }
+
+    @Test
+    void shouldSeedFromDatabaseAndFollowTransitionsWithoutQueries() {
+        // Given
+        counters.reconcile();
+        when(latestTelemetryStore.lowBatteryCount()).thenReturn(2);
+
+        // When
+        counters.transition(Drone.DroneStatus.OFFLINE, Drone.DroneStatus.ONLINE);
+        counters.transition(Drone.DroneStatus.GEOFENCE_VIOLATION, Drone.DroneStatus.FLYING);
+        counters.created(Drone.DroneStatus.IDLE);
+        counters.deleted(Drone.DroneStatus.OFFLINE);
+        DroneStatsDto stats = counters.getStats();
+
+        // Then
+        assertEquals(9, stats.getTotal());
+        assertEquals(4, stats.getFlying());
+        assertEquals(3, stats.getOffline());
+        assertEquals(1, stats.getOnline());
+        assertEquals(1, stats.getIdle());
+        assertEquals(0, stats.getError());
+        assertEquals(2, stats.getLowBattery());
+        assertEquals(Map.of("FLYING", 4, "OFFLINE", 3, "ONLINE", 1, "IDLE", 1), stats.getStatusCounts());
+        assertEquals(4.0, meterRegistry.get("drone.fleet.status").tag("status", "FLYING").gauge().value());
+        verify(droneRepository, times(1)).countByStatus();
+    }
+
+    @Test
+    void shouldCorrectDriftOnReconcile() {
+        // Given - a transition from a status the drone no longer had
+        counters.reconcile();
+        counters.transition(Drone.DroneStatus.ERROR, Drone.DroneStatus.FLYING);
+        assertEquals(4, counters.count(Drone.DroneStatus.FLYING));
+
+        // When
+        counters.reconcile();
+
+        // Then
+        assertEquals(3, counters.count(Drone.DroneStatus.FLYING));
+        assertEquals(0, counters.count(Drone.DroneStatus.ERROR));
+        assertEquals(9, counters.getStats().getTotal());
+    }
+}
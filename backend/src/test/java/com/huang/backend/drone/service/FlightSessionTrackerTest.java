@@ -0,0 +1,136 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.entity.FlightSession;
+import com.huang.backend.drone.repository.FlightSessionRepository;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FlightSessionTrackerTest {
+
+    private static final UUID DRONE_ID = UUID.randomUUID();
+    private static final Instant T0 = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private FlightSessionRepository flightSessionRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private FlightSessionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new FlightSessionTracker(flightSessionRepository, meterRegistry);
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "takeoffAltitude", 1.0);
+        ReflectionTestUtils.setField(tracker, "movingSpeed", 2.0);
+        ReflectionTestUtils.setField(tracker, "landingHoldMs", 10_000L);
+        ReflectionTestUtils.setField(tracker, "inactivityTimeoutMs", 120_000L);
+        ReflectionTestUtils.setField(tracker, "minDurationMs", 5_000L);
+        tracker.init();
+    }
+
+    @Test
+    void shouldRecordOneFlightFromTakeoffToLandingIncludingTouchAndGo() {
+        // Given - on the ground, 60 s flying north, a 3 s touch-and-go, then landed for 15 s
+        int second = 0;
+        for (; second < 5; second++) {
+            tracker.record(DRONE_ID, sample(second, 0.0, 0.0, 100.0, null));
+        }
+        for (; second < 65; second++) {
+            double altitude = second >= 30 && second < 33 ? 0.5 : 20.0 + second;
+            tracker.record(DRONE_ID, sample(second, altitude, (second - 5) * 0.0001, 100.0 - (second - 5) * 0.2, null));
+        }
+        for (; second < 80; second++) {
+            tracker.record(DRONE_ID, sample(second, 0.0, 0.0059, 88.0, null));
+        }
+
+        // Then
+        ArgumentCaptor<FlightSession> saved = ArgumentCaptor.forClass(FlightSession.class);
+        verify(flightSessionRepository, times(1)).save(saved.capture());
+        FlightSession flight = saved.getValue();
+        assertEquals(DRONE_ID, flight.getDroneId());
+        assertEquals(T0.plusSeconds(5), flight.getStartTime().toInstant());
+        assertEquals(T0.plusSeconds(65), flight.getEndTime().toInstant());
+        assertEquals(60_000L, flight.getDurationMs());
+        assertEquals(84.0, flight.getMaxAltitude());
+        assertEquals(100.0, flight.getStartBattery());
+        assertEquals(88.0, flight.getEndBattery());
+        assertEquals(12.0, flight.getBatteryUsed(), 1e-9);
+        assertEquals(656, flight.getDistanceMeters(), 1.0);
+        assertEquals(0.0, flight.getMinLatitude());
+        assertEquals(0.0059, flight.getMaxLatitude(), 1e-9);
+        assertEquals(FlightSession.EndReason.LANDED, flight.getEndReason());
+        assertEquals(0, tracker.openFlightCount());
+        assertEquals(1.0, meterRegistry.get("drone.flights.closed").tag("reason", "LANDED").counter().count());
+    }
+
+    @Test
+    void shouldEndOnGroundStatusOrFarewellAndDropShortHops() {
+        // Given - a 2 s hop, ended by a reported ground status
+        tracker.record(DRONE_ID, sample(0, 3.0, 0.0, 90.0, "FLYING"));
+        tracker.record(DRONE_ID, sample(2, 0.0, 0.0, 90.0, "IDLE"));
+        verify(flightSessionRepository, never()).save(any());
+
+        // When - a longer flight without altitude, ended by a farewell
+        tracker.record(DRONE_ID, sample(10, Double.NaN, 0.0, 90.0, "HOVER"));
+        tracker.record(DRONE_ID, sample(40, Double.NaN, 0.001, 85.0, "GOTO"));
+        assertEquals(1, tracker.openFlightCount());
+        tracker.end(DRONE_ID, T0.plusSeconds(41), FlightSession.EndReason.FAREWELL);
+
+        // Then
+        ArgumentCaptor<FlightSession> saved = ArgumentCaptor.forClass(FlightSession.class);
+        verify(flightSessionRepository, times(1)).save(saved.capture());
+        assertEquals(T0.plusSeconds(10), saved.getValue().getStartTime().toInstant());
+        assertEquals(T0.plusSeconds(41), saved.getValue().getEndTime().toInstant());
+        assertNull(saved.getValue().getMaxAltitude());
+        assertEquals(FlightSession.EndReason.FAREWELL, saved.getValue().getEndReason());
+        assertEquals(0, tracker.openFlightCount());
+    }
+
+    @Test
+    void shouldEndSilentFlightsAtTheirLastSample() {
+        // Given
+        ReflectionTestUtils.setField(tracker, "inactivityTimeoutMs", 0L);
+        tracker.record(DRONE_ID, sample(0, 10.0, 0.0, 80.0, null));
+        tracker.record(DRONE_ID, sample(30, 12.0, 0.0, 79.0, null));
+
+        // When
+        tracker.closeInactive();
+
+        // Then
+        ArgumentCaptor<FlightSession> saved = ArgumentCaptor.forClass(FlightSession.class);
+        verify(flightSessionRepository).save(saved.capture());
+        assertEquals(T0.plusSeconds(30), saved.getValue().getEndTime().toInstant());
+        assertEquals(FlightSession.EndReason.TIMEOUT, saved.getValue().getEndReason());
+        assertEquals(2, saved.getValue().getSampleCount());
+    }
+
+    private TelemetryRecord sample(int second, double altitude, double latitude, double battery, String status) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setDroneId(DRONE_ID.toString());
+        record.setTimestamp(T0.plusSeconds(second));
+        record.setAltitude(altitude);
+        record.setLatitude(latitude);
+        record.setLongitude(116.0);
+        record.setSpeed(0.0);
+        record.setBatteryLevel(battery);
+        record.setStatus(status);
+        return record;
+    }
+}
@@ -0,0 +1,266 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LatestTelemetryStoreTest {
+
+    @Mock
+    private DroneInfluxDBService influxDBService;
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    private LatestTelemetryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new LatestTelemetryStore(influxDBService, droneRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "coldTtlMs", 60_000L);
+        ReflectionTestUtils.setField(store, "lowBatteryThreshold", 20.0);
+        store.init();
+    }
+
+    @Test
+    void shouldServeIngestedSampleWithoutQueryingInflux() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        Instant timestamp = Instant.parse("2026-01-01T00:00:00.123456789Z");
+
+        // When
+        store.update(droneId, record(timestamp, 85.5));
+        DroneTelemetryDto latest = store.getLatest(droneId).orElseThrow();
+
+        // Then
+        assertEquals(droneId.toString(), latest.getDroneId());
+        assertEquals(timestamp, latest.getTimestamp());
+        assertEquals(85.5, latest.getBatteryLevel());
+        assertEquals(37.7749, latest.getLatitude());
+        assertNull(latest.getAltitude());
+        assertNull(latest.getSatellites());
+        assertTrue(latest.getIsArmed());
+        verifyNoInteractions(influxDBService);
+    }
+
+    @Test
+    void shouldKeepNewestSampleWhenOlderOneArrives() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        Instant now = Instant.now();
+        store.update(droneId, record(now, 70));
+
+        // When
+        store.update(droneId, record(now.minusSeconds(5), 90));
+
+        // Then
+        assertEquals(70.0, store.getLatest(droneId).orElseThrow().getBatteryLevel());
+    }
+
+    @Test
+    void shouldCountDronesWhoseLatestBatteryIsLow() {
+        // Given
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        // When / Then
+        store.update(first, record(now, 15));
+        store.update(second, record(now, 50));
+        assertEquals(1, store.lowBatteryCount());
+
+        store.update(second, record(now.plusSeconds(1), 19.5));
+        store.update(first, record(now.minusSeconds(1), 90));
+        assertEquals(2, store.lowBatteryCount());
+
+        store.update(first, record(now.plusSeconds(1), 90));
+        assertEquals(1, store.lowBatteryCount());
+
+        store.evict(second);
+        assertEquals(0, store.lowBatteryCount());
+    }
+
+    @Test
+    void shouldLoadFromInfluxOnceOnColdStart() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        UUID silentDroneId = UUID.randomUUID();
+        DroneTelemetryDto stored = DroneTelemetryDto.builder()
+                .droneId(droneId.toString())
+                .timestamp(Instant.now().minusSeconds(30))
+                .batteryLevel(42.0)
+                .satellites(9)
+                .build();
+        when(influxDBService.getLatestTelemetry(droneId.toString())).thenReturn(stored);
+
+        // When
+        DroneTelemetryDto first = store.getLatest(droneId).orElseThrow();
+        DroneTelemetryDto second = store.getLatest(droneId).orElseThrow();
+        boolean silentPresent = store.getLatest(silentDroneId).isPresent()
+                || store.getLatest(silentDroneId).isPresent();
+
+        // Then
+        assertEquals(42.0, first.getBatteryLevel());
+        assertEquals(9, second.getSatellites());
+        assertFalse(silentPresent);
+        verify(influxDBService, times(1)).getLatestTelemetry(droneId.toString());
+        verify(influxDBService, times(1)).getLatestTelemetry(silentDroneId.toString());
+        verify(influxDBService, times(2)).getLatestTelemetry(anyString());
+    }
+
+    @Test
+    void shouldPreferIngestOverColdLoadAndForgetEvictedDrone() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        when(influxDBService.getLatestTelemetry(droneId.toString())).thenReturn(null);
+        assertTrue(store.getLatest(droneId).isEmpty());
+
+        // When
+        store.update(droneId, record(Instant.now(), 60));
+
+        // Then
+        assertEquals(60.0, store.getLatest(droneId).orElseThrow().getBatteryLevel());
+        store.evict(droneId);
+        assertTrue(store.peek(droneId).isEmpty());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void shouldReloadDroneThatStoppedReportingToThisNode() {
+        // Given - a low-battery sample, then the drone's messages go to another node
+        ReflectionTestUtils.setField(store, "coldTtlMs", 0L);
+        ReflectionTestUtils.setField(store, "warmBatchSize", 1000);
+        UUID droneId = UUID.randomUUID();
+        store.update(droneId, record(Instant.now(), 15));
+        assertEquals(1, store.lowBatteryCount());
+        when(influxDBService.getLatestTelemetry(List.of(droneId.toString()))).thenReturn(Map.of(
+                droneId.toString(), DroneTelemetryDto.builder().batteryLevel(95.0).build()));
+
+        // When
+        store.refreshExpired();
+
+        // Then
+        assertEquals(95.0, store.peek(droneId).orElseThrow().getBatteryLevel());
+        assertEquals(0, store.lowBatteryCount());
+    }
+
+    @Test
+    void shouldNotHoldMapUpdatesWhileLoadingFromInflux() throws Exception {
+        // Given - the sample arrives through ingest while the cold load is still running
+        UUID droneId = UUID.randomUUID();
+        Instant now = Instant.now();
+        when(influxDBService.getLatestTelemetry(droneId.toString())).thenAnswer(invocation -> {
+            Thread ingest = new Thread(() -> store.update(droneId, record(now, 60)));
+            ingest.start();
+            ingest.join(5_000);
+            assertFalse(ingest.isAlive(), "update blocked by the cold load");
+            return DroneTelemetryDto.builder().droneId(droneId.toString())
+                    .timestamp(now.minusSeconds(30)).batteryLevel(90.0).build();
+        });
+
+        // When
+        DroneTelemetryDto latest = store.getLatest(droneId).orElseThrow();
+
+        // Then - ingest wins over the loaded value
+        assertEquals(60.0, latest.getBatteryLevel());
+        assertEquals(now, latest.getTimestamp());
+    }
+
+    @Test
+    void shouldLoadColdDronesWithOneBatchQuery() {
+        // Given
+        UUID liveDroneId = UUID.randomUUID();
+        UUID coldDroneId = UUID.randomUUID();
+        UUID silentDroneId = UUID.randomUUID();
+        store.update(liveDroneId, record(Instant.now(), 75));
+        when(influxDBService.getLatestTelemetry(List.of(coldDroneId.toString(), silentDroneId.toString())))
+                .thenReturn(Map.of(coldDroneId.toString(), DroneTelemetryDto.builder()
+                        .droneId(coldDroneId.toString())
+                        .timestamp(Instant.now().minusSeconds(10))
+                        .batteryLevel(55.0)
+                        .build()));
+
+        // When
+        List<DroneTelemetryDto> first = store.getLatest(List.of(liveDroneId, coldDroneId, silentDroneId));
+        List<DroneTelemetryDto> second = store.getLatest(List.of(coldDroneId, silentDroneId));
+
+        // Then
+        assertEquals(2, first.size());
+        assertEquals(liveDroneId.toString(), first.get(0).getDroneId());
+        assertEquals(55.0, first.get(1).getBatteryLevel());
+        assertEquals(1, second.size());
+        verify(influxDBService, times(1)).getLatestTelemetry(anyList());
+        verify(influxDBService, never()).getLatestTelemetry(anyString());
+    }
+
+    @Test
+    void shouldWarmEveryDroneInChunksAtStartup() {
+        // Given
+        ReflectionTestUtils.setField(store, "warmOnStartup", true);
+        ReflectionTestUtils.setField(store, "warmBatchSize", 2);
+        List<UUID> droneIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        when(droneRepository.findAllDroneIds()).thenReturn(droneIds);
+        when(influxDBService.getLatestTelemetry(anyList())).thenReturn(Map.of(
+                droneIds.get(2).toString(), DroneTelemetryDto.builder().batteryLevel(33.0).build()));
+
+        // When
+        store.warm();
+
+        // Then
+        assertEquals(3, store.size());
+        assertEquals(33.0, store.getLatest(droneIds.get(2)).orElseThrow().getBatteryLevel());
+        assertTrue(store.getLatest(droneIds.get(0)).isEmpty());
+        verify(influxDBService, times(2)).getLatestTelemetry(anyList());
+        verify(influxDBService, never()).getLatestTelemetry(anyString());
+    }
+
+    @Test
+    void shouldKeepStaleEntriesWhenBatchQueryFails() {
+        // Given - one drone already reported, InfluxDB is down
+        ReflectionTestUtils.setField(store, "coldTtlMs", 0L);
+        ReflectionTestUtils.setField(store, "warmOnStartup", true);
+        ReflectionTestUtils.setField(store, "warmBatchSize", 1000);
+        UUID reported = UUID.randomUUID();
+        UUID silent = UUID.randomUUID();
+        store.update(reported, record(Instant.now(), 55));
+        when(droneRepository.findAllDroneIds()).thenReturn(List.of(reported, silent));
+        when(influxDBService.getLatestTelemetry(anyList())).thenThrow(new IllegalStateException("timed out"));
+
+        // When
+        store.warm();
+        store.refreshExpired();
+
+        // Then - the known sample is kept, the silent drone stays cold instead of cached as "no data"
+        assertEquals(55.0, store.peek(reported).orElseThrow().getBatteryLevel());
+        assertEquals(1, store.size());
+        verify(influxDBService, times(2)).getLatestTelemetry(anyList());
+    }
+
+    private TelemetryRecord record(Instant timestamp, double batteryLevel) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setTimestamp(timestamp);
+        record.setBatteryLevel(batteryLevel);
+        record.setLatitude(37.7749);
+        record.setLongitude(-122.4194);
+        record.setArmed(true);
+        return record;
+    }
+}
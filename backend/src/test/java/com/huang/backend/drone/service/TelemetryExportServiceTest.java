@@ -0,0 +1,93 @@
+package com.huang.backend.drone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TelemetryExportServiceTest {
+
+    @Mock
+    private DroneInfluxDBService influxDBService;
+
+    private TelemetryExportService exportService;
+
+    private final UUID droneId = UUID.randomUUID();
+    private final Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new TelemetryExportService(influxDBService, objectMapper);
+        when(influxDBService.streamTelemetry(eq(List.of(droneId.toString())), eq(start), eq(start.plusSeconds(60)), any()))
+                .thenAnswer(invocation -> {
+                    DroneInfluxDBService.TelemetryRowHandler handler = invocation.getArgument(3);
+                    handler.accept(DroneTelemetryDto.builder()
+                            .droneId(droneId.toString())
+                            .timestamp(start)
+                            .batteryLevel(80.5)
+                            .satellites(12)
+                            .flightMode("RETURN, HOME")
+                            .build());
+                    handler.accept(DroneTelemetryDto.builder()
+                            .droneId(droneId.toString())
+                            .timestamp(start.plusSeconds(1))
+                            .latitude(37.5)
+                            .build());
+                    return 2L;
+                });
+    }
+
+    @Test
+    void shouldWriteCsvRowsWithHeaderAndQuoting() throws Exception {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = exportService.export(List.of(droneId), start, start.plusSeconds(60),
+                TelemetryExportService.Format.CSV, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, rows);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("timestamp,drone_id,battery_level"));
+        assertEquals(start + "," + droneId + ",80.5,,,,,,,12,,\"RETURN, HOME\",", lines[1]);
+        assertEquals(start.plusSeconds(1) + "," + droneId + ",,,37.5,,,,,,,,", lines[2]);
+    }
+
+    @Test
+    void shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        exportService.export(List.of(droneId), start, start.plusSeconds(60),
+                TelemetryExportService.Format.NDJSON, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].contains("\"batteryLevel\":80.5"));
+        assertTrue(lines[1].contains("\"timestamp\":\"2026-01-01T00:00:01Z\""));
+    }
+}
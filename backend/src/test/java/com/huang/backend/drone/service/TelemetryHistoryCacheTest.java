@@ -0,0 +1,183 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TelemetryHistoryCacheTest {
+
+    private static final long BUCKET_MS = 600_000;
+
+    @Mock
+    private DroneInfluxDBService influxDBService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TelemetryHistoryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new TelemetryHistoryCache(influxDBService, meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "bucketMs", BUCKET_MS);
+        ReflectionTestUtils.setField(cache, "closeDelayMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxRows", 10_000L);
+        ReflectionTestUtils.setField(cache, "maxBucketsPerLoad", 36);
+        ReflectionTestUtils.setField(cache, "maxLoadsPerRequest", 4);
+        ReflectionTestUtils.setField(cache, "maxHistoryPoints", 2000);
+        cache.init();
+        lenient().when(influxDBService.getTelemetryRange(eq("drone-a"), any(), any()))
+                .thenAnswer(invocation -> samples(invocation.getArgument(1), invocation.getArgument(2)));
+    }
+
+    @Test
+    void shouldLoadClosedBucketsOnceAndSliceRequestedRange() {
+        // Given - 25 minutes spanning three closed buckets, one sample per minute
+        Instant start = Instant.parse("2026-01-01T00:05:00Z");
+        Instant end = Instant.parse("2026-01-01T00:30:00Z");
+
+        // When
+        List<DroneTelemetryDto> first = cache.getHistory("drone-a", start, end, 1000);
+        List<DroneTelemetryDto> second = cache.getHistory("drone-a", start, end, 1000);
+
+        // Then
+        assertEquals(25, first.size());
+        assertEquals(start, first.get(0).getTimestamp());
+        assertEquals(end.minusSeconds(60), first.get(24).getTimestamp());
+        assertEquals(first, second);
+        verify(influxDBService, times(1)).getTelemetryRange("drone-a",
+                Instant.parse("2026-01-01T00:00:00Z"), Instant.parse("2026-01-01T00:30:00Z"));
+        verify(influxDBService, never()).getTelemetryHistory(any(), any(), any(), anyInt());
+        assertEquals(3, cache.chunkCount());
+        assertEquals(3, meterRegistry.get("drone.telemetry.history.cache.misses").counter().count());
+        assertEquals(3, meterRegistry.get("drone.telemetry.history.cache.hits").counter().count());
+        assertEquals(30.0, meterRegistry.get("drone.telemetry.history.cache.rows").gauge().value());
+    }
+
+    @Test
+    void shouldQueryOpenBucketsAndStopAtLimit() {
+        // Given - a range that ends now, so its last buckets are still open
+        Instant end = Instant.now();
+        Instant start = end.minus(1, ChronoUnit.HOURS);
+        when(influxDBService.getTelemetryHistory(eq("drone-a"), any(), eq(end), anyInt()))
+                .thenAnswer(invocation -> samples(invocation.getArgument(1), end));
+
+        // When
+        List<DroneTelemetryDto> all = cache.getHistory("drone-a", start, end, 1000);
+        List<DroneTelemetryDto> limited = cache.getHistory("drone-a", start, end, 10);
+
+        // Then
+        assertEquals(60, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i).getTimestamp().isAfter(all.get(i - 1).getTimestamp()));
+        }
+        assertEquals(all.subList(0, 10), limited);
+        verify(influxDBService, times(1)).getTelemetryHistory(eq("drone-a"), any(), eq(end), anyInt());
+    }
+
+    @Test
+    void shouldLoadLongUncachedRangesInFewQueriesAndQueryTheRestDirectly() {
+        // Given - a week with no telemetry, a cached bucket in the middle of the first day
+        ReflectionTestUtils.setField(cache, "maxBucketsPerLoad", 36);
+        ReflectionTestUtils.setField(cache, "maxLoadsPerRequest", 2);
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        Instant end = start.plus(7, ChronoUnit.DAYS);
+        Instant cached = start.plus(3, ChronoUnit.HOURS);
+        when(influxDBService.getTelemetryRange(eq("drone-c"), any(), any())).thenReturn(List.of());
+        when(influxDBService.getTelemetryHistory(eq("drone-c"), any(), eq(end), eq(100))).thenReturn(List.of());
+        cache.getHistory("drone-c", cached, cached.plusMillis(BUCKET_MS), 100);
+
+        // When
+        List<DroneTelemetryDto> history = cache.getHistory("drone-c", start, end, 100);
+
+        // Then - one query for the run before the cached bucket, one for the run after it
+        assertTrue(history.isEmpty());
+        verify(influxDBService).getTelemetryRange("drone-c", start, cached);
+        verify(influxDBService).getTelemetryRange("drone-c", cached.plusMillis(BUCKET_MS),
+                cached.plusMillis(37 * BUCKET_MS));
+        verify(influxDBService, times(3)).getTelemetryRange(eq("drone-c"), any(), any());
+        verify(influxDBService).getTelemetryHistory("drone-c", cached.plusMillis(37 * BUCKET_MS), end, 100);
+        assertEquals(1 + 18 + 36, cache.chunkCount());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedChunksBeyondRowLimit() {
+        // Given - room for two 10-row buckets
+        ReflectionTestUtils.setField(cache, "maxRows", 25L);
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+        // When
+        cache.getHistory("drone-a", start, start.plusMillis(BUCKET_MS), 100);
+        cache.getHistory("drone-a", start.plusMillis(BUCKET_MS), start.plusMillis(2 * BUCKET_MS), 100);
+        cache.getHistory("drone-a", start, start.plusMillis(BUCKET_MS), 100);
+        cache.getHistory("drone-a", start.plusMillis(2 * BUCKET_MS), start.plusMillis(3 * BUCKET_MS), 100);
+        cache.getHistory("drone-a", start, start.plusMillis(BUCKET_MS), 100);
+
+        // Then - the second bucket was evicted, the recently used first one was kept
+        assertEquals(2, cache.chunkCount());
+        assertEquals(20, cache.cachedRows());
+        verify(influxDBService, times(1)).getTelemetryRange("drone-a", start, start.plusMillis(BUCKET_MS));
+
+        cache.evict("drone-a");
+        assertEquals(0, cache.chunkCount());
+        assertEquals(0, cache.cachedRows());
+    }
+
+    @Test
+    void shouldNotCacheFailedLoads() {
+        // Given
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        when(influxDBService.getTelemetryRange(eq("drone-b"), any(), any()))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenAnswer(invocation -> samples(invocation.getArgument(1), invocation.getArgument(2)));
+
+        // When
+        List<DroneTelemetryDto> failed = cache.getHistory("drone-b", start, start.plusSeconds(300), 100);
+        List<DroneTelemetryDto> retried = cache.getHistory("drone-b", start, start.plusSeconds(300), 100);
+
+        // Then
+        assertTrue(failed.isEmpty());
+        assertEquals(5, retried.size());
+        assertEquals(1, cache.chunkCount());
+    }
+
+    /**
+     * One sample per minute in [from, to)
+     */
+    private List<DroneTelemetryDto> samples(Instant from, Instant to) {
+        List<DroneTelemetryDto> samples = new ArrayList<>();
+        Instant first = from.truncatedTo(ChronoUnit.MINUTES);
+        if (first.isBefore(from)) {
+            first = first.plusSeconds(60);
+        }
+        for (Instant time = first; time.isBefore(to); time = time.plusSeconds(60)) {
+            samples.add(DroneTelemetryDto.builder()
+                    .droneId("drone-a")
+                    .timestamp(time)
+                    .batteryLevel(90.0)
+                    .latitude(37.0)
+                    .satellites(time.getEpochSecond() / 60 % 2 == 0 ? 10 : null)
+                    .flightMode("AUTO")
+                    .build());
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,107 @@
+package com.huang.backend.drone.service;
+
+import com.huang.backend.drone.model.TelemetryRollup;
+import com.influxdb.client.BucketsApi;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.TasksApi;
+import com.influxdb.client.TasksQuery;
+import com.influxdb.client.domain.Bucket;
+import com.influxdb.client.domain.BucketRetentionRules;
+import com.influxdb.client.domain.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TelemetryRollupServiceTest {
+
+    @Mock
+    private InfluxDBClient influxDBClient;
+
+    @Mock
+    private BucketsApi bucketsApi;
+
+    @Mock
+    private TasksApi tasksApi;
+
+    @InjectMocks
+    private TelemetryRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rollupService, "bucket", "drone_data");
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+        ReflectionTestUtils.setField(rollupService, "minuteRetentionDays", 90);
+        ReflectionTestUtils.setField(rollupService, "hourRetentionDays", 0);
+        lenient().when(influxDBClient.getBucketsApi()).thenReturn(bucketsApi);
+        lenient().when(influxDBClient.getTasksApi()).thenReturn(tasksApi);
+    }
+
+    @Test
+    void shouldProvisionBucketsAndTasksAndRouteToCoarsestCoveredRollup() {
+        // Given
+        Instant created = Instant.now().minus(Duration.ofDays(10));
+        when(bucketsApi.findBucketByName("drone_data")).thenReturn(new Bucket().orgID("org-1"));
+        when(tasksApi.findTasks(any(TasksQuery.class))).thenReturn(List.of());
+        Task createdTask = mock(Task.class);
+        when(createdTask.getCreatedAt()).thenReturn(OffsetDateTime.ofInstant(created, ZoneOffset.UTC));
+        when(tasksApi.createTask(any(Task.class))).thenReturn(createdTask);
+
+        // When
+        rollupService.provision();
+
+        // Then
+        verify(bucketsApi).createBucket(eq("drone_data_1m"), any(BucketRetentionRules.class), eq("org-1"));
+        verify(bucketsApi).createBucket(eq("drone_data_1h"), any(BucketRetentionRules.class), eq("org-1"));
+        ArgumentCaptor<Task> tasks = ArgumentCaptor.forClass(Task.class);
+        verify(tasksApi, times(2)).createTask(tasks.capture());
+        String minuteTask = tasks.getAllValues().get(0).getFlux();
+        assertTrue(minuteTask.contains("option task = {name: \"drone_telemetry_rollup_1m\", every: 60000ms"));
+        assertTrue(minuteTask.contains("from(bucket: \"drone_data\")"));
+        assertTrue(minuteTask.contains("to(bucket: \"drone_data_1m\", tagColumns: [\"drone_id\", \"stat\"])"));
+        assertTrue(tasks.getAllValues().get(1).getFlux().contains("from(bucket: \"drone_data_1m\")"));
+
+        Instant recent = Instant.now().minus(Duration.ofDays(1));
+        assertEquals(Optional.of(TelemetryRollup.HOUR), rollupService.route(recent, Duration.ofHours(2)));
+        assertEquals(Optional.of(TelemetryRollup.MINUTE), rollupService.route(recent, Duration.ofMinutes(5)));
+        assertEquals(Optional.empty(), rollupService.route(recent, Duration.ofSeconds(30)));
+        // 早于任务创建时间的数据没有汇总
+        assertEquals(Optional.empty(), rollupService.route(created.minus(Duration.ofDays(1)), Duration.ofHours(2)));
+        // 最近的数据还没有汇总到小时桶
+        assertEquals(Optional.of(TelemetryRollup.MINUTE),
+                rollupService.route(Instant.now().minus(Duration.ofMinutes(30)), Duration.ofHours(2)));
+        Instant hourCovered = rollupService.coveredUntil(TelemetryRollup.HOUR);
+        assertFalse(hourCovered.isAfter(Instant.now().minus(Duration.ofHours(1)).minus(TelemetryRollup.HOUR.getOffset())));
+        assertEquals(0, hourCovered.toEpochMilli() % Duration.ofHours(1).toMillis());
+    }
+
+    @Test
+    void shouldKeepQueryingRawDataWhenProvisioningFails() {
+        // Given
+        when(bucketsApi.findBucketByName("drone_data")).thenThrow(new IllegalStateException("unauthorized"));
+
+        // When
+        rollupService.provision();
+
+        // Then
+        assertEquals(Optional.empty(), rollupService.route(Instant.now(), Duration.ofDays(1)));
+        verifyNoInteractions(tasksApi);
+    }
+}
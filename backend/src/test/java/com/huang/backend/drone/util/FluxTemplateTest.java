@@ -0,0 +1,51 @@
+package com.huang.backend.drone.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FluxTemplateTest {
+
+    @Test
+    void shouldRenderParametersAsFluxLiterals() {
+        // Given
+        FluxTemplate template = FluxTemplate.compile("test",
+                "from(bucket: ${bucket}) |> range(start: ${start}) "
+                        + "|> filter(fn: (r) => contains(value: r.drone_id, set: ${ids})) "
+                        + "|> aggregateWindow(every: ${every}, fn: mean) |> limit(n: ${limit}) |> map(fn: (r) => ({r with k: ${k}}))");
+
+        // When
+        String query = template.render(Map.of(
+                "bucket", "drone_data",
+                "start", Instant.parse("2026-01-01T00:00:00Z"),
+                "ids", List.of("a", "b\"c", "${x}"),
+                "every", Duration.ofSeconds(90),
+                "limit", 500,
+                "k", 1e21));
+
+        // Then
+        assertEquals("from(bucket: \"drone_data\") |> range(start: 2026-01-01T00:00:00Z) "
+                + "|> filter(fn: (r) => contains(value: r.drone_id, set: [\"a\", \"b\\\"c\", \"\\${x}\"])) "
+                + "|> aggregateWindow(every: 90000ms, fn: mean) |> limit(n: 500) "
+                + "|> map(fn: (r) => ({r with k: 1000000000000000000000.0}))", query);
+        assertEquals(Set.of("bucket", "start", "ids", "every", "limit", "k"), template.getParameters());
+    }
+
+    @Test
+    void shouldRejectMissingAndUnsupportedValues() {
+        // Given
+        FluxTemplate template = FluxTemplate.compile("test", "from(bucket: ${bucket})");
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> template.render(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> template.render(Map.of("bucket", new Object())));
+        assertThrows(IllegalArgumentException.class, () -> template.render(Map.of("bucket", Double.NaN)));
+        assertThrows(IllegalArgumentException.class, () -> FluxTemplate.compile("broken", "range(start: ${start"));
+    }
+}
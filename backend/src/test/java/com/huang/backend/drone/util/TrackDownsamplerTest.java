@@ -0,0 +1,57 @@
+package com.huang.backend.drone.util;
+
+import com.huang.backend.drone.dto.DroneTelemetryDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrackDownsamplerTest {
+
+    @Test
+    void shouldKeepEndpointsAndTurnsOfTrack() {
+        // Given - an L-shaped track: 500 samples east, then 500 samples north
+        List<DroneTelemetryDto> track = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            track.add(sample(i, 37.0, 122.0 + i * 1e-5));
+        }
+        for (int i = 0; i < 500; i++) {
+            track.add(sample(500 + i, 37.0 + (i + 1) * 1e-5, 122.0 + 499 * 1e-5));
+        }
+
+        // When
+        List<DroneTelemetryDto> kept = TrackDownsampler.lttb(track, 20);
+
+        // Then
+        assertEquals(20, kept.size());
+        assertSame(track.get(0), kept.get(0));
+        assertSame(track.get(999), kept.get(19));
+        for (int i = 1; i < kept.size(); i++) {
+            assertTrue(kept.get(i).getTimestamp().isAfter(kept.get(i - 1).getTimestamp()));
+        }
+        // the corner is the sample forming the largest triangle in its bucket
+        assertTrue(kept.stream().anyMatch(sample -> Math.abs(sample.getTimestamp().toEpochMilli() - 499_000) <= 1_000));
+    }
+
+    @Test
+    void shouldReturnShortTracksUnchanged() {
+        // Given
+        List<DroneTelemetryDto> track = List.of(sample(0, 37.0, 122.0), sample(1, 37.1, 122.1));
+
+        // When / Then
+        assertSame(track, TrackDownsampler.lttb(track, 10));
+        assertEquals(List.of(track.get(0), track.get(1)), TrackDownsampler.lttb(
+                List.of(track.get(0), sample(5, 37.5, 122.5), track.get(1)), 2));
+    }
+
+    private DroneTelemetryDto sample(int second, double latitude, double longitude) {
+        return DroneTelemetryDto.builder()
+                .timestamp(Instant.ofEpochSecond(second))
+                .latitude(latitude)
+                .longitude(longitude)
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.huang.backend.mqtt.capture;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttCaptureWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private MqttCaptureWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new MqttCaptureWriter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "directory", directory.toString());
+        ReflectionTestUtils.setField(writer, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(writer, "maxSegments", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    void shouldReadBackCapturedMessagesInOrder() throws Exception {
+        // Given
+        writer.init();
+
+        // When
+        writer.append("drones/a/telemetry", "{\"seq\":1}".getBytes(StandardCharsets.UTF_8));
+        writer.append("drones/b/telemetry/bin", new byte[]{(byte) 0xD7, 2, 0});
+        writer.append("drones/a/responses", new byte[0]);
+        writer.stop();
+
+        // Then
+        List<Path> segments = CaptureSegment.list(directory);
+        assertEquals(1, segments.size());
+        List<CapturedMessage> messages = CaptureSegment.open(segments.get(0)).readAll();
+        assertEquals(3, messages.size());
+        assertEquals("drones/a/telemetry", messages.get(0).getTopic());
+        assertEquals("{\"seq\":1}", new String(messages.get(0).getPayload(), StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[]{(byte) 0xD7, 2, 0}, messages.get(1).getPayload());
+        assertEquals(0, messages.get(2).getPayload().length);
+        assertTrue(messages.get(0).getArrivalEpochNanos() <= messages.get(2).getArrivalEpochNanos());
+    }
+
+    @Test
+    void shouldRollSegmentsAndKeepOnlyTheNewest() throws Exception {
+        // Given - 100 KB payloads, so a 1 MB segment holds 10 of them
+        writer.init();
+        byte[] payload = new byte[100 * 1024];
+
+        // When
+        for (int i = 0; i < 35; i++) {
+            payload[0] = (byte) i;
+            writer.append("drones/a/telemetry", payload);
+        }
+        writer.stop();
+
+        // Then - four segments written, the oldest one deleted
+        List<Path> segments = CaptureSegment.list(directory);
+        assertEquals(2, segments.size());
+        assertEquals(CaptureSegment.fileName(2), segments.get(0).getFileName().toString());
+        List<CapturedMessage> messages = new ArrayList<>();
+        for (Path segment : segments) {
+            messages.addAll(CaptureSegment.open(segment).readAll());
+        }
+        assertEquals(15, messages.size());
+        assertEquals(20, messages.get(0).getPayload()[0]);
+        assertEquals(34, messages.get(14).getPayload()[0]);
+    }
+
+    @Test
+    void shouldContinueNumberingAfterRestart() throws Exception {
+        // Given
+        writer.init();
+        writer.append("drones/a/telemetry", new byte[]{1});
+        writer.stop();
+
+        // When
+        MqttCaptureWriter restarted = new MqttCaptureWriter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(restarted, "enabled", true);
+        ReflectionTestUtils.setField(restarted, "directory", directory.toString());
+        ReflectionTestUtils.setField(restarted, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(restarted, "maxSegments", 2);
+        restarted.init();
+        restarted.append("drones/a/telemetry", new byte[]{2});
+        restarted.stop();
+
+        // Then
+        List<Path> segments = CaptureSegment.list(directory);
+        assertEquals(2, segments.size());
+        assertEquals(1, CaptureSegment.open(segments.get(0)).readAll().get(0).getPayload()[0]);
+        assertEquals(2, CaptureSegment.open(segments.get(1)).readAll().get(0).getPayload()[0]);
+    }
+}
@@ -0,0 +1,127 @@
+package com.huang.backend.mqtt.capture;
+
+import com.huang.backend.mqtt.dto.MqttReplayStatusDto;
+import com.huang.backend.mqtt.pipeline.TelemetryIngestPipeline;
+import com.huang.backend.mqtt.service.MqttSubscriberService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MqttReplayDriverTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MqttSubscriberService subscriberService;
+
+    @Mock
+    private TelemetryIngestPipeline ingestPipeline;
+
+    private MqttCaptureWriter captureWriter;
+    private MqttReplayDriver replayDriver;
+
+    @BeforeEach
+    void setUp() {
+        captureWriter = new MqttCaptureWriter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(captureWriter, "enabled", true);
+        ReflectionTestUtils.setField(captureWriter, "directory", directory.toString());
+        ReflectionTestUtils.setField(captureWriter, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(captureWriter, "maxSegments", 0);
+        replayDriver = new MqttReplayDriver(subscriberService, ingestPipeline, captureWriter);
+        ReflectionTestUtils.setField(replayDriver, "enabled", true);
+        ReflectionTestUtils.setField(replayDriver, "drainTimeoutMs", 1000L);
+        lenient().when(ingestPipeline.stages()).thenReturn(List.of());
+    }
+
+    @Test
+    void shouldReplayCapturedMessagesInOrderAtMaxSpeed() throws Exception {
+        // Given
+        captureWriter.init();
+        captureWriter.append("drones/a/telemetry", new byte[]{1});
+        captureWriter.append("drones/b/telemetry", new byte[]{2});
+        captureWriter.append("drones/a/telemetry", new byte[]{3});
+        captureWriter.stop();
+
+        // When
+        MqttReplayStatusDto status = replayDriver.run(CaptureSegment.list(directory), 0, 0);
+
+        // Then
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(3, status.getMessages());
+        assertEquals(1, status.getSegments());
+        InOrder inOrder = inOrder(subscriberService);
+        inOrder.verify(subscriberService).replay("drones/a/telemetry", new byte[]{1});
+        inOrder.verify(subscriberService).replay("drones/b/telemetry", new byte[]{2});
+        inOrder.verify(subscriberService).replay("drones/a/telemetry", new byte[]{3});
+    }
+
+    @Test
+    void shouldKeepCapturedSpacingDividedBySpeed() throws Exception {
+        // Given - two messages captured 200 ms apart
+        captureWriter.init();
+        captureWriter.append("drones/a/telemetry", new byte[]{1});
+        Thread.sleep(200);
+        captureWriter.append("drones/a/telemetry", new byte[]{2});
+        captureWriter.stop();
+
+        // When
+        MqttReplayStatusDto status = replayDriver.run(CaptureSegment.list(directory), 2.0, 0);
+
+        // Then - about 100 ms at 2x
+        assertEquals(2, status.getMessages());
+        assertTrue(status.getFeedMs() >= 95, "feed took " + status.getFeedMs() + "ms");
+        assertTrue(status.getFeedMs() < 200, "feed took " + status.getFeedMs() + "ms");
+    }
+
+    @Test
+    void shouldStopAtMessageLimitAndSkipSegmentBeingCaptured() throws Exception {
+        // Given
+        captureWriter.init();
+        for (int i = 0; i < 5; i++) {
+            captureWriter.append("drones/a/telemetry", new byte[]{(byte) i});
+        }
+        captureWriter.stop();
+        MqttReplayStatusDto limited = replayDriver.run(CaptureSegment.list(directory), 0, 2);
+
+        // When - capture is running again into a new segment
+        captureWriter.init();
+        captureWriter.append("drones/a/telemetry", new byte[]{9});
+        replayDriver.start(0, 0);
+        while (replayDriver.isRunning()) {
+            Thread.sleep(5);
+        }
+        captureWriter.stop();
+
+        // Then
+        assertEquals(2, limited.getMessages());
+        assertEquals(5, replayDriver.getStatus().getMessages());
+        verify(subscriberService, never()).replay(any(), eq(new byte[]{9}));
+    }
+
+    @Test
+    void shouldRefuseToStartWhenDisabled() {
+        // Given
+        ReflectionTestUtils.setField(replayDriver, "enabled", false);
+
+        // When / Then
+        assertFalse(replayDriver.isEnabled());
+        assertThrows(IllegalStateException.class, () -> replayDriver.start(0, 0));
+        assertFalse(replayDriver.isRunning());
+    }
+}
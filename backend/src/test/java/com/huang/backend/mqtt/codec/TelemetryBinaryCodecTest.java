@@ -0,0 +1,97 @@
+package com.huang.backend.mqtt.codec;
+
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryBinaryCodecTest {
+
+    private final TelemetryBinaryCodec codec = new TelemetryBinaryCodec();
+
+    @Test
+    void shouldRoundTripTelemetry() throws Exception {
+        // Given
+        TelemetryRecord source = new TelemetryRecord();
+        source.setTimestamp(Instant.ofEpochSecond(1700000000L, 123_456_789));
+        source.setLatitude(37.774929);
+        source.setLongitude(-122.419416);
+        source.setAltitude(120.5);
+        source.setBatteryLevel(85.5);
+        source.setSpeed(12.25);
+        source.setSatellites(14);
+        source.setStatus("FLYING");
+        source.setArmed(true);
+        source.setSequence(4_000_000_000L);
+
+        // When
+        byte[] payload = codec.encode(source);
+        TelemetryRecord decoded = new TelemetryRecord();
+        codec.decode(payload, decoded);
+
+        // Then
+        assertEquals(TelemetryBinaryCodec.LENGTH, payload.length);
+        assertTrue(TelemetryBinaryCodec.isBinary(payload));
+        assertEquals(source.getTimestamp(), decoded.getTimestamp());
+        assertEquals(37.774929, decoded.getLatitude());
+        assertEquals(-122.419416, decoded.getLongitude());
+        assertEquals(120.5, decoded.getAltitude());
+        assertEquals(85.5, decoded.getBatteryLevel());
+        assertEquals(12.25, decoded.getSpeed());
+        assertEquals(14, decoded.getSatellites());
+        assertEquals("FLYING", decoded.getStatus());
+        assertEquals(Boolean.TRUE, decoded.getArmed());
+        assertEquals(4_000_000_000L, decoded.getSequence());
+    }
+
+    @Test
+    void shouldDecodeVersionOnePayloads() throws Exception {
+        // Given - a version 1 payload has no sequence number
+        TelemetryRecord source = new TelemetryRecord();
+        source.setLatitude(1.5);
+        byte[] payload = Arrays.copyOf(codec.encode(source), 60);
+        payload[1] = 1;
+        TelemetryRecord decoded = new TelemetryRecord();
+
+        // When
+        codec.decode(payload, decoded);
+
+        // Then
+        assertEquals(1.5, decoded.getLatitude());
+        assertFalse(decoded.hasSequence());
+    }
+
+    @Test
+    void shouldKeepAbsentFieldsAbsent() throws Exception {
+        // Given
+        TelemetryRecord decoded = new TelemetryRecord();
+
+        // When
+        codec.decode(codec.encode(new TelemetryRecord()), decoded);
+
+        // Then
+        assertFalse(decoded.hasTimestamp());
+        assertFalse(decoded.hasPosition());
+        assertTrue(Double.isNaN(decoded.getHeading()));
+        assertEquals(TelemetryRecord.NO_INT, decoded.getSatellites());
+        assertNull(decoded.getStatus());
+        assertNull(decoded.getArmed());
+    }
+
+    @Test
+    void shouldRejectTruncatedOrUnknownPayloads() {
+        byte[] payload = codec.encode(new TelemetryRecord());
+        TelemetryRecord record = new TelemetryRecord();
+
+        assertThrows(IOException.class, () -> codec.decode(Arrays.copyOf(payload, 20), record));
+        payload[1] = 9;
+        assertThrows(IOException.class, () -> codec.decode(payload, record));
+        assertThrows(IOException.class, () -> codec.decode("{}".getBytes(StandardCharsets.UTF_8), record));
+        assertFalse(TelemetryBinaryCodec.isBinary("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
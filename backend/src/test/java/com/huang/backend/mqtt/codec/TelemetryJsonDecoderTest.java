@@ -0,0 +1,109 @@
+package com.huang.backend.mqtt.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.mqtt.model.DroneTelemetryData;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryJsonDecoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final TelemetryJsonDecoder decoder = new TelemetryJsonDecoder(objectMapper);
+
+    @Test
+    void shouldDecodeSimulatorPayload() throws Exception {
+        // Given
+        String payload = "{\"droneId\": \"d1\", \"seq\": 42, \"timestamp\": 1700000000.25, \"latitude\": 37.7749, "
+                + "\"longitude\": -122.4194, \"altitude\": 120.5, \"batteryLevel\": 85, \"speed\": 12.3, "
+                + "\"heading\": 90.0, \"status\": \"FLYING\", \"isArmed\": true, \"satellites\": 12, "
+                + "\"signalStrength\": 95.5, \"temperature\": 41.0}";
+        TelemetryRecord record = new TelemetryRecord();
+
+        // When
+        decoder.decode(bytes(payload), record);
+
+        // Then
+        assertEquals("d1", record.getDroneId());
+        assertEquals(42L, record.getSequence());
+        assertEquals(Instant.ofEpochSecond(1700000000L, 250_000_000), record.getTimestamp());
+        assertEquals(37.7749, record.getLatitude());
+        assertEquals(-122.4194, record.getLongitude());
+        assertEquals(120.5, record.getAltitude());
+        assertEquals(85.0, record.getBatteryLevel());
+        assertEquals(12, record.getSatellites());
+        assertEquals("FLYING", record.getStatus());
+        assertEquals(Boolean.TRUE, record.getArmed());
+        assertTrue(Double.isNaN(record.getBatteryVoltage()));
+        assertFalse(record.isFarewell());
+    }
+
+    @Test
+    void shouldMatchObjectMapperDecoding() throws Exception {
+        // Given
+        String payload = "{\"drone_id\":\"d2\",\"timestamp\":\"2024-03-01T10:15:30.123Z\",\"battery_percentage\":55.5,"
+                + "\"flight_status\":\"IDLE\",\"flightMode\":\"MANUAL\",\"satellites\":9,\"heading\":180.5}";
+
+        // When
+        TelemetryRecord record = new TelemetryRecord();
+        decoder.decode(bytes(payload), record);
+        DroneTelemetryData expected = objectMapper.readValue(bytes(payload), DroneTelemetryData.class);
+
+        // Then
+        assertEquals(expected.getDroneId(), record.getDroneId());
+        assertEquals(expected.getTimestamp(), record.getTimestamp());
+        assertEquals(expected.getBatteryLevel(), record.getBatteryLevel());
+        assertEquals(expected.getStatus(), record.getStatus());
+        assertEquals(expected.getFlightMode(), record.getFlightMode());
+        assertEquals(expected.getSatellites(), record.getSatellites());
+        assertEquals(expected.getHeading(), record.getHeading());
+    }
+
+    @Test
+    void shouldDecodeFarewellAndSkipUnknownFields() throws Exception {
+        // Given
+        String payload = "{\"extra\":{\"nested\":[1,2,{\"type\":\"x\"}]},\"type\": \"FAREWELL\","
+                + "\"message\":\"bye\",\"issuedBy\":\"admin\",\"batteryRemaining\":42.0,\"timestamp\":1700000000}";
+        TelemetryRecord record = new TelemetryRecord();
+
+        // When
+        decoder.decode(bytes(payload), record);
+
+        // Then
+        assertTrue(record.isFarewell());
+        assertEquals("bye", record.toFarewellMessage().getMessage());
+        assertEquals("admin", record.toFarewellMessage().getIssuedBy());
+        assertEquals(42.0, record.toFarewellMessage().getBatteryRemaining());
+        assertEquals(Instant.ofEpochSecond(1700000000L), record.toFarewellMessage().getTimestamp());
+    }
+
+    @Test
+    void shouldClearReusedRecord() throws Exception {
+        TelemetryRecord record = new TelemetryRecord();
+        decoder.decode(bytes("{\"latitude\":1.0,\"status\":\"FLYING\"}"), record);
+        decoder.decode(bytes("{\"longitude\":2.0}"), record);
+
+        assertTrue(Double.isNaN(record.getLatitude()));
+        assertNull(record.getStatus());
+        assertEquals(2.0, record.getLongitude());
+        assertFalse(record.hasTimestamp());
+    }
+
+    @Test
+    void shouldRejectInvalidPayload() {
+        TelemetryRecord record = new TelemetryRecord();
+        assertThrows(IOException.class, () -> decoder.decode(bytes("[1,2]"), record));
+        assertThrows(IOException.class, () -> decoder.decode(bytes("{\"latitude\":\"north\"}"), record));
+        assertThrows(IOException.class, () -> decoder.decode(bytes("{\"latitude\":1.0"), record));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
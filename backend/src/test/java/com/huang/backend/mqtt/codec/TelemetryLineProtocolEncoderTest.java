@@ -0,0 +1,110 @@
+package com.huang.backend.mqtt.codec;
+
+import com.huang.backend.drone.model.TelemetryData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryLineProtocolEncoderTest {
+
+    private final TelemetryLineProtocolEncoder encoder = new TelemetryLineProtocolEncoder();
+
+    @Test
+    void shouldEncodeAllFields() {
+        // Given
+        TelemetryData data = TelemetryData.builder()
+                .droneId("6f1c2a9e-8d0b-4d6a-9a51-2b3c4d5e6f70")
+                .timestamp(Instant.ofEpochSecond(1700000000L, 123456789))
+                .batteryLevel(85.5)
+                .batteryVoltage(12.0)
+                .latitude(37.7749)
+                .longitude(-122.4194)
+                .altitude(120.25)
+                .speed(0.0)
+                .heading(359.9)
+                .satellites(12)
+                .signalStrength(-0.5)
+                .flightMode("MISSION")
+                .temperature(42.125)
+                .build();
+
+        // When
+        String line = new String(encoder.encode(data), StandardCharsets.UTF_8);
+
+        // Then
+        assertEquals("drone_telemetry,drone_id=6f1c2a9e-8d0b-4d6a-9a51-2b3c4d5e6f70 "
+                + "battery_level=85.5,battery_voltage=12,latitude=37.7749,longitude=-122.4194,"
+                + "altitude=120.25,speed=0,heading=359.9,satellites=12,signal_strength=-0.5,"
+                + "flight_mode=\"MISSION\",temperature=42.125 1700000000123456789", line);
+    }
+
+    @Test
+    void shouldSkipNullAndNonFiniteFields() {
+        // Given
+        TelemetryData data = TelemetryData.builder()
+                .droneId("d1")
+                .timestamp(Instant.ofEpochSecond(1, 0))
+                .latitude(Double.NaN)
+                .longitude(1.5)
+                .altitude(Double.POSITIVE_INFINITY)
+                .build();
+
+        // When
+        String line = new String(encoder.encode(data), StandardCharsets.UTF_8);
+
+        // Then
+        assertEquals("drone_telemetry,drone_id=d1 longitude=1.5 1000000000", line);
+    }
+
+    @Test
+    void shouldReturnNullWhenNoFields() {
+        TelemetryData data = TelemetryData.builder()
+                .droneId("d1")
+                .timestamp(Instant.now())
+                .build();
+
+        assertNull(encoder.encode(data));
+    }
+
+    @Test
+    void shouldEscapeTagsAndStringFields() {
+        // Given
+        TelemetryData data = TelemetryData.builder()
+                .droneId("a b,c=d")
+                .timestamp(Instant.ofEpochSecond(0, 5))
+                .flightMode("say \"hi\"\\")
+                .build();
+
+        // When
+        String line = new String(encoder.encode(data), StandardCharsets.UTF_8);
+
+        // Then
+        assertEquals("drone_telemetry,drone_id=a\\ b\\,c\\=d flight_mode=\"say \\\"hi\\\"\\\\\" 5", line);
+    }
+
+    @Test
+    void shouldRoundTripDoubles() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double value;
+            switch (i % 4) {
+                case 0 -> value = (random.nextDouble() - 0.5) * 360;
+                case 1 -> value = Math.round(random.nextDouble() * 1e6) / 1e4;
+                case 2 -> value = random.nextGaussian() * 1e12;
+                default -> value = random.nextDouble() * 1e-9;
+            }
+            TelemetryData data = TelemetryData.builder()
+                    .droneId("d")
+                    .timestamp(Instant.EPOCH)
+                    .altitude(value)
+                    .build();
+            String line = new String(encoder.encode(data), StandardCharsets.UTF_8);
+            String encoded = line.substring(line.indexOf("altitude=") + 9, line.lastIndexOf(' '));
+            assertEquals(value, Double.parseDouble(encoded), "encoded as " + encoded);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.huang.backend.mqtt.connection;
+
+import com.huang.backend.config.MqttClientFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MqttConnectionPoolTest {
+
+    @Mock
+    private MqttClientFactory clientFactory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<MqttAsyncClient> clients = new ArrayList<>();
+    private final List<IMqttActionListener> pendingAcks = new ArrayList<>();
+
+    private MqttConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(clientFactory.create(anyString())).thenAnswer(invocation -> {
+            MqttAsyncClient client = mock(MqttAsyncClient.class);
+            lenient().when(client.isConnected()).thenReturn(true);
+            lenient().when(client.publish(anyString(), any(MqttMessage.class), any(), any())).thenAnswer(publish -> {
+                pendingAcks.add(publish.getArgument(3));
+                return null;
+            });
+            clients.add(client);
+            return client;
+        });
+        pool = new MqttConnectionPool(clientFactory, new MqttConnectOptions(), meterRegistry);
+        ReflectionTestUtils.setField(pool, "clientIdPrefix", "backend");
+        ReflectionTestUtils.setField(pool, "publishConnections", 3);
+        ReflectionTestUtils.setField(pool, "offlineBufferSize", 100);
+        pool.start();
+    }
+
+    @Test
+    void shouldCompletePublishWhenBrokerAcknowledges() throws Exception {
+        // When
+        CompletableFuture<IMqttDeliveryToken> delivery = pool.publish("drones/a/commands", new MqttMessage());
+
+        // Then - nothing blocks until the broker acknowledges
+        assertFalse(delivery.isDone());
+        IMqttDeliveryToken token = mock(IMqttDeliveryToken.class);
+        pendingAcks.get(0).onSuccess(token);
+        assertSame(token, delivery.get());
+        assertEquals(1.0, meterRegistry.counter("mqtt.publish.sent").count());
+    }
+
+    @Test
+    void shouldKeepTopicOnOneConnectionAndSpreadTopics() throws Exception {
+        // When
+        for (int i = 0; i < 30; i++) {
+            pool.publish("drones/" + i + "/commands", new MqttMessage());
+            pool.publish("drones/" + i + "/commands", new MqttMessage());
+        }
+
+        // Then
+        for (int i = 0; i < 30; i++) {
+            String topic = "drones/" + i + "/commands";
+            long used = clients.stream()
+                    .filter(client -> mockingDetails(client).getInvocations().stream()
+                            .anyMatch(call -> call.getMethod().getName().equals("publish")
+                                    && topic.equals(call.getArgument(0))))
+                    .count();
+            assertEquals(1, used, topic);
+        }
+        for (MqttAsyncClient client : clients) {
+            verify(client, atLeastOnce()).publish(anyString(), any(MqttMessage.class), any(), any());
+        }
+    }
+
+    @Test
+    void shouldFailFastWhenNoConnectionIsUp() throws Exception {
+        // Given
+        for (MqttAsyncClient client : clients) {
+            when(client.isConnected()).thenReturn(false);
+        }
+
+        // When
+        CompletableFuture<IMqttDeliveryToken> delivery = pool.publish("drones/a/commands", new MqttMessage());
+
+        // Then
+        assertTrue(delivery.isCompletedExceptionally());
+        assertEquals(1.0, meterRegistry.counter("mqtt.publish.failed").count());
+        verify(clients.get(0), never()).publish(anyString(), any(MqttMessage.class), any(), any());
+    }
+
+    @Test
+    void shouldOpenIngestConnectionsSeparately() throws Exception {
+        // When
+        PooledConnection ingest = pool.openIngestConnection(0, (topic, message) -> { });
+        ingest.subscribe("drones/+/telemetry", 1);
+
+        // Then
+        assertEquals(3, pool.getPublishLane().size());
+        assertEquals(List.of(ingest), pool.getIngestLane());
+        verify(clients.get(3)).subscribe("drones/+/telemetry", 1);
+        verify(clientFactory).create("backend-ingest-0-" + ReflectionTestUtils.getField(pool, "instanceId"));
+    }
+}
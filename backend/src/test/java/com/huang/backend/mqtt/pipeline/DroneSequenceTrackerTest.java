@@ -0,0 +1,80 @@
+package com.huang.backend.mqtt.pipeline;
+
+import com.huang.backend.mqtt.dto.DroneLinkStatsDto;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.huang.backend.mqtt.pipeline.DroneSequenceTracker.Delivery.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DroneSequenceTrackerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DroneSequenceTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new DroneSequenceTracker(meterRegistry);
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "resetAfter", 3);
+        tracker.init();
+    }
+
+    @Test
+    void shouldDetectDuplicatesLossAndReordering() {
+        assertEquals(IN_ORDER, tracker.classify("d", sequence(1)));
+        assertEquals(IN_ORDER, tracker.classify("d", sequence(2)));
+        assertEquals(IN_ORDER, tracker.classify("d", sequence(5)));
+        assertEquals(DUPLICATE, tracker.classify("d", sequence(5)));
+        assertEquals(LATE, tracker.classify("d", sequence(3)));
+        assertEquals(DUPLICATE, tracker.classify("d", sequence(3)));
+        assertEquals(DUPLICATE, tracker.classify("d", sequence(1)));
+
+        DroneLinkStatsDto stats = tracker.getStats("d").orElseThrow();
+        assertEquals(4, stats.getReceived());
+        assertEquals(3, stats.getDuplicates());
+        assertEquals(1, stats.getLate());
+        assertEquals(1, stats.getLost());
+        assertEquals(5L, stats.getLastSequence());
+        assertEquals(3.0, meterRegistry.get("drone.ingest.duplicates").functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("drone.ingest.gaps").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("drone.ingest.gap-fills").functionCounter().count());
+    }
+
+    @Test
+    void shouldTreatRepeatedOldSequencesAsCounterRestart() {
+        tracker.classify("d", sequence(500));
+
+        assertEquals(LATE, tracker.classify("d", sequence(0)));
+        assertEquals(LATE, tracker.classify("d", sequence(1)));
+        assertEquals(IN_ORDER, tracker.classify("d", sequence(2)));
+        assertEquals(IN_ORDER, tracker.classify("d", sequence(3)));
+        assertEquals(1, tracker.getStats("d").orElseThrow().getResets());
+    }
+
+    @Test
+    void shouldUseTimestampWatermarkWithoutSequence() {
+        assertEquals(IN_ORDER, tracker.classify("d", timestamp(100)));
+        assertEquals(DUPLICATE, tracker.classify("d", timestamp(100)));
+        assertEquals(LATE, tracker.classify("d", timestamp(50)));
+        assertEquals(IN_ORDER, tracker.classify("d", timestamp(200)));
+        assertEquals(IN_ORDER, tracker.classify("other", new TelemetryRecord()));
+        assertTrue(tracker.getStats("other").isEmpty());
+    }
+
+    private static TelemetryRecord sequence(long sequence) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setSequence(sequence);
+        return record;
+    }
+
+    private static TelemetryRecord timestamp(long nanos) {
+        TelemetryRecord record = new TelemetryRecord();
+        record.setTimestampNanos(nanos);
+        return record;
+    }
+}
@@ -0,0 +1,192 @@
+package com.huang.backend.mqtt.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedStageTest {
+
+    private final Map<ShardedStage<String>, CountDownLatch> gates = new ConcurrentHashMap<>();
+
+    @Test
+    void shouldKeepPerKeyOrderAcrossShards() throws Exception {
+        // Given
+        int keys = 16;
+        int perKey = 500;
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(keys * perKey);
+        ShardedStage<int[]> stage = new ShardedStage<>("test", 4, 64, item -> {
+            seen.computeIfAbsent("drone-" + item[0], k -> new ArrayList<>()).add(item[1]);
+            done.countDown();
+        });
+        stage.start();
+
+        // When
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                stage.submit("drone-" + k, new int[]{k, i});
+            }
+        }
+
+        // Then
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int k = 0; k < keys; k++) {
+            List<Integer> values = seen.get("drone-" + k);
+            assertEquals(perKey, values.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, values.get(i));
+            }
+        }
+        stage.shutdown(1000);
+        assertEquals((long) keys * perKey, stage.getProcessedCount());
+        assertEquals(0, stage.queueDepth());
+    }
+
+    @Test
+    void shouldCountFailuresAndKeepRunning() throws Exception {
+        // Given
+        CountDownLatch done = new CountDownLatch(2);
+        ShardedStage<String> stage = new ShardedStage<>("test", 1, 8, item -> {
+            done.countDown();
+            if ("bad".equals(item)) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        stage.start();
+
+        // When
+        stage.submit("k", "bad");
+        stage.submit("k", "good");
+
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        stage.shutdown(1000);
+        assertEquals(1, stage.getFailedCount());
+        assertEquals(1, stage.getProcessedCount());
+    }
+
+    @Test
+    void shouldReportQueueAndServiceTimeToObserver() throws Exception {
+        // Given
+        List<long[]> timings = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        ShardedStage<String> stage = new ShardedStage<>("test", 1, 8, item -> Thread.sleep(20));
+        stage.setObserver((queued, service) -> {
+            timings.add(new long[]{queued, service});
+            done.countDown();
+        });
+        stage.start();
+
+        // When - the second item waits while the first one is handled
+        stage.submit("a", "first");
+        stage.submit("a", "second");
+
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        stage.shutdown(1000);
+        assertTrue(timings.get(0)[1] >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(timings.get(1)[0] >= TimeUnit.MILLISECONDS.toNanos(15));
+    }
+
+    @Test
+    void shouldRouteSameKeyToSameShard() {
+        ShardedStage<String> stage = new ShardedStage<>("test", 8, 8, item -> { });
+        String key = "6f1c2a9e-8d0b-4d6a-9a51-2b3c4d5e6f70";
+        assertEquals(stage.shardFor(key), stage.shardFor(new String(key)));
+        assertTrue(stage.shardFor(key) >= 0 && stage.shardFor(key) < 8);
+    }
+
+    @Test
+    void shouldCoalescePendingItemsPerKeyUnderOverload() throws Exception {
+        // Given - the worker is blocked on the first item, queue high watermark is 2
+        List<String> seen = new CopyOnWriteArrayList<>();
+        ShardedStage<String> stage = blockedStage(4, seen);
+
+        // When
+        stage.submit("a", "a:1");
+        stage.submit("a", "a:2");
+        stage.submit("a", "a:3");
+        stage.submit("b", "b:1");
+        stage.submit("a", "a:4");
+        stage.submit("b", "b:2");
+        release(stage);
+
+        // Then - the newest pending sample replaced the older one in its queue position
+        assertEquals(List.of("a:0", "a:1", "a:4", "b:2"), seen);
+        assertEquals(3, stage.getCoalescedCount());
+        assertEquals(0, stage.getShedCount());
+    }
+
+    @Test
+    void shouldNeverCoalesceAcrossNonCoalescableItems() throws Exception {
+        // Given
+        List<String> seen = new CopyOnWriteArrayList<>();
+        ShardedStage<String> stage = blockedStage(4, seen);
+
+        // When
+        stage.submit("a", "a:1");
+        stage.submit("a", "a:2");
+        stage.submit("a", "a:3");
+        stage.submit("a", "!farewell");
+        stage.submit("a", "a:4");
+        stage.submit("a", "a:5");
+        release(stage);
+
+        // Then
+        assertEquals(List.of("a:0", "a:1", "a:3", "!farewell", "a:5"), seen);
+        assertEquals(2, stage.getCoalescedCount());
+    }
+
+    @Test
+    void shouldShedInsteadOfBlockingWhenFullUnderOverload() throws Exception {
+        // Given
+        List<String> seen = new CopyOnWriteArrayList<>();
+        ShardedStage<String> stage = blockedStage(2, seen);
+
+        // When
+        stage.submit("a", "a:1");
+        stage.submit("b", "b:1");
+        stage.submit("c", "c:1");
+        assertEquals(1, stage.overloadedShards());
+        release(stage);
+
+        // Then
+        assertEquals(List.of("a:0", "a:1", "b:1"), seen);
+        assertEquals(1, stage.getShedCount());
+        assertEquals(0, stage.queueDepth());
+    }
+
+    /**
+     * A single-shard coalescing stage (high watermark 50%, low 25%) whose worker is blocked
+     * handling "a:0" until {@link #release} is called. Items starting with '!' are not coalescable.
+     */
+    private ShardedStage<String> blockedStage(int capacity, List<String> seen) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        ShardedStage<String> stage = new ShardedStage<>("test", 1, capacity, item -> {
+            if ("a:0".equals(item)) {
+                started.countDown();
+                gate.await();
+            }
+            seen.add(item);
+        }, new ShardedStage.CoalescingPolicy<>(0.5, 0.25, item -> !item.startsWith("!")));
+        gates.put(stage, gate);
+        stage.start();
+        stage.submit("a", "a:0");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return stage;
+    }
+
+    private void release(ShardedStage<String> stage) {
+        gates.remove(stage).countDown();
+        stage.shutdown(5000);
+    }
+}
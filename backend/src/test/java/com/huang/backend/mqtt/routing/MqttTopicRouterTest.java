@@ -0,0 +1,76 @@
+package com.huang.backend.mqtt.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttTopicRouterTest {
+
+    private final MqttTopicRouter<String> router = MqttTopicRouter.<String>builder()
+            .route("drones/+/telemetry", "telemetry")
+            .route("drones/+/responses", "responses")
+            .route("drones/+/console/#", "console")
+            .route("drones/broadcast/telemetry", "broadcast")
+            .route("fleet/#", "fleet")
+            .route("#", "any")
+            .build();
+
+    @Test
+    void shouldRouteAndCaptureDroneId() {
+        MqttTopicRouter.Match<String> match = router.route("drones/6f1c2a9e/telemetry");
+
+        assertNotNull(match);
+        assertEquals("telemetry", match.getHandler());
+        assertEquals("6f1c2a9e", match.getDroneId());
+        assertEquals("responses", router.route("drones/d1/responses").getHandler());
+    }
+
+    @Test
+    void shouldPreferLiteralOverWildcardLevels() {
+        assertEquals("broadcast", router.route("drones/broadcast/telemetry").getHandler());
+        assertNull(router.route("drones/broadcast/telemetry").getDroneId());
+    }
+
+    @Test
+    void shouldMatchMultiLevelWildcard() {
+        MqttTopicRouter.Match<String> match = router.route("drones/d7/console/log/error");
+        assertEquals("console", match.getHandler());
+        assertEquals("d7", match.getDroneId());
+
+        // "a/#" also matches the parent level
+        assertEquals("console", router.route("drones/d7/console").getHandler());
+        assertEquals("fleet", router.route("fleet").getHandler());
+    }
+
+    @Test
+    void shouldFallBackWhenMoreSpecificFilterDoesNotMatch() {
+        assertEquals("any", router.route("drones/d1/telemetry/extra").getHandler());
+        assertEquals("any", router.route("drones/d1").getHandler());
+    }
+
+    @Test
+    void shouldReturnNullWhenNothingMatches() {
+        MqttTopicRouter<String> strict = MqttTopicRouter.<String>builder()
+                .route("drones/+/telemetry", "telemetry")
+                .build();
+
+        assertNull(strict.route("invalid/topic/format"));
+        assertNull(strict.route("drones/d1/telemetry/extra"));
+        assertNull(strict.route("drones/d1"));
+    }
+
+    @Test
+    void shouldNotMatchSystemTopicsWithLeadingWildcard() {
+        assertNull(router.route("$SYS/broker/uptime"));
+    }
+
+    @Test
+    void shouldRejectMalformedFilters() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MqttTopicRouter.<String>builder().route("drones/#/telemetry", "x"));
+        assertThrows(IllegalArgumentException.class,
+                () -> MqttTopicRouter.<String>builder().route("drones/a+/telemetry", "x"));
+        assertThrows(IllegalArgumentException.class,
+                () -> MqttTopicRouter.<String>builder().route("drones/+/telemetry", "x").route("drones/+/telemetry", "y"));
+    }
+}
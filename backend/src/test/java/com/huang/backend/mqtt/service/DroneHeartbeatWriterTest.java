@@ -0,0 +1,108 @@
+package com.huang.backend.mqtt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DroneHeartbeatWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DroneHeartbeatWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new DroneHeartbeatWriter(jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(writer, "chunkSize", 1000);
+        writer.init();
+    }
+
+    @Test
+    void shouldCoalesceHeartbeatsIntoOneStatement() {
+        // Given
+        UUID droneA = UUID.randomUUID();
+        UUID droneB = UUID.randomUUID();
+        Instant base = Instant.parse("2024-03-01T10:00:00Z");
+        writer.record(droneA, base);
+        writer.record(droneA, base.plusSeconds(2));
+        writer.record(droneA, base.plusSeconds(1));
+        writer.record(droneB, base);
+
+        // When
+        writer.flush();
+
+        // Then
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        assertTrue(sql.getValue().startsWith("UPDATE drones SET last_heartbeat_at = v.ts FROM (VALUES "));
+        assertEquals(4, args.getValue().length);
+        for (int i = 0; i < 4; i += 2) {
+            if (args.getValue()[i].equals(droneA)) {
+                assertEquals(OffsetDateTime.ofInstant(base.plusSeconds(2), ZoneOffset.UTC), args.getValue()[i + 1]);
+            }
+        }
+        assertEquals(0, writer.pendingCount());
+        assertEquals(2.0, meterRegistry.get("drone.heartbeat.written").counter().count());
+    }
+
+    @Test
+    void shouldSkipFlushWhenNothingPending() {
+        writer.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void shouldKeepHeartbeatsWhenWriteFails() {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        writer.record(droneId, Instant.now());
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        // When
+        writer.flush();
+
+        // Then
+        assertEquals(1, writer.pendingCount());
+        assertEquals(1.0, meterRegistry.get("drone.heartbeat.flush.failed").counter().count());
+    }
+
+    @Test
+    void shouldSplitLargeFlushesIntoChunks() {
+        // Given
+        ReflectionTestUtils.setField(writer, "chunkSize", 2);
+        for (int i = 0; i < 5; i++) {
+            writer.record(UUID.randomUUID(), Instant.now());
+        }
+
+        // When
+        writer.flush();
+
+        // Then
+        verify(jdbcTemplate, times(3)).update(anyString(), any(Object[].class));
+    }
+}
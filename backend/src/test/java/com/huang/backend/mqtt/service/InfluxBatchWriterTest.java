@@ -0,0 +1,208 @@
+package com.huang.backend.mqtt.service;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.exceptions.InfluxException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InfluxBatchWriterTest {
+
+    @Mock
+    private InfluxDBClient influxDBClient;
+
+    @Mock
+    private WriteApiBlocking writeApi;
+
+    @TempDir
+    Path spoolDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InfluxWriteSpool spool;
+
+    private InfluxBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(influxDBClient.getWriteApiBlocking()).thenReturn(writeApi);
+
+        spool = new InfluxWriteSpool(meterRegistry);
+        ReflectionTestUtils.setField(spool, "directory", spoolDirectory.toString());
+        ReflectionTestUtils.setField(spool, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(spool, "maxSizeMb", 16L);
+
+        writer = new InfluxBatchWriter(influxDBClient, meterRegistry, spool);
+        ReflectionTestUtils.setField(writer, "bucket", "test_bucket");
+        ReflectionTestUtils.setField(writer, "organization", "test_org");
+        ReflectionTestUtils.setField(writer, "batchSize", 3);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(writer, "bufferLimit", 10);
+        ReflectionTestUtils.setField(writer, "maxRetries", 2);
+        ReflectionTestUtils.setField(writer, "retryIntervalMs", 1L);
+        ReflectionTestUtils.setField(writer, "maxRetryDelayMs", 5L);
+        ReflectionTestUtils.setField(writer, "jitterMs", 1L);
+        ReflectionTestUtils.setField(writer, "fullWaitMs", 10L);
+        ReflectionTestUtils.setField(writer, "drainRate", 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+        spool.close();
+    }
+
+    @Test
+    void shouldWriteBufferedRecordsAsOneBatch() {
+        // Given
+        writer.start();
+
+        // When
+        writer.write("m,drone_id=a v=1 1");
+        writer.write("m,drone_id=a v=2 2");
+        writer.write("m,drone_id=b v=3 3");
+
+        // Then
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(writeApi, timeout(2000)).writeRecord(eq("test_bucket"), eq("test_org"), eq(WritePrecision.NS), body.capture());
+        assertEquals("m,drone_id=a v=1 1\nm,drone_id=a v=2 2\nm,drone_id=b v=3 3\n", body.getValue());
+        assertEquals(3.0, meterRegistry.get("influxdb.write.points.flushed").counter().count());
+    }
+
+    @Test
+    void shouldRetryRetryableFailures() {
+        // Given
+        doThrow(new InfluxException("unavailable"))
+                .doNothing()
+                .when(writeApi).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.start();
+
+        // When
+        writer.write("m,drone_id=a v=1 1");
+
+        // Then
+        verify(writeApi, timeout(2000).times(2)).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        assertEquals(1.0, meterRegistry.get("influxdb.write.retries").counter().count());
+        assertEquals(0.0, meterRegistry.get("influxdb.write.points.dropped").counter().count());
+    }
+
+    @Test
+    void shouldDropRecordsWhenBufferIsFull() {
+        // Given - flusher not started, so nothing drains the buffer
+        spool.init();
+        ReflectionTestUtils.setField(writer, "buffer", new ArrayBlockingQueue<byte[]>(2));
+        ReflectionTestUtils.setField(writer, "droppedPoints", meterRegistry.counter("influxdb.write.points.dropped"));
+
+        // When
+        boolean first = writer.write("a");
+        boolean second = writer.write("b");
+        boolean third = writer.write("c");
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(1.0, meterRegistry.get("influxdb.write.points.dropped").counter().count());
+    }
+
+    @Test
+    void shouldSpoolBatchesWhileInfluxIsDownAndDrainThemInOrder() {
+        // Given - InfluxDB fails the first batch and its retries, then recovers
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        spool.init();
+        doThrow(new InfluxException("connection refused"))
+                .doThrow(new InfluxException("connection refused"))
+                .doThrow(new InfluxException("connection refused"))
+                .doNothing()
+                .when(writeApi).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.start();
+
+        // When
+        writer.write("m,drone_id=a v=1 1");
+        writer.write("m,drone_id=a v=2 2");
+        writer.write("m,drone_id=a v=3 3");
+        verify(writeApi, timeout(2000).times(3)).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.write("m,drone_id=a v=4 4");
+
+        // Then - the spooled batch is written before the newer point
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(writeApi, timeout(2000).times(5)).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), body.capture());
+        List<String> written = body.getAllValues().subList(3, 5);
+        assertEquals(List.of("m,drone_id=a v=1 1\nm,drone_id=a v=2 2\nm,drone_id=a v=3 3\n", "m,drone_id=a v=4 4\n"), written);
+        assertEquals(3.0, meterRegistry.get("influxdb.spool.points.spooled").counter().count());
+        assertEquals(0.0, meterRegistry.get("influxdb.write.points.dropped").counter().count());
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    void shouldCountBatchesDroppedBecauseTheSpoolIsFull() throws Exception {
+        // Given - InfluxDB is down, the spool already holds older points and has no room left
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        spool.init();
+        byte[] older = "m,drone_id=a v=0 0".getBytes();
+        assertTrue(spool.append(older, older.length, 1));
+        ReflectionTestUtils.setField(spool, "maxSizeMb", 0L);
+        doThrow(new InfluxException("connection refused"))
+                .when(writeApi).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.start();
+
+        // When
+        writer.write("m,drone_id=a v=1 1");
+        writer.write("m,drone_id=a v=2 2");
+        writer.write("m,drone_id=a v=3 3");
+
+        // Then
+        long deadline = System.currentTimeMillis() + 2000;
+        while (meterRegistry.get("influxdb.write.points.dropped").counter().count() < 3
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3.0, meterRegistry.get("influxdb.write.points.dropped").counter().count());
+        assertEquals(1.0, meterRegistry.get("influxdb.write.batches.failed").counter().count());
+        assertFalse(spool.isEmpty());
+    }
+
+    @Test
+    void shouldDropBatchesInfluxRejectsInsteadOfSpooling() {
+        // Given
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        spool.init();
+        InfluxException badRequest = new InfluxException("unable to parse") {
+            @Override
+            public int status() {
+                return 400;
+            }
+        };
+        doThrow(badRequest).when(writeApi).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.start();
+
+        // When
+        writer.write("not line protocol");
+
+        // Then
+        verify(writeApi, timeout(2000)).writeRecord(anyString(), anyString(), eq(WritePrecision.NS), anyString());
+        writer.stop();
+        assertEquals(1.0, meterRegistry.get("influxdb.write.points.dropped").counter().count());
+        assertTrue(spool.isEmpty());
+    }
+}
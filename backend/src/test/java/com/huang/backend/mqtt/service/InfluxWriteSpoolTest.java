@@ -0,0 +1,112 @@
+package com.huang.backend.mqtt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InfluxWriteSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InfluxWriteSpool spool;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        spool = newSpool(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spool.close();
+    }
+
+    @Test
+    void shouldReturnBatchesInAppendOrder() throws Exception {
+        // Given
+        spool.init();
+        append(spool, "m v=1 1\nm v=2 2\n", 2);
+        append(spool, "m v=3 3\n", 1);
+
+        // When
+        InfluxWriteSpool.Batch first = spool.peek();
+        spool.commit(first, true);
+        InfluxWriteSpool.Batch second = spool.peek();
+        spool.commit(second, true);
+
+        // Then
+        assertEquals("m v=1 1\nm v=2 2\n", first.getBody());
+        assertEquals(2, first.getPoints());
+        assertEquals("m v=3 3\n", second.getBody());
+        assertNull(spool.peek());
+        assertTrue(spool.isEmpty());
+        assertEquals(0, spool.sizeBytes());
+        assertEquals(3.0, meterRegistry.get("influxdb.spool.points.drained").counter().count());
+        assertEquals(0, Files.list(directory).count());
+    }
+
+    @Test
+    void shouldResumeDrainingAfterRestart() throws Exception {
+        // Given - one of two batches drained before the restart
+        spool.init();
+        append(spool, "m v=1 1\n", 1);
+        append(spool, "m v=2 2\n", 1);
+        spool.commit(spool.peek(), true);
+        spool.close();
+
+        // When
+        InfluxWriteSpool restarted = newSpool(new SimpleMeterRegistry());
+        restarted.init();
+
+        // Then
+        assertEquals(1, restarted.pendingPoints());
+        assertEquals("m v=2 2\n", restarted.peek().getBody());
+        restarted.close();
+    }
+
+    @Test
+    void shouldRollSegmentsAndRejectBatchesBeyondMaxSize() throws Exception {
+        // Given - 1 MB segments, 2 MB in total
+        ReflectionTestUtils.setField(spool, "maxSizeMb", 2L);
+        spool.init();
+        byte[] body = new byte[500 * 1024];
+
+        // When
+        boolean[] accepted = new boolean[6];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = spool.append(body, body.length, 1);
+        }
+
+        // Then
+        assertArrayEquals(new boolean[]{true, true, true, true, false, false}, accepted);
+        assertEquals(2, Files.list(directory).count());
+        assertEquals(4, spool.pendingPoints());
+        assertEquals(2.0, meterRegistry.get("influxdb.spool.points.dropped").counter().count());
+    }
+
+    private InfluxWriteSpool newSpool(SimpleMeterRegistry registry) {
+        InfluxWriteSpool created = new InfluxWriteSpool(registry);
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "directory", directory.toString());
+        ReflectionTestUtils.setField(created, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(created, "maxSizeMb", 16L);
+        return created;
+    }
+
+    private static void append(InfluxWriteSpool spool, String body, int points) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        assertTrue(spool.append(bytes, bytes.length, points));
+    }
+}
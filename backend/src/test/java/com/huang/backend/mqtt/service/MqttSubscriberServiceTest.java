@@ -1,116 +1,173 @@
 package com.huang.backend.mqtt.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.huang.backend.drone.entity.Drone;
-import com.huang.backend.drone.repository.DroneRepository;
-import com.huang.backend.mqtt.model.DroneTelemetryData;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import com.huang.backend.mqtt.capture.MqttCaptureWriter;
+import com.huang.backend.mqtt.connection.MqttConnectionPool;
+import com.huang.backend.mqtt.connection.PooledConnection;
+import com.huang.backend.mqtt.pipeline.TelemetryEnvelope;
+import com.huang.backend.mqtt.pipeline.TelemetryIngestPipeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class MqttSubscriberServiceTest {
 
     @Mock
-    private MqttClient mqttClient;
+    private ObjectMapper objectMapper;
 
     @Mock
-    private TimeseriesService timeseriesService;
+    private TelemetryIngestPipeline ingestPipeline;
 
     @Mock
-    private DroneRepository droneRepository;
+    private MqttConnectionPool connectionPool;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @Mock
-    private ObjectMapper objectMapper;
+    private MqttCaptureWriter captureWriter;
 
     @InjectMocks
     private MqttSubscriberService subscriberService;
 
+    /**
+     * Broker stand-in: the connections handed out by the pool and their message listeners
+     */
+    private final List<PooledConnection> connections = new ArrayList<>();
+    private final List<IMqttMessageListener> listeners = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(subscriberService, "telemetryTopic", "drones/+/telemetry");
+        ReflectionTestUtils.setField(subscriberService, "binaryTelemetryTopic", "drones/+/telemetry/bin");
+        ReflectionTestUtils.setField(subscriberService, "responsesTopic", "drones/+/responses");
+        ReflectionTestUtils.setField(subscriberService, "sharedGroup", "ingest");
+        ReflectionTestUtils.setField(subscriberService, "sharedConnections", 2);
+        lenient().when(connectionPool.openIngestConnection(anyInt(), any())).thenAnswer(invocation -> {
+            PooledConnection connection = mock(PooledConnection.class);
+            connections.add(connection);
+            listeners.add(invocation.getArgument(1));
+            return connection;
+        });
+    }
+
     @Test
-    void shouldProcessTelemetryDataFromMqttMessage() throws Exception {
+    void shouldHandTelemetryMessageToIngestPipeline() throws Exception {
         // Given
-        String droneId = "DRONE-TEST-123";
+        subscriberService.init();
+        String droneId = UUID.randomUUID().toString();
         String topic = "drones/" + droneId + "/telemetry";
         String messagePayload = "{\"batteryLevel\": 85.5, \"latitude\": 37.7749, \"longitude\": -122.4194}";
         MqttMessage message = new MqttMessage(messagePayload.getBytes());
 
-        DroneTelemetryData telemetryData = DroneTelemetryData.builder()
-                .droneId(droneId)
-                .batteryLevel(85.5)
-                .latitude(37.7749)
-                .longitude(-122.4194)
-                .timestamp(Instant.now())
-                .build();
+        // When
+        listeners.get(0).messageArrived(topic, message);
 
-        Drone drone = Drone.builder()
-                .droneId(UUID.randomUUID())
-                .serialNumber(droneId)
-                .model("TestModel")
-                .build();
+        // Then
+        verify(connections.get(0)).subscribe("drones/+/telemetry", 1);
+        verify(connections.get(0)).subscribe("drones/+/responses", 1);
+        ArgumentCaptor<TelemetryEnvelope> captor = ArgumentCaptor.forClass(TelemetryEnvelope.class);
+        verify(ingestPipeline).submit(captor.capture());
+        assertEquals(droneId, captor.getValue().getDroneId());
+        assertEquals(topic, captor.getValue().getTopic());
+        assertArrayEquals(message.getPayload(), captor.getValue().getPayload());
+    }
 
-        // When
-        when(objectMapper.readValue(message.getPayload(), DroneTelemetryData.class)).thenReturn(telemetryData);
-        when(droneRepository.findBySerialNumber(droneId)).thenReturn(Optional.of(drone));
+    @Test
+    void shouldMarkMessagesOnBinaryTopicAsBinary() throws Exception {
+        // Given
+        subscriberService.init();
+        String topic = "drones/" + UUID.randomUUID() + "/telemetry/bin";
 
-        subscriberService.messageArrived(topic, message);
+        // When
+        listeners.get(0).messageArrived(topic, new MqttMessage(new byte[]{(byte) 0xD7, 1}));
 
         // Then
-        verify(timeseriesService).writeTelemetryData(telemetryData);
-        verify(droneRepository).save(any(Drone.class));
+        verify(connections.get(0)).subscribe("drones/+/telemetry/bin", 1);
+        ArgumentCaptor<TelemetryEnvelope> captor = ArgumentCaptor.forClass(TelemetryEnvelope.class);
+        verify(ingestPipeline).submit(captor.capture());
+        assertTrue(captor.getValue().isBinary());
     }
 
     @Test
-    void shouldHandleNonExistentDrone() throws Exception {
+    void shouldMarkReplayedTelemetryAndSkipOtherTopics() throws Exception {
         // Given
-        String droneId = "NONEXISTENT-DRONE";
-        String topic = "drones/" + droneId + "/telemetry";
-        String messagePayload = "{\"batteryLevel\": 85.5, \"latitude\": 37.7749, \"longitude\": -122.4194}";
-        MqttMessage message = new MqttMessage(messagePayload.getBytes());
-
-        DroneTelemetryData telemetryData = DroneTelemetryData.builder()
-                .droneId(droneId)
-                .batteryLevel(85.5)
-                .latitude(37.7749)
-                .longitude(-122.4194)
-                .timestamp(Instant.now())
-                .build();
+        subscriberService.init();
+        String droneId = UUID.randomUUID().toString();
 
         // When
-        when(objectMapper.readValue(message.getPayload(), DroneTelemetryData.class)).thenReturn(telemetryData);
-        when(droneRepository.findBySerialNumber(droneId)).thenReturn(Optional.empty());
-
-        subscriberService.messageArrived(topic, message);
+        subscriberService.replay("drones/" + droneId + "/telemetry", "{\"seq\": 1}".getBytes());
+        subscriberService.replay("drones/" + droneId + "/responses", "{}".getBytes());
 
         // Then
-        verify(timeseriesService).writeTelemetryData(telemetryData);
-        verify(droneRepository, never()).save(any(Drone.class));
+        ArgumentCaptor<TelemetryEnvelope> captor = ArgumentCaptor.forClass(TelemetryEnvelope.class);
+        verify(ingestPipeline, times(1)).submit(captor.capture());
+        assertTrue(captor.getValue().isReplayed());
+        assertEquals(droneId, captor.getValue().getDroneId());
+        assertFalse(captor.getValue().isBinary());
+        verifyNoInteractions(objectMapper);
     }
 
     @Test
     void shouldHandleInvalidTopicFormat() throws Exception {
         // Given
+        subscriberService.init();
         String invalidTopic = "invalid/topic/format";
         String messagePayload = "{\"batteryLevel\": 85.5, \"latitude\": 37.7749, \"longitude\": -122.4194}";
         MqttMessage message = new MqttMessage(messagePayload.getBytes());
 
         // When
-        subscriberService.messageArrived(invalidTopic, message);
+        listeners.get(0).messageArrived(invalidTopic, message);
+
+        // Then
+        verify(ingestPipeline, never()).submit(any());
+    }
+
+    @Test
+    void shouldConsumeTelemetryThroughSharedSubscriptionConnections() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(subscriberService, "sharedEnabled", true);
+        subscriberService.init();
+        String droneId = UUID.randomUUID().toString();
+        String topic = "drones/" + droneId + "/telemetry";
+
+        // When
+        listeners.get(0).messageArrived(topic, new MqttMessage("{}".getBytes()));
+        listeners.get(1).messageArrived(topic, new MqttMessage("{}".getBytes()));
 
         // Then
-        verify(timeseriesService, never()).writeTelemetryData(any());
-        verify(droneRepository, never()).save(any());
+        assertEquals(2, connections.size());
+        for (PooledConnection connection : connections) {
+            verify(connection).subscribe("$share/ingest/drones/+/telemetry", 1);
+        }
+        verify(ingestPipeline, times(2)).submit(any(TelemetryEnvelope.class));
+        assertEquals(1.0, meterRegistry.counter("drone.ingest.shared.handover").count());
+    }
+
+    @Test
+    void shouldRejectInvalidSharedGroup() {
+        assertEquals("$share/g/drones/+/telemetry", MqttSubscriberService.sharedFilter("g", "drones/+/telemetry"));
+        assertThrows(IllegalArgumentException.class, () -> MqttSubscriberService.sharedFilter("a/b", "drones/+/telemetry"));
+        assertThrows(IllegalArgumentException.class, () -> MqttSubscriberService.sharedFilter("", "drones/+/telemetry"));
     }
-} 
\ No newline at end of file
+}
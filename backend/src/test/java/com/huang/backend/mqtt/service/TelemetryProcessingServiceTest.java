@@ -0,0 +1,268 @@
+package com.huang.backend.mqtt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.backend.drone.entity.Drone;
+import com.huang.backend.drone.model.DroneSnapshot;
+import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
+import com.huang.backend.drone.service.FlightSessionTracker;
+import com.huang.backend.drone.service.LatestTelemetryStore;
+import com.huang.backend.drone.websocket.DroneWebSocketHandler;
+import com.huang.backend.geofence.service.GeofenceService;
+import com.huang.backend.mqtt.codec.TelemetryBinaryCodec;
+import com.huang.backend.mqtt.codec.TelemetryJsonDecoder;
+import com.huang.backend.mqtt.model.TelemetryRecord;
+import com.huang.backend.mqtt.pipeline.DroneSequenceTracker;
+import com.huang.backend.mqtt.pipeline.TelemetryEnvelope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TelemetryProcessingServiceTest {
+
+    @Spy
+    private TelemetryJsonDecoder telemetryDecoder = new TelemetryJsonDecoder(new ObjectMapper());
+
+    @Spy
+    private TelemetryBinaryCodec binaryCodec = new TelemetryBinaryCodec();
+
+    @Spy
+    private DroneSequenceTracker sequenceTracker = new DroneSequenceTracker(new SimpleMeterRegistry());
+
+    @Mock
+    private TimeseriesService timeseriesService;
+
+    @Mock
+    private DroneHeartbeatWriter heartbeatWriter;
+
+    @Mock
+    private DroneRepository droneRepository;
+
+    @Mock
+    private DroneRegistry droneRegistry;
+
+    @Mock
+    private LatestTelemetryStore latestTelemetryStore;
+
+    @Mock
+    private FleetStatusCounters fleetStatusCounters;
+
+    @Mock
+    private FlightSessionTracker flightSessionTracker;
+
+    @Mock
+    private DroneWebSocketHandler droneWebSocketHandler;
+
+    @Mock
+    private GeofenceService geofenceService;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private TelemetryProcessingService processingService;
+
+    @BeforeEach
+    void setUp() {
+        processingService.init();
+    }
+
+    @Test
+    void shouldProcessTelemetryDataFromMqttMessage() throws Exception {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        String payload = "{\"batteryLevel\": 85.5, \"latitude\": 37.7749, \"longitude\": -122.4194}";
+        TelemetryEnvelope envelope = envelope(droneId, payload);
+
+        DroneSnapshot drone = new DroneSnapshot(droneId, "DRONE-TEST-123", "TestModel",
+                Drone.DroneStatus.FLYING, Set.of());
+
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(drone));
+        when(geofenceService.findGeofencesContainingPoint(-122.4194, 37.7749)).thenReturn(List.of());
+
+        // When
+        processingService.processInline(envelope);
+
+        // Then
+        ArgumentCaptor<TelemetryRecord> captor = ArgumentCaptor.forClass(TelemetryRecord.class);
+        verify(timeseriesService).writeTelemetry(captor.capture());
+        assertEquals(droneId.toString(), captor.getValue().getDroneId());
+        assertEquals(85.5, captor.getValue().getBatteryLevel());
+        assertTrue(captor.getValue().hasTimestamp());
+        verify(heartbeatWriter).record(eq(droneId), any());
+        verify(latestTelemetryStore).update(eq(droneId), any());
+        verify(droneWebSocketHandler).sendDroneUpdate(eq(droneId), any());
+        verify(droneRepository, never()).findByIdWithGeofences(any());
+        verify(droneRepository, never()).findById(any());
+        assertEquals("DRONE-TEST-123", envelope.getSerialNumber());
+    }
+
+    @Test
+    void shouldRecordStepTimersAndEndToEndLatency() throws Exception {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        TelemetryEnvelope envelope = envelope(droneId, "{\"latitude\": 37.7749, \"longitude\": -122.4194}");
+        DroneSnapshot drone = new DroneSnapshot(droneId, "DRONE-TEST-123", "TestModel",
+                Drone.DroneStatus.FLYING, Set.of());
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(drone));
+        when(geofenceService.findGeofencesContainingPoint(-122.4194, 37.7749)).thenReturn(List.of());
+
+        // When
+        processingService.processInline(envelope);
+
+        // Then
+        for (String step : List.of("decode", "influx-enqueue", "heartbeat", "latest-store", "flight-tracker",
+                "geofence", "websocket")) {
+            assertEquals(1, meterRegistry.get("drone.ingest.step").tag("step", step).timer().count(), step);
+        }
+        assertEquals(1, meterRegistry.get("drone.ingest.latency").tag("until", "persisted").timer().count());
+        assertEquals(1, meterRegistry.get("drone.ingest.latency").tag("until", "pushed").timer().count());
+    }
+
+    @Test
+    void shouldUpdateStatusReportedInTelemetryWithoutLoadingDrone() throws Exception {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        TelemetryEnvelope envelope = envelope(droneId, "{\"status\": \"FLYING\"}");
+        DroneSnapshot drone = new DroneSnapshot(droneId, "DRONE-TEST-789", "TestModel",
+                Drone.DroneStatus.ONLINE, Set.of());
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(drone));
+
+        // When
+        processingService.processInline(envelope);
+
+        // Then
+        verify(droneRepository).updateStatus(eq(droneId), eq(Drone.DroneStatus.FLYING), any());
+        verify(droneRegistry).updateStatus(droneId, Drone.DroneStatus.FLYING);
+        verify(droneRepository, never()).save(any(Drone.class));
+        assertEquals(Drone.DroneStatus.FLYING, envelope.getDroneStatus());
+    }
+
+    @Test
+    void shouldHandleNonExistentDrone() throws Exception {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        String payload = "{\"batteryLevel\": 85.5, \"latitude\": 37.7749, \"longitude\": -122.4194}";
+        TelemetryEnvelope envelope = envelope(droneId, payload);
+
+        when(droneRegistry.get(droneId)).thenReturn(Optional.empty());
+
+        // When
+        processingService.processInline(envelope);
+
+        // Then
+        verify(timeseriesService).writeTelemetry(any());
+        verify(droneRepository, never()).save(any(Drone.class));
+        verify(droneWebSocketHandler, never()).sendDroneUpdate(any(), any());
+        verify(latestTelemetryStore, never()).update(any(), any());
+        verify(flightSessionTracker, never()).record(any(), any());
+    }
+
+    @Test
+    void shouldSetDroneOfflineOnFarewellMessage() throws Exception {
+        // Given
+        UUID droneId = UUID.randomUUID();
+        String payload = "{\"type\":\"FAREWELL\",\"message\":\"bye\",\"batteryRemaining\":42.0}";
+        TelemetryEnvelope envelope = envelope(droneId, payload);
+
+        Drone drone = Drone.builder()
+                .droneId(droneId)
+                .serialNumber("DRONE-TEST-456")
+                .model("TestModel")
+                .currentStatus(Drone.DroneStatus.ONLINE)
+                .build();
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(DroneSnapshot.of(drone)));
+        when(droneRepository.findById(droneId)).thenReturn(Optional.of(drone));
+
+        // When
+        processingService.processInline(envelope);
+
+        // Then
+        assertTrue(envelope.isFarewell());
+        verify(timeseriesService, never()).writeTelemetry(any());
+        verify(droneRepository).save(drone);
+        assertEquals(Drone.DroneStatus.OFFLINE, drone.getCurrentStatus());
+        assertEquals("bye", drone.getLastFarewellMessage());
+        verify(droneRegistry).update(drone);
+    }
+
+    @Test
+    void shouldDropDuplicatesAndKeepLateSamplesOutOfLiveState() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(sequenceTracker, "enabled", true);
+        ReflectionTestUtils.setField(sequenceTracker, "resetAfter", 3);
+        UUID droneId = UUID.randomUUID();
+        DroneSnapshot drone = new DroneSnapshot(droneId, "DRONE-TEST-321", "TestModel",
+                Drone.DroneStatus.FLYING, Set.of());
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(drone));
+        processingService.processInline(envelope(droneId, "{\"seq\": 5, \"batteryLevel\": 80}"));
+        processingService.processInline(envelope(droneId, "{\"seq\": 7, \"batteryLevel\": 79}"));
+
+        // When - a redelivery of 7, then the late 6
+        TelemetryEnvelope duplicate = envelope(droneId, "{\"seq\": 7, \"batteryLevel\": 79}");
+        processingService.processInline(duplicate);
+        TelemetryEnvelope late = envelope(droneId, "{\"seq\": 6, \"batteryLevel\": 81}");
+        processingService.processInline(late);
+
+        // Then
+        assertNull(duplicate.getTelemetry());
+        assertTrue(late.isLate());
+        verify(timeseriesService, times(3)).writeTelemetry(any());
+        verify(droneWebSocketHandler, times(2)).sendDroneUpdate(eq(droneId), any());
+        verify(latestTelemetryStore, times(2)).update(eq(droneId), any());
+        assertEquals(1, sequenceTracker.getStats(droneId.toString()).orElseThrow().getDuplicates());
+        assertEquals(0, sequenceTracker.getStats(droneId.toString()).orElseThrow().getLost());
+    }
+
+    @Test
+    void shouldRunReplayedSamplesThroughPersistEvenWhenAlreadySeen() throws Exception {
+        // Given - the live samples that were captured
+        ReflectionTestUtils.setField(sequenceTracker, "enabled", true);
+        UUID droneId = UUID.randomUUID();
+        DroneSnapshot drone = new DroneSnapshot(droneId, "DRONE-TEST-654", "TestModel",
+                Drone.DroneStatus.FLYING, Set.of());
+        when(droneRegistry.get(droneId)).thenReturn(Optional.of(drone));
+        processingService.processInline(envelope(droneId, "{\"seq\": 1, \"batteryLevel\": 80}"));
+        processingService.processInline(envelope(droneId, "{\"seq\": 2, \"batteryLevel\": 79}"));
+
+        // When - the same samples replayed from the capture
+        for (String payload : List.of("{\"seq\": 1, \"batteryLevel\": 80}", "{\"seq\": 2, \"batteryLevel\": 79}")) {
+            TelemetryEnvelope replayed = envelope(droneId, payload);
+            replayed.setReplayed(true);
+            processingService.processInline(replayed);
+            assertFalse(replayed.isLate());
+        }
+
+        // Then
+        verify(timeseriesService, times(4)).writeTelemetry(any());
+        verify(heartbeatWriter, times(4)).record(eq(droneId), any());
+        verify(latestTelemetryStore, times(4)).update(eq(droneId), any());
+        verify(flightSessionTracker, times(4)).record(eq(droneId), any());
+        verify(droneWebSocketHandler, times(4)).sendDroneUpdate(eq(droneId), any());
+        assertEquals(0, sequenceTracker.getStats(droneId.toString()).orElseThrow().getDuplicates());
+    }
+
+    private TelemetryEnvelope envelope(UUID droneId, String payload) {
+        return new TelemetryEnvelope(droneId.toString(), "drones/" + droneId + "/telemetry",
+                payload.getBytes(), System.nanoTime());
+    }
+}
@@ -2,6 +2,8 @@ package com.huang.backend.registration.service;
 
 import com.huang.backend.drone.entity.Drone;
 import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
 import com.huang.backend.exception.ResourceNotFoundException;
 import com.huang.backend.registration.dto.AdminActionDto;
 import com.huang.backend.registration.dto.AdminActionResponseDto;
@@ -35,6 +37,12 @@ public class AdminActionServiceTest {
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Mock
+    private DroneRegistry droneRegistry;
+
+    @Mock
+    private FleetStatusCounters fleetStatusCounters;
+
     @InjectMocks
     private RegistrationServiceImpl registrationService;
 
@@ -1,6 +1,8 @@
 package com.huang.backend.registration.service;
 
 import com.huang.backend.drone.repository.DroneRepository;
+import com.huang.backend.drone.service.DroneRegistry;
+import com.huang.backend.drone.service.FleetStatusCounters;
 import com.huang.backend.registration.dto.AdminActionDto;
 import com.huang.backend.registration.dto.DroneRegistrationRequestDto;
 import com.huang.backend.registration.dto.RegistrationNotificationDto;
@@ -35,6 +37,12 @@ public class RegistrationWebSocketTest {
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Mock
+    private DroneRegistry droneRegistry;
+
+    @Mock
+    private FleetStatusCounters fleetStatusCounters;
+
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
@@ -96,6 +96,8 @@ class DroneSimulator:
         
         # MQTT主题
         self.telemetry_topic = f"drones/{self.drone_id}/telemetry"
+        # 遥测序列号，后端据此识别重复和乱序的消息
+        self.telemetry_seq = 0
         self.commands_topic = f"drones/{self.drone_id}/commands"
         self.console_topic = f"drones/{self.drone_id}/console"
         self.responses_topic = f"drones/{self.drone_id}/responses"
@@ -811,8 +813,10 @@ class DroneSimulator:
             if self.mqtt_connected.is_set():
                 self.simulate_flight()
                 
+                self.telemetry_seq += 1
                 payload = {
                     "droneId": self.drone_id,
+                    "seq": self.telemetry_seq,
                     "timestamp": time.time(),
                     "latitude": round(self.current_latitude, 6),
                     "longitude": round(self.current_longitude, 6),